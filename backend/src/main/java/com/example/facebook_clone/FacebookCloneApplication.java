@@ -2,11 +2,13 @@ package com.example.facebook_clone;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
 
 @SpringBootApplication
+@EnableScheduling
 public class FacebookCloneApplication {
 
 	@PostConstruct
@@ -0,0 +1,140 @@
+package com.example.facebook_clone.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Lớp chính sách gửi (outbound) cho WebSocket: mỗi session có hàng đợi riêng theo độ ưu tiên,
+ * session không theo kịp bị đóng thay vì giữ thread gửi của các client khác.
+ *
+ * Metrics:
+ * - websocket.outbound.queue.depth / websocket.outbound.queue.depth.max: số frame đang chờ
+ * - websocket.outbound.dropped (tag priority), websocket.outbound.conflated: frame bị bỏ/gộp
+ * - websocket.outbound.session.kills: số session bị đóng vì quá chậm
+ */
+@Component
+public class OutboundBackpressureDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundBackpressureDecoratorFactory.class);
+
+    // Giữ cùng giới hạn với cấu hình transport trong WebSocketConfig
+    static final int QUEUED_BYTES_LIMIT = 1024 * 1024;
+    static final long SEND_TIME_LIMIT_MS = 20_000;
+
+    // Mỗi lần ghi bị chặn bởi client chậm chỉ giữ một virtual thread
+    private final ExecutorService drainExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, OutboundQueueSession> sessions = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final Counter droppedNormal;
+    private final Counter droppedLow;
+    private final Counter conflated;
+    private final Counter sessionKills;
+
+    public OutboundBackpressureDecoratorFactory(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.droppedNormal = Counter.builder("websocket.outbound.dropped").tag("priority", "normal").register(meterRegistry);
+        this.droppedLow = Counter.builder("websocket.outbound.dropped").tag("priority", "low").register(meterRegistry);
+        this.conflated = Counter.builder("websocket.outbound.conflated").register(meterRegistry);
+        this.sessionKills = Counter.builder("websocket.outbound.session.kills").register(meterRegistry);
+    }
+
+    /**
+     * Đăng ký các gauge sau khi khởi tạo xong (gauge giữ tham chiếu đến factory)
+     */
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("websocket.outbound.queue.depth", this, factory -> factory.totalQueueDepth()).register(meterRegistry);
+        Gauge.builder("websocket.outbound.queue.depth.max", this, factory -> factory.maxQueueDepth()).register(meterRegistry);
+        Gauge.builder("websocket.outbound.sessions", sessions, Map::size).register(meterRegistry);
+    }
+
+    @Override
+    @NonNull
+    public WebSocketHandler decorate(@NonNull WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(@NonNull WebSocketSession session) throws Exception {
+                OutboundQueueSession queued = new OutboundQueueSession(
+                    session, OutboundBackpressureDecoratorFactory.this, drainExecutor, QUEUED_BYTES_LIMIT);
+                sessions.put(session.getId(), queued);
+                super.afterConnectionEstablished(queued);
+            }
+
+            @Override
+            public void afterConnectionClosed(@NonNull WebSocketSession session, @NonNull CloseStatus closeStatus) throws Exception {
+                OutboundQueueSession queued = sessions.remove(session.getId());
+                if (queued != null) {
+                    queued.discard();
+                }
+                super.afterConnectionClosed(queued != null ? queued : session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Đóng các session có lần ghi bị treo quá giới hạn thời gian gửi
+     */
+    @Scheduled(fixedDelay = 5_000)
+    public void killStalledSessions() {
+        for (OutboundQueueSession session : sessions.values()) {
+            if (session.currentSendDuration() > SEND_TIME_LIMIT_MS) {
+                logger.warn("Đóng session WebSocket {} vì gửi quá chậm", session.getId());
+                session.kill("Send time limit exceeded");
+            }
+        }
+    }
+
+    void recordDrop(OutboundQueueSession.Priority priority) {
+        (priority == OutboundQueueSession.Priority.LOW ? droppedLow : droppedNormal).increment();
+    }
+
+    void recordConflation() {
+        conflated.increment();
+    }
+
+    void recordKill() {
+        sessionKills.increment();
+    }
+
+    private double totalQueueDepth() {
+        long total = 0;
+        for (OutboundQueueSession session : sessions.values()) {
+            total += session.queueDepth();
+        }
+        return total;
+    }
+
+    private double maxQueueDepth() {
+        int max = 0;
+        for (OutboundQueueSession session : sessions.values()) {
+            max = Math.max(max, session.queueDepth());
+        }
+        return max;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainExecutor.shutdownNow();
+    }
+}
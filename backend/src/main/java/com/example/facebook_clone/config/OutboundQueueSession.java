@@ -0,0 +1,215 @@
+package com.example.facebook_clone.config;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Executor;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+/**
+ * Bọc session WebSocket bằng hàng đợi gửi có độ ưu tiên.
+ *
+ * Frame được phân loại theo destination của STOMP MESSAGE:
+ * - HIGH: tin nhắn riêng, typing, /user/queue/..., frame điều khiển và mọi frame có header seq
+ *   (không bao giờ bị bỏ, vì /app/resume chỉ phát lại được các frame mà client chưa nhận seq sau đó)
+ * - NORMAL: presence và các frame không có seq còn lại (bỏ frame cũ nhất khi đầy)
+ * - LOW: cập nhật bài đăng (gộp theo destination, chỉ giữ trạng thái mới nhất)
+ *
+ * sendMessage chỉ xếp hàng rồi trả về ngay; việc ghi ra socket do một tác vụ drain
+ * riêng của session thực hiện, nên một client chậm không giữ thread của người gửi.
+ */
+public class OutboundQueueSession extends WebSocketSessionDecorator {
+
+    enum Priority { HIGH, NORMAL, LOW }
+
+    private static final int NORMAL_LIMIT = 256;
+    private static final int LOW_LIMIT = 64;
+
+    private final OutboundBackpressureDecoratorFactory owner;
+    private final Executor drainExecutor;
+    private final int queuedBytesLimit;
+
+    private final ArrayDeque<WebSocketMessage<?>> high = new ArrayDeque<>();
+    private final ArrayDeque<WebSocketMessage<?>> normal = new ArrayDeque<>();
+    // destination -> frame mới nhất, theo thứ tự destination được xếp hàng lần đầu
+    private final LinkedHashMap<String, WebSocketMessage<?>> low = new LinkedHashMap<>();
+
+    private int queuedBytes;
+    private boolean draining;
+    private volatile boolean closed;
+    private volatile long sendStartedAt;
+
+    public OutboundQueueSession(WebSocketSession delegate, OutboundBackpressureDecoratorFactory owner,
+                                Executor drainExecutor, int queuedBytesLimit) {
+        super(delegate);
+        this.owner = owner;
+        this.drainExecutor = drainExecutor;
+        this.queuedBytesLimit = queuedBytesLimit;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (closed) {
+            return;
+        }
+
+        boolean overflow;
+        boolean startDrain;
+        synchronized (this) {
+            String destination = headerOf(message, "destination");
+            Priority priority = headerOf(message, "seq") != null ? Priority.HIGH : classify(destination);
+            switch (priority) {
+                case HIGH -> high.addLast(message);
+                case NORMAL -> {
+                    normal.addLast(message);
+                    if (normal.size() > NORMAL_LIMIT) {
+                        queuedBytes -= normal.pollFirst().getPayloadLength();
+                        owner.recordDrop(Priority.NORMAL);
+                    }
+                }
+                case LOW -> {
+                    WebSocketMessage<?> replaced = low.remove(destination);
+                    if (replaced != null) {
+                        queuedBytes -= replaced.getPayloadLength();
+                        owner.recordConflation();
+                    }
+                    low.put(destination, message);
+                    if (low.size() > LOW_LIMIT) {
+                        Iterator<WebSocketMessage<?>> oldest = low.values().iterator();
+                        queuedBytes -= oldest.next().getPayloadLength();
+                        oldest.remove();
+                        owner.recordDrop(Priority.LOW);
+                    }
+                }
+            }
+            queuedBytes += message.getPayloadLength();
+
+            // Frame ưu tiên cao không được bỏ: nếu vẫn vượt giới hạn thì client quá chậm
+            overflow = queuedBytes > queuedBytesLimit;
+            startDrain = !draining && !overflow;
+            if (startDrain) {
+                draining = true;
+            }
+        }
+
+        if (overflow) {
+            kill("Outbound queue overflow");
+        } else if (startDrain) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Ghi lần lượt các frame trong hàng đợi, ưu tiên HIGH rồi NORMAL rồi LOW
+     */
+    private void drain() {
+        while (!closed) {
+            WebSocketMessage<?> next;
+            synchronized (this) {
+                next = high.pollFirst();
+                if (next == null) {
+                    next = normal.pollFirst();
+                }
+                if (next == null && !low.isEmpty()) {
+                    Iterator<WebSocketMessage<?>> it = low.values().iterator();
+                    next = it.next();
+                    it.remove();
+                }
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+                queuedBytes -= next.getPayloadLength();
+            }
+
+            try {
+                sendStartedAt = System.currentTimeMillis();
+                getDelegate().sendMessage(next);
+            } catch (Exception e) {
+                kill("Send failed");
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+    }
+
+    /**
+     * Đóng session bị coi là client chậm và giải phóng hàng đợi
+     */
+    void kill(String reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        discard();
+        owner.recordKill();
+        try {
+            getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE.withReason(reason));
+        } catch (IOException e) {
+            // Session đã đóng
+        }
+    }
+
+    synchronized void discard() {
+        closed = true;
+        high.clear();
+        normal.clear();
+        low.clear();
+        queuedBytes = 0;
+    }
+
+    synchronized int queueDepth() {
+        return high.size() + normal.size() + low.size();
+    }
+
+    /**
+     * @return Thời gian (ms) của lần ghi hiện tại, 0 nếu không có lần ghi nào đang diễn ra
+     */
+    long currentSendDuration() {
+        long started = sendStartedAt;
+        return started > 0 ? System.currentTimeMillis() - started : 0;
+    }
+
+    /**
+     * Lấy một header của frame STOMP MESSAGE, null với các frame khác hoặc khi không có header
+     */
+    private static String headerOf(WebSocketMessage<?> message, String name) {
+        if (!(message instanceof TextMessage text)) {
+            return null;
+        }
+        String payload = text.getPayload();
+        if (!payload.startsWith("MESSAGE\n")) {
+            return null;
+        }
+        String key = "\n" + name + ":";
+        int headerEnd = payload.indexOf("\n\n");
+        int from = payload.indexOf(key);
+        if (from < 0 || (headerEnd >= 0 && from > headerEnd)) {
+            return null;
+        }
+        from += key.length();
+        int to = payload.indexOf('\n', from);
+        return to < 0 ? payload.substring(from) : payload.substring(from, to);
+    }
+
+    private static Priority classify(String destination) {
+        if (destination == null
+                || destination.startsWith("/topic/messages/")
+                || destination.startsWith("/topic/typing/")
+                || destination.startsWith("/user/")
+                || destination.startsWith("/queue/")) {
+            return Priority.HIGH;
+        }
+        if (destination.startsWith("/topic/posts/")) {
+            return Priority.LOW;
+        }
+        return Priority.NORMAL;
+    }
+}
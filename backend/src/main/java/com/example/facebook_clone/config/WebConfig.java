@@ -1,17 +1,34 @@
 package com.example.facebook_clone.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import com.example.facebook_clone.security.RateLimitInterceptor;
+import com.example.facebook_clone.security.RateLimitRoute;
+import com.example.facebook_clone.security.RateLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/")
-                .setCachePeriod(3600) // Enable caching for 1 hour (3600 seconds)
-                .resourceChain(true);
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Giới hạn tần suất theo IP cho các endpoint dễ bị lạm dụng
+        addRateLimit(registry, RateLimitRoute.LOGIN, "/api/auth/login");
+        addRateLimit(registry, RateLimitRoute.FORGOT_PASSWORD, "/api/auth/forgot-password");
+        addRateLimit(registry, RateLimitRoute.POST_LIKE, "/api/posts/*/like");
+        addRateLimit(registry, RateLimitRoute.MESSAGE, "/api/messages");
+    }
+
+    private void addRateLimit(InterceptorRegistry registry, RateLimitRoute route, String pathPattern) {
+        registry.addInterceptor(new RateLimitInterceptor(rateLimiter, route, objectMapper)).addPathPatterns(pathPattern);
     }
 }
@@ -1,7 +1,17 @@
 package com.example.facebook_clone.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
@@ -9,6 +19,10 @@ import org.springframework.web.socket.config.annotation.WebSocketTransportRegist
 import org.springframework.scheduling.concurrent.DefaultManagedTaskScheduler;
 import org.springframework.lang.NonNull;
 
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.security.JwtUtil;
+import com.example.facebook_clone.service.PresenceService;
+
 /**
  * Cấu hình WebSocket cho giao tiếp thời gian thực
  */
@@ -16,6 +30,16 @@ import org.springframework.lang.NonNull;
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Autowired
+    @Lazy
+    private PresenceService presenceService;
+
+    @Autowired
+    private OutboundBackpressureDecoratorFactory outboundBackpressureDecoratorFactory;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
     /**
      * Cấu hình message broker
      *
@@ -23,7 +47,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
      */
     @Override
     public void configureMessageBroker(@NonNull MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic")
+        // "/queue" dùng cho các đích riêng theo session (ví dụ ack tin nhắn qua /user/queue/...)
+        config.enableSimpleBroker("/topic", "/queue")
             .setHeartbeatValue(new long[]{25000, 25000})
             .setTaskScheduler(new DefaultManagedTaskScheduler());
         config.setApplicationDestinationPrefixes("/app");
@@ -47,6 +72,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     /**
      * Cấu hình vận chuyển WebSocket
+     * Hàng đợi gửi theo độ ưu tiên của từng session nằm trong OutboundBackpressureDecoratorFactory
      *
      * @param registration Đối tượng cấu hình WebSocketTransportRegistration
      */
@@ -54,7 +80,35 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureWebSocketTransport(@NonNull WebSocketTransportRegistration registration) {
         registration.setMessageSizeLimit(512 * 1024)
                    .setSendBufferSizeLimit(1024 * 1024)
-                   .setSendTimeLimit(20000);
+                   .setSendTimeLimit(20000)
+                   .addDecoratorFactory(outboundBackpressureDecoratorFactory);
     }
-}
 
+    /**
+     * Cấu hình kênh nhận message từ client
+     * Mọi frame gửi lên (kể cả heartbeat) đều làm mới trạng thái online của session.
+     * Frame CONNECT có header Authorization được xác thực qua cache JWT và gắn user vào session.
+     *
+     * @param registration Đối tượng cấu hình ChannelRegistration
+     */
+    @Override
+    public void configureClientInboundChannel(@NonNull ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+                    String authHeader = accessor.getFirstNativeHeader("Authorization");
+                    if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                        AuthenticatedUser user = jwtUtil.authenticate(authHeader.substring(7));
+                        if (user != null) {
+                            accessor.setUser(user);
+                        }
+                    }
+                }
+                presenceService.touch(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+                return message;
+            }
+        });
+    }
+}
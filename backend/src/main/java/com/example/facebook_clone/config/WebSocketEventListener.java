@@ -0,0 +1,53 @@
+package com.example.facebook_clone.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import com.example.facebook_clone.service.PresenceService;
+import com.example.facebook_clone.service.RealtimeEventService;
+
+/**
+ * Lắng nghe sự kiện kết nối/ngắt kết nối STOMP để cập nhật trạng thái online
+ */
+@Component
+public class WebSocketEventListener {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private RealtimeEventService realtimeEventService;
+
+    /**
+     * Lấy userId từ JWT đã xác thực khi CONNECT. Session không có token hợp lệ không được tính là online
+     * (không tin header userId do client tự gửi)
+     *
+     * @param event Sự kiện CONNECT
+     */
+    @EventListener
+    public void handleSessionConnect(SessionConnectEvent event) {
+        if (event.getUser() == null) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String userId = event.getUser().getName();
+        presenceService.sessionConnected(accessor.getSessionId(), userId);
+        realtimeEventService.openBuffer(userId);
+    }
+
+    /**
+     * Xóa session khi client ngắt kết nối
+     *
+     * @param event Sự kiện DISCONNECT
+     */
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        String userId = presenceService.getSessionUser(event.getSessionId());
+        presenceService.sessionDisconnected(event.getSessionId());
+        realtimeEventService.markInactive(userId);
+    }
+}
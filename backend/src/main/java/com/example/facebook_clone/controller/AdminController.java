@@ -0,0 +1,198 @@
+package com.example.facebook_clone.controller;
+
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.service.AdminService;
+import com.example.facebook_clone.service.PlatformStatsService;
+
+/**
+ * Controller cho trang quản trị: thống kê, danh sách phân trang và xuất dữ liệu dạng NDJSON.
+ * Mọi endpoint yêu cầu JWT của tài khoản có vai trò ADMIN.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final String ADMIN_ROLE = "ADMIN";
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
+    /**
+     * Lấy số liệu tổng hợp cho bảng điều khiển trong một request
+     *
+     * @param hours Số giờ gần nhất của chuỗi theo giờ
+     * @param days Số ngày gần nhất của người dùng hoạt động
+     * @param currentUser Người dùng đã xác thực (phải có vai trò ADMIN)
+     * @return Tổng số, chuỗi theo giờ và số người dùng hoạt động theo ngày
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> getStats(
+            @RequestParam(value = "hours", defaultValue = "24") int hours,
+            @RequestParam(value = "days", defaultValue = "7") int days,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        ResponseEntity<?> denied = checkAdmin(currentUser);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            return ResponseEntity.ok(platformStatsService.getDashboard(hours, days));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi lấy thống kê: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Lấy danh sách người dùng theo trang
+     *
+     * @param q Tìm theo tên hoặc email
+     * @param role Lọc theo vai trò
+     * @param sort Trường sắp xếp
+     * @param direction asc hoặc desc
+     * @param page Số trang (từ 0)
+     * @param size Số bản ghi mỗi trang (tối đa 100)
+     * @param currentUser Người dùng đã xác thực (phải có vai trò ADMIN)
+     * @return Trang người dùng và tổng số bản ghi
+     */
+    @GetMapping("/users")
+    public ResponseEntity<?> getUsers(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "role", required = false) String role,
+            @RequestParam(value = "sort", defaultValue = "id") String sort,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        ResponseEntity<?> denied = checkAdmin(currentUser);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            return ResponseEntity.ok(adminService.findUsers(q, role, sort, direction, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi lấy danh sách người dùng: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Lấy danh sách bài đăng theo trang
+     *
+     * @param q Tìm theo nội dung
+     * @param userId Lọc theo người đăng
+     * @param privacy Lọc theo quyền riêng tư
+     * @param sort Trường sắp xếp
+     * @param direction asc hoặc desc
+     * @param page Số trang (từ 0)
+     * @param size Số bản ghi mỗi trang (tối đa 100)
+     * @param currentUser Người dùng đã xác thực (phải có vai trò ADMIN)
+     * @return Trang bài đăng và tổng số bản ghi
+     */
+    @GetMapping("/posts")
+    public ResponseEntity<?> getPosts(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "privacy", required = false) String privacy,
+            @RequestParam(value = "sort", defaultValue = "createdAt") String sort,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        ResponseEntity<?> denied = checkAdmin(currentUser);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            return ResponseEntity.ok(adminService.findPosts(q, userId, privacy, sort, direction, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi lấy danh sách bài đăng: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Xuất người dùng khớp bộ lọc (mỗi dòng một JSON)
+     */
+    @GetMapping("/users/export")
+    public ResponseEntity<?> exportUsers(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "role", required = false) String role,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        ResponseEntity<?> denied = checkAdmin(currentUser);
+        if (denied != null) {
+            return denied;
+        }
+        return ndjson("users.ndjson", out -> {
+            long count = adminService.exportUsers(q, role, out);
+            logger.info("Đã xuất {} người dùng", count);
+        });
+    }
+
+    /**
+     * Xuất bài đăng khớp bộ lọc (mỗi dòng một JSON)
+     */
+    @GetMapping("/posts/export")
+    public ResponseEntity<?> exportPosts(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "privacy", required = false) String privacy,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        ResponseEntity<?> denied = checkAdmin(currentUser);
+        if (denied != null) {
+            return denied;
+        }
+        return ndjson("posts.ndjson", out -> {
+            long count = adminService.exportPosts(q, userId, privacy, out);
+            logger.info("Đã xuất {} bài đăng", count);
+        });
+    }
+
+    /**
+     * Kiểm tra người gọi là quản trị viên
+     *
+     * @param currentUser Người dùng đã xác thực (null nếu thiếu hoặc sai token)
+     * @return 401/403 nếu không được phép, null nếu hợp lệ
+     */
+    private static ResponseEntity<?> checkAdmin(AuthenticatedUser currentUser) {
+        if (currentUser == null || currentUser.getUserId() == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Token không hợp lệ hoặc thiếu"));
+        }
+        if (!ADMIN_ROLE.equals(currentUser.getRole())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Chỉ quản trị viên mới được truy cập"));
+        }
+        return null;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> ndjson(String fileName, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+            .contentType(NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .body(body);
+    }
+}
@@ -2,9 +2,10 @@ package com.example.facebook_clone.controller;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -14,7 +15,14 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.UserRepository;
 import com.example.facebook_clone.security.JwtUtil;
+import com.example.facebook_clone.security.RateLimitRoute;
+import com.example.facebook_clone.security.RateLimiter;
 import com.example.facebook_clone.service.EmailService;
+import com.example.facebook_clone.service.PasswordHashingBusyException;
+import com.example.facebook_clone.service.PasswordHashingService;
+import com.example.facebook_clone.service.PasswordResetTokenService;
+import com.example.facebook_clone.service.PlatformStatsService;
+import com.example.facebook_clone.service.UserTypeaheadIndex;
 
 /**
  * Controller xử lý các API liên quan đến xác thực người dùng
@@ -32,6 +40,21 @@ public class AuthController {
     @Autowired
     private EmailService emailService;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private PasswordResetTokenService passwordResetTokenService;
+
+    @Autowired
+    private UserTypeaheadIndex userTypeaheadIndex;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
     /**
      * Đăng ký tài khoản mới
      *
@@ -46,8 +69,20 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Email đã tồn tại"));
             }
 
-            // Lưu user mới
+            if (user.getPassword() == null || user.getPassword().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng cung cấp mật khẩu"));
+            }
+
+            // Vai trò và ID do server quyết định, không lấy từ request (tránh tự đăng ký tài khoản ADMIN)
+            user.setId(null);
+            user.setRole("USER");
+
+            // Lưu user mới với mật khẩu đã băm
+            user.setPassword(passwordHashingService.hash(user.getPassword()));
             User savedUser = userRepository.save(user);
+            userTypeaheadIndex.userSaved(savedUser);
+            platformStatsService.increment(PlatformStatsService.USERS, 1);
+            platformStatsService.recordActive(savedUser.getId());
 
             // Tạo JWT token
             String token = jwtUtil.generateToken(savedUser.getId(), savedUser.getEmail(), savedUser.getRole());
@@ -62,6 +97,8 @@ public class AuthController {
             response.put("token", token);
 
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("message", "Lỗi khi đăng ký: " + e.getMessage()));
         }
@@ -81,13 +118,26 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng cung cấp email và mật khẩu"));
             }
 
+            long retryAfter = rateLimiter.tryAcquire(RateLimitRoute.LOGIN, credentials.get("email"));
+            if (retryAfter > 0) {
+                return RateLimiter.tooManyRequests(retryAfter);
+            }
+
             User user = userRepository.findByEmail(credentials.get("email"));
 
             // Kiểm tra user tồn tại và mật khẩu đúng
-            if (user == null || !user.getPassword().equals(credentials.get("password"))) {
+            String password = credentials.get("password");
+            if (user == null || !passwordHashingService.matches(password, user.getPassword())) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Thông tin đăng nhập không chính xác"));
             }
 
+            // Mật khẩu plaintext cũ (hoặc cost cũ) được băm lại sau khi đăng nhập thành công
+            if (passwordHashingService.needsRehash(user.getPassword())) {
+                user.setPassword(passwordHashingService.hash(password));
+                userRepository.save(user);
+            }
+            platformStatsService.recordActive(user.getId());
+
             // Tạo JWT token
             String token = jwtUtil.generateToken(user.getId(), user.getEmail(), user.getRole());
 
@@ -101,6 +151,8 @@ public class AuthController {
             response.put("token", token);
 
             return ResponseEntity.ok(response);
+        } catch (PasswordHashingBusyException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("message", "Lỗi khi đăng nhập: " + e.getMessage()));
         }
@@ -114,17 +166,20 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng cung cấp email"));
             }
 
+            long retryAfter = rateLimiter.tryAcquire(RateLimitRoute.FORGOT_PASSWORD, email);
+            if (retryAfter > 0) {
+                return RateLimiter.tooManyRequests(retryAfter);
+            }
+
             User user = userRepository.findByEmail(email);
             if (user == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Email không tồn tại trong hệ thống"));
             }
 
             // Generate reset token
-            String resetToken = UUID.randomUUID().toString();
-            user.setResetToken(resetToken);
-            userRepository.save(user);
+            String resetToken = passwordResetTokenService.issue(user.getId());
 
-            // Send reset email
+            // Send reset email (xếp vào outbox, worker gửi bất đồng bộ)
             emailService.sendPasswordResetEmail(email, resetToken);
 
             return ResponseEntity.ok(Map.of("message", "Vui lòng kiểm tra email của bạn để đặt lại mật khẩu"));
@@ -143,19 +198,37 @@ public class AuthController {
                 return ResponseEntity.badRequest().body(Map.of("message", "Vui lòng cung cấp token và mật khẩu mới"));
             }
 
-            User user = userRepository.findByResetToken(token);
+            // Kiểm tra token trước khi băm để không tốn CPU cho token sai
+            if (!passwordResetTokenService.isValid(token)) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Token không hợp lệ hoặc đã hết hạn"));
+            }
+            String hashedPassword = passwordHashingService.hash(newPassword);
+
+            // Token chỉ dùng được một lần: request đồng thời thứ hai nhận null
+            String userId = passwordResetTokenService.consume(token);
+            User user = userId != null ? userRepository.findById(userId).orElse(null) : null;
             if (user == null) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Token không hợp lệ hoặc đã hết hạn"));
             }
 
-            // Update password and clear reset token
-            user.setPassword(newPassword);
-            user.setResetToken(null);
+            // Update password
+            user.setPassword(hashedPassword);
             userRepository.save(user);
 
             return ResponseEntity.ok(Map.of("message", "Mật khẩu đã được đặt lại thành công"));
+        } catch (PasswordHashingBusyException e) {
+            return tooManyRequests(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("message", "Lỗi khi đặt lại mật khẩu: " + e.getMessage()));
         }
     }
+
+    /**
+     * Phản hồi 429 khi pool băm mật khẩu đang quá tải
+     */
+    private ResponseEntity<?> tooManyRequests(PasswordHashingBusyException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", e.getMessage()));
+    }
 }
@@ -7,7 +7,6 @@ import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,7 +17,10 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.facebook_clone.model.Comment;
 import com.example.facebook_clone.model.Post;
 import com.example.facebook_clone.repository.PostRepository;
+import com.example.facebook_clone.service.ChangeLogService;
 import com.example.facebook_clone.service.NotificationService;
+import com.example.facebook_clone.service.RealtimeEventService;
+import com.example.facebook_clone.service.TrendingService;
 
 /**
  * Controller xử lý các API liên quan đến bình luận
@@ -34,7 +36,13 @@ public class CommentController {
     private NotificationService notificationService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private TrendingService trendingService;
 
     /**
      * Lấy thông tin chi tiết của một bình luận
@@ -115,9 +123,14 @@ public class CommentController {
 
                         // Lưu bài đăng
                         Post savedPost = postRepository.save(post);
+                        changeLogService.recordPostChange(savedPost.getId());
 
                         // Gửi cập nhật qua WebSocket
-                        messagingTemplate.convertAndSend("/topic/posts/" + post.getId(), savedPost);
+                        realtimeEventService.broadcast("/topic/posts/" + post.getId(), savedPost);
+
+                        if (isLikeAction) {
+                            trendingService.commentLiked(savedPost);
+                        }
 
                         // Tạo thông báo nếu đây là hành động thích (không phải bỏ thích)
                         if (isLikeAction && !foundComment.getUserId().equals(userId)) {
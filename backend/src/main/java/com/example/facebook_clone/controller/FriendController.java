@@ -9,7 +9,6 @@ import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -22,7 +21,10 @@ import com.example.facebook_clone.model.Friend;
 import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.FriendRepository;
 import com.example.facebook_clone.repository.UserRepository;
+import com.example.facebook_clone.service.ChangeLogService;
 import com.example.facebook_clone.service.NotificationService;
+import com.example.facebook_clone.service.RealtimeEventService;
+import com.example.facebook_clone.service.UserTypeaheadIndex;
 
 /**
  * Controller xử lý các API liên quan đến bạn bè
@@ -38,11 +40,17 @@ public class FriendController {
     private UserRepository userRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RealtimeEventService realtimeEventService;
 
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private UserTypeaheadIndex userTypeaheadIndex;
+
     /**
      * Gửi lời mời kết bạn
      *
@@ -78,6 +86,7 @@ public class FriendController {
             friendRequest.setStatus("PENDING");
 
             Friend savedRequest = friendRepository.save(friendRequest);
+            changeLogService.recordFriendRequestChange(friendId, savedRequest.getId(), ChangeLogService.UPSERT);
 
             // Gửi thông báo WebSocket cho người nhận lời mời
             Map<String, Object> requestInfo = new HashMap<>();
@@ -87,7 +96,7 @@ public class FriendController {
             requestInfo.put("type", "NEW_REQUEST");
 
             // Gửi đến topic của người nhận lời mời
-            messagingTemplate.convertAndSend("/topic/friends/" + friendId, requestInfo);
+            realtimeEventService.publishToUser("/topic/friends/" + friendId, friendId, requestInfo);
 
             // Tạo thông báo cho lời mời kết bạn
             notificationService.createFriendRequestNotification(friendId, userId, savedRequest.getId());
@@ -132,16 +141,18 @@ public class FriendController {
                 Map<String, Object> notification = new HashMap<>();
                 notification.put("type", "REQUEST_REJECTED");
                 notification.put("requestId", requestId);
-                messagingTemplate.convertAndSend("/topic/friends/" + userId, notification);
+                realtimeEventService.publishToUser("/topic/friends/" + userId, userId, notification);
                 
                 // Xóa lời mời kết bạn
                 friendRepository.delete(friendRequest);
+                changeLogService.recordFriendRequestChange(friendId, requestId, ChangeLogService.DELETE);
                 
                 return ResponseEntity.ok(Map.of("message", "Đã từ chối lời mời kết bạn"));
             } else {
                 // Nếu chấp nhận, giữ nguyên logic hiện tại
                 friendRequest.setStatus(response);
                 Friend savedRequest = friendRepository.save(friendRequest);
+                changeLogService.recordFriendRequestChange(friendRequest.getFriendId(), requestId, ChangeLogService.DELETE);
 
                 // Nếu chấp nhận lời mời kết bạn, tạo thêm một bản ghi Friend mới
                 // để thể hiện mối quan hệ hai chiều
@@ -151,6 +162,9 @@ public class FriendController {
                     reverseRequest.setFriendId(friendRequest.getUserId());
                     reverseRequest.setStatus("ACCEPTED");
                     friendRepository.save(reverseRequest);
+                    changeLogService.recordFriendChange(friendRequest.getUserId(), friendRequest.getFriendId(), ChangeLogService.UPSERT);
+                    changeLogService.recordFriendChange(friendRequest.getFriendId(), friendRequest.getUserId(), ChangeLogService.UPSERT);
+                    userTypeaheadIndex.friendshipAdded(friendRequest.getUserId(), friendRequest.getFriendId());
 
                     // Lấy thông tin người dùng cho cả hai người
                     User requestUser = userRepository.findById(friendRequest.getUserId()).orElse(null);
@@ -162,7 +176,7 @@ public class FriendController {
                         Map<String, Object> notificationForRequester = new HashMap<>();
                         notificationForRequester.put("type", "REQUEST_ACCEPTED");
                         notificationForRequester.put("friend", friendUser);
-                        messagingTemplate.convertAndSend("/topic/friends/" + friendRequest.getUserId(), notificationForRequester);
+                        realtimeEventService.publishToUser("/topic/friends/" + friendRequest.getUserId(), friendRequest.getUserId(), notificationForRequester);
 
                         // Tạo thông báo cho việc chấp nhận kết bạn
                         notificationService.createFriendAcceptNotification(friendRequest.getUserId(), friendRequest.getFriendId(), friendRequest.getId());
@@ -171,7 +185,7 @@ public class FriendController {
                         Map<String, Object> notificationForAccepter = new HashMap<>();
                         notificationForAccepter.put("type", "FRIEND_ADDED");
                         notificationForAccepter.put("friend", requestUser);
-                        messagingTemplate.convertAndSend("/topic/friends/" + friendRequest.getFriendId(), notificationForAccepter);
+                        realtimeEventService.publishToUser("/topic/friends/" + friendRequest.getFriendId(), friendRequest.getFriendId(), notificationForAccepter);
                     }
                 } catch (Exception e) {
                     // Ghi nhận lỗi nhưng vẫn tiếp tục xử lý
@@ -208,6 +222,9 @@ public class FriendController {
             if (!friendships2.isEmpty()) {
                 friendRepository.deleteAll(friendships2);
             }
+            changeLogService.recordFriendChange(userId, friendId, ChangeLogService.DELETE);
+            changeLogService.recordFriendChange(friendId, userId, ChangeLogService.DELETE);
+            userTypeaheadIndex.friendshipRemoved(userId, friendId);
 
             // Gửi thông báo WebSocket cho cả hai người dùng
             Map<String, Object> notification = new HashMap<>();
@@ -215,8 +232,8 @@ public class FriendController {
             notification.put("userId", userId);
             notification.put("friendId", friendId);
 
-            messagingTemplate.convertAndSend("/topic/friends/" + userId, notification);
-            messagingTemplate.convertAndSend("/topic/friends/" + friendId, notification);
+            realtimeEventService.publishToUser("/topic/friends/" + userId, userId, notification);
+            realtimeEventService.publishToUser("/topic/friends/" + friendId, friendId, notification);
 
             return ResponseEntity.ok(Map.of("message", "Đã hủy kết bạn thành công"));
         } catch (Exception e) {
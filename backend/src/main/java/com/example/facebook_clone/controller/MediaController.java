@@ -0,0 +1,282 @@
+package com.example.facebook_clone.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.facebook_clone.service.FileStorageService;
+import com.example.facebook_clone.service.ImageDerivativeService;
+import com.example.facebook_clone.service.MediaCacheService;
+import com.example.facebook_clone.service.MediaCacheService.CachedFile;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Controller phục vụ file media đã tải lên (/uploads/{tên file}).
+ *
+ * File lưu theo nội dung có tên là hash nên được cache vĩnh viễn phía trình duyệt (immutable);
+ * mọi file đều có ETag mạnh để trả 304 khi trình duyệt hỏi lại. Hỗ trợ Range một đoạn để tua video.
+ * File nhỏ hay được yêu cầu nằm trong MediaCacheService; file lớn được gửi bằng sendfile của
+ * Tomcat (kernel copy thẳng từ file ra socket), nếu không được thì ghi bằng FileChannel.transferTo.
+ */
+@RestController
+public class MediaController {
+
+    // Dưới ngưỡng này ghi trực tiếp rẻ hơn chi phí chuẩn bị sendfile
+    private static final long SENDFILE_THRESHOLD = 48 * 1024;
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    // Ảnh gốc trả thay cho ảnh thu nhỏ chưa tạo xong: chỉ cache ngắn để lần sau nhận được ảnh thu nhỏ
+    private static final String CACHE_FALLBACK = "public, max-age=300";
+    // File cũ (không đặt tên theo hash): trình duyệt hỏi lại bằng ETag sau một giờ
+    private static final String CACHE_LEGACY = "max-age=3600";
+
+    // Kết quả parseRange khi đoạn yêu cầu nằm ngoài file
+    private static final long[] UNSATISFIABLE = new long[0];
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private MediaCacheService mediaCacheService;
+
+    /**
+     * Trả về nội dung file media
+     *
+     * @param fileName Tên file
+     * @param width Chiều rộng mong muốn; trả về ảnh thu nhỏ phù hợp nếu đã được tạo
+     */
+    @GetMapping("/uploads/{fileName:.+}")
+    public void getMedia(@PathVariable String fileName,
+                         @RequestParam(value = "w", required = false) Integer width,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        String cacheControl = FileStorageService.hashOf(fileName) != null ? CACHE_IMMUTABLE : CACHE_LEGACY;
+        CachedFile cached = null;
+        Path file = null;
+
+        if (width != null && width > 0) {
+            // Ảnh thu nhỏ nhỏ nhất vẫn đủ rộng; chưa có thì dùng ảnh lớn hơn hoặc ảnh gốc
+            List<String> candidates = imageDerivativeService.candidateNames(fileName, width);
+            for (String candidate : candidates) {
+                cached = mediaCacheService.get(candidate);
+                if (cached == null) {
+                    file = fileStorageService.resolveFile(candidate);
+                }
+                if (cached != null || file != null) {
+                    if (!candidate.equals(candidates.get(0))) {
+                        cacheControl = CACHE_FALLBACK;
+                    }
+                    fileName = candidate;
+                    break;
+                }
+            }
+            if (cached == null && file == null && !candidates.isEmpty()) {
+                cacheControl = CACHE_FALLBACK;
+            }
+        }
+
+        if (cached == null && file == null) {
+            cached = mediaCacheService.get(fileName);
+            if (cached == null) {
+                file = fileStorageService.resolveFile(fileName);
+            }
+        }
+        if (cached == null && file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        if (cached != null) {
+            serve(request, response, fileName, cacheControl, cached.getEtag(), cached.getContent().length, cached, null, null);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            String etag = etagFor(fileName, file, length);
+
+            if (mediaCacheService.shouldAdmit(fileName, length)) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // Đọc đến hết file
+                }
+                if (!buffer.hasRemaining()) {
+                    cached = new CachedFile(buffer.array(), etag);
+                    mediaCacheService.put(fileName, cached);
+                    serve(request, response, fileName, cacheControl, etag, length, cached, null, null);
+                    return;
+                }
+            }
+            serve(request, response, fileName, cacheControl, etag, length, null, file, channel);
+        }
+    }
+
+    /**
+     * Ghi header (ETag, Cache-Control, Range) rồi ghi nội dung từ cache hoặc từ file
+     */
+    private void serve(HttpServletRequest request, HttpServletResponse response, String fileName,
+                       String cacheControl, String etag, long length,
+                       CachedFile cached, Path file, FileChannel channel) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = length; // Không bao gồm
+        response.setStatus(HttpStatus.OK.value());
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range khác ETag hiện tại (hoặc là ngày tháng) thì trả cả file
+        if (rangeHeader != null && (ifRange == null || ifRange.trim().equals(etag))) {
+            long[] range = parseRange(rangeHeader, length);
+            if (range == UNSATISFIABLE) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (range != null) {
+                start = range[0];
+                end = range[1] + 1;
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + length);
+            }
+        }
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+            .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setContentLengthLong(end - start);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (cached != null) {
+            OutputStream out = response.getOutputStream();
+            out.write(cached.getContent(), (int) start, (int) (end - start));
+            out.flush();
+            return;
+        }
+
+        if (end - start >= SENDFILE_THRESHOLD && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Tomcat gửi file sau khi request kết thúc
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = start;
+        while (position < end) {
+            position += channel.transferTo(position, end - position, target);
+        }
+        out.flush();
+    }
+
+    /**
+     * ETag mạnh: file lưu theo nội dung dùng chính hash trong tên file; file cũ dùng kích thước và thời điểm sửa
+     */
+    private static String etagFor(String fileName, Path file, long length) throws IOException {
+        if (FileStorageService.hashOf(fileName) != null) {
+            int dot = fileName.lastIndexOf('.');
+            return "\"" + (dot > 0 ? fileName.substring(0, dot) : fileName) + "\"";
+        }
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        return "\"" + Long.toHexString(length) + "-" + Long.toHexString(modified) + "\"";
+    }
+
+    /**
+     * Kiểm tra If-None-Match (danh sách ETag cách nhau bởi dấu phẩy, hoặc *)
+     */
+    private static boolean matchesAny(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Phân tích header Range một đoạn (bytes=a-b, bytes=a-, bytes=-n)
+     *
+     * @return {đầu, cuối} (bao gồm), UNSATISFIABLE nếu nằm ngoài file, null nếu bỏ qua và trả cả file
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // Nhiều đoạn (multipart/byteranges) hiếm khi được trình duyệt dùng: trả cả file
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // n byte cuối file
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || length == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (start >= length) {
+                    return UNSATISFIABLE;
+                }
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                if (end < start) {
+                    return null;
+                }
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.facebook_clone.controller;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -9,13 +10,16 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -26,11 +30,23 @@ import com.example.facebook_clone.model.Comment;
 import com.example.facebook_clone.model.CommentRequest;
 import com.example.facebook_clone.model.Post;
 import com.example.facebook_clone.model.SharePostRequest;
+import com.example.facebook_clone.model.UploadSession;
 import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.PostRepository;
 import com.example.facebook_clone.repository.UserRepository;
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.security.RateLimitRoute;
+import com.example.facebook_clone.security.RateLimiter;
+import com.example.facebook_clone.service.ChangeLogService;
+import com.example.facebook_clone.service.ChunkedUploadService;
+import com.example.facebook_clone.service.FeedRankingService;
 import com.example.facebook_clone.service.FileStorageService;
+import com.example.facebook_clone.service.ImageDerivativeService;
 import com.example.facebook_clone.service.NotificationService;
+import com.example.facebook_clone.service.PlatformStatsService;
+import com.example.facebook_clone.service.PostSearchIndex;
+import com.example.facebook_clone.service.RealtimeEventService;
+import com.example.facebook_clone.service.TrendingService;
 
 /**
  * Controller xử lý các API liên quan đến bài đăng
@@ -39,23 +55,52 @@ import com.example.facebook_clone.service.NotificationService;
 @RequestMapping("/api/posts")
 public class PostController {
 
+    private static final int MAX_SEARCH_RESULTS = 200;
+    private static final int MAX_FEED_PAGE_SIZE = 50;
+
+    private static final String INVALID_UPLOAD_MESSAGE = "File tải lên không tồn tại, chưa hoàn tất hoặc đã được sử dụng";
+
     @Autowired
     private PostRepository postRepository;
 
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    @Autowired
+    private PostSearchIndex postSearchIndex;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RealtimeEventService realtimeEventService;
 
     // UserService không được sử dụng trực tiếp trong controller này
 
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
+    @Autowired
+    private FeedRankingService feedRankingService;
+
+    @Autowired
+    private TrendingService trendingService;
+
     // Không sử dụng baseUrl
 
     /**
@@ -66,6 +111,8 @@ public class PostController {
      * @param videos Mảng video đính kèm
      * @param userId ID người dùng tạo bài đăng
      * @param privacy Quyền riêng tư của bài đăng (PUBLIC/PRIVATE)
+     * @param uploadIds ID các phiên tải lên theo phần đã hoàn tất (file lớn)
+     * @param currentUser Người dùng đã xác thực (bắt buộc khi có uploadIds)
      * @return Bài đăng đã được lưu
      */
     @PostMapping
@@ -74,34 +121,41 @@ public class PostController {
             @RequestParam(value = "images", required = false) MultipartFile[] images,
             @RequestParam(value = "videos", required = false) MultipartFile[] videos,
             @RequestParam("userId") String userId,
-            @RequestParam(value = "privacy", required = false, defaultValue = "PUBLIC") String privacy) {
+            @RequestParam(value = "privacy", required = false, defaultValue = "PUBLIC") String privacy,
+            @RequestParam(value = "uploadIds", required = false) String[] uploadIds,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+
+        ResponseEntity<?> uploadOwnerError = checkUploadOwner(uploadIds, userId, currentUser);
+        if (uploadOwnerError != null) {
+            return uploadOwnerError;
+        }
+        List<String> uploadedImages = new ArrayList<>();
+        List<String> uploadedVideos = new ArrayList<>();
+        if (!claimUploads(uploadIds, userId, uploadedImages, uploadedVideos)) {
+            return ResponseEntity.badRequest().body(Map.of("message", INVALID_UPLOAD_MESSAGE));
+        }
 
         Post post = new Post();
         post.setContent(content);
         post.setUserId(userId);
         post.setPrivacy(privacy);
 
-        // Xử lý hình ảnh
-        if (images != null && images.length > 0) {
-            List<String> imageUrls = new ArrayList<>();
-            for (MultipartFile image : images) {
-                String fileName = fileStorageService.storeFile(image);
-                imageUrls.add("/uploads/" + fileName);
-            }
-            post.setImages(imageUrls);
-        }
-
-        // Xử lý video
-        if (videos != null && videos.length > 0) {
-            List<String> videoUrls = new ArrayList<>();
-            for (MultipartFile video : videos) {
-                String fileName = fileStorageService.storeFile(video);
-                videoUrls.add("/uploads/" + fileName);
-            }
-            post.setVideos(videoUrls);
+        // Xử lý hình ảnh và video (lưu song song)
+        try {
+            storeMedia(images, videos, post.getImages(), post.getVideos());
+        } catch (RuntimeException e) {
+            fileStorageService.releaseFiles(uploadedImages);
+            fileStorageService.releaseFiles(uploadedVideos);
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi lưu file: " + e.getMessage()));
         }
+        post.getImages().addAll(uploadedImages);
+        post.getVideos().addAll(uploadedVideos);
 
         Post savedPost = postRepository.save(post);
+        changeLogService.recordPostChange(savedPost.getId());
+        platformStatsService.increment(PlatformStatsService.POSTS, 1);
+        feedRankingService.postSaved(savedPost);
+        imageDerivativeService.generateForPost(savedPost.getId(), savedPost.getImages());
 
         // Thêm thông tin người dùng vào bài đăng
         Optional<User> userOptional = userRepository.findById(userId);
@@ -113,26 +167,44 @@ public class PostController {
     /**
      * Lấy tất cả bài đăng
      *
-     * @param userId ID người dùng đang xem (để kiểm tra quyền riêng tư)
-     * @return Danh sách bài đăng
+     * @param userId ID người dùng đang xem (để kiểm tra quyền riêng tư và xếp hạng)
+     * @param page Số trang (từ 0)
+     * @param size Số bài mỗi trang
+     * @return posts: danh sách bài đăng, phù hợp nhất trước; hasMore: còn trang sau hay không.
+     *         Trang có thể ít hơn size bài (bài đã bị xóa hoặc đổi quyền riêng tư) mà vẫn còn trang sau
      */
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts(@RequestParam(value = "userId", required = false) String userId) {
-        List<Post> posts;
+    public ResponseEntity<?> getAllPosts(@RequestParam(value = "userId", required = false) String userId,
+                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_FEED_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("message", "page phải >= 0 và size trong khoảng 1-" + MAX_FEED_PAGE_SIZE));
+        }
 
-        if (userId != null) {
-            // Lấy tất cả bài viết công khai của người khác và tất cả bài viết của mình
-            posts = postRepository.findAll().stream()
-                .filter(post ->
-                    post.getUserId().equals(userId) || // Bài viết của mình
-                    "PUBLIC".equals(post.getPrivacy()) // Bài viết công khai của người khác
-                )
-                .collect(Collectors.toList());
+        // Bài công khai của mọi người và tất cả bài của mình, xếp theo độ mới, độ thân thiết và tương tác
+        List<Post> posts;
+        // Dựa trên số bài nguồn trả về trước khi lọc, không dựa trên số bài còn lại sau khi lọc
+        boolean hasMore;
+        List<String> postIds = feedRankingService.rank(userId, page, size);
+        if (postIds != null) {
+            hasMore = postIds.size() == size;
+            Map<String, Post> found = new HashMap<>();
+            postRepository.findAllById(postIds).forEach(post -> found.put(post.getId(), post));
+            posts = new ArrayList<>();
+            for (String postId : postIds) {
+                // Kiểm tra lại quyền xem: bảng tin trong bộ nhớ có thể chưa nhận thay đổi quyền riêng tư từ node khác
+                Post post = found.get(postId);
+                if (post != null && ("PUBLIC".equals(post.getPrivacy()) || post.getUserId().equals(userId))) {
+                    posts.add(post);
+                }
+            }
         } else {
-            // Nếu không có userId, chỉ lấy bài viết công khai
-            posts = postRepository.findAll().stream()
-                .filter(post -> "PUBLIC".equals(post.getPrivacy()))
-                .collect(Collectors.toList());
+            // Bảng tin chưa sẵn sàng (vừa khởi động): bài mới nhất trước
+            PageRequest pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+            posts = userId != null
+                ? postRepository.findByPrivacyOrUserId("PUBLIC", userId, pageable)
+                : postRepository.findByPrivacy("PUBLIC", pageable);
+            hasMore = posts.size() == size;
         }
 
         posts.forEach(post -> {
@@ -150,8 +222,38 @@ public class PostController {
                 }
             }
         });
+        imageDerivativeService.fillMissingVariants(posts);
 
-        return ResponseEntity.ok(posts);
+        Map<String, Object> response = new HashMap<>();
+        response.put("posts", posts);
+        response.put("hasMore", hasMore);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Lấy bài đăng đang thịnh hành (nhiều tương tác nhất trong khoảng một giờ gần đây)
+     *
+     * @param userId ID người dùng đang xem (để kiểm tra quyền riêng tư)
+     * @param limit Số kết quả tối đa
+     * @return Danh sách bài đăng, nhiều tương tác nhất trước
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<List<Post>> getTrendingPosts(@RequestParam(value = "userId", required = false) String userId,
+                                                       @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        List<String> postIds = trendingService.trending(userId, Math.min(Math.max(limit, 1), TrendingService.MAX_TRENDING_RESULTS));
+        Map<String, Post> found = new HashMap<>();
+        postRepository.findAllById(postIds).forEach(post -> found.put(post.getId(), post));
+        List<Post> results = new ArrayList<>();
+        for (String postId : postIds) {
+            Post post = found.get(postId);
+            // Quyền riêng tư có thể vừa được đổi ở node khác
+            if (post != null && ("PUBLIC".equals(post.getPrivacy()) || post.getUserId().equals(userId))) {
+                results.add(post);
+            }
+        }
+        results.forEach(this::populatePostData);
+        imageDerivativeService.fillMissingVariants(results);
+        return ResponseEntity.ok(results);
     }
 
     /**
@@ -176,6 +278,7 @@ public class PostController {
         }
 
         posts.forEach(this::populatePostData);
+        imageDerivativeService.fillMissingVariants(posts);
         return ResponseEntity.ok(posts);
     }
 
@@ -184,10 +287,30 @@ public class PostController {
      *
      * @param query Từ khóa tìm kiếm
      * @param userId ID người dùng đang tìm kiếm (để kiểm tra quyền riêng tư)
-     * @return Danh sách bài đăng phù hợp
+     * @param limit Số kết quả tối đa
+     * @return Danh sách bài đăng phù hợp, xếp theo mức độ liên quan
      */
     @GetMapping("/search")
-    public ResponseEntity<List<Post>> searchPosts(@RequestParam String query, @RequestParam(required = false) String userId) {
+    public ResponseEntity<List<Post>> searchPosts(@RequestParam String query, @RequestParam(required = false) String userId,
+                                                  @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        List<String> postIds = postSearchIndex.search(query, userId, Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS));
+        if (postIds != null) {
+            Map<String, Post> found = new HashMap<>();
+            postRepository.findAllById(postIds).forEach(post -> found.put(post.getId(), post));
+            List<Post> results = new ArrayList<>();
+            for (String postId : postIds) {
+                Post post = found.get(postId);
+                // Kiểm tra lại quyền riêng tư: chỉ mục có thể chậm vài giây so với thay đổi
+                if (post != null && ("PUBLIC".equals(post.getPrivacy()) || post.getUserId().equals(userId))) {
+                    results.add(post);
+                }
+            }
+            results.forEach(this::populatePostData);
+            imageDerivativeService.fillMissingVariants(results);
+            return ResponseEntity.ok(results);
+        }
+
+        // Chỉ mục chưa sẵn sàng (đang khởi động): quét toàn bộ như trước
         List<Post> allPosts;
 
         if (userId != null) {
@@ -213,6 +336,7 @@ public class PostController {
 
         // Thêm thông tin người dùng vào các bài đăng
         filteredPosts.forEach(this::populatePostData);
+        imageDerivativeService.fillMissingVariants(filteredPosts);
 
         return ResponseEntity.ok(filteredPosts);
     }
@@ -241,6 +365,7 @@ public class PostController {
             }
 
             populatePostData(post);
+            imageDerivativeService.fillMissingVariants(List.of(post));
             return ResponseEntity.ok(post);
         } catch (Exception e) {
             // Xử lý lỗi
@@ -248,6 +373,88 @@ public class PostController {
         }
     }
 
+    /**
+     * Bỏ tham chiếu đến ảnh và video của bài đăng đã xóa
+     */
+    private void releaseMedia(Post post) {
+        fileStorageService.releaseFiles(post.getImages());
+        fileStorageService.releaseFiles(post.getVideos());
+    }
+
+    /**
+     * Lưu ảnh và video tải lên trong cùng một lượt song song (FileStorageService.storeFiles),
+     * rồi thêm URL vào danh sách tương ứng. File rỗng bị bỏ qua.
+     */
+    private void storeMedia(MultipartFile[] images, MultipartFile[] videos,
+                            List<String> imageUrls, List<String> videoUrls) {
+        List<MultipartFile> files = new ArrayList<>();
+        int imageCount = 0;
+        if (images != null) {
+            for (MultipartFile image : images) {
+                if (!image.isEmpty()) {
+                    files.add(image);
+                    imageCount++;
+                }
+            }
+        }
+        if (videos != null) {
+            for (MultipartFile video : videos) {
+                if (!video.isEmpty()) {
+                    files.add(video);
+                }
+            }
+        }
+
+        List<String> fileNames = fileStorageService.storeFiles(files);
+        for (int i = 0; i < fileNames.size(); i++) {
+            (i < imageCount ? imageUrls : videoUrls).add(FileStorageService.URL_PREFIX + fileNames.get(i));
+        }
+    }
+
+    /**
+     * Phiên tải lên chỉ được gắn vào bài đăng bởi chính người đã tạo phiên (JWT), không dựa vào userId trong form
+     *
+     * @return Phản hồi lỗi, hoặc null nếu không có uploadIds hoặc người gọi là userId
+     */
+    private static ResponseEntity<?> checkUploadOwner(String[] uploadIds, String userId, AuthenticatedUser currentUser) {
+        if (uploadIds == null || uploadIds.length == 0) {
+            return null;
+        }
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Token không hợp lệ hoặc thiếu"));
+        }
+        if (!currentUser.getUserId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("message", "Không thể dùng file tải lên của người dùng khác"));
+        }
+        return null;
+    }
+
+    /**
+     * Nhận các file đã tải lên theo phần và chia vào danh sách ảnh/video.
+     * Nếu có phiên không hợp lệ, các file đã nhận được bỏ tham chiếu và trả về false.
+     */
+    private boolean claimUploads(String[] uploadIds, String userId, List<String> images, List<String> videos) {
+        if (uploadIds == null) {
+            return true;
+        }
+        for (String uploadId : uploadIds) {
+            UploadSession upload = chunkedUploadService.claim(uploadId, userId);
+            if (upload == null) {
+                fileStorageService.releaseFiles(images);
+                fileStorageService.releaseFiles(videos);
+                images.clear();
+                videos.clear();
+                return false;
+            }
+            if (upload.getContentType().startsWith("image/")) {
+                images.add(upload.getUrl());
+            } else {
+                videos.add(upload.getUrl());
+            }
+        }
+        return true;
+    }
+
     /**
      * Thêm thông tin người dùng vào bài đăng và bình luận
      *
@@ -299,6 +506,9 @@ public class PostController {
             // Cho phép admin xóa bất kỳ bài đăng nào
             if (userId.equals("admin")) {
                 postRepository.deleteById(id);
+                changeLogService.recordPostDeleted(id);
+                recordPostRemoved(post);
+                releaseMedia(post);
                 return ResponseEntity.ok().build();
             }
 
@@ -308,6 +518,9 @@ public class PostController {
             }
 
             postRepository.deleteById(id);
+            changeLogService.recordPostDeleted(id);
+            recordPostRemoved(post);
+            releaseMedia(post);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             // Xử lý lỗi
@@ -325,11 +538,16 @@ public class PostController {
     @PostMapping("/{postId}/like")
     public ResponseEntity<?> likePost(@PathVariable String postId, @RequestBody Map<String, String> request) {
         try {
+            String userId = request.get("userId");
+            long retryAfter = rateLimiter.tryAcquire(RateLimitRoute.POST_LIKE, userId);
+            if (retryAfter > 0) {
+                return RateLimiter.tooManyRequests(retryAfter);
+            }
+
             Post post = postRepository.findById(postId)
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy bài đăng"));
 
             // Cập nhật danh sách thích
-            String userId = request.get("userId");
             List<String> likes = new ArrayList<>(post.getLikes());
             if (likes.contains(userId)) {
                 likes.remove(userId);
@@ -340,14 +558,20 @@ public class PostController {
 
             // Lưu và thêm thông tin người dùng
             Post savedPost = postRepository.save(post);
+            changeLogService.recordPostChange(savedPost.getId());
+            boolean isLikeAction = likes.contains(userId);
+            platformStatsService.increment(PlatformStatsService.LIKES, isLikeAction ? 1 : -1);
+            feedRankingService.postLiked(savedPost, userId, isLikeAction);
+            if (isLikeAction) {
+                trendingService.postLiked(savedPost);
+            }
             populatePostData(savedPost);
 
             // Gửi cập nhật qua WebSocket
-            messagingTemplate.convertAndSend("/topic/posts/" + postId, savedPost);
+            realtimeEventService.broadcast("/topic/posts/" + postId, savedPost);
 
             // Tạo thông báo khi có người thích bài viết
             // Kiểm tra xem hành động là thích hay bỏ thích
-            boolean isLikeAction = likes.contains(userId);
             if (isLikeAction) {
                 notificationService.createLikeNotification(post.getUserId(), userId, postId);
             }
@@ -414,10 +638,14 @@ public class PostController {
             userOptional.ifPresent(comment::setUser);
 
             Post savedPost = postRepository.save(post);
+            changeLogService.recordPostChange(savedPost.getId());
+            platformStatsService.increment(PlatformStatsService.COMMENTS, 1);
+            feedRankingService.commentAdded(savedPost, request.getUserId(), comment.getParentId() == null);
+            trendingService.commentAdded(savedPost);
             populatePostData(savedPost);
 
             // Gửi cập nhật qua WebSocket
-            messagingTemplate.convertAndSend("/topic/posts/" + postId, savedPost);
+            realtimeEventService.broadcast("/topic/posts/" + postId, savedPost);
 
             // Tạo thông báo nếu đây là bình luận mới (không phải reply)
             if (request.getParentId() == null || request.getParentId().isEmpty()) {
@@ -478,6 +706,35 @@ public class PostController {
         return null;
     }
 
+    /**
+     * Đếm bình luận kể cả các trả lời lồng nhau
+     *
+     * @param comments Danh sách bình luận
+     * @return Tổng số bình luận
+     */
+    private static int countComments(List<Comment> comments) {
+        if (comments == null) return 0;
+
+        int count = 0;
+        for (Comment comment : comments) {
+            count += 1 + countComments(comment.getReplies());
+        }
+        return count;
+    }
+
+    /**
+     * Bỏ bài đăng bị xóa khỏi bảng tin và trừ nó cùng bình luận, lượt thích của nó khỏi thống kê
+     *
+     * @param post Bài đăng đã xóa
+     */
+    private void recordPostRemoved(Post post) {
+        feedRankingService.postDeleted(post.getId());
+        trendingService.postDeleted(post.getId());
+        platformStatsService.increment(PlatformStatsService.POSTS, -1);
+        platformStatsService.increment(PlatformStatsService.COMMENTS, -countComments(post.getComments()));
+        platformStatsService.increment(PlatformStatsService.LIKES, post.getLikes() != null ? -post.getLikes().size() : 0);
+    }
+
     /**
      * Tính độ sâu của bình luận
      *
@@ -507,7 +764,7 @@ public class PostController {
     public ResponseEntity<?> sharePost(@RequestBody SharePostRequest request) {
         try {
             // Kiểm tra bài đăng gốc tồn tại
-            postRepository.findById(request.getOriginalPostId())
+            Post originalPost = postRepository.findById(request.getOriginalPostId())
                     .orElseThrow(() -> new RuntimeException("Không tìm thấy bài đăng gốc"));
 
             // Tạo bài đăng chia sẻ mới
@@ -519,6 +776,10 @@ public class PostController {
             sharedPost.setOriginalPostId(request.getOriginalPostId());
 
             Post savedPost = postRepository.save(sharedPost);
+            changeLogService.recordPostChange(savedPost.getId());
+            platformStatsService.increment(PlatformStatsService.POSTS, 1);
+            feedRankingService.postSaved(savedPost);
+            trendingService.postShared(originalPost);
             // Thêm thông tin người dùng và bài đăng gốc
             populatePostData(savedPost);
 
@@ -575,10 +836,13 @@ public class PostController {
 
             // Lưu và thêm thông tin người dùng
             Post savedPost = postRepository.save(post);
+            changeLogService.recordPostChange(savedPost.getId());
+            feedRankingService.postUpdated(savedPost);
+            trendingService.postUpdated(savedPost);
             populatePostData(savedPost);
 
             // Gửi cập nhật qua WebSocket
-            messagingTemplate.convertAndSend("/topic/posts/" + id, savedPost);
+            realtimeEventService.broadcast("/topic/posts/" + id, savedPost);
 
             return ResponseEntity.ok(savedPost);
         } catch (Exception e) {
@@ -609,8 +873,14 @@ public class PostController {
             @RequestParam(value = "images", required = false) MultipartFile[] images,
             @RequestParam(value = "videos", required = false) MultipartFile[] videos,
             @RequestParam(value = "keepImages", required = false) String[] keepImages,
-            @RequestParam(value = "keepVideos", required = false) String[] keepVideos) {
+            @RequestParam(value = "keepVideos", required = false) String[] keepVideos,
+            @RequestParam(value = "uploadIds", required = false) String[] uploadIds,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
 
+        ResponseEntity<?> uploadOwnerError = checkUploadOwner(uploadIds, userId, currentUser);
+        if (uploadOwnerError != null) {
+            return uploadOwnerError;
+        }
         try {
             // Nội dung có thể trống nếu có hình ảnh hoặc video
             // Kiểm tra xem bài viết có tồn tại không
@@ -626,6 +896,12 @@ public class PostController {
                 return ResponseEntity.status(403).body("Bạn không có quyền cập nhật bài đăng này");
             }
 
+            List<String> uploadedImages = new ArrayList<>();
+            List<String> uploadedVideos = new ArrayList<>();
+            if (!claimUploads(uploadIds, userId, uploadedImages, uploadedVideos)) {
+                return ResponseEntity.badRequest().body(Map.of("message", INVALID_UPLOAD_MESSAGE));
+            }
+
             // Cập nhật nội dung bài viết
             post.setContent(content);
 
@@ -654,36 +930,50 @@ public class PostController {
                 }
             }
 
-            // Xử lý hình ảnh mới
-            if (images != null && images.length > 0) {
-                for (MultipartFile image : images) {
-                    if (!image.isEmpty()) {
-                        String fileName = fileStorageService.storeFile(image);
-                        updatedImages.add("/uploads/" + fileName);
-                    }
-                }
+            // Xử lý hình ảnh và video mới (lưu song song)
+            List<String> newImages = new ArrayList<>();
+            try {
+                storeMedia(images, videos, newImages, updatedVideos);
+            } catch (RuntimeException e) {
+                fileStorageService.releaseFiles(uploadedImages);
+                fileStorageService.releaseFiles(uploadedVideos);
+                throw e;
             }
+            newImages.addAll(uploadedImages);
+            updatedVideos.addAll(uploadedVideos);
 
-            // Xử lý video mới
-            if (videos != null && videos.length > 0) {
-                for (MultipartFile video : videos) {
-                    if (!video.isEmpty()) {
-                        String fileName = fileStorageService.storeFile(video);
-                        updatedVideos.add("/uploads/" + fileName);
-                    }
-                }
+            // Media không được giữ lại sẽ được bỏ tham chiếu sau khi lưu
+            List<String> removedMedia = new ArrayList<>();
+            if (post.getImages() != null) {
+                removedMedia.addAll(post.getImages());
+            }
+            if (post.getVideos() != null) {
+                removedMedia.addAll(post.getVideos());
+            }
+            for (String kept : updatedImages) {
+                removedMedia.remove(kept);
+            }
+            for (String kept : updatedVideos) {
+                removedMedia.remove(kept);
             }
 
             // Cập nhật danh sách hình ảnh và video
+            updatedImages.addAll(newImages);
             post.setImages(updatedImages);
             post.setVideos(updatedVideos);
+            imageDerivativeService.retainVariants(post);
 
             // Lưu và thêm thông tin người dùng
             Post savedPost = postRepository.save(post);
+            fileStorageService.releaseFiles(removedMedia);
+            changeLogService.recordPostChange(savedPost.getId());
+            feedRankingService.postUpdated(savedPost);
+            trendingService.postUpdated(savedPost);
+            imageDerivativeService.generateForPost(savedPost.getId(), newImages);
             populatePostData(savedPost);
 
             // Gửi cập nhật qua WebSocket
-            messagingTemplate.convertAndSend("/topic/posts/" + id, savedPost);
+            realtimeEventService.broadcast("/topic/posts/" + id, savedPost);
 
             return ResponseEntity.ok(savedPost);
         } catch (Exception e) {
@@ -736,10 +1026,16 @@ public class PostController {
 
             // Lưu và thêm thông tin người dùng
             Post savedPost = postRepository.save(post);
+            changeLogService.recordPostChange(savedPost.getId());
+            // Xóa bình luận cũng xóa các trả lời của nó
+            platformStatsService.increment(PlatformStatsService.COMMENTS, -countComments(List.of(commentToDelete)));
+            if (commentToDelete.getParentId() == null) {
+                feedRankingService.commentRemoved(postId);
+            }
             populatePostData(savedPost);
 
             // Gửi cập nhật qua WebSocket
-            messagingTemplate.convertAndSend("/topic/posts/" + postId, savedPost);
+            realtimeEventService.broadcast("/topic/posts/" + postId, savedPost);
 
             return ResponseEntity.ok(savedPost);
         } catch (Exception e) {
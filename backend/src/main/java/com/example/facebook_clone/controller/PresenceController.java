@@ -0,0 +1,51 @@
+package com.example.facebook_clone.controller;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.facebook_clone.service.PresenceService;
+
+/**
+ * Controller xử lý các API liên quan đến trạng thái online
+ */
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    /**
+     * Lấy danh sách ID bạn bè đang online
+     *
+     * @param userId ID người dùng
+     * @return Danh sách ID bạn bè đang online
+     */
+    @GetMapping("/friends/{userId}")
+    public ResponseEntity<?> getOnlineFriends(@PathVariable String userId) {
+        try {
+            List<String> onlineFriendIds = presenceService.getOnlineFriendIds(userId);
+            return ResponseEntity.ok(onlineFriendIds);
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Lỗi khi lấy danh sách bạn bè online: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Kiểm tra một người dùng có đang online hay không
+     *
+     * @param userId ID người dùng
+     * @return Trạng thái online
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<?> getPresence(@PathVariable String userId) {
+        return ResponseEntity.ok(Map.of("userId", userId, "online", presenceService.isOnline(userId)));
+    }
+}
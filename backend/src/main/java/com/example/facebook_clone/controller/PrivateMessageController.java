@@ -2,20 +2,17 @@ package com.example.facebook_clone.controller;
 
 import com.example.facebook_clone.model.PrivateMessage;
 import com.example.facebook_clone.model.PrivateMessageRequest;
-import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.PrivateMessageRepository;
-import com.example.facebook_clone.repository.UserRepository;
-import com.example.facebook_clone.service.NotificationService;
+import com.example.facebook_clone.security.RateLimitRoute;
+import com.example.facebook_clone.security.RateLimiter;
+import com.example.facebook_clone.service.PrivateMessageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -25,13 +22,10 @@ public class PrivateMessageController {
     private PrivateMessageRepository privateMessageRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private PrivateMessageService privateMessageService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
-
-    @Autowired
-    private NotificationService notificationService;
+    private RateLimiter rateLimiter;
 
     // Send a new message
     @PostMapping
@@ -42,37 +36,17 @@ public class PrivateMessageController {
                 return ResponseEntity.badRequest().body("Missing required fields");
             }
 
-            // Create new message
-            PrivateMessage message = new PrivateMessage();
-            message.setSenderId(request.getSenderId());
-            message.setReceiverId(request.getReceiverId());
-            message.setContent(request.getContent());
-            message.setTimestamp(new Date());
-            message.setRead(false);
-
-            // Save message
-            PrivateMessage savedMessage = privateMessageRepository.save(message);
-
-            // Get sender information to include in the notification
-            Optional<User> senderOpt = userRepository.findById(request.getSenderId());
-            if (senderOpt.isPresent()) {
-                User sender = senderOpt.get();
-                Map<String, Object> messageData = new HashMap<>();
-                messageData.put("message", savedMessage);
-                messageData.put("sender", sender);
-                messageData.put("type", "NEW_MESSAGE");
-
-                // Send WebSocket notification to receiver
-                messagingTemplate.convertAndSend("/topic/messages/" + request.getReceiverId(), messageData);
-
-                // Create notification for new message
-                notificationService.createMessageNotification(
-                    request.getReceiverId(),
-                    request.getSenderId(),
-                    savedMessage.getId()
-                );
+            long retryAfter = rateLimiter.tryAcquire(RateLimitRoute.MESSAGE, request.getSenderId());
+            if (retryAfter > 0) {
+                return RateLimiter.tooManyRequests(retryAfter);
             }
 
+            PrivateMessage savedMessage = privateMessageService.sendMessage(
+                request.getSenderId(),
+                request.getReceiverId(),
+                request.getContent()
+            );
+
             return ResponseEntity.ok(savedMessage);
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,126 @@
+package com.example.facebook_clone.controller;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import com.example.facebook_clone.model.PrivateMessage;
+import com.example.facebook_clone.model.PrivateMessageRequest;
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.security.RateLimitRoute;
+import com.example.facebook_clone.security.RateLimiter;
+import com.example.facebook_clone.service.PresenceService;
+import com.example.facebook_clone.service.PrivateMessageService;
+import com.example.facebook_clone.service.RealtimeEventService;
+
+/**
+ * Controller STOMP xử lý gửi tin nhắn riêng trực tiếp qua WebSocket
+ */
+@Controller
+public class PrivateMessageSocketController {
+
+    @Autowired
+    private PrivateMessageService privateMessageService;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
+    /**
+     * Gửi tin nhắn qua kết nối STOMP hiện có.
+     * Ack chỉ được trả về cho đúng session đã gửi, kèm clientMessageId để client
+     * đối chiếu khi có nhiều tin nhắn đang chờ xác nhận cùng lúc.
+     * Người gửi là người dùng đã xác thực của session; senderId trong payload (nếu có) phải trùng khớp.
+     *
+     * @param request Thông tin tin nhắn (receiverId, content, clientMessageId, senderId không bắt buộc)
+     * @param principal Người dùng đã xác thực của session
+     * @return Ack cho tin nhắn
+     */
+    @MessageMapping("/chat.send")
+    @SendToUser(destinations = "/queue/chat.ack", broadcast = false)
+    public Map<String, Object> sendMessage(@Payload PrivateMessageRequest request, Principal principal) {
+        Map<String, Object> ack = new HashMap<>();
+        ack.put("clientMessageId", request.getClientMessageId());
+
+        try {
+            if (!(principal instanceof AuthenticatedUser user)) {
+                ack.put("status", "ERROR");
+                ack.put("error", "Unauthorized");
+                return ack;
+            }
+            String senderId = user.getUserId();
+            if (request.getSenderId() != null && !request.getSenderId().equals(senderId)) {
+                ack.put("status", "ERROR");
+                ack.put("error", "Forbidden");
+                return ack;
+            }
+            if (request.getReceiverId() == null || request.getContent() == null) {
+                ack.put("status", "ERROR");
+                ack.put("error", "Missing required fields");
+                return ack;
+            }
+
+            // Dùng chung giới hạn với POST /api/messages
+            long retryAfter = rateLimiter.tryAcquire(RateLimitRoute.MESSAGE, senderId);
+            if (retryAfter > 0) {
+                ack.put("status", "RATE_LIMITED");
+                ack.put("error", RateLimiter.TOO_MANY_REQUESTS_MESSAGE);
+                ack.put("retryAfter", retryAfter);
+                return ack;
+            }
+
+            PrivateMessage savedMessage = privateMessageService.sendMessage(
+                senderId,
+                request.getReceiverId(),
+                request.getContent()
+            );
+
+            ack.put("status", "OK");
+            ack.put("message", savedMessage);
+        } catch (Exception e) {
+            ack.put("status", "ERROR");
+            ack.put("error", e.getMessage());
+        }
+        return ack;
+    }
+
+    /**
+     * Chuyển tiếp trạng thái đang nhập đến người nhận.
+     * Chỉ gửi khi người nhận đang online và không bao giờ lưu xuống database.
+     * Người gửi là người dùng đã xác thực của session; payload có senderId khác bị bỏ qua.
+     *
+     * @param request Thông tin (receiverId, typing, senderId không bắt buộc)
+     * @param principal Người dùng đã xác thực của session
+     */
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload Map<String, Object> request, Principal principal) {
+        if (!(principal instanceof AuthenticatedUser user)) {
+            return;
+        }
+        String senderId = user.getUserId();
+        Object claimedSenderId = request.get("senderId");
+        Object receiverId = request.get("receiverId");
+        if ((claimedSenderId != null && !senderId.equals(claimedSenderId.toString()))
+                || receiverId == null || !presenceService.isOnline(receiverId.toString())) {
+            return;
+        }
+
+        Map<String, Object> typingData = new HashMap<>();
+        typingData.put("type", "TYPING");
+        typingData.put("senderId", senderId);
+        typingData.put("typing", Boolean.TRUE.equals(request.get("typing")));
+
+        realtimeEventService.sendToUser("/topic/typing/" + receiverId, receiverId.toString(), typingData);
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.facebook_clone.controller;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -17,6 +20,10 @@ import org.springframework.web.multipart.MultipartFile;
 import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.UserRepository;
 import com.example.facebook_clone.service.FileStorageService;
+import com.example.facebook_clone.service.ImageDerivativeService;
+import com.example.facebook_clone.service.PasswordHashingBusyException;
+import com.example.facebook_clone.service.PasswordHashingService;
+import com.example.facebook_clone.service.UserTypeaheadIndex;
 
 /**
  * Controller xử lý các API liên quan đến hồ sơ người dùng
@@ -31,6 +38,15 @@ public class ProfileController {
     @Autowired
     private FileStorageService fileStorageService;
 
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private UserTypeaheadIndex userTypeaheadIndex;
+
     /**
      * Lấy thông tin hồ sơ người dùng
      *
@@ -106,18 +122,31 @@ public class ProfileController {
             user.setYear(year);
 
             // Chỉ cập nhật ảnh đại diện nếu có file mới
+            List<String> replacedMedia = new ArrayList<>();
             if (avatar != null && !avatar.isEmpty()) {
                 String avatarFileName = fileStorageService.storeFile(avatar);
-                user.setAvatar("/uploads/" + avatarFileName);
+                replacedMedia.add(user.getAvatar());
+                user.setAvatar(FileStorageService.URL_PREFIX + avatarFileName);
+                user.setAvatarVariants(null);
             }
 
             // Chỉ cập nhật ảnh bìa nếu có file mới
             if (coverPhoto != null && !coverPhoto.isEmpty()) {
                 String coverFileName = fileStorageService.storeFile(coverPhoto);
-                user.setCoverPhoto("/uploads/" + coverFileName);
+                replacedMedia.add(user.getCoverPhoto());
+                user.setCoverPhoto(FileStorageService.URL_PREFIX + coverFileName);
+                user.setCoverPhotoVariants(null);
             }
 
             User savedUser = userRepository.save(user);
+            fileStorageService.releaseFiles(replacedMedia);
+            userTypeaheadIndex.userSaved(savedUser);
+            if (savedUser.getAvatar() != null && savedUser.getAvatarVariants() == null) {
+                imageDerivativeService.generateForUser(savedUser.getId(), savedUser.getAvatar(), true);
+            }
+            if (savedUser.getCoverPhoto() != null && savedUser.getCoverPhotoVariants() == null) {
+                imageDerivativeService.generateForUser(savedUser.getId(), savedUser.getCoverPhoto(), false);
+            }
             return ResponseEntity.ok(savedUser);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -140,15 +169,19 @@ public class ProfileController {
             User user = userOptional.get();
 
             // Verify current password
-            if (!user.getPassword().equals(currentPassword)) {
+            if (!passwordHashingService.matches(currentPassword, user.getPassword())) {
                 return ResponseEntity.badRequest().body(Map.of("message", "Mật khẩu hiện tại không chính xác"));
             }
 
             // Update password
-            user.setPassword(newPassword);
+            user.setPassword(passwordHashingService.hash(newPassword));
             userRepository.save(user);
 
             return ResponseEntity.ok(Map.of("message", "Mật khẩu đã được cập nhật thành công"));
+        } catch (PasswordHashingBusyException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi khi cập nhật mật khẩu: " + e.getMessage()));
@@ -0,0 +1,47 @@
+package com.example.facebook_clone.controller;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.service.RealtimeEventService;
+
+/**
+ * Controller STOMP xử lý đồng bộ lại sự kiện sau khi client kết nối lại
+ */
+@Controller
+public class RealtimeSocketController {
+
+    @Autowired
+    private RealtimeEventService realtimeEventService;
+
+    /**
+     * Client gửi seq cuối cùng đã nhận, server trả về các sự kiện bị bỏ lỡ
+     * (chỉ cho session đang yêu cầu). Nếu buffer đã tràn, trả về resyncRequired = true
+     * để client tải lại toàn bộ dữ liệu.
+     * Người dùng được lấy từ token xác thực khi CONNECT; userId trong payload (nếu có) phải trùng khớp.
+     *
+     * @param request Thông tin (lastSeq, userId không bắt buộc)
+     * @param principal Người dùng đã xác thực của session
+     * @return Kết quả resume
+     */
+    @MessageMapping("/resume")
+    @SendToUser(destinations = "/queue/resume", broadcast = false)
+    public Map<String, Object> resume(@Payload Map<String, Object> request, Principal principal) {
+        if (!(principal instanceof AuthenticatedUser user)) {
+            return Map.of("resyncRequired", true, "error", "Unauthorized");
+        }
+        Object userId = request.get("userId");
+        Object lastSeq = request.get("lastSeq");
+        if ((userId != null && !user.getUserId().equals(userId.toString())) || !(lastSeq instanceof Number)) {
+            return Map.of("resyncRequired", true);
+        }
+        return realtimeEventService.resume(user.getUserId(), ((Number) lastSeq).longValue());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.facebook_clone.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.service.SseStreamService;
+
+/**
+ * Controller cung cấp luồng Server-Sent Events cho các client chỉ cần đọc
+ * (thông báo và số thông báo chưa đọc), không cần SockJS/STOMP
+ */
+@RestController
+@RequestMapping("/api/stream")
+public class StreamController {
+
+    @Autowired
+    private SseStreamService sseStreamService;
+
+    /**
+     * Mở luồng SSE của người dùng
+     * Request được xử lý bất đồng bộ, kết nối chờ không giữ thread của Tomcat.
+     * Chỉ chính người dùng (JWT trong header Authorization) được mở luồng của mình.
+     *
+     * @param userId ID người dùng
+     * @param lastEventId id sự kiện cuối cùng client đã nhận (EventSource tự gửi khi kết nối lại)
+     * @param currentUser Người dùng đã xác thực
+     * @return Luồng sự kiện, 401 nếu thiếu token hoặc 403 nếu userId không phải người gọi
+     */
+    @GetMapping(value = "/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@PathVariable String userId,
+                                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                             @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        // Phản hồi lỗi không có body: luồng chỉ trả về text/event-stream
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!currentUser.getUserId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Long lastSeq = null;
+        if (lastEventId != null) {
+            try {
+                lastSeq = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                // id không hợp lệ: coi như kết nối mới
+            }
+        }
+        return ResponseEntity.ok(sseStreamService.open(userId, lastSeq));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.facebook_clone.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.service.ChangeLogService;
+
+/**
+ * Controller đồng bộ delta cho feed, thông báo và bạn bè
+ */
+@RestController
+@RequestMapping("/api/sync")
+public class SyncController {
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    /**
+     * Lấy các thay đổi kể từ phiên bản client đã biết
+     * Gọi với since=0 để lấy phiên bản hiện tại trước khi tải toàn bộ dữ liệu.
+     * Người dùng đồng bộ luôn là người gọi (JWT), không nhận userId từ query.
+     *
+     * @param since Phiên bản cuối cùng client đã nhận
+     * @param currentUser Người dùng đã xác thực
+     * @return upserts, tombstones và phiên bản mới
+     */
+    @GetMapping
+    public ResponseEntity<?> sync(@RequestParam(defaultValue = "0") long since,
+                                  @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", "Token không hợp lệ hoặc thiếu"));
+        }
+        try {
+            return ResponseEntity.ok(changeLogService.getChangesSince(currentUser.getUserId(), since));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Lỗi khi đồng bộ dữ liệu: " + e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.facebook_clone.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.facebook_clone.model.UploadSession;
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.service.ChunkedUploadService;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Controller tải file lớn lên theo từng phần.
+ *
+ * Quy trình: POST /api/uploads tạo phiên -> PUT /api/uploads/{id}/chunks/{index} cho từng phần
+ * (thân request là nội dung nhị phân) -> POST /api/uploads/{id}/complete với SHA-256 của file.
+ * Khi mất kết nối, GET /api/uploads/{id} trả về các phần đã nhận để gửi tiếp phần còn thiếu.
+ * Bài đăng tham chiếu file bằng tham số uploadIds.
+ * Phiên thuộc về người dùng đã xác thực (JWT) tạo ra nó, không nhận userId từ query.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class UploadController {
+
+    private static final String UNAUTHORIZED_MESSAGE = "Token không hợp lệ hoặc thiếu";
+
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+
+    /**
+     * Tạo phiên tải lên
+     *
+     * @param fileName Tên file gốc
+     * @param contentType Loại nội dung
+     * @param size Kích thước file (byte)
+     * @param currentUser Người tải lên
+     * @return ID phiên, kích thước mỗi phần và số phần
+     */
+    @PostMapping
+    public ResponseEntity<?> createUpload(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("contentType") String contentType,
+            @RequestParam("size") long size,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", UNAUTHORIZED_MESSAGE));
+        }
+        try {
+            UploadSession session = chunkedUploadService.createSession(currentUser.getUserId(), fileName, contentType, size);
+            return ResponseEntity.status(HttpStatus.CREATED).body(toResponse(session));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi tạo phiên tải lên: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Lấy trạng thái phiên tải lên (các phần đã nhận)
+     */
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> getUpload(@PathVariable String uploadId,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", UNAUTHORIZED_MESSAGE));
+        }
+        UploadSession session = chunkedUploadService.getSession(uploadId, currentUser.getUserId());
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Không tìm thấy phiên tải lên"));
+        }
+        return ResponseEntity.ok(toResponse(session));
+    }
+
+    /**
+     * Tải lên một phần; gửi lại cùng phần nhiều lần là an toàn
+     *
+     * @param index Số thứ tự phần (từ 0)
+     */
+    @PutMapping("/{uploadId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String uploadId,
+            @PathVariable int index,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser,
+            HttpServletRequest request) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", UNAUTHORIZED_MESSAGE));
+        }
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId, currentUser.getUserId());
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Không tìm thấy phiên tải lên"));
+            }
+            chunkedUploadService.writeChunk(session, index, request.getInputStream());
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi tải lên phần " + index + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Hoàn tất phiên tải lên
+     *
+     * @param sha256 SHA-256 (hex) của toàn bộ file
+     * @return Phiên đã hoàn tất kèm URL file
+     */
+    @PostMapping("/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(
+            @PathVariable String uploadId,
+            @RequestParam("sha256") String sha256,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", UNAUTHORIZED_MESSAGE));
+        }
+        try {
+            UploadSession session = chunkedUploadService.getSession(uploadId, currentUser.getUserId());
+            if (session == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Không tìm thấy phiên tải lên"));
+            }
+            return ResponseEntity.ok(toResponse(chunkedUploadService.complete(session, sha256)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body(Map.of("message", "Lỗi khi hoàn tất tải lên: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Hủy phiên tải lên
+     */
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<?> abortUpload(@PathVariable String uploadId,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("message", UNAUTHORIZED_MESSAGE));
+        }
+        UploadSession session = chunkedUploadService.getSession(uploadId, currentUser.getUserId());
+        if (session == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Không tìm thấy phiên tải lên"));
+        }
+        chunkedUploadService.abort(session);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static Map<String, Object> toResponse(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("uploadId", session.getId());
+        response.put("status", session.getStatus());
+        response.put("chunkSize", session.getChunkSize());
+        response.put("chunkCount", session.getChunkCount());
+        response.put("receivedChunks", session.getReceivedChunks());
+        response.put("expiresAt", session.getExpiresAt());
+        if (session.getUrl() != null) {
+            response.put("url", session.getUrl());
+        }
+        return response;
+    }
+}
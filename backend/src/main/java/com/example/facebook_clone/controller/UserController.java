@@ -1,22 +1,31 @@
 package com.example.facebook_clone.controller;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.example.facebook_clone.security.JwtUtil;
+import com.example.facebook_clone.security.AuthenticatedUser;
 import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.UserRepository;
+import com.example.facebook_clone.service.FileStorageService;
+import com.example.facebook_clone.service.PlatformStatsService;
+import com.example.facebook_clone.service.UserTypeaheadIndex;
 
 /**
  * Controller xử lý các API liên quan đến người dùng
@@ -24,11 +33,19 @@ import com.example.facebook_clone.repository.UserRepository;
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
+    private static final int MAX_TYPEAHEAD_RESULTS = 50;
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private UserTypeaheadIndex userTypeaheadIndex;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
 
     /**
      * Lấy danh sách tất cả người dùng
@@ -40,34 +57,64 @@ public class UserController {
         return userRepository.findAll();
     }
 
+    /**
+     * Gợi ý người dùng theo tên khi đang gõ (không phân biệt dấu), ưu tiên bạn bè và bạn của bạn
+     *
+     * @param q Chuỗi đang gõ
+     * @param userId ID người tìm (có thể bỏ trống)
+     * @param limit Số kết quả tối đa
+     * @return Danh sách người dùng kèm cờ bạn bè và số bạn chung
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUsers(
+            @RequestParam("q") String q,
+            @RequestParam(value = "userId", required = false) String userId,
+            @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        try {
+            int size = Math.max(1, Math.min(limit, MAX_TYPEAHEAD_RESULTS));
+            List<UserTypeaheadIndex.Match> matches = userTypeaheadIndex.search(q, userId, size);
+            if (matches == null) {
+                // Chỉ mục chưa sẵn sàng (vừa khởi động): tìm theo tiền tố họ hoặc tên, không xếp theo bạn bè
+                String prefix = q.trim();
+                matches = new ArrayList<>();
+                if (!prefix.isEmpty()) {
+                    for (User user : userRepository.findByFirstNameStartingWithIgnoreCaseOrLastNameStartingWithIgnoreCase(
+                            prefix, prefix, PageRequest.of(0, size))) {
+                        matches.add(new UserTypeaheadIndex.Match(user.getId(), user.getFirstName(), user.getLastName(),
+                            user.getAvatar(), false, 0));
+                    }
+                }
+            }
+            return ResponseEntity.ok(matches);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "Lỗi khi tìm người dùng: " + e.getMessage()));
+        }
+    }
+
     /**
      * Lấy thông tin người dùng hiện tại dựa trên token
+     * Token đã được JwtAuthenticationFilter xác thực một lần và gắn vào request.
      *
      * @param authHeader Header xác thực chứa token
+     * @param currentUser Người dùng đã xác thực (null nếu token không hợp lệ)
      * @return Thông tin người dùng hiện tại
      */
     @GetMapping("/me")
-    public ResponseEntity<?> getCurrentUser(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> getCurrentUser(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestAttribute(value = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser currentUser) {
         try {
-            // Trích xuất token từ Authorization header
             if (authHeader == null || !authHeader.startsWith("Bearer ")) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token không hợp lệ hoặc thiếu");
             }
 
-            String token = authHeader.substring(7); // Loại bỏ tiền tố "Bearer "
-
-            // Xác thực token và trích xuất userId
-            if (!jwtUtil.validateToken(token)) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token không hợp lệ");
-            }
-
-            String userId = jwtUtil.extractUserId(token);
-            if (userId == null) {
+            if (currentUser == null || currentUser.getUserId() == null) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token không hợp lệ");
             }
 
             // Lấy thông tin người dùng theo ID
-            return getUserById(userId);
+            return getUserById(currentUser.getUserId());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Lỗi: " + e.getMessage());
         }
@@ -101,7 +148,9 @@ public class UserController {
                     existingUser.setFirstName(user.getFirstName());
                     existingUser.setLastName(user.getLastName());
                     existingUser.setEmail(user.getEmail());
-                    return ResponseEntity.ok(userRepository.save(existingUser));
+                    User savedUser = userRepository.save(existingUser);
+                    userTypeaheadIndex.userSaved(savedUser);
+                    return ResponseEntity.ok(savedUser);
                 })
                 .orElseGet(() -> ResponseEntity.notFound().build());
         } catch (Exception e) {
@@ -118,8 +167,13 @@ public class UserController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable String id) {
         try {
-            if (userRepository.existsById(id)) {
+            Optional<User> user = userRepository.findById(id);
+            if (user.isPresent()) {
                 userRepository.deleteById(id);
+                userTypeaheadIndex.userDeleted(id);
+                platformStatsService.increment(PlatformStatsService.USERS, -1);
+                fileStorageService.releaseFile(user.get().getAvatar());
+                fileStorageService.releaseFile(user.get().getCoverPhoto());
                 return ResponseEntity.ok().build();
             }
             return ResponseEntity.notFound().build();
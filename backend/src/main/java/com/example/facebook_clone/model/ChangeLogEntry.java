@@ -0,0 +1,65 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Một thay đổi trong change log dùng cho đồng bộ delta (GET /api/sync?since=)
+ */
+@Document(collection = "change_log")
+@CompoundIndex(name = "scope_version", def = "{'scope': 1, 'version': 1}")
+public class ChangeLogEntry {
+    // Scope dùng chung cho các thay đổi bài đăng (feed), mọi người dùng đều đọc
+    public static final String FEED_SCOPE = "*";
+
+    @Id
+    private String id;
+    @Indexed(unique = true)      // Tìm bản ghi cũ nhất/mới nhất không phải quét cả collection
+    private long version;        // Phiên bản tăng dần toàn cục
+    private String scope;        // userId người nhận thay đổi, hoặc FEED_SCOPE
+    private String entityType;   // POST, NOTIFICATION, FRIEND
+    private String entityId;
+    private String op;           // UPSERT hoặc DELETE
+
+    @Indexed(expireAfterSeconds = 7 * 24 * 3600) // Chỉ giữ change log trong 7 ngày
+    private Date createdAt;
+
+    public ChangeLogEntry() {
+        this.createdAt = new Date();
+    }
+
+    public ChangeLogEntry(long version, String scope, String entityType, String entityId, String op) {
+        this.version = version;
+        this.scope = scope;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.op = op;
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    public String getScope() { return scope; }
+    public void setScope(String scope) { this.scope = scope; }
+
+    public String getEntityType() { return entityType; }
+    public void setEntityType(String entityType) { this.entityType = entityType; }
+
+    public String getEntityId() { return entityId; }
+    public void setEntityId(String entityId) { this.entityId = entityId; }
+
+    public String getOp() { return op; }
+    public void setOp(String op) { this.op = op; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+}
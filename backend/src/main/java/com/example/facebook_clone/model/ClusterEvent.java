@@ -0,0 +1,34 @@
+package com.example.facebook_clone.model;
+
+/**
+ * Sự kiện WebSocket được phát qua event bus để mọi node đều có thể gửi đến client
+ */
+public class ClusterEvent {
+    private String destination;  // Đích STOMP, ví dụ /topic/notifications/{userId}
+    private String userId;       // Người nhận, null nếu gửi cho mọi subscriber của destination
+    private Object payload;
+    private boolean buffered;    // Lưu vào buffer để client nhận lại khi kết nối lại
+
+    public ClusterEvent() {
+    }
+
+    public ClusterEvent(String destination, String userId, Object payload, boolean buffered) {
+        this.destination = destination;
+        this.userId = userId;
+        this.payload = payload;
+        this.buffered = buffered;
+    }
+
+    // Getters and Setters
+    public String getDestination() { return destination; }
+    public void setDestination(String destination) { this.destination = destination; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public Object getPayload() { return payload; }
+    public void setPayload(Object payload) { this.payload = payload; }
+
+    public boolean isBuffered() { return buffered; }
+    public void setBuffered(boolean buffered) { this.buffered = buffered; }
+}
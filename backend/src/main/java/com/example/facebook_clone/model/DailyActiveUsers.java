@@ -0,0 +1,34 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Số người dùng hoạt động trong một ngày, lưu dạng HyperLogLog: mỗi node gộp thanh ghi của mình
+ * vào bằng $max nên không cần lưu danh sách người dùng
+ */
+@Document(collection = "stats_daily_active")
+public class DailyActiveUsers {
+    @Id
+    private String id;       // Ngày dạng yyyy-MM-dd
+
+    @Indexed(expireAfterSeconds = 90 * 24 * 3600) // Chỉ giữ 90 ngày
+    private Date day;
+
+    private Map<String, Integer> registers = new HashMap<>(); // Chỉ số thanh ghi -> giá trị lớn nhất
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Date getDay() { return day; }
+    public void setDay(Date day) { this.day = day; }
+
+    public Map<String, Integer> getRegisters() { return registers; }
+    public void setRegisters(Map<String, Integer> registers) { this.registers = registers; }
+}
@@ -0,0 +1,40 @@
+package com.example.facebook_clone.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Các phiên bản thu nhỏ của một ảnh đã tải lên
+ */
+public class ImageVariants {
+    private String url;                                   // URL ảnh gốc
+    private int width;                                    // Kích thước ảnh gốc
+    private int height;
+    private Map<String, String> sizes = new LinkedHashMap<>(); // Chiều rộng (px) -> URL ảnh thu nhỏ
+    private String placeholder;                           // Ảnh rất nhỏ dạng data URI, hiển thị trong lúc tải
+
+    public ImageVariants() {
+    }
+
+    public ImageVariants(String url, int width, int height) {
+        this.url = url;
+        this.width = width;
+        this.height = height;
+    }
+
+    // Getters and Setters
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public int getWidth() { return width; }
+    public void setWidth(int width) { this.width = width; }
+
+    public int getHeight() { return height; }
+    public void setHeight(int height) { this.height = height; }
+
+    public Map<String, String> getSizes() { return sizes; }
+    public void setSizes(Map<String, String> sizes) { this.sizes = sizes; }
+
+    public String getPlaceholder() { return placeholder; }
+    public void setPlaceholder(String placeholder) { this.placeholder = placeholder; }
+}
@@ -0,0 +1,48 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * File media lưu theo nội dung: id là SHA-256 (hex) của nội dung file,
+ * refCount là số bài đăng/hồ sơ đang tham chiếu đến file
+ */
+@Document(collection = "media_blobs")
+public class MediaBlob {
+    @Id
+    private String id;
+    private String fileName;     // Tên file trên đĩa: <sha256>.<phần mở rộng>
+    private String contentType;
+    private long size;
+    private int refCount;
+    private Date createdAt;
+    private Date lastAcquiredAt;    // Lần gần nhất có bài đăng/hồ sơ tham chiếu thêm (bộ dọn file dùng để bỏ qua file vừa dùng)
+    private ImageVariants variants; // Ảnh thu nhỏ đã tạo, null nếu chưa xử lý hoặc không phải ảnh
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getLastAcquiredAt() { return lastAcquiredAt; }
+    public void setLastAcquiredAt(Date lastAcquiredAt) { this.lastAcquiredAt = lastAcquiredAt; }
+
+    public ImageVariants getVariants() { return variants; }
+    public void setVariants(ImageVariants variants) { this.variants = variants; }
+}
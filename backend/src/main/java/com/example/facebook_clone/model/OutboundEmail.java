@@ -0,0 +1,88 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Email chờ gửi trong outbox, được EmailOutboxWorker gửi bất đồng bộ
+ */
+@Document(collection = "email_outbox")
+@CompoundIndex(name = "status_next_attempt", def = "{'status': 1, 'nextAttemptAt': 1}")
+public class OutboundEmail {
+    public static final String PENDING = "PENDING";
+    public static final String SENDING = "SENDING";
+    public static final String SENT = "SENT";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private String id;
+    private String to;
+    private String subject;
+    private String body;          // Bị xóa khi email đã gửi xong hoặc thất bại hẳn
+    private String status;        // PENDING, SENDING, SENT, FAILED
+    private int attempts;         // Số lần đã thử gửi
+    private Date nextAttemptAt;   // Thời điểm sớm nhất được gửi (lần thử tiếp theo)
+    private Date lockedUntil;     // Worker đang gửi giữ email đến thời điểm này
+    private String lastError;
+    private Date createdAt;
+
+    @Indexed(expireAfterSeconds = 7 * 24 * 3600) // Email đã gửi xong hoặc thất bại hẳn được giữ 7 ngày
+    private Date completedAt;
+
+    @Indexed(expireAfterSeconds = 0) // Email chứa bí mật (link đặt lại mật khẩu) bị xóa khi bí mật hết hạn, kể cả chưa gửi
+    private Date expiresAt;
+
+    public OutboundEmail() {
+        this.createdAt = new Date();
+    }
+
+    public OutboundEmail(String to, String subject, String body) {
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+        this.status = PENDING;
+        this.createdAt = new Date();
+        this.nextAttemptAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getTo() { return to; }
+    public void setTo(String to) { this.to = to; }
+
+    public String getSubject() { return subject; }
+    public void setSubject(String subject) { this.subject = subject; }
+
+    public String getBody() { return body; }
+    public void setBody(String body) { this.body = body; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Date getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Date nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public Date getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(Date lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getCompletedAt() { return completedAt; }
+    public void setCompletedAt(Date completedAt) { this.completedAt = completedAt; }
+
+    public Date getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Date expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,54 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Token đặt lại mật khẩu. Chỉ lưu SHA-256 của token, token gốc chỉ có trong email gửi cho người dùng.
+ */
+@Document(collection = "password_reset_tokens")
+public class PasswordResetToken {
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String tokenHash;
+
+    @Indexed
+    private String userId;
+
+    private Date createdAt;
+
+    @Indexed(expireAfterSeconds = 0) // MongoDB tự xóa token khi đến expiresAt
+    private Date expiresAt;
+
+    public PasswordResetToken() {
+        this.createdAt = new Date();
+    }
+
+    public PasswordResetToken(String tokenHash, String userId, Date expiresAt) {
+        this.tokenHash = tokenHash;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+        this.createdAt = new Date();
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getTokenHash() { return tokenHash; }
+    public void setTokenHash(String tokenHash) { this.tokenHash = tokenHash; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Date expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,46 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Bộ đếm tổng của toàn hệ thống (một document duy nhất), được cộng dồn trên các đường ghi
+ * và đối soát định kỳ với dữ liệu thật
+ */
+@Document(collection = "platform_stats")
+public class PlatformStats {
+    public static final String TOTALS_ID = "totals";
+
+    @Id
+    private String id;
+    private long users;
+    private long posts;
+    private long comments;   // Gồm cả các trả lời lồng nhau
+    private long likes;      // Lượt thích bài đăng
+    private long messages;   // Tin nhắn riêng
+    private Date reconciledAt;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public long getUsers() { return users; }
+    public void setUsers(long users) { this.users = users; }
+
+    public long getPosts() { return posts; }
+    public void setPosts(long posts) { this.posts = posts; }
+
+    public long getComments() { return comments; }
+    public void setComments(long comments) { this.comments = comments; }
+
+    public long getLikes() { return likes; }
+    public void setLikes(long likes) { this.likes = likes; }
+
+    public long getMessages() { return messages; }
+    public void setMessages(long messages) { this.messages = messages; }
+
+    public Date getReconciledAt() { return reconciledAt; }
+    public void setReconciledAt(Date reconciledAt) { this.reconciledAt = reconciledAt; }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "posts")
@@ -14,9 +15,11 @@ public class Post {
     private String id;
     private String content;
     private String userId;
+    @Indexed // Bảng tin đọc các bài đăng mới nhất
     private Date createdAt;
     private List<String> images;
     private List<String> videos;
+    private List<ImageVariants> imageVariants; // Ảnh thu nhỏ của từng ảnh trong images (tạo bất đồng bộ)
     private List<String> likes;
     private List<Comment> comments;
     private String privacy = "PUBLIC"; // Mặc định là PUBLIC, có thể là PUBLIC hoặc PRIVATE
@@ -183,4 +186,12 @@ public class Post {
         }
         this.videos.add(videoUrl);
     }
+
+    public List<ImageVariants> getImageVariants() {
+        return imageVariants;
+    }
+
+    public void setImageVariants(List<ImageVariants> imageVariants) {
+        this.imageVariants = imageVariants;
+    }
 }
@@ -4,6 +4,7 @@ public class PrivateMessageRequest {
     private String senderId;
     private String receiverId;
     private String content;
+    private String clientMessageId; // ID do client sinh ra để đối chiếu ack khi gửi qua STOMP
     
     // Getters and Setters
     public String getSenderId() {
@@ -29,4 +30,12 @@ public class PrivateMessageRequest {
     public void setContent(String content) {
         this.content = content;
     }
+
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+    
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
 }
@@ -0,0 +1,47 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Thay đổi của các bộ đếm trong một giờ, dùng để vẽ biểu đồ trên trang quản trị
+ */
+@Document(collection = "stats_hourly")
+public class StatsBucket {
+    @Id
+    private String id;       // Giờ bắt đầu dạng yyyyMMddHH
+
+    @Indexed(expireAfterSeconds = 35 * 24 * 3600) // Chỉ giữ 35 ngày
+    private Date hour;
+
+    private long users;
+    private long posts;
+    private long comments;
+    private long likes;
+    private long messages;
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public Date getHour() { return hour; }
+    public void setHour(Date hour) { this.hour = hour; }
+
+    public long getUsers() { return users; }
+    public void setUsers(long users) { this.users = users; }
+
+    public long getPosts() { return posts; }
+    public void setPosts(long posts) { this.posts = posts; }
+
+    public long getComments() { return comments; }
+    public void setComments(long comments) { this.comments = comments; }
+
+    public long getLikes() { return likes; }
+    public void setLikes(long likes) { this.likes = likes; }
+
+    public long getMessages() { return messages; }
+    public void setMessages(long messages) { this.messages = messages; }
+}
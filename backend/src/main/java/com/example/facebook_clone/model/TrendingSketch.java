@@ -0,0 +1,76 @@
+package com.example.facebook_clone.model;
+
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Count-Min Sketch tương tác của một node trong một khoảng thời gian đã kết thúc,
+ * để các node khác cộng vào cửa sổ xu hướng của mình
+ */
+@Document(collection = "trending_sketches")
+public class TrendingSketch {
+    @Id
+    private String id;           // nodeId:bucket
+
+    private String nodeId;
+
+    @Indexed
+    private long bucket;         // Số thứ tự khoảng thời gian (epoch millis / độ dài khoảng)
+
+    private byte[] counts;       // Các ô của sketch (int, big-endian)
+
+    private List<Candidate> candidates; // Bài đăng nhiều tương tác nhất của node trong cửa sổ
+
+    @Indexed(expireAfterSeconds = 2 * 3600) // Chỉ giữ 2 giờ, dài hơn cửa sổ xu hướng
+    private Date createdAt;
+
+    /**
+     * Bài đăng ứng viên kèm thông tin để lọc quyền riêng tư
+     */
+    public static class Candidate {
+        private String postId;
+        private String userId;
+        private boolean visible;
+
+        public Candidate() {
+        }
+
+        public Candidate(String postId, String userId, boolean visible) {
+            this.postId = postId;
+            this.userId = userId;
+            this.visible = visible;
+        }
+
+        public String getPostId() { return postId; }
+        public void setPostId(String postId) { this.postId = postId; }
+
+        public String getUserId() { return userId; }
+        public void setUserId(String userId) { this.userId = userId; }
+
+        public boolean isVisible() { return visible; }
+        public void setVisible(boolean visible) { this.visible = visible; }
+    }
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+    public long getBucket() { return bucket; }
+    public void setBucket(long bucket) { this.bucket = bucket; }
+
+    public byte[] getCounts() { return counts; }
+    public void setCounts(byte[] counts) { this.counts = counts; }
+
+    public List<Candidate> getCandidates() { return candidates; }
+    public void setCandidates(List<Candidate> candidates) { this.candidates = candidates; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+}
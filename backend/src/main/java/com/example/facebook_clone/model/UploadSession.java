@@ -0,0 +1,73 @@
+package com.example.facebook_clone.model;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Phiên tải file lên theo từng phần (chunk), có thể tiếp tục sau khi mất kết nối.
+ * Sau khi hoàn tất, bài đăng tham chiếu phiên bằng id để gắn file vào bài.
+ */
+@Document(collection = "upload_sessions")
+public class UploadSession {
+    public static final String UPLOADING = "UPLOADING";
+    public static final String FINALIZING = "FINALIZING";
+    public static final String COMPLETED = "COMPLETED";
+
+    @Id
+    private String id;
+    @Indexed
+    private String userId;
+    private String originalFileName;
+    private String contentType;
+    private long totalSize;
+    private int chunkSize;
+    private int chunkCount;
+    private List<Integer> receivedChunks = new ArrayList<>(); // Số thứ tự các phần đã nhận đủ
+    private String status;        // UPLOADING, FINALIZING, COMPLETED
+    private String url;           // URL file sau khi hoàn tất
+    private Date createdAt;
+    @Indexed
+    private Date expiresAt;       // Quá hạn thì phiên bị dọn (file tạm bị xóa, file đã hoàn tất bị bỏ tham chiếu)
+
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getOriginalFileName() { return originalFileName; }
+    public void setOriginalFileName(String originalFileName) { this.originalFileName = originalFileName; }
+
+    public String getContentType() { return contentType; }
+    public void setContentType(String contentType) { this.contentType = contentType; }
+
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+
+    public int getChunkCount() { return chunkCount; }
+    public void setChunkCount(int chunkCount) { this.chunkCount = chunkCount; }
+
+    public List<Integer> getReceivedChunks() { return receivedChunks; }
+    public void setReceivedChunks(List<Integer> receivedChunks) { this.receivedChunks = receivedChunks; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public Date getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Date createdAt) { this.createdAt = createdAt; }
+
+    public Date getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Date expiresAt) { this.expiresAt = expiresAt; }
+}
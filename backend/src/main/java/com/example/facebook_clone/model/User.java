@@ -18,8 +18,9 @@ public class User {
     private String bio;
     private String avatar;
     private String coverPhoto;
+    private ImageVariants avatarVariants;     // Ảnh thu nhỏ của avatar (tạo bất đồng bộ)
+    private ImageVariants coverPhotoVariants; // Ảnh thu nhỏ của ảnh bìa
     private String role = "USER"; // Default role
-    private String resetToken; // Token để đặt lại mật khẩu
     
     // Thêm getter và setter cho role
     public String getRole() { return role; }
@@ -34,6 +35,12 @@ public class User {
     
     public String getCoverPhoto() { return coverPhoto; }
     public void setCoverPhoto(String coverPhoto) { this.coverPhoto = coverPhoto; }
+
+    public ImageVariants getAvatarVariants() { return avatarVariants; }
+    public void setAvatarVariants(ImageVariants avatarVariants) { this.avatarVariants = avatarVariants; }
+
+    public ImageVariants getCoverPhotoVariants() { return coverPhotoVariants; }
+    public void setCoverPhotoVariants(ImageVariants coverPhotoVariants) { this.coverPhotoVariants = coverPhotoVariants; }
     
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }  
@@ -61,12 +68,4 @@ public class User {
     
     public String getGender() { return gender; }
     public void setGender(String gender) { this.gender = gender; }
-
-    public String getResetToken() {
-        return resetToken;
-    }
-
-    public void setResetToken(String resetToken) {
-        this.resetToken = resetToken;
-    }
 }
@@ -0,0 +1,19 @@
+package com.example.facebook_clone.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import com.example.facebook_clone.model.ChangeLogEntry;
+
+public interface ChangeLogRepository extends MongoRepository<ChangeLogEntry, String> {
+    // Lấy các thay đổi sau một phiên bản, theo thứ tự phiên bản tăng dần
+    List<ChangeLogEntry> findByScopeInAndVersionGreaterThanOrderByVersionAsc(List<String> scopes, long version, Pageable pageable);
+
+    // Thay đổi cũ nhất còn được giữ lại
+    ChangeLogEntry findFirstByOrderByVersionAsc();
+
+    // Thay đổi mới nhất đã ghi
+    ChangeLogEntry findFirstByOrderByVersionDesc();
+}
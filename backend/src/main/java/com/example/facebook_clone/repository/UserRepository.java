@@ -1,9 +1,11 @@
 package com.example.facebook_clone.repository;
 
 import com.example.facebook_clone.model.User;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 public interface UserRepository extends MongoRepository<User, String> {
     User findByEmail(String email);
-    User findByResetToken(String resetToken);
+    List<User> findByFirstNameStartingWithIgnoreCaseOrLastNameStartingWithIgnoreCase(String firstName, String lastName, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.example.facebook_clone.security;
+
+import java.security.Principal;
+
+/**
+ * Thông tin người dùng đã xác thực từ JWT, gắn vào request (hoặc session STOMP)
+ */
+public class AuthenticatedUser implements Principal {
+
+    // Tên attribute của request chứa AuthenticatedUser do JwtAuthenticationFilter gắn vào
+    public static final String REQUEST_ATTRIBUTE = "authenticatedUser";
+
+    private final String userId;
+    private final String email;
+    private final String role;
+    private final long expiresAt;
+
+    public AuthenticatedUser(String userId, String email, String role, long expiresAt) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.expiresAt = expiresAt;
+    }
+
+    @Override
+    public String getName() { return userId; }
+
+    public String getUserId() { return userId; }
+
+    public String getEmail() { return email; }
+
+    public String getRole() { return role; }
+
+    public long getExpiresAt() { return expiresAt; }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAt;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.facebook_clone.security;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.facebook_clone.service.PlatformStatsService;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Filter đọc JWT trong header Authorization đúng một lần cho mỗi request
+ * và gắn AuthenticatedUser vào request attribute. Filter không chặn request,
+ * từng endpoint tự quyết định có cần xác thực hay không.
+ */
+@Component
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            AuthenticatedUser user = jwtUtil.authenticate(authHeader.substring(7));
+            if (user != null) {
+                request.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, user);
+                platformStatsService.recordActive(user.getUserId());
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.facebook_clone.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bộ nhớ đệm có giới hạn cho các token đã xác minh chữ ký.
+ * Khóa là SHA-256 của token (không giữ token gốc trong bộ nhớ), mỗi mục hết hạn đúng lúc token hết hạn.
+ */
+@Component
+public class JwtClaimsCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final ConcurrentHashMap<String, AuthenticatedUser> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @param token JWT
+     * @return Thông tin đã xác minh, hoặc null nếu chưa có trong cache hoặc đã hết hạn
+     */
+    public AuthenticatedUser get(String token) {
+        String key = digest(token);
+        AuthenticatedUser user = entries.get(key);
+        if (user != null && user.isExpired()) {
+            entries.remove(key, user);
+            return null;
+        }
+        return user;
+    }
+
+    public void put(String token, AuthenticatedUser user) {
+        if (entries.size() >= MAX_ENTRIES) {
+            evict();
+        }
+        entries.put(digest(token), user);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Xóa các mục đã hết hạn
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void removeExpired() {
+        entries.values().removeIf(AuthenticatedUser::isExpired);
+    }
+
+    /**
+     * Cache đầy: xóa mục hết hạn trước, nếu vẫn đầy thì bỏ bớt khoảng 10% số mục
+     */
+    private void evict() {
+        removeExpired();
+        int toRemove = entries.size() - MAX_ENTRIES + MAX_ENTRIES / 10;
+        Iterator<String> it = entries.keySet().iterator();
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
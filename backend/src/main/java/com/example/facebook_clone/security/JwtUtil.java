@@ -1,9 +1,11 @@
 package com.example.facebook_clone.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -23,6 +25,12 @@ public class JwtUtil {
 
     private Key secretKey;
 
+    // Parser không có trạng thái, dùng lại cho mọi token thay vì tạo mới mỗi lần
+    private final JwtParser parser;
+
+    @Autowired
+    private JwtClaimsCache claimsCache;
+
     // Thời gian hết hạn token: 30 ngày (tương tự Facebook)
     @Value("${jwt.expiration:2592000000}")
     private long jwtExpirationMs; // Mặc định 30 ngày
@@ -31,6 +39,7 @@ public class JwtUtil {
     public JwtUtil() {
         // Sử dụng khóa cố định thay vì lấy từ application.properties
         this.secretKey = Keys.hmacShaKeyFor(FIXED_SECRET.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(secretKey).build();
     }
 
     // Tạo token từ thông tin người dùng
@@ -56,11 +65,34 @@ public class JwtUtil {
 
     // Lấy tất cả claims từ token
     public Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(secretKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    // Xác thực token và trả về thông tin người dùng, chỉ kiểm tra chữ ký khi token chưa có trong cache
+    public AuthenticatedUser authenticate(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        AuthenticatedUser cached = claimsCache.get(token);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            Claims claims = extractAllClaims(token);
+            if (claims.getExpiration() == null) {
+                return null;
+            }
+            AuthenticatedUser user = new AuthenticatedUser(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.get("role", String.class),
+                    claims.getExpiration().getTime());
+            claimsCache.put(token, user);
+            return user;
+        } catch (Exception e) {
+            // Chữ ký sai, token hỏng hoặc đã hết hạn
+            return null;
+        }
     }
 
     // Lấy một claim cụ thể từ token
@@ -71,7 +103,8 @@ public class JwtUtil {
 
     // Lấy userId từ token
     public String extractUserId(String token) {
-        return extractClaim(token, Claims::getSubject);
+        AuthenticatedUser user = authenticate(token);
+        return user != null ? user.getUserId() : extractClaim(token, Claims::getSubject);
     }
 
     // Lấy ngày hết hạn từ token
@@ -79,17 +112,8 @@ public class JwtUtil {
         return extractClaim(token, Claims::getExpiration);
     }
 
-    // Kiểm tra token đã hết hạn chưa
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
-    }
-
     // Xác thực token
     public Boolean validateToken(String token) {
-        try {
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
-        }
+        return authenticate(token) != null;
     }
 }
@@ -0,0 +1,52 @@
+package com.example.facebook_clone.security;
+
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Interceptor giới hạn tần suất theo IP cho một route, chỉ áp dụng với request POST.
+ * Giới hạn theo danh tính (email/userId) được kiểm tra trong controller sau khi đọc body.
+ *
+ * IP lấy từ request.getRemoteAddr(); khi chạy sau reverse proxy cần bật
+ * server.forward-headers-strategy để giá trị này là IP thật của client.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitRoute route;
+    private final ObjectMapper objectMapper;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitRoute route, ObjectMapper objectMapper) {
+        this.rateLimiter = rateLimiter;
+        this.route = route;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                             @NonNull Object handler) throws Exception {
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+        long retryAfter = rateLimiter.tryAcquireIp(route, request.getRemoteAddr());
+        if (retryAfter == 0) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(), Map.of("message", RateLimiter.TOO_MANY_REQUESTS_MESSAGE));
+        return false;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.facebook_clone.security;
+
+/**
+ * Các route có giới hạn tần suất.
+ *
+ * Mỗi route có hai giới hạn: theo danh tính (email hoặc userId) và theo IP.
+ * Giới hạn theo IP rộng hơn vì nhiều người dùng có thể chung một IP (NAT).
+ * Giá trị dạng "số request/số giây", ghi đè bằng app.rate-limit.{key} và app.rate-limit.{key}-ip.
+ */
+public enum RateLimitRoute {
+
+    LOGIN("login", "5/60", "30/60"),
+    FORGOT_PASSWORD("forgot-password", "3/900", "10/900"),
+    POST_LIKE("post-like", "60/60", "300/60"),
+    MESSAGE("message", "60/60", "300/60");
+
+    private final String key;
+    private final String defaultLimit;
+    private final String defaultIpLimit;
+
+    RateLimitRoute(String key, String defaultLimit, String defaultIpLimit) {
+        this.key = key;
+        this.defaultLimit = defaultLimit;
+        this.defaultIpLimit = defaultIpLimit;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public String getDefaultIpLimit() {
+        return defaultIpLimit;
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.facebook_clone.security;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Giới hạn tần suất trong bộ nhớ cho các endpoint xác thực và ghi dữ liệu.
+ *
+ * Mỗi route có một tập bucket theo danh tính (email/userId, kiểm tra trong controller)
+ * và một tập theo IP (kiểm tra trong RateLimitInterceptor). Giới hạn chỉ áp dụng trên
+ * từng node, đủ để chặn một client gửi dồn dập.
+ *
+ * Metrics: ratelimit.rejected (tag route, scope), ratelimit.buckets.
+ */
+@Component
+public class RateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
+
+    public static final String TOO_MANY_REQUESTS_MESSAGE = "Bạn thao tác quá nhanh, vui lòng thử lại sau";
+
+    private static final String PREFIX = "app.rate-limit.";
+
+    // Số bucket tối đa cho mỗi tập, chặn việc dùng khóa ngẫu nhiên để làm đầy bộ nhớ
+    private static final int MAX_BUCKETS = 100_000;
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.rate-limit.idle-seconds:600}")
+    private long idleSeconds;
+
+    private final Map<RateLimitRoute, TokenBucketLimiter> identityLimiters = new EnumMap<>(RateLimitRoute.class);
+    private final Map<RateLimitRoute, TokenBucketLimiter> ipLimiters = new EnumMap<>(RateLimitRoute.class);
+    private final Map<RateLimitRoute, Counter> identityRejected = new EnumMap<>(RateLimitRoute.class);
+    private final Map<RateLimitRoute, Counter> ipRejected = new EnumMap<>(RateLimitRoute.class);
+
+    private final MeterRegistry meterRegistry;
+
+    public RateLimiter(Environment environment, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (RateLimitRoute route : RateLimitRoute.values()) {
+            String key = route.getKey();
+            TokenBucketLimiter identity = parse(environment.getProperty(PREFIX + key, route.getDefaultLimit()));
+            TokenBucketLimiter ip = parse(environment.getProperty(PREFIX + key + "-ip", route.getDefaultIpLimit()));
+            identityLimiters.put(route, identity);
+            ipLimiters.put(route, ip);
+            identityRejected.put(route, Counter.builder("ratelimit.rejected")
+                .tag("route", key).tag("scope", "identity").register(meterRegistry));
+            ipRejected.put(route, Counter.builder("ratelimit.rejected")
+                .tag("route", key).tag("scope", "ip").register(meterRegistry));
+            logger.info("Rate limit {}: {}/{}s theo danh tính, {}/{}s theo IP", key,
+                identity.getCapacity(), identity.getPeriodSeconds(), ip.getCapacity(), ip.getPeriodSeconds());
+        }
+    }
+
+    /**
+     * Đăng ký gauge sau khi khởi tạo xong (gauge giữ tham chiếu đến RateLimiter)
+     */
+    @PostConstruct
+    public void registerGauges() {
+        meterRegistry.gauge("ratelimit.buckets", this, RateLimiter::bucketCount);
+    }
+
+    /**
+     * Lấy một lượt cho danh tính (email hoặc userId)
+     *
+     * @param route Route được gọi
+     * @param identity Email hoặc userId; null thì bỏ qua
+     * @return 0 nếu được phép, ngược lại số giây cần chờ (dùng cho header Retry-After)
+     */
+    public long tryAcquire(RateLimitRoute route, String identity) {
+        if (!enabled || identity == null || identity.isEmpty()) {
+            return 0;
+        }
+        // Email không phân biệt hoa thường
+        String key = identity.indexOf('@') >= 0 ? identity.toLowerCase(Locale.ROOT) : identity;
+        return check(identityLimiters.get(route), identityRejected.get(route), key);
+    }
+
+    /**
+     * Lấy một lượt cho địa chỉ IP
+     *
+     * @param route Route được gọi
+     * @param ip Địa chỉ IP của client
+     * @return 0 nếu được phép, ngược lại số giây cần chờ
+     */
+    public long tryAcquireIp(RateLimitRoute route, String ip) {
+        if (!enabled || ip == null) {
+            return 0;
+        }
+        return check(ipLimiters.get(route), ipRejected.get(route), ip);
+    }
+
+    /**
+     * Phản hồi 429 kèm header Retry-After
+     *
+     * @param retryAfter Số giây cần chờ
+     */
+    public static ResponseEntity<?> tooManyRequests(long retryAfter) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+                .body(Map.of("message", TOO_MANY_REQUESTS_MESSAGE));
+    }
+
+    /**
+     * Xóa các bucket không hoạt động
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdle() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        int removed = 0;
+        for (TokenBucketLimiter limiter : identityLimiters.values()) {
+            removed += limiter.evictIdle(now, idleNanos);
+        }
+        for (TokenBucketLimiter limiter : ipLimiters.values()) {
+            removed += limiter.evictIdle(now, idleNanos);
+        }
+        if (removed > 0) {
+            logger.debug("Đã xóa {} bucket rate limit không hoạt động", removed);
+        }
+    }
+
+    private long check(TokenBucketLimiter limiter, Counter rejected, String key) {
+        long waitNanos = limiter.tryAcquire(key, System.nanoTime());
+        if (waitNanos == 0) {
+            return 0;
+        }
+        rejected.increment();
+        // Làm tròn lên, tối thiểu 1 giây
+        return Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+    }
+
+    private double bucketCount() {
+        long total = 0;
+        for (TokenBucketLimiter limiter : identityLimiters.values()) {
+            total += limiter.size();
+        }
+        for (TokenBucketLimiter limiter : ipLimiters.values()) {
+            total += limiter.size();
+        }
+        return total;
+    }
+
+    /**
+     * Đọc giới hạn dạng "số request/số giây"
+     */
+    private static TokenBucketLimiter parse(String value) {
+        String[] parts = value.trim().split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Giới hạn phải có dạng <số request>/<số giây>: " + value);
+        }
+        return new TokenBucketLimiter(Integer.parseInt(parts[0].trim()), Long.parseLong(parts[1].trim()), MAX_BUCKETS);
+    }
+}
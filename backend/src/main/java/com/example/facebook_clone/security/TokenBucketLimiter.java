@@ -0,0 +1,96 @@
+package com.example.facebook_clone.security;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tập token bucket cùng một chính sách (capacity request mỗi period), khóa theo chuỗi bất kỳ.
+ *
+ * Mỗi bucket chỉ là một AtomicLong lưu "thời điểm bucket đầy trở lại" theo nanoTime
+ * (GCRA, tương đương token bucket): mỗi request dời mốc này thêm một khoảng interval,
+ * request bị từ chối nếu mốc vượt quá now + capacity * interval. Việc kiểm tra chỉ gồm
+ * một lần tra map và một lần CAS, không khóa và không cấp phát khi bucket đã tồn tại.
+ */
+public class TokenBucketLimiter {
+
+    private final int capacity;
+    private final long periodSeconds;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxBuckets;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity Số request tối đa liên tiếp (kích thước bucket)
+     * @param periodSeconds Thời gian để bucket rỗng nạp đầy lại
+     * @param maxBuckets Số bucket tối đa được theo dõi
+     */
+    public TokenBucketLimiter(int capacity, long periodSeconds, int maxBuckets) {
+        if (capacity <= 0 || periodSeconds <= 0) {
+            throw new IllegalArgumentException("Giới hạn không hợp lệ: " + capacity + "/" + periodSeconds);
+        }
+        this.capacity = capacity;
+        this.periodSeconds = periodSeconds;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(periodSeconds) / capacity;
+        this.burstNanos = intervalNanos * capacity;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Lấy một token cho khóa
+     *
+     * @param key Khóa (userId, email, IP)
+     * @param now System.nanoTime()
+     * @return 0 nếu được phép, ngược lại số nano giây cần chờ đến khi có token
+     */
+    public long tryAcquire(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                // Quá nhiều khóa (vd. email ngẫu nhiên): không theo dõi thêm, giới hạn theo IP vẫn áp dụng
+                return 0;
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+        }
+
+        while (true) {
+            long refillAt = bucket.get();
+            long next = (refillAt - now > 0 ? refillAt : now) + intervalNanos;
+            long ahead = next - now - burstNanos;
+            if (ahead > 0) {
+                return ahead;
+            }
+            if (bucket.compareAndSet(refillAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Xóa các bucket đã đầy lại và không được dùng trong khoảng idleNanos.
+     * Request đến đúng lúc bucket bị xóa sẽ dùng bucket mới (đầy), chấp nhận được vì rất hiếm.
+     *
+     * @param now System.nanoTime()
+     * @param idleNanos Thời gian không hoạt động tối thiểu
+     * @return Số bucket đã xóa
+     */
+    public int evictIdle(long now, long idleNanos) {
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> now - bucket.get() > idleNanos);
+        return before - buckets.size();
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getPeriodSeconds() {
+        return periodSeconds;
+    }
+}
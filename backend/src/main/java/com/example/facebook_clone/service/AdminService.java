@@ -0,0 +1,198 @@
+package com.example.facebook_clone.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Service cho trang quản trị: danh sách người dùng/bài đăng phân trang phía server và xuất dữ liệu.
+ *
+ * Danh sách chỉ đọc một trang (skip/limit) kèm tổng số bản ghi, thay vì tải cả collection.
+ * Xuất dữ liệu đọc từ cursor Mongo và ghi từng bản ghi ra luồng NDJSON (mỗi dòng một JSON),
+ * nên bộ nhớ dùng không phụ thuộc số bản ghi.
+ */
+@Service
+public class AdminService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final int MAX_AUTHOR_MATCHES = 1000;
+    private static final int EXPORT_BATCH_SIZE = 500;
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    private static final Set<String> USER_SORT_FIELDS = Set.of("id", "firstName", "lastName", "email", "role");
+    private static final Set<String> POST_SORT_FIELDS = Set.of("id", "createdAt", "userId", "privacy");
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Lấy một trang người dùng (không kèm mật khẩu)
+     *
+     * @param q Lọc theo tên hoặc email (chứa chuỗi, không phân biệt hoa thường), có thể null
+     * @param role Lọc theo vai trò, có thể null
+     * @param sort Trường sắp xếp (id, firstName, lastName, email, role)
+     * @param direction asc hoặc desc
+     * @param page Số trang (từ 0)
+     * @param size Số bản ghi mỗi trang
+     * @return content, page, size, totalElements, totalPages
+     */
+    public Map<String, Object> findUsers(String q, String role, String sort, String direction, int page, int size) {
+        Query query = userQuery(q, role);
+        Query pageQuery = paged(query, USER_SORT_FIELDS, sort, direction, page, size);
+        long total = mongoTemplate.count(query, User.class);
+        List<User> users = mongoTemplate.find(pageQuery, User.class);
+        return pageResponse(users, page, size, total);
+    }
+
+    /**
+     * Lấy một trang bài đăng kèm thông tin tóm tắt của người đăng
+     *
+     * @param q Lọc theo nội dung hoặc tên người đăng (chứa chuỗi, không phân biệt hoa thường), có thể null
+     * @param userId Lọc theo người đăng, có thể null
+     * @param privacy Lọc theo quyền riêng tư (PUBLIC/PRIVATE), có thể null
+     * @param sort Trường sắp xếp (id, createdAt, userId, privacy)
+     * @param direction asc hoặc desc
+     * @param page Số trang (từ 0)
+     * @param size Số bản ghi mỗi trang
+     * @return content, page, size, totalElements, totalPages
+     */
+    public Map<String, Object> findPosts(String q, String userId, String privacy, String sort, String direction,
+            int page, int size) {
+        Query query = postQuery(q, userId, privacy);
+        Query pageQuery = paged(query, POST_SORT_FIELDS, sort, direction, page, size);
+        long total = mongoTemplate.count(query, Post.class);
+        List<Post> posts = mongoTemplate.find(pageQuery, Post.class);
+
+        // Người đăng của cả trang được lấy bằng một truy vấn
+        Set<String> authorIds = posts.stream().map(Post::getUserId).collect(Collectors.toSet());
+        Query authors = new Query(Criteria.where("_id").in(authorIds));
+        authors.fields().include("firstName").include("lastName").include("avatar").include("email");
+        Map<String, User> authorsById = mongoTemplate.find(authors, User.class).stream()
+            .collect(Collectors.toMap(User::getId, user -> user));
+        posts.forEach(post -> post.setUser(authorsById.get(post.getUserId())));
+        return pageResponse(posts, page, size, total);
+    }
+
+    /**
+     * Ghi toàn bộ người dùng khớp bộ lọc ra luồng NDJSON (không kèm mật khẩu)
+     *
+     * @return Số bản ghi đã ghi
+     */
+    public long exportUsers(String q, String role, OutputStream out) throws IOException {
+        Query query = userQuery(q, role).with(Sort.by("_id")).cursorBatchSize(EXPORT_BATCH_SIZE);
+        return writeNdjson(mongoTemplate.stream(query, User.class), out);
+    }
+
+    /**
+     * Ghi toàn bộ bài đăng khớp bộ lọc ra luồng NDJSON
+     *
+     * @return Số bản ghi đã ghi
+     */
+    public long exportPosts(String q, String userId, String privacy, OutputStream out) throws IOException {
+        Query query = postQuery(q, userId, privacy).with(Sort.by("_id")).cursorBatchSize(EXPORT_BATCH_SIZE);
+        return writeNdjson(mongoTemplate.stream(query, Post.class), out);
+    }
+
+    private static Query userQuery(String q, String role) {
+        Criteria criteria = new Criteria();
+        if (q != null && !q.isBlank()) {
+            Pattern pattern = containsPattern(q);
+            criteria.orOperator(Criteria.where("firstName").regex(pattern), Criteria.where("lastName").regex(pattern),
+                Criteria.where("email").regex(pattern));
+        }
+        if (role != null && !role.isBlank()) {
+            criteria.and("role").is(role);
+        }
+        Query query = new Query(criteria);
+        query.fields().exclude("password");
+        return query;
+    }
+
+    private Query postQuery(String q, String userId, String privacy) {
+        Criteria criteria = new Criteria();
+        if (q != null && !q.isBlank()) {
+            // Khớp nội dung hoặc tên người đăng (giới hạn số người đăng khớp tên để truy vấn không phình to)
+            Pattern pattern = containsPattern(q);
+            Query authors = new Query(new Criteria().orOperator(Criteria.where("firstName").regex(pattern),
+                Criteria.where("lastName").regex(pattern))).limit(MAX_AUTHOR_MATCHES);
+            authors.fields().include("_id");
+            List<String> authorIds = mongoTemplate.find(authors, User.class).stream().map(User::getId).toList();
+            criteria.orOperator(Criteria.where("content").regex(pattern), Criteria.where("userId").in(authorIds));
+        }
+        if (userId != null && !userId.isBlank()) {
+            criteria.and("userId").is(userId);
+        }
+        if (privacy != null && !privacy.isBlank()) {
+            criteria.and("privacy").is(privacy);
+        }
+        return new Query(criteria);
+    }
+
+    private static Pattern containsPattern(String q) {
+        return Pattern.compile(Pattern.quote(q.trim()), Pattern.CASE_INSENSITIVE);
+    }
+
+    /**
+     * Thêm sắp xếp và phân trang; _id được dùng làm khóa phụ để thứ tự giữa các trang ổn định
+     */
+    private static Query paged(Query query, Set<String> sortFields, String sort, String direction, int page, int size) {
+        if (!sortFields.contains(sort)) {
+            throw new IllegalArgumentException("Không thể sắp xếp theo " + sort);
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("page phải >= 0 và size trong khoảng 1-" + MAX_PAGE_SIZE);
+        }
+        Sort.Direction order = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sortBy = Sort.by(order, "id".equals(sort) ? "_id" : sort);
+        if (!"id".equals(sort)) {
+            sortBy = sortBy.and(Sort.by(order, "_id"));
+        }
+        return Query.of(query).with(sortBy).skip((long) page * size).limit(size);
+    }
+
+    private static Map<String, Object> pageResponse(List<?> content, int page, int size, long total) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("content", content);
+        response.put("page", page);
+        response.put("size", size);
+        response.put("totalElements", total);
+        response.put("totalPages", (total + size - 1) / size);
+        return response;
+    }
+
+    private <T> long writeNdjson(Stream<T> documents, OutputStream target) throws IOException {
+        long count = 0;
+        OutputStream out = new BufferedOutputStream(target, EXPORT_BUFFER_SIZE);
+        try (documents) {
+            for (T document : (Iterable<T>) documents::iterator) {
+                out.write(objectMapper.writeValueAsBytes(document));
+                out.write('\n');
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+}
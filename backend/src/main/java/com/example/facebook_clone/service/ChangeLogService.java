@@ -0,0 +1,337 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ChangeLogEntry;
+import com.example.facebook_clone.model.Friend;
+import com.example.facebook_clone.model.Notification;
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.User;
+import com.example.facebook_clone.repository.ChangeLogRepository;
+import com.example.facebook_clone.repository.FriendRepository;
+import com.example.facebook_clone.repository.NotificationRepository;
+import com.example.facebook_clone.repository.PostRepository;
+import com.example.facebook_clone.repository.UserRepository;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+/**
+ * Service ghi nhận thay đổi dữ liệu theo phiên bản tăng dần để client đồng bộ delta
+ * (chỉ tải những gì đã thay đổi kể từ phiên bản cuối cùng đã biết).
+ */
+@Service
+public class ChangeLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeLogService.class);
+
+    public static final String POST = "POST";
+    public static final String NOTIFICATION = "NOTIFICATION";
+    public static final String FRIEND = "FRIEND";
+    public static final String FRIEND_REQUEST = "FRIEND_REQUEST";
+
+    public static final String UPSERT = "UPSERT";
+    public static final String DELETE = "DELETE";
+
+    // Số thay đổi tối đa trả về trong một lần đồng bộ, client gọi tiếp nếu hasMore = true
+    private static final int MAX_CHANGES = 500;
+
+    private static final String COUNTERS_COLLECTION = "counters";
+    private static final String COUNTER_ID = "change_log";
+    // Số lần thử lại khi nhiều node cùng ghi một phiên bản
+    private static final int MAX_INSERT_ATTEMPTS = 20;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Ghi nhận bài đăng được tạo hoặc cập nhật (áp dụng cho feed của mọi người dùng)
+     *
+     * @param postId ID bài đăng
+     */
+    public void recordPostChange(String postId) {
+        record(ChangeLogEntry.FEED_SCOPE, POST, postId, UPSERT);
+    }
+
+    /**
+     * Ghi nhận bài đăng bị xóa
+     *
+     * @param postId ID bài đăng
+     */
+    public void recordPostDeleted(String postId) {
+        record(ChangeLogEntry.FEED_SCOPE, POST, postId, DELETE);
+    }
+
+    /**
+     * Ghi nhận thông báo được tạo hoặc cập nhật
+     *
+     * @param notification Thông báo
+     */
+    public void recordNotificationChange(Notification notification) {
+        record(notification.getUserId(), NOTIFICATION, notification.getId(), UPSERT);
+    }
+
+    /**
+     * Ghi nhận nhiều thông báo thay đổi cùng lúc (ví dụ đánh dấu tất cả đã đọc)
+     *
+     * @param notifications Danh sách thông báo
+     * @param op UPSERT hoặc DELETE
+     */
+    public void recordNotifications(List<Notification> notifications, String op) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        try {
+            List<ChangeLogEntry> entries = new ArrayList<>();
+            for (Notification notification : notifications) {
+                entries.add(new ChangeLogEntry(0, notification.getUserId(), NOTIFICATION, notification.getId(), op));
+            }
+            insertEntries(entries);
+        } catch (Exception e) {
+            logger.warn("Không thể ghi change log cho {} thông báo", notifications.size(), e);
+        }
+    }
+
+    /**
+     * Ghi nhận thông báo bị xóa
+     *
+     * @param userId ID người nhận thông báo
+     * @param notificationId ID thông báo
+     */
+    public void recordNotificationDeleted(String userId, String notificationId) {
+        record(userId, NOTIFICATION, notificationId, DELETE);
+    }
+
+    /**
+     * Ghi nhận thay đổi danh sách bạn bè của một người dùng
+     *
+     * @param userId ID người dùng sở hữu danh sách bạn bè
+     * @param friendId ID người bạn được thêm hoặc xóa
+     * @param op UPSERT hoặc DELETE
+     */
+    public void recordFriendChange(String userId, String friendId, String op) {
+        record(userId, FRIEND, friendId, op);
+    }
+
+    /**
+     * Ghi nhận thay đổi lời mời kết bạn đang chờ của người nhận
+     *
+     * @param receiverId ID người nhận lời mời
+     * @param requestId ID lời mời kết bạn
+     * @param op UPSERT hoặc DELETE
+     */
+    public void recordFriendRequestChange(String receiverId, String requestId, String op) {
+        record(receiverId, FRIEND_REQUEST, requestId, op);
+    }
+
+    /**
+     * Lấy phiên bản hiện tại của change log; mọi phiên bản nhỏ hơn hoặc bằng đều đã được ghi
+     *
+     * @return Phiên bản mới nhất đã ghi
+     */
+    public long currentVersion() {
+        ChangeLogEntry latest = changeLogRepository.findFirstByOrderByVersionDesc();
+        return Math.max(latest != null ? latest.getVersion() : 0, counterValue());
+    }
+
+    /**
+     * Lấy các thay đổi của feed, thông báo và bạn bè kể từ một phiên bản
+     *
+     * @param userId ID người dùng đồng bộ
+     * @param since Phiên bản cuối cùng client đã biết (0 nếu chưa có)
+     * @return upserts, tombstones, phiên bản mới và cờ hasMore/resyncRequired
+     */
+    public Map<String, Object> getChangesSince(String userId, long since) {
+        Map<String, Object> result = new HashMap<>();
+
+        // Client chưa có dữ liệu hoặc các thay đổi cần thiết đã hết hạn: tải lại toàn bộ
+        ChangeLogEntry oldest = since > 0 ? changeLogRepository.findFirstByOrderByVersionAsc() : null;
+        if (since <= 0 || (oldest != null && since < oldest.getVersion() - 1)) {
+            result.put("resyncRequired", true);
+            result.put("version", currentVersion());
+            return result;
+        }
+
+        List<ChangeLogEntry> entries = changeLogRepository.findByScopeInAndVersionGreaterThanOrderByVersionAsc(
+            List.of(userId, ChangeLogEntry.FEED_SCOPE), since, PageRequest.of(0, MAX_CHANGES));
+
+        // Gộp các thay đổi theo đối tượng, thay đổi sau cùng được giữ lại
+        Map<String, Map<String, String>> latestOps = new HashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            latestOps.computeIfAbsent(entry.getEntityType(), type -> new LinkedHashMap<>())
+                .put(entry.getEntityId(), entry.getOp());
+        }
+
+        Map<String, Object> upserts = new HashMap<>();
+        Map<String, Object> tombstones = new HashMap<>();
+
+        // Bài đăng: bài đã bị xóa hoặc chuyển sang riêng tư với người xem đều là tombstone
+        Map<String, String> postOps = latestOps.getOrDefault(POST, Map.of());
+        List<Post> posts = new ArrayList<>();
+        Set<String> removedPosts = new HashSet<>(deletedIds(postOps));
+        Set<String> missingPosts = new HashSet<>(upsertedIds(postOps));
+        for (Post post : postRepository.findAllById(missingPosts)) {
+            missingPosts.remove(post.getId());
+            if ("PRIVATE".equals(post.getPrivacy()) && !post.getUserId().equals(userId)) {
+                removedPosts.add(post.getId());
+            } else {
+                posts.add(post);
+            }
+        }
+        // Bài đăng đã bị xóa sau khi thay đổi được ghi nhận
+        removedPosts.addAll(missingPosts);
+        attachAuthors(posts);
+        upserts.put("posts", posts);
+        tombstones.put("posts", removedPosts);
+
+        // Thông báo
+        Map<String, String> notificationOps = latestOps.getOrDefault(NOTIFICATION, Map.of());
+        upserts.put("notifications", notificationRepository.findAllById(upsertedIds(notificationOps)));
+        tombstones.put("notifications", deletedIds(notificationOps));
+
+        // Bạn bè: trả về thông tin người dùng của bạn mới
+        Map<String, String> friendOps = latestOps.getOrDefault(FRIEND, Map.of());
+        upserts.put("friends", userRepository.findAllById(upsertedIds(friendOps)));
+        tombstones.put("friends", deletedIds(friendOps));
+
+        // Lời mời kết bạn đang chờ
+        Map<String, String> requestOps = latestOps.getOrDefault(FRIEND_REQUEST, Map.of());
+        List<Friend> requests = new ArrayList<>();
+        for (Friend request : friendRepository.findAllById(upsertedIds(requestOps))) {
+            if ("PENDING".equals(request.getStatus())) {
+                requests.add(request);
+            }
+        }
+        upserts.put("friendRequests", requests);
+        tombstones.put("friendRequests", deletedIds(requestOps));
+
+        result.put("resyncRequired", false);
+        result.put("upserts", upserts);
+        result.put("tombstones", tombstones);
+        result.put("hasMore", entries.size() == MAX_CHANGES);
+        result.put("version", entries.isEmpty() ? since : entries.get(entries.size() - 1).getVersion());
+        return result;
+    }
+
+    /**
+     * Ghi một thay đổi; lỗi ghi change log không làm hỏng thao tác chính
+     */
+    private void record(String scope, String entityType, String entityId, String op) {
+        if (scope == null || entityId == null) {
+            return;
+        }
+        try {
+            insertEntries(List.of(new ChangeLogEntry(0, scope, entityType, entityId, op)));
+        } catch (Exception e) {
+            logger.warn("Không thể ghi change log cho {} {}", entityType, entityId, e);
+        }
+    }
+
+    /**
+     * Ghi các thay đổi với phiên bản liên tiếp sau phiên bản mới nhất đã ghi.
+     * Chính lệnh insert cấp phiên bản (unique index trên version): phiên bản v chỉ được ghi
+     * sau khi v - 1 đã hiển thị, nên người đọc theo thứ tự phiên bản không bao giờ bỏ sót
+     * một bản ghi đang được ghi dở. Khi trùng phiên bản với node khác thì đọc lại và thử tiếp.
+     *
+     * @param entries Các thay đổi, theo thứ tự cần ghi
+     */
+    private void insertEntries(List<ChangeLogEntry> entries) {
+        MongoCollection<Document> collection = mongoTemplate.getCollection(mongoTemplate.getCollectionName(ChangeLogEntry.class));
+        int inserted = 0;
+        for (int attempt = 1; inserted < entries.size(); attempt++) {
+            long version = currentVersion();
+            List<Document> documents = new ArrayList<>();
+            for (ChangeLogEntry entry : entries.subList(inserted, entries.size())) {
+                entry.setVersion(++version);
+                Document document = new Document();
+                mongoTemplate.getConverter().write(entry, document);
+                documents.add(document);
+            }
+            try {
+                collection.insertMany(documents, new InsertManyOptions().ordered(true));
+                inserted = entries.size();
+            } catch (MongoBulkWriteException e) {
+                boolean conflict = e.getWriteErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+                if (!conflict || attempt >= MAX_INSERT_ATTEMPTS) {
+                    throw e;
+                }
+                // Các bản ghi trước bản ghi bị trùng đã được ghi
+                inserted += e.getWriteResult().getInsertedCount();
+            }
+        }
+
+        // Giữ mốc phiên bản khi toàn bộ change log đã hết hạn
+        mongoTemplate.upsert(
+            new Query(Criteria.where("_id").is(COUNTER_ID)),
+            new Update().max("value", entries.get(entries.size() - 1).getVersion()),
+            COUNTERS_COLLECTION);
+    }
+
+    private long counterValue() {
+        Document counter = mongoTemplate.findById(COUNTER_ID, Document.class, COUNTERS_COLLECTION);
+        if (counter == null || !(counter.get("value") instanceof Number)) {
+            return 0;
+        }
+        return ((Number) counter.get("value")).longValue();
+    }
+
+    private void attachAuthors(List<Post> posts) {
+        Set<String> authorIds = new HashSet<>();
+        posts.forEach(post -> authorIds.add(post.getUserId()));
+        Map<String, User> authors = new HashMap<>();
+        userRepository.findAllById(authorIds).forEach(user -> authors.put(user.getId(), user));
+        posts.forEach(post -> post.setUser(authors.get(post.getUserId())));
+    }
+
+    private static List<String> upsertedIds(Map<String, String> ops) {
+        return idsWithOp(ops, UPSERT);
+    }
+
+    private static List<String> deletedIds(Map<String, String> ops) {
+        return idsWithOp(ops, DELETE);
+    }
+
+    private static List<String> idsWithOp(Map<String, String> ops, String op) {
+        List<String> ids = new ArrayList<>();
+        ops.forEach((id, entryOp) -> {
+            if (op.equals(entryOp)) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+}
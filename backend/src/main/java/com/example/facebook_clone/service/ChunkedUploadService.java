@@ -0,0 +1,285 @@
+package com.example.facebook_clone.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.UploadSession;
+
+/**
+ * Service tải file lớn lên theo từng phần, có thể tiếp tục sau khi mất kết nối.
+ *
+ * Mỗi phần được ghi thẳng vào đúng vị trí trong file tạm bằng FileChannel (ghi theo vị trí),
+ * qua một buffer nhỏ cố định, nên bộ nhớ dùng không phụ thuộc kích thước file. Các phần có thể
+ * gửi lại hoặc gửi song song. Khi đủ phần, file được kiểm tra SHA-256 rồi đưa vào FileStorageService.
+ *
+ * File tạm nằm trên đĩa của node nhận phiên, nên khóa trong JVM đủ để tách việc ghi phần với việc hoàn tất:
+ * mỗi lần ghi giữ khóa đọc của phiên, hoàn tất giữ khóa ghi trong lúc chuyển phiên sang FINALIZING.
+ * Sau đó mọi lần ghi mới thấy trạng thái FINALIZING và bị từ chối, nên file không bị sửa khi đang kiểm tra checksum.
+ */
+@Service
+public class ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedUploadService.class);
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Value("${app.upload.chunk-size-bytes:8388608}")
+    private int chunkSize;
+
+    @Value("${app.upload.max-size-bytes:1073741824}")
+    private long maxSize;
+
+    @Value("${app.upload.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    // Khóa theo phiên (chia sọc theo ID phiên): ghi phần giữ khóa đọc, hoàn tất giữ khóa ghi
+    private final List<ReadWriteLock> sessionLocks = new ArrayList<>(LOCK_STRIPES);
+
+    public ChunkedUploadService() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            sessionLocks.add(new ReentrantReadWriteLock());
+        }
+    }
+
+    /**
+     * Tạo phiên tải lên mới
+     *
+     * @param userId ID người tải lên
+     * @param fileName Tên file gốc
+     * @param contentType Loại nội dung (image/..., video/...)
+     * @param totalSize Kích thước file (byte)
+     * @return Phiên đã tạo (chứa chunkSize và chunkCount client cần dùng)
+     */
+    public UploadSession createSession(String userId, String fileName, String contentType, long totalSize) {
+        if (totalSize <= 0 || totalSize > maxSize) {
+            throw new IllegalArgumentException("Kích thước file không hợp lệ (tối đa " + maxSize + " byte)");
+        }
+        if (contentType == null || !(contentType.startsWith("image/") || contentType.startsWith("video/"))) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ tải lên hình ảnh hoặc video");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setOriginalFileName(fileName);
+        session.setContentType(contentType);
+        session.setTotalSize(totalSize);
+        session.setChunkSize(chunkSize);
+        session.setChunkCount((int) ((totalSize + chunkSize - 1) / chunkSize));
+        session.setStatus(UploadSession.UPLOADING);
+        session.setCreatedAt(new Date());
+        session.setExpiresAt(new Date(System.currentTimeMillis() + sessionTtlHours * 3600_000L));
+        return mongoTemplate.insert(session);
+    }
+
+    /**
+     * Lấy phiên của người dùng (để client biết các phần đã nhận khi tải tiếp)
+     *
+     * @return Phiên, hoặc null nếu không tồn tại hoặc không thuộc người dùng
+     */
+    public UploadSession getSession(String uploadId, String userId) {
+        return mongoTemplate.findOne(new Query(Criteria.where("_id").is(uploadId).and("userId").is(userId)),
+            UploadSession.class);
+    }
+
+    /**
+     * Ghi một phần vào file tạm tại vị trí index * chunkSize
+     *
+     * @param session Phiên đang tải lên
+     * @param index Số thứ tự phần (từ 0)
+     * @param body Nội dung phần (thân request)
+     */
+    public void writeChunk(UploadSession session, int index, InputStream body) throws IOException {
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new IllegalArgumentException("Số thứ tự phần không hợp lệ");
+        }
+        ReadWriteLock lock = lockFor(session.getId());
+        lock.readLock().lock();
+        try {
+            // Đọc lại trạng thái dưới khóa: phiên có thể đã chuyển sang FINALIZING sau khi controller đọc
+            if (!mongoTemplate.exists(new Query(Criteria.where("_id").is(session.getId())
+                    .and("status").is(UploadSession.UPLOADING)), UploadSession.class)) {
+                throw new IllegalStateException("Phiên tải lên đang được hoàn tất hoặc đã kết thúc");
+            }
+            writeChunkLocked(session, index, body);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writeChunkLocked(UploadSession session, int index, InputStream body) throws IOException {
+        long position = (long) index * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - position);
+
+        long written = 0;
+        byte[] bytes = new byte[COPY_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(fileStorageService.partialUploadPath(session.getId()),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = body.read(bytes, 0, (int) Math.min(bytes.length, expected - written + 1))) > 0) {
+                if (written + read > expected) {
+                    throw new IllegalArgumentException("Phần " + index + " dài hơn " + expected + " byte");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, position + written);
+                }
+            }
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("Phần " + index + " cần " + expected + " byte, nhận được " + written);
+        }
+
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(session.getId()).and("status").is(UploadSession.UPLOADING)),
+            new Update().addToSet("receivedChunks", index), UploadSession.class);
+    }
+
+    /**
+     * Hoàn tất phiên: kiểm tra đủ phần và checksum rồi lưu file vào kho media
+     *
+     * @param session Phiên đang tải lên
+     * @param sha256 SHA-256 (hex) của toàn bộ file
+     * @return Phiên đã hoàn tất (có url)
+     */
+    public UploadSession complete(UploadSession session, String sha256) throws IOException {
+        if (UploadSession.COMPLETED.equals(session.getStatus())) {
+            return session;
+        }
+        if (session.getReceivedChunks().size() < session.getChunkCount()) {
+            throw new IllegalStateException("Còn thiếu " + (session.getChunkCount() - session.getReceivedChunks().size())
+                + " phần chưa tải lên");
+        }
+
+        // Chỉ một request được hoàn tất phiên; khóa ghi chờ các phần đang ghi xong trước khi chuyển trạng thái
+        ReadWriteLock lock = lockFor(session.getId());
+        lock.writeLock().lock();
+        try {
+            UploadSession claimed = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(session.getId()).and("status").is(UploadSession.UPLOADING)
+                    .and("receivedChunks." + (session.getChunkCount() - 1)).exists(true)),
+                new Update().set("status", UploadSession.FINALIZING), UploadSession.class);
+            if (claimed == null) {
+                throw new IllegalStateException("Phiên tải lên đang được hoàn tất hoặc còn thiếu phần");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Path partial = fileStorageService.partialUploadPath(session.getId());
+        String fileName;
+        try {
+            if (Files.size(partial) != session.getTotalSize()) {
+                throw new IllegalStateException("Kích thước file không khớp");
+            }
+            fileName = fileStorageService.storeAssembledFile(partial, session.getOriginalFileName(),
+                session.getContentType(), sha256);
+        } catch (IllegalArgumentException ex) {
+            // Checksum sai: không biết phần nào hỏng nên client phải gửi lại từ đầu
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(session.getId())),
+                new Update().set("status", UploadSession.UPLOADING).set("receivedChunks", new ArrayList<Integer>()),
+                UploadSession.class);
+            throw ex;
+        } catch (IOException | RuntimeException ex) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(session.getId())),
+                new Update().set("status", UploadSession.UPLOADING), UploadSession.class);
+            throw ex;
+        }
+
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(session.getId())),
+            new Update().set("status", UploadSession.COMPLETED).set("url", FileStorageService.URL_PREFIX + fileName),
+            FindAndModifyOptions.options().returnNew(true), UploadSession.class);
+    }
+
+    /**
+     * Gắn file đã tải lên vào bài đăng: phiên bị xóa và tham chiếu đến file chuyển sang người gọi
+     * (người gọi phải releaseFile nếu cuối cùng không dùng URL)
+     *
+     * @param uploadId ID phiên
+     * @param userId ID người dùng sở hữu phiên
+     * @return Phiên đã hoàn tất, hoặc null nếu không tồn tại, chưa hoàn tất hoặc không thuộc người dùng
+     */
+    public UploadSession claim(String uploadId, String userId) {
+        return mongoTemplate.findAndRemove(new Query(Criteria.where("_id").is(uploadId)
+            .and("userId").is(userId).and("status").is(UploadSession.COMPLETED)), UploadSession.class);
+    }
+
+    /**
+     * Hủy phiên và xóa dữ liệu đã tải lên
+     */
+    public void abort(UploadSession session) {
+        UploadSession removed = mongoTemplate.findAndRemove(new Query(Criteria.where("_id").is(session.getId())),
+            UploadSession.class);
+        if (removed != null) {
+            cleanUp(removed);
+        }
+    }
+
+    /**
+     * Dọn các phiên quá hạn: xóa file tạm, bỏ tham chiếu file đã hoàn tất nhưng không được bài đăng nào dùng
+     */
+    @Scheduled(fixedDelay = 15 * 60_000, initialDelay = 60_000)
+    public void cleanUpExpiredSessions() {
+        try {
+            Query query = new Query(Criteria.where("expiresAt").lt(new Date()));
+            UploadSession expired;
+            int count = 0;
+            while ((expired = mongoTemplate.findAndRemove(query, UploadSession.class)) != null) {
+                cleanUp(expired);
+                count++;
+            }
+            if (count > 0) {
+                logger.info("Đã dọn {} phiên tải lên quá hạn", count);
+            }
+        } catch (Exception e) {
+            logger.warn("Không thể dọn phiên tải lên quá hạn", e);
+        }
+    }
+
+    private ReadWriteLock lockFor(String uploadId) {
+        return sessionLocks.get(Math.floorMod(uploadId.hashCode(), LOCK_STRIPES));
+    }
+
+    private void cleanUp(UploadSession session) {
+        if (UploadSession.COMPLETED.equals(session.getStatus())) {
+            fileStorageService.releaseFile(session.getUrl());
+        }
+        try {
+            Files.deleteIfExists(fileStorageService.partialUploadPath(session.getId()));
+        } catch (IOException e) {
+            logger.warn("Không thể xóa file tạm của phiên {}", session.getId(), e);
+        }
+    }
+}
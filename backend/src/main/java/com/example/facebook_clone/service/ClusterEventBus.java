@@ -0,0 +1,41 @@
+package com.example.facebook_clone.service;
+
+import com.example.facebook_clone.model.ClusterEvent;
+
+/**
+ * Event bus nằm giữa nơi phát sự kiện WebSocket và nơi gửi đến client,
+ * cho phép nhiều node backend cùng phục vụ WebSocket.
+ * Chọn cài đặt bằng thuộc tính app.event-bus (local hoặc mongo).
+ */
+public interface ClusterEventBus {
+
+    /**
+     * Phát sự kiện đến node đang giữ kết nối của người nhận (hoặc mọi node nếu userId null)
+     *
+     * @param event Sự kiện cần phát
+     */
+    void publish(ClusterEvent event);
+
+    /**
+     * Đăng ký phía nhận sự kiện của node hiện tại
+     *
+     * @param handler Handler gửi sự kiện đến client
+     */
+    void subscribe(ClusterEventHandler handler);
+
+    /**
+     * Kiểm tra node khác có đang giữ session hoặc buffer của người dùng hay không
+     *
+     * @param userId ID người dùng
+     * @return true nếu sự kiện cho người dùng cần được gửi sang node khác
+     */
+    boolean hasRemoteListener(String userId);
+
+    /**
+     * Kiểm tra người dùng có đang online tại node khác hay không
+     *
+     * @param userId ID người dùng
+     * @return true nếu người dùng có session tại node khác
+     */
+    boolean isOnlineRemotely(String userId);
+}
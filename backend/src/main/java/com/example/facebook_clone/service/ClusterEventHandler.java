@@ -0,0 +1,28 @@
+package com.example.facebook_clone.service;
+
+import java.util.Set;
+
+import com.example.facebook_clone.model.ClusterEvent;
+
+/**
+ * Phía nhận của event bus trên mỗi node: gửi sự kiện đến các session đang kết nối tại node này
+ */
+public interface ClusterEventHandler {
+
+    /**
+     * Gửi sự kiện đến client kết nối tại node hiện tại
+     *
+     * @param event Sự kiện cần gửi
+     */
+    void deliver(ClusterEvent event);
+
+    /**
+     * @return Người dùng có session hoặc buffer sự kiện tại node hiện tại
+     */
+    Set<String> localListeners();
+
+    /**
+     * @return Người dùng đang online tại node hiện tại
+     */
+    Set<String> localOnlineUsers();
+}
@@ -0,0 +1,346 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.OutboundEmail;
+import com.example.facebook_clone.security.TokenBucketLimiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Worker gửi email trong outbox.
+ *
+ * Mỗi worker nhận một lô email đến hạn (findAndModify nên nhiều worker/node không gửi trùng),
+ * rồi gửi cả lô qua một kết nối SMTP duy nhất. Kết nối được giữ mở giữa các lô và chỉ đóng
+ * khi không có email trong một khoảng thời gian. Email gửi lỗi được thử lại với thời gian chờ
+ * tăng theo cấp số nhân; tốc độ gửi chung của node bị giới hạn bởi app.mail.outbox.rate-per-minute.
+ * Nội dung email bị xóa khi đã gửi xong hoặc thất bại hẳn, vì có thể chứa bí mật (token đặt lại mật khẩu).
+ *
+ * Metrics: email.outbox.sent, email.outbox.retried, email.outbox.failed.
+ */
+@Service
+public class EmailOutboxWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxWorker.class);
+
+    // Email đang gửi bị giữ tối đa 5 phút; worker dừng giữa chừng thì email được nhận lại sau thời gian này
+    private static final long LOCK_MS = 5 * 60 * 1000;
+    private static final long POLL_INTERVAL_MS = 5_000;
+    private static final long IDLE_CLOSE_MS = 30_000;
+    private static final long RETRY_BASE_MS = 30_000;
+    private static final long RETRY_MAX_MS = 60 * 60 * 1000;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.mail.outbox.workers:1}")
+    private int workers;
+
+    @Value("${app.mail.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.rate-per-minute:30}")
+    private int ratePerMinute;
+
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    private final Object signal = new Object();
+    private boolean signalled;
+    private volatile boolean running = true;
+
+    private ExecutorService workerPool;
+    private TokenBucketLimiter sendLimiter;
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void start() {
+        sendLimiter = new TokenBucketLimiter(ratePerMinute, 60, 1);
+        sentCounter = Counter.builder("email.outbox.sent").register(meterRegistry);
+        retriedCounter = Counter.builder("email.outbox.retried").register(meterRegistry);
+        failedCounter = Counter.builder("email.outbox.failed").register(meterRegistry);
+
+        AtomicInteger counter = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::workLoop);
+        }
+    }
+
+    /**
+     * Báo cho worker có email mới, không phải chờ đến chu kỳ quét tiếp theo
+     */
+    public void wakeUp() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void workLoop() {
+        Transport transport = null;
+        long lastUsed = 0;
+        try {
+            while (running) {
+                List<OutboundEmail> batch = claimBatch();
+                if (batch.isEmpty()) {
+                    if (transport != null && System.currentTimeMillis() - lastUsed > IDLE_CLOSE_MS) {
+                        closeQuietly(transport);
+                        transport = null;
+                    }
+                    awaitSignal();
+                    continue;
+                }
+
+                for (int i = 0; i < batch.size(); i++) {
+                    OutboundEmail email = batch.get(i);
+                    if (!running) {
+                        release(email);
+                        continue;
+                    }
+                    if (email.getExpiresAt() != null && email.getExpiresAt().before(new Date())) {
+                        markFailed(email, new IllegalStateException("Email đã hết hạn trước khi gửi được"));
+                        continue;
+                    }
+                    // isConnected gửi NOOP, chỉ kiểm tra khi bắt đầu lô; sau lỗi kết nối được mở lại
+                    if (transport == null || (i == 0 && !transport.isConnected())) {
+                        closeQuietly(transport);
+                        try {
+                            transport = connect();
+                        } catch (MessagingException e) {
+                            transport = null;
+                            logger.warn("Không thể kết nối máy chủ SMTP: {}", e.getMessage());
+                            for (int j = i; j < batch.size(); j++) {
+                                scheduleRetry(batch.get(j), e);
+                            }
+                            break;
+                        }
+                    }
+                    try {
+                        awaitSendPermit();
+                        MimeMessage message = toMimeMessage(email);
+                        transport.sendMessage(message, message.getAllRecipients());
+                        markSent(email);
+                    } catch (AddressException e) {
+                        markFailed(email, e);
+                    } catch (SendFailedException e) {
+                        if (e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0) {
+                            markFailed(email, e);
+                        } else {
+                            scheduleRetry(email, e);
+                        }
+                    } catch (MessagingException | RuntimeException e) {
+                        scheduleRetry(email, e);
+                        if (!transport.isConnected()) {
+                            closeQuietly(transport);
+                            transport = null;
+                        }
+                    }
+                }
+                lastUsed = System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(transport);
+        }
+    }
+
+    /**
+     * Nhận tối đa batchSize email đến hạn, kể cả email bị giữ quá hạn bởi worker đã dừng
+     */
+    private List<OutboundEmail> claimBatch() {
+        List<OutboundEmail> batch = new ArrayList<>();
+        try {
+            while (batch.size() < batchSize) {
+                Date now = new Date();
+                Query query = new Query(new Criteria().orOperator(
+                        Criteria.where("status").is(OutboundEmail.PENDING).and("nextAttemptAt").lte(now),
+                        Criteria.where("status").is(OutboundEmail.SENDING).and("lockedUntil").lt(now)))
+                    .with(Sort.by(Sort.Direction.ASC, "nextAttemptAt"));
+                Update update = new Update()
+                    .set("status", OutboundEmail.SENDING)
+                    .set("lockedUntil", new Date(now.getTime() + LOCK_MS))
+                    .inc("attempts", 1);
+                OutboundEmail email = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), OutboundEmail.class);
+                if (email == null) {
+                    break;
+                }
+                batch.add(email);
+            }
+        } catch (Exception e) {
+            logger.warn("Không thể đọc outbox email", e);
+        }
+        return batch;
+    }
+
+    private Transport connect() throws MessagingException {
+        JavaMailSenderImpl sender = (JavaMailSenderImpl) mailSender;
+        Transport transport = sender.getSession().getTransport(sender.getProtocol());
+        String username = sender.getUsername();
+        String password = sender.getPassword();
+        transport.connect(sender.getHost(), sender.getPort(),
+            username == null || username.isEmpty() ? null : username,
+            password == null || password.isEmpty() ? null : password);
+        return transport;
+    }
+
+    private MimeMessage toMimeMessage(OutboundEmail email) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setTo(email.getTo());
+        helper.setSubject(email.getSubject());
+        helper.setText(email.getBody());
+        helper.setSentDate(new Date());
+        message.saveChanges();
+        return message;
+    }
+
+    private void awaitSendPermit() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = sendLimiter.tryAcquire("smtp", System.nanoTime())) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void awaitSignal() throws InterruptedException {
+        synchronized (signal) {
+            if (!signalled && running) {
+                signal.wait(POLL_INTERVAL_MS);
+            }
+            signalled = false;
+        }
+    }
+
+    private void markSent(OutboundEmail email) {
+        Date now = new Date();
+        complete(email, new Update()
+            .set("status", OutboundEmail.SENT)
+            .set("completedAt", now)
+            .unset("body")
+            .unset("lockedUntil")
+            .unset("lastError"));
+        sentCounter.increment();
+    }
+
+    private void markFailed(OutboundEmail email, Exception error) {
+        logger.warn("Không thể gửi email {} đến {}: {}", email.getId(), email.getTo(), error.getMessage());
+        complete(email, new Update()
+            .set("status", OutboundEmail.FAILED)
+            .set("completedAt", new Date())
+            .set("lastError", String.valueOf(error.getMessage()))
+            .unset("body")
+            .unset("lockedUntil"));
+        failedCounter.increment();
+    }
+
+    /**
+     * Đặt lịch gửi lại với thời gian chờ tăng gấp đôi sau mỗi lần lỗi (kèm nhiễu ±20%)
+     */
+    private void scheduleRetry(OutboundEmail email, Exception error) {
+        if (email.getAttempts() >= maxAttempts) {
+            markFailed(email, error);
+            return;
+        }
+        long delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(email.getAttempts() - 1, 20));
+        delay = (long) (delay * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+        logger.info("Gửi email {} thất bại (lần {}), thử lại sau {} giây: {}",
+            email.getId(), email.getAttempts(), delay / 1000, error.getMessage());
+        complete(email, new Update()
+            .set("status", OutboundEmail.PENDING)
+            .set("nextAttemptAt", new Date(System.currentTimeMillis() + delay))
+            .set("lastError", String.valueOf(error.getMessage()))
+            .unset("lockedUntil"));
+        retriedCounter.increment();
+    }
+
+    /**
+     * Trả email chưa gửi về hàng đợi khi worker dừng, không tính là một lần thử
+     */
+    private void release(OutboundEmail email) {
+        complete(email, new Update()
+            .set("status", OutboundEmail.PENDING)
+            .unset("lockedUntil")
+            .inc("attempts", -1));
+    }
+
+    private void complete(OutboundEmail email, Update update) {
+        try {
+            mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(email.getId()).and("status").is(OutboundEmail.SENDING)),
+                update, OutboundEmail.class);
+        } catch (Exception e) {
+            logger.warn("Không thể cập nhật trạng thái email {}", email.getId(), e);
+        }
+    }
+
+    private void closeQuietly(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            logger.debug("Không thể đóng kết nối SMTP", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        wakeUp();
+        workerPool.shutdown();
+        try {
+            // Chờ lần gửi đang diễn ra hoàn tất, các email còn lại được trả về hàng đợi
+            if (!workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+                workerPool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workerPool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
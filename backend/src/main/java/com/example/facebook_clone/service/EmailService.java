@@ -1,30 +1,68 @@
 package com.example.facebook_clone.service;
 
+import java.util.Date;
+
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Service;
 
+import com.example.facebook_clone.model.OutboundEmail;
+
+/**
+ * Service tạo email. Email được ghi vào outbox (collection email_outbox) và gửi
+ * bất đồng bộ bởi EmailOutboxWorker, nên request không phải chờ SMTP.
+ */
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private EmailOutboxWorker emailOutboxWorker;
+
+    @Value("${app.password-reset.ttl-minutes:30}")
+    private long resetTtlMinutes;
 
     public void sendPasswordResetEmail(String to, String resetToken) {
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject("Đặt lại mật khẩu Facebook Clone");
-        message.setText(
+        // Link chứa token gốc: email không được giữ lại lâu hơn token
+        Date expiresAt = new Date(System.currentTimeMillis() + resetTtlMinutes * 60_000);
+        enqueue(to, "Đặt lại mật khẩu Facebook Clone",
             "Xin chào,\n\n" +
             "Bạn đã yêu cầu đặt lại mật khẩu cho tài khoản Facebook Clone của mình.\n\n" +
             "Để đặt lại mật khẩu, vui lòng nhấp vào liên kết sau:\n" +
             "http://localhost:3000/reset-password?token=" + resetToken + "\n\n" +
             "Nếu bạn không yêu cầu đặt lại mật khẩu, vui lòng bỏ qua email này.\n\n" +
             "Trân trọng,\n" +
-            "Đội ngũ Facebook Clone"
+            "Đội ngũ Facebook Clone",
+            expiresAt
         );
+    }
+
+    /**
+     * Ghi email vào outbox và báo cho worker
+     *
+     * @param to Địa chỉ người nhận
+     * @param subject Tiêu đề
+     * @param body Nội dung dạng text
+     */
+    public void enqueue(String to, String subject, String body) {
+        enqueue(to, subject, body, null);
+    }
 
-        mailSender.send(message);
+    /**
+     * Ghi email vào outbox; sau expiresAt email không được gửi nữa và bị xóa khỏi outbox
+     *
+     * @param to Địa chỉ người nhận
+     * @param subject Tiêu đề
+     * @param body Nội dung dạng text
+     * @param expiresAt Thời điểm nội dung hết hiệu lực, null nếu không hết hạn
+     */
+    public void enqueue(String to, String subject, String body, Date expiresAt) {
+        OutboundEmail email = new OutboundEmail(to, subject, body);
+        email.setExpiresAt(expiresAt);
+        mongoTemplate.insert(email);
+        emailOutboxWorker.wakeUp();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,793 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.Comment;
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.PrivateMessage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Xếp hạng bảng tin trang chủ theo mức độ phù hợp với người xem, nằm hoàn toàn trong bộ nhớ.
+ *
+ * Ứng viên là CANDIDATE_WINDOW bài đăng mới nhất, lưu theo cột (mảng int/long) nên một lần xếp hạng
+ * chỉ là một vòng lặp trên mảng nguyên thủy, giữ top-k bằng heap, không truy vấn Mongo.
+ * Điểm = độ mới (giảm một nửa sau RECENCY_HALF_LIFE_HOURS giờ)
+ *      × (1 + ln(1 + độ thân thiết của người xem với tác giả))
+ *      × (1 + VELOCITY_WEIGHT × ln(1 + lượt tương tác mỗi giờ)).
+ *
+ * Độ thân thiết được cộng dồn khi người xem thích, bình luận bài của tác giả hoặc nhắn tin cho tác giả,
+ * lưu trong một bảng băm int -> float nhỏ cho mỗi người xem (tối đa MAX_AFFINITY_AUTHORS tác giả) và
+ * giảm một nửa sau AFFINITY_HALF_LIFE_DAYS ngày.
+ *
+ * Khi người xem đã lướt hết các bài trong cửa sổ, các trang tiếp theo là bài cũ hơn cửa sổ
+ * đọc từ Mongo theo thời gian đăng (mới nhất trước).
+ *
+ * Thay đổi trên node này được áp dụng ngay; cửa sổ ứng viên được đọc lại từ Mongo mỗi
+ * app.feed.window-refresh-ms và độ thân thiết được dựng lại mỗi app.feed.affinity-rebuild-interval-ms
+ * để nhận thay đổi từ các node khác.
+ *
+ * Metrics: feed.rank.duration, feed.window.posts
+ */
+@Service
+public class FeedRankingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeedRankingService.class);
+
+    // Số bài đăng mới nhất được xét khi xếp hạng
+    public static final int CANDIDATE_WINDOW = 1_000;
+
+    private static final double RECENCY_HALF_LIFE_HOURS = 24;
+    private static final double RECENCY_DECAY = Math.log(2) / RECENCY_HALF_LIFE_HOURS;
+    // Bình luận được tính nặng hơn lượt thích khi đo tốc độ tương tác
+    private static final double COMMENT_ENGAGEMENT = 2;
+    private static final double VELOCITY_WEIGHT = 0.5;
+    // Độ thân thiết với bài của chính mình (ngang khoảng mười lượt thích gần đây)
+    private static final double SELF_AFFINITY = 10;
+
+    private static final double LIKE_AFFINITY = 1;
+    private static final double COMMENT_AFFINITY = 2;
+    private static final double MESSAGE_AFFINITY = 0.5;
+    private static final long AFFINITY_HALF_LIFE_DAYS = 14;
+    private static final double AFFINITY_HALF_LIFE_MS = TimeUnit.DAYS.toMillis(AFFINITY_HALF_LIFE_DAYS);
+    // Khi dựng lại chỉ đọc tương tác trong khoảng này (xa hơn thì trọng số đã giảm còn rất nhỏ)
+    private static final long AFFINITY_LOOKBACK_DAYS = 30;
+    private static final int MAX_AFFINITY_AUTHORS = 256;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.feed.affinity-rebuild-interval-ms:3600000}")
+    private long affinityRebuildIntervalMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Mã số nguyên của người dùng, dùng chung cho cửa sổ ứng viên và độ thân thiết (không bị xóa khi dựng lại)
+    private final Map<String, Integer> userKeys = new ConcurrentHashMap<>();
+    private final AtomicInteger nextUserKey = new AtomicInteger();
+
+    // null cho đến khi đọc xong lần đầu
+    private volatile Window window;
+    private Affinity affinity = new Affinity(System.currentTimeMillis());
+    // Thay đổi xảy ra trong lúc đọc lại, được áp dụng lên bản mới trước khi thay thế bản cũ
+    private List<Consumer<Window>> pendingWindowChanges;
+    private List<Consumer<Affinity>> pendingAffinityChanges;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long nextAffinityRebuildAt;
+
+    private Timer rankTimer;
+
+    @PostConstruct
+    public void init() {
+        rankTimer = Timer.builder("feed.rank.duration").register(meterRegistry);
+        meterRegistry.gauge("feed.window.posts", this, ranking -> {
+            Window current = ranking.window;
+            return current != null ? current.live : 0;
+        });
+    }
+
+    /**
+     * Đọc cửa sổ ứng viên và dựng độ thân thiết trên virtual thread sau khi khởi động
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        startRefresh(true);
+    }
+
+    /**
+     * Lấy một trang bảng tin đã xếp hạng
+     *
+     * @param viewerId ID người xem (thấy bài công khai và bài của chính mình), có thể null
+     * @param page Số trang (từ 0)
+     * @param size Số bài mỗi trang
+     * @return ID bài đăng theo thứ tự, hoặc null nếu chưa sẵn sàng
+     */
+    public List<String> rank(String viewerId, int page, int size) {
+        if (window == null) {
+            return null;
+        }
+        if (size <= 0) {
+            return List.of();
+        }
+        long from = (long) page * size;
+
+        List<String> postIds;
+        int candidates = 0;
+        long oldest = 0;
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            Integer key = viewerId != null ? userKeys.get(viewerId) : null;
+            int viewer = key != null ? key : -1;
+            if (from < CANDIDATE_WINDOW) {
+                AuthorWeights weights = viewer >= 0 ? affinity.byViewer.get(viewer) : null;
+                int k = (int) Math.min(from + size, CANDIDATE_WINDOW);
+                postIds = window.top(viewer, weights, affinity.scaleAt(System.currentTimeMillis()), k, (int) from);
+            } else {
+                postIds = new ArrayList<>();
+            }
+            if (postIds.size() < size) {
+                candidates = window.visibleTo(viewer);
+                oldest = window.oldestCreatedAt();
+            }
+        } finally {
+            lock.readLock().unlock();
+            rankTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        // Trang vượt quá số bài người xem thấy trong cửa sổ: lấy tiếp các bài cũ hơn cửa sổ
+        if (postIds.size() < size) {
+            postIds.addAll(olderPostIds(viewerId, oldest, Math.max(0, from - candidates), size - postIds.size()));
+        }
+        return postIds;
+    }
+
+    /**
+     * Ghi nhận bài đăng vừa được tạo hoặc chia sẻ
+     *
+     * @param post Bài đăng đã lưu
+     */
+    public void postSaved(Post post) {
+        if (post == null || post.getId() == null || post.getUserId() == null) {
+            return;
+        }
+        String postId = post.getId();
+        int author = userKey(post.getUserId());
+        long createdAt = post.getCreatedAt() != null ? post.getCreatedAt().getTime() : System.currentTimeMillis();
+        boolean visible = "PUBLIC".equals(post.getPrivacy());
+        int likes = post.getLikes() != null ? post.getLikes().size() : 0;
+        int comments = post.getComments() != null ? post.getComments().size() : 0;
+        mutateWindow(current -> current.put(postId, author, createdAt, visible, likes, comments));
+    }
+
+    /**
+     * Ghi nhận bài đăng được chỉnh sửa; chỉ cập nhật quyền riêng tư nếu bài đang nằm trong cửa sổ,
+     * bài cũ hơn cửa sổ không được thêm vào (sẽ đẩy bài mới hơn ra ngoài)
+     *
+     * @param post Bài đăng đã lưu
+     */
+    public void postUpdated(Post post) {
+        if (post == null || post.getId() == null) {
+            return;
+        }
+        String postId = post.getId();
+        boolean visible = "PUBLIC".equals(post.getPrivacy());
+        mutateWindow(current -> current.setVisible(postId, visible));
+    }
+
+    /**
+     * Bỏ bài đăng đã bị xóa khỏi bảng tin
+     */
+    public void postDeleted(String postId) {
+        mutateWindow(current -> current.remove(postId));
+    }
+
+    /**
+     * Ghi nhận lượt thích hoặc bỏ thích
+     *
+     * @param post Bài đăng được thích
+     * @param userId Người thích
+     * @param liked true nếu thích, false nếu bỏ thích
+     */
+    public void postLiked(Post post, String userId, boolean liked) {
+        String postId = post.getId();
+        mutateWindow(current -> current.addEngagement(postId, liked ? 1 : -1, 0));
+        recordInteraction(userId, post.getUserId(), liked ? LIKE_AFFINITY : -LIKE_AFFINITY);
+    }
+
+    /**
+     * Ghi nhận bình luận mới
+     *
+     * @param post Bài đăng được bình luận
+     * @param userId Người bình luận
+     * @param topLevel true nếu không phải trả lời một bình luận khác
+     */
+    public void commentAdded(Post post, String userId, boolean topLevel) {
+        String postId = post.getId();
+        if (topLevel) {
+            mutateWindow(current -> current.addEngagement(postId, 0, 1));
+        }
+        recordInteraction(userId, post.getUserId(), COMMENT_AFFINITY);
+    }
+
+    /**
+     * Ghi nhận một bình luận (không phải trả lời) bị xóa
+     */
+    public void commentRemoved(String postId) {
+        mutateWindow(current -> current.addEngagement(postId, 0, -1));
+    }
+
+    /**
+     * Ghi nhận tin nhắn riêng (tăng độ thân thiết của người gửi với người nhận)
+     */
+    public void messageSent(String senderId, String receiverId) {
+        recordInteraction(senderId, receiverId, MESSAGE_AFFINITY);
+    }
+
+    /**
+     * Đọc lại cửa sổ ứng viên; dựng lại độ thân thiết khi đến hạn (hoặc khi lần dựng trước bị lỗi)
+     */
+    @Scheduled(fixedDelayString = "${app.feed.window-refresh-ms:30000}", initialDelay = 30_000)
+    public void maintain() {
+        startRefresh(System.currentTimeMillis() >= nextAffinityRebuildAt);
+    }
+
+    /**
+     * Đọc ID các bài người xem được thấy và đăng trước cửa sổ ứng viên, mới nhất trước
+     *
+     * @param olderThan Thời điểm đăng của bài cũ nhất trong cửa sổ (epoch millis)
+     */
+    private List<String> olderPostIds(String viewerId, long olderThan, long skip, int limit) {
+        Criteria visible = viewerId != null
+            ? new Criteria().orOperator(Criteria.where("privacy").is("PUBLIC"), Criteria.where("userId").is(viewerId))
+            : Criteria.where("privacy").is("PUBLIC");
+        Query query = new Query(new Criteria().andOperator(Criteria.where("createdAt").lt(new Date(olderThan)), visible))
+            .with(Sort.by(Sort.Direction.DESC, "createdAt"))
+            .skip(skip)
+            .limit(limit);
+        query.fields().include("_id");
+        List<String> postIds = new ArrayList<>();
+        for (Post post : mongoTemplate.find(query, Post.class)) {
+            postIds.add(post.getId());
+        }
+        return postIds;
+    }
+
+    private void recordInteraction(String userId, String authorId, double weight) {
+        if (userId == null || authorId == null || userId.equals(authorId)) {
+            return;
+        }
+        int viewer = userKey(userId);
+        int author = userKey(authorId);
+        long at = System.currentTimeMillis();
+        mutateAffinity(current -> current.add(viewer, author, weight, at));
+    }
+
+    private int userKey(String userId) {
+        return userKeys.computeIfAbsent(userId, id -> nextUserKey.getAndIncrement());
+    }
+
+    private void mutateWindow(Consumer<Window> change) {
+        lock.writeLock().lock();
+        try {
+            if (window != null) {
+                change.accept(window);
+            }
+            if (pendingWindowChanges != null) {
+                pendingWindowChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void mutateAffinity(Consumer<Affinity> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(affinity);
+            if (pendingAffinityChanges != null) {
+                pendingAffinityChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void startRefresh(boolean withAffinity) {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        if (withAffinity) {
+            nextAffinityRebuildAt = Long.MAX_VALUE;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                refresh(withAffinity);
+                if (withAffinity) {
+                    nextAffinityRebuildAt = System.currentTimeMillis() + affinityRebuildIntervalMs;
+                }
+            } catch (Exception e) {
+                // Thử lại ở lần bảo trì sau (ví dụ Mongo chưa sẵn sàng); bản cũ (nếu có) vẫn được dùng
+                logger.warn("Không thể đọc dữ liệu xếp hạng bảng tin, sẽ thử lại", e);
+                lock.writeLock().lock();
+                try {
+                    pendingWindowChanges = null;
+                    pendingAffinityChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (withAffinity) {
+                    nextAffinityRebuildAt = 0;
+                }
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Đọc cửa sổ ứng viên (và dựng độ thân thiết nếu cần) mà không chặn xếp hạng, rồi thay thế bản cũ
+     */
+    private void refresh(boolean withAffinity) {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pendingWindowChanges = new ArrayList<>();
+            if (withAffinity) {
+                pendingAffinityChanges = new ArrayList<>();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Window loaded = loadWindow();
+        Affinity built = withAffinity ? buildAffinity() : null;
+
+        lock.writeLock().lock();
+        try {
+            for (Consumer<Window> change : pendingWindowChanges) {
+                change.accept(loaded);
+            }
+            pendingWindowChanges = null;
+            window = loaded;
+            if (built != null) {
+                for (Consumer<Affinity> change : pendingAffinityChanges) {
+                    change.accept(built);
+                }
+                pendingAffinityChanges = null;
+                affinity = built;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (built != null) {
+            logger.info("Đã dựng dữ liệu xếp hạng bảng tin ({} bài đăng, {} người xem) trong {} ms", loaded.live,
+                built.byViewer.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Đọc các bài đăng mới nhất; lượt thích và bình luận chỉ được đếm trong Mongo ($size)
+     */
+    private Window loadWindow() {
+        Document project = new Document("$project", new Document()
+            .append("userId", 1)
+            .append("createdAt", 1)
+            .append("privacy", 1)
+            .append("likes", new Document("$size", new Document("$ifNull", List.of("$likes", List.of()))))
+            .append("comments", new Document("$size", new Document("$ifNull", List.of("$comments", List.of())))));
+        List<Document> newest = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Post.class))
+            .aggregate(List.of(new Document("$sort", new Document("createdAt", -1)),
+                new Document("$limit", CANDIDATE_WINDOW), project))
+            .into(new ArrayList<>());
+
+        // Ghi từ cũ đến mới để vòng tròn ghi đè bài cũ nhất trước
+        Window loaded = new Window(CANDIDATE_WINDOW);
+        for (int i = newest.size() - 1; i >= 0; i--) {
+            Document post = newest.get(i);
+            String userId = post.getString("userId");
+            if (userId == null) {
+                continue;
+            }
+            Date createdAt = post.getDate("createdAt");
+            loaded.put(String.valueOf(post.get("_id")), userKey(userId), createdAt != null ? createdAt.getTime() : 0,
+                "PUBLIC".equals(post.getString("privacy")), post.getInteger("likes", 0), post.getInteger("comments", 0));
+        }
+        return loaded;
+    }
+
+    /**
+     * Dựng độ thân thiết từ lượt thích, bình luận và tin nhắn trong AFFINITY_LOOKBACK_DAYS ngày gần nhất.
+     * Lượt thích không lưu thời điểm nên được tính theo thời điểm đăng bài.
+     */
+    private Affinity buildAffinity() {
+        long now = System.currentTimeMillis();
+        Date since = new Date(now - TimeUnit.DAYS.toMillis(AFFINITY_LOOKBACK_DAYS));
+        Affinity built = new Affinity(now);
+
+        Query posts = new Query(Criteria.where("createdAt").gte(since));
+        posts.fields().include("userId").include("createdAt").include("likes").include("comments");
+        try (Stream<Post> stream = mongoTemplate.stream(posts.cursorBatchSize(500), Post.class)) {
+            stream.forEach(post -> {
+                if (post.getUserId() == null) {
+                    return;
+                }
+                int author = userKey(post.getUserId());
+                long postedAt = post.getCreatedAt() != null ? post.getCreatedAt().getTime() : now;
+                if (post.getLikes() != null) {
+                    for (String liker : post.getLikes()) {
+                        built.add(userKey(liker), author, LIKE_AFFINITY, postedAt);
+                    }
+                }
+                addComments(built, post.getComments(), author, postedAt);
+            });
+        }
+
+        Query messages = new Query(Criteria.where("timestamp").gte(since));
+        messages.fields().include("senderId").include("receiverId").include("timestamp");
+        try (Stream<PrivateMessage> stream = mongoTemplate.stream(messages.cursorBatchSize(1000), PrivateMessage.class)) {
+            stream.forEach(message -> {
+                if (message.getSenderId() != null && message.getReceiverId() != null) {
+                    built.add(userKey(message.getSenderId()), userKey(message.getReceiverId()), MESSAGE_AFFINITY,
+                        message.getTimestamp() != null ? message.getTimestamp().getTime() : now);
+                }
+            });
+        }
+        return built;
+    }
+
+    private void addComments(Affinity built, List<Comment> comments, int author, long postedAt) {
+        if (comments == null) {
+            return;
+        }
+        for (Comment comment : comments) {
+            if (comment.getUserId() != null) {
+                built.add(userKey(comment.getUserId()), author, COMMENT_AFFINITY,
+                    comment.getCreatedAt() != null ? comment.getCreatedAt().getTime() : postedAt);
+            }
+            addComments(built, comment.getReplies(), author, postedAt);
+        }
+    }
+
+    /**
+     * Cửa sổ ứng viên dạng cột, ghi vòng tròn: khi đầy, bài mới ghi đè bài cũ nhất
+     */
+    static final class Window {
+        final String[] postIds;
+        final int[] authors;
+        final long[] createdAt;
+        final boolean[] visible;
+        final int[] likes;
+        final int[] comments;
+        final Map<String, Integer> slots = new HashMap<>();
+        int next;
+        int live;
+
+        Window(int capacity) {
+            postIds = new String[capacity];
+            authors = new int[capacity];
+            createdAt = new long[capacity];
+            visible = new boolean[capacity];
+            likes = new int[capacity];
+            comments = new int[capacity];
+        }
+
+        void put(String postId, int author, long postedAt, boolean isPublic, int likeCount, int commentCount) {
+            Integer existing = slots.get(postId);
+            if (existing != null) {
+                // Bài đã có: chỉ quyền riêng tư có thể thay đổi, lượt tương tác giữ theo bộ đếm hiện tại
+                visible[existing] = isPublic;
+                return;
+            }
+            int slot = next;
+            next = (next + 1) % postIds.length;
+            if (postIds[slot] != null) {
+                slots.remove(postIds[slot]);
+            } else {
+                live++;
+            }
+            postIds[slot] = postId;
+            authors[slot] = author;
+            createdAt[slot] = postedAt;
+            visible[slot] = isPublic;
+            likes[slot] = likeCount;
+            comments[slot] = commentCount;
+            slots.put(postId, slot);
+        }
+
+        void setVisible(String postId, boolean isPublic) {
+            Integer slot = slots.get(postId);
+            if (slot != null) {
+                visible[slot] = isPublic;
+            }
+        }
+
+        int visibleTo(int viewer) {
+            int count = 0;
+            for (int i = 0; i < postIds.length; i++) {
+                if (postIds[i] != null && (visible[i] || authors[i] == viewer)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * @return Thời điểm đăng sớm nhất trong cửa sổ, Long.MAX_VALUE nếu cửa sổ trống
+         */
+        long oldestCreatedAt() {
+            long oldest = Long.MAX_VALUE;
+            for (int i = 0; i < postIds.length; i++) {
+                if (postIds[i] != null) {
+                    oldest = Math.min(oldest, createdAt[i]);
+                }
+            }
+            return oldest;
+        }
+
+        void remove(String postId) {
+            Integer slot = slots.remove(postId);
+            if (slot != null) {
+                postIds[slot] = null;
+                live--;
+            }
+        }
+
+        void addEngagement(String postId, int likeDelta, int commentDelta) {
+            Integer slot = slots.get(postId);
+            if (slot != null) {
+                likes[slot] = Math.max(0, likes[slot] + likeDelta);
+                comments[slot] = Math.max(0, comments[slot] + commentDelta);
+            }
+        }
+
+        /**
+         * Chấm điểm mọi bài người xem được thấy, giữ k bài điểm cao nhất bằng min-heap
+         *
+         * @return ID bài đăng từ vị trí from đến k, điểm giảm dần
+         */
+        List<String> top(int viewer, AuthorWeights weights, double affinityScale, int k, int from) {
+            long now = System.currentTimeMillis();
+            double[] heapScores = new double[k];
+            int[] heapSlots = new int[k];
+            int heapSize = 0;
+
+            for (int i = 0; i < postIds.length; i++) {
+                if (postIds[i] == null) {
+                    continue;
+                }
+                int author = authors[i];
+                if (!visible[i] && author != viewer) {
+                    continue;
+                }
+                double ageHours = Math.max(0, now - createdAt[i]) / 3_600_000.0;
+                double affinity = author == viewer ? SELF_AFFINITY
+                    : weights != null ? weights.get(author) * affinityScale : 0;
+                double velocity = (likes[i] + COMMENT_ENGAGEMENT * comments[i]) / (ageHours + 2);
+                double score = Math.exp(-RECENCY_DECAY * ageHours) * (1 + Math.log1p(affinity))
+                    * (1 + VELOCITY_WEIGHT * Math.log1p(velocity));
+
+                if (heapSize < k) {
+                    heapScores[heapSize] = score;
+                    heapSlots[heapSize] = i;
+                    siftUp(heapScores, heapSlots, heapSize++);
+                } else if (score > heapScores[0]) {
+                    heapScores[0] = score;
+                    heapSlots[0] = i;
+                    siftDown(heapScores, heapSlots, heapSize);
+                }
+            }
+
+            // Lấy dần phần tử nhỏ nhất ra cuối mảng để được thứ tự giảm dần
+            for (int end = heapSize - 1; end > 0; end--) {
+                swap(heapScores, heapSlots, 0, end);
+                siftDown(heapScores, heapSlots, end);
+            }
+            List<String> page = new ArrayList<>(Math.max(0, heapSize - from));
+            for (int i = from; i < heapSize; i++) {
+                page.add(postIds[heapSlots[i]]);
+            }
+            return page;
+        }
+
+        private static void siftUp(double[] scores, int[] slots, int index) {
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[parent] <= scores[index]) {
+                    return;
+                }
+                swap(scores, slots, parent, index);
+                index = parent;
+            }
+        }
+
+        private static void siftDown(double[] scores, int[] slots, int size) {
+            int index = 0;
+            while (true) {
+                int smallest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(scores, slots, smallest, index);
+                index = smallest;
+            }
+        }
+
+        private static void swap(double[] scores, int[] slots, int a, int b) {
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+            int slot = slots[a];
+            slots[a] = slots[b];
+            slots[b] = slot;
+        }
+    }
+
+    /**
+     * Độ thân thiết của mọi người xem. Trọng số được lưu đã nhân 2^((t - epoch) / nửa đời), nên khi đọc
+     * chỉ cần nhân cùng một hệ số 2^(-(now - epoch) / nửa đời) thay vì giảm từng mục theo thời gian.
+     */
+    static final class Affinity {
+        final long epoch;
+        final Map<Integer, AuthorWeights> byViewer = new HashMap<>();
+
+        Affinity(long epoch) {
+            this.epoch = epoch;
+        }
+
+        void add(int viewer, int author, double weight, long at) {
+            if (viewer == author) {
+                return;
+            }
+            float scaled = (float) (weight * Math.pow(2, (at - epoch) / AFFINITY_HALF_LIFE_MS));
+            AuthorWeights weights = byViewer.get(viewer);
+            if (weights == null) {
+                if (scaled <= 0) {
+                    return;
+                }
+                weights = new AuthorWeights();
+                byViewer.put(viewer, weights);
+            }
+            weights.add(author, scaled);
+        }
+
+        double scaleAt(long now) {
+            return Math.pow(2, -(now - epoch) / AFFINITY_HALF_LIFE_MS);
+        }
+    }
+
+    /**
+     * Bảng băm địa chỉ mở int -> float của một người xem (tối đa 2 × MAX_AFFINITY_AUTHORS ô)
+     */
+    static final class AuthorWeights {
+        // Khóa lưu author + 1 để 0 nghĩa là ô trống
+        private int[] keys = new int[8];
+        private float[] weights = new float[8];
+        private int size;
+
+        float get(int author) {
+            int key = author + 1;
+            int mask = keys.length - 1;
+            for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return weights[i];
+                }
+                if (keys[i] == 0) {
+                    return 0;
+                }
+            }
+        }
+
+        void add(int author, float weight) {
+            int key = author + 1;
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    weights[i] = Math.max(0, weights[i] + weight);
+                    return;
+                }
+            }
+            if (weight <= 0) {
+                return;
+            }
+            if (size >= MAX_AFFINITY_AUTHORS) {
+                evictWeakest();
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            insert(key, weight);
+        }
+
+        /**
+         * Bỏ một phần tư số tác giả có trọng số thấp nhất. Trọng số không âm nên bit của float tăng
+         * cùng chiều với giá trị; ghép (trọng số, khóa) vào một long rồi sắp xếp mảng nguyên thủy.
+         */
+        private void evictWeakest() {
+            long[] entries = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    entries[n++] = ((long) Float.floatToIntBits(weights[i]) << 32) | (keys[i] & 0xFFFFFFFFL);
+                }
+            }
+            Arrays.sort(entries);
+            Arrays.fill(keys, 0);
+            size = 0;
+            for (int i = entries.length / 4; i < entries.length; i++) {
+                insert((int) entries[i], Float.intBitsToFloat((int) (entries[i] >>> 32)));
+            }
+        }
+
+        private void rehash(int capacity) {
+            int[] oldKeys = keys;
+            float[] oldWeights = weights;
+            keys = new int[capacity];
+            weights = new float[capacity];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    insert(oldKeys[i], oldWeights[i]);
+                }
+            }
+        }
+
+        private void insert(int key, float weight) {
+            int mask = keys.length - 1;
+            int i = mix(key) & mask;
+            while (keys[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            weights[i] = weight;
+            size++;
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
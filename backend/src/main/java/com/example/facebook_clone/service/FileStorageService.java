@@ -1,22 +1,81 @@
 package com.example.facebook_clone.service;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.example.facebook_clone.model.MediaBlob;
+
 /**
- * Service xử lý lưu trữ file
+ * Service xử lý lưu trữ file.
+ *
+ * File được lưu theo nội dung: tên file là SHA-256 của nội dung, nên cùng một file tải lên
+ * nhiều lần chỉ chiếm một bản trên đĩa và URL không bao giờ đổi nội dung. Số tham chiếu
+ * của mỗi file được lưu trong collection media_blobs; file bị xóa khi không còn tham chiếu.
+ *
+ * Trên đĩa, file được chia vào hai tầng thư mục theo 4 ký tự hex đầu của hash
+ * (uploads/ab/cd/abcd....jpg) để mỗi thư mục chỉ chứa ít file; URL vẫn là /uploads/&lt;tên file&gt;.
  */
 @Service
 public class FileStorageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageService.class);
+
+    public static final String URL_PREFIX = "/uploads/";
+
+    private static final int DIGEST_BUFFER_SIZE = 1024 * 1024;
+
+    // Khóa theo hash: tăng/giảm tham chiếu và ghi/xóa file của cùng một nội dung không chen nhau.
+    // Dùng ReentrantLock thay vì synchronized để virtual thread không giữ chặt carrier thread khi chờ Mongo
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MediaCacheService mediaCacheService;
+
     private final Path fileStorageLocation;
+    private final Path tempLocation;
+    private final Path partialLocation;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
 
     /**
      * Khởi tạo service và tạo thư mục lưu trữ
@@ -24,44 +83,443 @@ public class FileStorageService {
     public FileStorageService() {
         this.fileStorageLocation = Paths.get("uploads")
                 .toAbsolutePath().normalize();
+        // Thư mục tạm nằm cùng ổ đĩa để có thể move nguyên tử
+        this.tempLocation = this.fileStorageLocation.resolve(".tmp");
+        this.partialLocation = this.fileStorageLocation.resolve(".partial");
 
         try {
             Files.createDirectories(this.fileStorageLocation);
+            Files.createDirectories(this.tempLocation);
+            Files.createDirectories(this.partialLocation);
+            cleanTempFiles();
         } catch (IOException ex) {
             throw new RuntimeException("Không thể tạo thư mục để lưu trữ file tải lên.", ex);
         } catch (SecurityException ex) {
             throw new RuntimeException("Không có quyền tạo thư mục để lưu trữ file tải lên.", ex);
         }
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     /**
-     * Lưu trữ file tải lên
+     * Lưu trữ file tải lên và tăng số tham chiếu của file
      *
      * @param file File cần lưu trữ
-     * @return Tên file đã lưu
+     * @return Tên file đã lưu (dạng &lt;sha256&gt;.&lt;phần mở rộng&gt;, URL là URL_PREFIX + tên file)
      */
     public String storeFile(MultipartFile file) {
+        Path tempFile = tempLocation.resolve("upload-" + UUID.randomUUID() + ".part");
         try {
-            String originalFilename = file.getOriginalFilename();
-            if (originalFilename == null) {
-                originalFilename = "unknown_file";
+            // transferTo(File) đi qua Part.write: Tomcat đổi tên file multipart sang tempFile nếu cùng ổ đĩa,
+            // nếu không thì Tomcat tự copy. transferTo(Path) luôn copy qua buffer trên heap nên không dùng
+            file.transferTo(tempFile.toFile());
+            return commit(tempFile, digest(tempFile), file.getOriginalFilename(), file.getContentType());
+        } catch (IOException ex) {
+            throw new RuntimeException("Không thể lưu trữ file. Vui lòng thử lại!", ex);
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Lưu nhiều file tải lên song song, mỗi file trên một virtual thread (copy, tính hash, chuyển vào kho).
+     * Nếu một file lỗi, các file còn lại bị hủy và những file đã lưu được bỏ tham chiếu trước khi ném lỗi,
+     * nên không có file nào bị giữ lại nửa chừng.
+     *
+     * @param files Danh sách file
+     * @return Tên file đã lưu, cùng thứ tự với danh sách vào
+     */
+    public List<String> storeFiles(List<MultipartFile> files) {
+        if (files.size() <= 1) {
+            return files.isEmpty() ? List.of() : List.of(storeFile(files.get(0)));
+        }
+
+        // Không hủy bằng interrupt: tác vụ đang chạy có thể đã tăng tham chiếu, nên để chạy xong rồi bỏ tham chiếu
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<String>> futures = new ArrayList<>(files.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> {
+                    if (failed.get()) {
+                        return null; // Một file khác đã lỗi: bỏ qua file chưa bắt đầu
+                    }
+                    try {
+                        return storeFile(file);
+                    } catch (RuntimeException ex) {
+                        failed.set(true);
+                        throw ex;
+                    }
+                }));
             }
-            String fileName = StringUtils.cleanPath(originalFilename);
+        } // close() chờ mọi tác vụ kết thúc
 
-            // Đảm bảo tên file an toàn và duy nhất
-            // Thay thế khoảng trắng bằng gạch dưới và loại bỏ ký tự đặc biệt
-            fileName = fileName.replaceAll("\\s+", "_").replaceAll("[^a-zA-Z0-9._-]", "");
+        List<String> stored = new ArrayList<>(files.size());
+        RuntimeException failure = null;
+        for (Future<String> future : futures) {
+            if (future.state() == Future.State.SUCCESS) {
+                if (future.resultNow() != null) {
+                    stored.add(future.resultNow());
+                }
+            } else if (failure == null) {
+                Throwable cause = future.exceptionNow();
+                failure = cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+            }
+        }
+        if (failure != null) {
+            stored.forEach(this::releaseFile);
+            throw failure;
+        }
+        return stored;
+    }
 
-            // Thêm timestamp để đảm bảo tính duy nhất
-            long timestamp = System.currentTimeMillis();
-            String newFileName = timestamp + "_" + fileName;
+    /**
+     * Lưu file đã được ghép từ các phần tải lên (ChunkedUploadService) sau khi kiểm tra checksum
+     *
+     * @param file File tạm đã ghép đủ
+     * @param originalFilename Tên file gốc (lấy phần mở rộng)
+     * @param contentType Loại nội dung
+     * @param expectedSha256 SHA-256 (hex) client gửi lên
+     * @return Tên file đã lưu
+     * @throws IllegalArgumentException nếu checksum không khớp
+     */
+    public String storeAssembledFile(Path file, String originalFilename, String contentType,
+                                     String expectedSha256) throws IOException {
+        String hash = digest(file);
+        if (!hash.equalsIgnoreCase(expectedSha256)) {
+            throw new IllegalArgumentException("Checksum không khớp với nội dung đã tải lên");
+        }
+        return commit(file, hash, originalFilename, contentType);
+    }
 
-            Path targetLocation = this.fileStorageLocation.resolve(newFileName);
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Đường dẫn file tạm của một phiên tải lên theo phần; không bị dọn khi khởi động để có thể tải tiếp
+     *
+     * @param uploadId ID phiên tải lên
+     */
+    public Path partialUploadPath(String uploadId) {
+        return partialLocation.resolve(uploadId + ".part");
+    }
 
-            return newFileName;
+    /**
+     * Tăng tham chiếu và chuyển file tạm vào vị trí theo hash (bỏ file tạm nếu đã có cùng nội dung)
+     */
+    private String commit(Path tempFile, String hash, String originalFilename, String contentType) throws IOException {
+        long size = Files.size(tempFile);
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            MediaBlob blob = acquire(hash, hash + extensionOf(originalFilename), contentType, size);
+            try {
+                Path target = locate(blob.getFileName());
+                if (Files.exists(target)) {
+                    Files.delete(tempFile); // Đã có cùng nội dung
+                } else {
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(tempFile, target);
+                }
+            } catch (IOException ex) {
+                decrement(hash);
+                throw ex;
+            }
+            return blob.getFileName();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tìm file trên đĩa theo tên file trong URL
+     *
+     * @param fileName Tên file (phần sau /uploads/)
+     * @return Đường dẫn file, hoặc null nếu tên không hợp lệ hoặc file không tồn tại
+     */
+    public Path resolveFile(String fileName) {
+        if (fileName == null || fileName.isEmpty() || fileName.startsWith(".")
+                || fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+            return null;
+        }
+        Path sharded = locate(fileName);
+        if (Files.isRegularFile(sharded)) {
+            return sharded;
+        }
+        // File cũ chưa được chuyển sang thư mục phân tầng (hoặc vừa được chuyển xong)
+        Path flat = fileStorageLocation.resolve(fileName);
+        if (Files.isRegularFile(flat)) {
+            return flat;
+        }
+        return Files.isRegularFile(sharded) ? sharded : null;
+    }
+
+    /**
+     * Bỏ một tham chiếu đến file; file bị xóa khi không còn tham chiếu.
+     * URL không thuộc kho lưu theo nội dung (file cũ dạng timestamp_tên) được bỏ qua.
+     *
+     * @param url URL (/uploads/...) hoặc tên file
+     */
+    public void releaseFile(String url) {
+        String hash = hashOf(url);
+        if (hash == null) {
+            return;
+        }
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            MediaBlob blob = decrement(hash);
+            if (blob != null && blob.getRefCount() <= 0) {
+                mongoTemplate.remove(new Query(Criteria.where("_id").is(hash).and("refCount").lte(0)), MediaBlob.class);
+                Files.deleteIfExists(locate(blob.getFileName()));
+                mediaCacheService.evict(blob.getFileName());
+                if (blob.getVariants() != null) {
+                    for (String derivative : blob.getVariants().getSizes().values()) {
+                        String derivativeName = derivative.substring(URL_PREFIX.length());
+                        Files.deleteIfExists(locate(derivativeName));
+                        mediaCacheService.evict(derivativeName);
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            logger.warn("Không thể giải phóng file {}", url, ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Liệt kê mọi file trong kho (thư mục phân tầng và file cũ ở thư mục gốc), bỏ qua thư mục tạm.
+     * Người gọi phải đóng stream.
+     */
+    public Stream<Path> listStoredFiles() throws IOException {
+        return Files.walk(fileStorageLocation, 3)
+            .filter(path -> !path.startsWith(tempLocation) && !path.startsWith(partialLocation))
+            .filter(Files::isRegularFile);
+    }
+
+    /**
+     * Xóa file không còn được tham chiếu (dùng bởi MediaGarbageCollector).
+     * Với file lưu theo nội dung, kiểm tra lại dưới khóa của hash rằng không có lần tải lên nào
+     * vừa dùng lại nội dung này sau thời điểm cutoff, để không xóa file mà storeFile vừa nhận.
+     *
+     * @param file File cần xóa
+     * @param cutoff File/blob được dùng sau thời điểm này thì giữ lại
+     * @return Số byte đã giải phóng, -1 nếu giữ lại file
+     */
+    public long deleteOrphan(Path file, Date cutoff) throws IOException {
+        String fileName = file.getFileName().toString();
+        String hash = hashOf(fileName);
+        if (hash == null) {
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            mediaCacheService.evict(fileName);
+            return size;
+        }
+
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            MediaBlob blob = mongoTemplate.findById(hash, MediaBlob.class);
+            if (blob != null) {
+                Date lastUsed = blob.getLastAcquiredAt() != null ? blob.getLastAcquiredAt() : blob.getCreatedAt();
+                if (lastUsed != null && lastUsed.after(cutoff)) {
+                    return -1;
+                }
+                // Chỉ bỏ blob khi xóa chính file gốc; ảnh thu nhỏ thì file gốc sẽ được xét riêng
+                if (fileName.equals(blob.getFileName())) {
+                    mongoTemplate.remove(new Query(Criteria.where("_id").is(hash)), MediaBlob.class);
+                }
+            }
+            long size = Files.size(file);
+            Files.deleteIfExists(file);
+            mediaCacheService.evict(fileName);
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Lưu ảnh thu nhỏ sinh ra từ một file gốc (cùng thư mục phân tầng với file gốc)
+     *
+     * @param fileName Tên file ảnh thu nhỏ (&lt;hash&gt;_w&lt;rộng&gt;.&lt;ext&gt;)
+     * @param content Nội dung đã mã hóa
+     * @return URL của ảnh thu nhỏ
+     */
+    public String storeDerivative(String fileName, byte[] content) throws IOException {
+        Path tempFile = tempLocation.resolve("derivative-" + UUID.randomUUID() + ".part");
+        try {
+            Files.write(tempFile, content);
+            Path target = locate(fileName);
+            Files.createDirectories(target.getParent());
+            moveAtomically(tempFile, target);
+            return URL_PREFIX + fileName;
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Bỏ tham chiếu đến nhiều file
+     *
+     * @param urls Danh sách URL, có thể null
+     */
+    public void releaseFiles(Collection<String> urls) {
+        if (urls != null) {
+            urls.forEach(this::releaseFile);
+        }
+    }
+
+    /**
+     * Chuyển các file cũ nằm trực tiếp trong uploads/ vào thư mục phân tầng.
+     * Chạy nền sau khi khởi động; trong lúc chuyển, resolveFile vẫn tìm được file ở vị trí cũ.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateFlatFiles() {
+        Thread.startVirtualThread(() -> {
+            int moved = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileStorageLocation, Files::isRegularFile)) {
+                for (Path path : stream) {
+                    String fileName = path.getFileName().toString();
+                    if (fileName.startsWith(".")) {
+                        continue;
+                    }
+                    Path target = locate(fileName);
+                    Files.createDirectories(target.getParent());
+                    moveAtomically(path, target);
+                    moved++;
+                }
+            } catch (IOException ex) {
+                logger.warn("Không thể chuyển file trong uploads sang thư mục phân tầng", ex);
+            }
+            if (moved > 0) {
+                logger.info("Đã chuyển {} file sang thư mục phân tầng", moved);
+            }
+        });
+    }
+
+    /**
+     * Vị trí phân tầng của file: hai tầng thư mục theo hash nội dung, hoặc theo SHA-256 của tên với file cũ
+     */
+    private Path locate(String fileName) {
+        String key = hashOf(fileName);
+        if (key == null) {
+            key = sha256Hex(fileName);
+        }
+        return fileStorageLocation.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(fileName);
+    }
+
+    /**
+     * Tính SHA-256 của file bằng FileChannel và buffer direct (không copy vào mảng trên heap)
+     */
+    private static String digest(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(DIGEST_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String sha256Hex(String value) {
+        return HexFormat.of().formatHex(newSha256().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private MediaBlob acquire(String hash, String fileName, String contentType, long size) {
+        Update update = new Update()
+            .inc("refCount", 1)
+            .set("lastAcquiredAt", new Date())
+            .setOnInsert("fileName", fileName)
+            .setOnInsert("contentType", contentType)
+            .setOnInsert("size", size)
+            .setOnInsert("createdAt", new Date());
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(hash)), update,
+            FindAndModifyOptions.options().upsert(true).returnNew(true), MediaBlob.class);
+    }
+
+    private MediaBlob decrement(String hash) {
+        return mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(hash)),
+            new Update().inc("refCount", -1), FindAndModifyOptions.options().returnNew(true), MediaBlob.class);
+    }
+
+    private void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    /**
+     * Lấy hash từ URL hoặc tên file, null nếu không phải file lưu theo nội dung
+     */
+    public static String hashOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        String name = url.startsWith(URL_PREFIX) ? url.substring(URL_PREFIX.length()) : url;
+        // Tên file gốc: <hash>.<ext>; ảnh thu nhỏ: <hash>_w<rộng>.<ext>
+        if (name.length() < 64 || (name.length() > 64 && name.charAt(64) != '.' && name.charAt(64) != '_')) {
+            return null;
+        }
+        String hash = name.substring(0, 64);
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0) {
+                return null;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Phần mở rộng đã làm sạch từ tên file gốc (vd. ".jpg"), rỗng nếu không có
+     */
+    private static String extensionOf(String originalFilename) {
+        String extension = StringUtils.getFilenameExtension(originalFilename);
+        if (extension == null) {
+            return "";
+        }
+        extension = extension.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+        if (extension.isEmpty() || extension.length() > 8) {
+            return "";
+        }
+        return "." + extension;
+    }
+
+    /**
+     * Xóa file tạm còn sót lại từ lần chạy trước
+     */
+    private void cleanTempFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(tempLocation)) {
+            for (Path path : stream) {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
         } catch (IOException ex) {
-            throw new RuntimeException("Không thể lưu trữ file. Vui lòng thử lại!", ex);
+            // File tạm sẽ được dọn ở lần khởi động sau
         }
     }
 }
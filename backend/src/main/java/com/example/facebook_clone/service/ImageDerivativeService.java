@@ -0,0 +1,576 @@
+package com.example.facebook_clone.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ImageVariants;
+import com.example.facebook_clone.model.MediaBlob;
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service tạo ảnh thu nhỏ (các kích thước cho feed/avatar và ảnh placeholder rất nhỏ)
+ * sau khi ảnh được tải lên.
+ *
+ * Việc xử lý chạy trên pool riêng có số luồng và hàng đợi giới hạn; khi pool đầy ảnh được
+ * bỏ qua (client vẫn dùng ảnh gốc). Kết quả lưu trên MediaBlob nên ảnh trùng nội dung chỉ
+ * xử lý một lần, rồi được ghi vào Post.imageVariants hoặc User.avatarVariants/coverPhotoVariants.
+ * Client chọn kích thước bằng /uploads/{tên file}?w={chiều rộng}.
+ *
+ * Metrics: media.derivatives.duration (thời gian xử lý mỗi ảnh, dùng để ước lượng thông lượng mỗi luồng).
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private static final int PLACEHOLDER_WIDTH = 16;
+    private static final float JPEG_QUALITY = 0.82f;
+    private static final float PLACEHOLDER_QUALITY = 0.5f;
+
+    // Ảnh quá lớn (tính theo số điểm ảnh) không được giải mã để tránh hết bộ nhớ
+    private static final long MAX_PIXELS = 50_000_000L;
+
+    private static final int QUEUE_CAPACITY = 256;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.media.derivative-widths:160,480,1080}")
+    private int[] widths;
+
+    @Value("${app.media.derivative-threads:0}")
+    private int threads;
+
+    private ThreadPoolExecutor executor;
+    private Timer processingTimer;
+
+    // Ảnh đang được xử lý, tránh xử lý trùng khi cùng nội dung được tải lên đồng thời
+    private final ConcurrentHashMap<String, CompletableFuture<ImageVariants>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Arrays.sort(widths);
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "image-derivatives-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        processingTimer = Timer.builder("media.derivatives.duration").register(meterRegistry);
+        ImageIO.setUseCache(false);
+    }
+
+    /**
+     * Chọn tên file ảnh thu nhỏ phù hợp nhất cho chiều rộng yêu cầu
+     *
+     * @param fileName Tên file gốc
+     * @param requestedWidth Chiều rộng client cần
+     * @return Các tên file ứng viên theo thứ tự ưu tiên (nhỏ nhất mà vẫn đủ rộng trước)
+     */
+    public List<String> candidateNames(String fileName, int requestedWidth) {
+        List<String> names = new ArrayList<>();
+        if (FileStorageService.hashOf(fileName) == null || !isResizable(fileName)) {
+            return names;
+        }
+        for (int width : widths) {
+            if (width >= requestedWidth) {
+                names.add(derivativeName(fileName, width));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Tạo ảnh thu nhỏ cho các ảnh của bài đăng rồi ghi vào Post.imageVariants
+     *
+     * @param postId ID bài đăng
+     * @param imageUrls URL các ảnh mới tải lên
+     */
+    public void generateForPost(String postId, List<String> imageUrls) {
+        if (imageUrls == null) {
+            return;
+        }
+        for (String url : imageUrls) {
+            generate(url).thenAccept(variants -> {
+                if (variants == null) {
+                    return;
+                }
+                // Chỉ thêm khi ảnh vẫn thuộc bài đăng và chưa có variants
+                Query query = new Query(Criteria.where("_id").is(postId).and("images").is(url)
+                    .and("imageVariants.url").ne(url));
+                if (mongoTemplate.updateFirst(query, new Update().push("imageVariants", variants), Post.class)
+                        .getModifiedCount() > 0) {
+                    changeLogService.recordPostChange(postId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Tạo ảnh thu nhỏ cho avatar hoặc ảnh bìa rồi ghi vào User
+     *
+     * @param userId ID người dùng
+     * @param url URL ảnh
+     * @param avatar true nếu là avatar, false nếu là ảnh bìa
+     */
+    public void generateForUser(String userId, String url, boolean avatar) {
+        generate(url).thenAccept(variants -> {
+            if (variants == null) {
+                return;
+            }
+            String field = avatar ? "avatar" : "coverPhoto";
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(userId).and(field).is(url)),
+                new Update().set(field + "Variants", variants), User.class);
+        });
+    }
+
+    /**
+     * Bổ sung variants còn thiếu cho bài đăng khi đọc (ảnh vừa xử lý xong, hoặc variants bị
+     * ghi đè bởi một lần lưu toàn bộ bài đăng). Chỉ truy vấn khi thực sự thiếu; variants được gắn
+     * vào kết quả trả về ngay, còn việc ghi lại vào bài đăng chạy trên pool xử lý ảnh
+     * để request đọc không phải chờ ghi MongoDB.
+     *
+     * @param posts Danh sách bài đăng
+     */
+    public void fillMissingVariants(List<Post> posts) {
+        Map<String, List<Post>> missing = new HashMap<>();
+        for (Post post : posts) {
+            if (post.getImages() == null || post.getImages().isEmpty()) {
+                continue;
+            }
+            for (String url : post.getImages()) {
+                String hash = FileStorageService.hashOf(url);
+                if (hash != null && isResizable(url) && findVariants(post, url) == null) {
+                    missing.computeIfAbsent(hash, h -> new ArrayList<>()).add(post);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Query query = new Query(Criteria.where("_id").in(missing.keySet()).and("variants").ne(null));
+        query.fields().include("variants");
+        Map<String, List<ImageVariants>> backfill = new HashMap<>();
+        for (MediaBlob blob : mongoTemplate.find(query, MediaBlob.class)) {
+            for (Post post : missing.get(blob.getId())) {
+                for (String url : post.getImages()) {
+                    if (blob.getId().equals(FileStorageService.hashOf(url)) && findVariants(post, url) == null) {
+                        ImageVariants variants = copyFor(blob.getVariants(), url);
+                        if (post.getImageVariants() == null) {
+                            post.setImageVariants(new ArrayList<>());
+                        }
+                        post.getImageVariants().add(variants);
+                        backfill.computeIfAbsent(post.getId(), id -> new ArrayList<>()).add(variants);
+                    }
+                }
+            }
+        }
+        if (backfill.isEmpty()) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> backfill.forEach((postId, missingVariants) -> {
+                try {
+                    for (ImageVariants variants : missingVariants) {
+                        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(postId)
+                                .and("imageVariants.url").ne(variants.getUrl())),
+                            new Update().push("imageVariants", variants), Post.class);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Không thể ghi bổ sung variants cho bài đăng {}", postId, e);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            // Pool đầy: lần đọc sau sẽ thử ghi lại
+            logger.debug("Hàng đợi xử lý ảnh đầy, bỏ qua ghi bổ sung variants cho {} bài đăng", backfill.size());
+        }
+    }
+
+    /**
+     * Bỏ variants của những ảnh không còn trong bài đăng
+     *
+     * @param post Bài đăng vừa cập nhật danh sách ảnh
+     */
+    public void retainVariants(Post post) {
+        if (post.getImageVariants() != null) {
+            post.getImageVariants().removeIf(variants -> post.getImages() == null
+                || !post.getImages().contains(variants.getUrl()));
+        }
+    }
+
+    /**
+     * Tạo (hoặc lấy lại) ảnh thu nhỏ của một ảnh đã tải lên
+     *
+     * @param url URL ảnh gốc
+     * @return Future hoàn thành với variants, hoặc null nếu không xử lý được
+     */
+    public CompletableFuture<ImageVariants> generate(String url) {
+        String hash = FileStorageService.hashOf(url);
+        if (hash == null || !isResizable(url)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<ImageVariants> created = new CompletableFuture<>();
+        CompletableFuture<ImageVariants> existing = inFlight.putIfAbsent(hash, created);
+        if (existing != null) {
+            return existing.thenApply(variants -> copyFor(variants, url));
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(copyFor(loadOrProcess(hash), url));
+                } catch (Exception e) {
+                    logger.warn("Không thể tạo ảnh thu nhỏ cho {}", url, e);
+                    created.complete(null);
+                } finally {
+                    inFlight.remove(hash, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Hàng đợi xử lý ảnh đầy, bỏ qua {}", url);
+            inFlight.remove(hash, created);
+            created.complete(null);
+        }
+        return created;
+    }
+
+    private ImageVariants loadOrProcess(String hash) throws IOException {
+        MediaBlob blob = mongoTemplate.findById(hash, MediaBlob.class);
+        if (blob == null) {
+            return null;
+        }
+        if (blob.getVariants() != null) {
+            return blob.getVariants();
+        }
+
+        long start = System.nanoTime();
+        ImageVariants variants = process(blob.getFileName());
+        processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (variants != null) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(hash)),
+                new Update().set("variants", variants), MediaBlob.class);
+        }
+        return variants;
+    }
+
+    /**
+     * Giải mã ảnh một lần (lấy mẫu thưa nếu ảnh lớn hơn nhiều so với kích thước cần) rồi thu nhỏ dần
+     */
+    private ImageVariants process(String fileName) throws IOException {
+        Path source = fileStorageService.resolveFile(fileName);
+        if (source == null) {
+            return null;
+        }
+
+        // Ảnh chụp từ điện thoại thường lưu điểm ảnh theo chiều cảm biến kèm thẻ EXIF Orientation
+        int orientation = isJpeg(fileName) ? exifOrientation(source) : 1;
+        boolean swapsAxes = orientation >= 5;
+
+        BufferedImage image;
+        int originalWidth;
+        int originalHeight;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                // Kích thước khi hiển thị (sau khi xoay theo EXIF)
+                originalWidth = swapsAxes ? reader.getHeight(0) : reader.getWidth(0);
+                originalHeight = swapsAxes ? reader.getWidth(0) : reader.getHeight(0);
+                if ((long) originalWidth * originalHeight > MAX_PIXELS) {
+                    logger.warn("Ảnh {} quá lớn ({}x{}), không tạo ảnh thu nhỏ", fileName, originalWidth, originalHeight);
+                    return null;
+                }
+
+                // Giữ gấp đôi kích thước lớn nhất cần tạo để ảnh thu nhỏ vẫn sắc nét
+                int largestTarget = PLACEHOLDER_WIDTH;
+                for (int width : widths) {
+                    if (width < originalWidth) {
+                        largestTarget = width;
+                    }
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, originalWidth / (largestTarget * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+        // Xoay trên ảnh đã lấy mẫu thưa, trước khi thu nhỏ: mọi kích thước và placeholder đều đúng chiều
+        image = orient(image, orientation);
+
+        boolean png = fileName.toLowerCase(Locale.ROOT).endsWith(".png");
+        ImageVariants variants = new ImageVariants(FileStorageService.URL_PREFIX + fileName, originalWidth, originalHeight);
+        BufferedImage current = image;
+        for (int i = widths.length - 1; i >= 0; i--) {
+            int width = widths[i];
+            if (width >= originalWidth) {
+                continue;
+            }
+            current = scale(current, width, png);
+            String url = fileStorageService.storeDerivative(derivativeName(fileName, width), encode(current, png, JPEG_QUALITY));
+            variants.getSizes().put(Integer.toString(width), url);
+        }
+
+        BufferedImage placeholder = scale(current, PLACEHOLDER_WIDTH, false);
+        variants.setPlaceholder("data:image/jpeg;base64,"
+            + Base64.getEncoder().encodeToString(encode(placeholder, false, PLACEHOLDER_QUALITY)));
+        return variants;
+    }
+
+    /**
+     * Đọc thẻ Orientation (0x0112) trong IFD0 của đoạn APP1 Exif
+     *
+     * @return Giá trị 1-8, hoặc 1 nếu không có hoặc không đọc được
+     */
+    private static int exifOrientation(Path source) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // Metadata chỉ nằm trước dữ liệu ảnh (SOS)
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] segment = in.readNBytes(length);
+                // APP1 cũng dùng cho XMP, chỉ đọc đoạn bắt đầu bằng "Exif\0\0"
+                if (segment.length >= 6 && segment[0] == 'E' && segment[1] == 'x' && segment[2] == 'i'
+                        && segment[3] == 'f' && segment[4] == 0 && segment[5] == 0) {
+                    return tiffOrientation(ByteBuffer.wrap(segment, 6, segment.length - 6).slice());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return 1;
+        }
+    }
+
+    private static int tiffOrientation(ByteBuffer tiff) {
+        tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int ifd = tiff.getInt(4);
+        int entries = tiff.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((tiff.getShort(entry) & 0xFFFF) == 0x0112) {
+                int value = tiff.getShort(entry + 8) & 0xFFFF;
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Xoay/lật ảnh theo giá trị EXIF Orientation để điểm ảnh nằm đúng chiều hiển thị
+     */
+    private static BufferedImage orient(BufferedImage source, int orientation) {
+        if (orientation <= 1) {
+            return source;
+        }
+        double w = source.getWidth();
+        double h = source.getHeight();
+        // (m00, m10, m01, m11, m02, m12): x' = m00 * x + m01 * y + m02, y' = m10 * x + m11 * y + m12
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);  // lật ngang
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h); // xoay 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);  // lật dọc
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);   // lật theo đường chéo chính
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);  // xoay 90° theo chiều kim đồng hồ
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w); // lật theo đường chéo phụ
+            default -> new AffineTransform(0, -1, 1, 0, 0, w); // xoay 90° ngược chiều kim đồng hồ
+        };
+        boolean swapsAxes = orientation >= 5;
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage rotated = new BufferedImage(
+            swapsAxes ? source.getHeight() : source.getWidth(), swapsAxes ? source.getWidth() : source.getHeight(), type);
+        Graphics2D g = rotated.createGraphics();
+        try {
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Thu nhỏ theo từng bước một nửa (bilinear) để giữ chất lượng mà không tốn như bicubic
+     */
+    private static BufferedImage scale(BufferedImage source, int targetWidth, boolean keepAlpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                if (!keepAlpha) {
+                    // JPEG không có kênh alpha: nền trắng cho ảnh trong suốt
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, width, height);
+                }
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (width != targetWidth);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, boolean png, float quality) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (png) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Tên file ảnh thu nhỏ: &lt;hash&gt;_w&lt;rộng&gt;.png cho ảnh PNG, .jpg cho các định dạng khác
+     */
+    private static String derivativeName(String fileName, int width) {
+        String hash = FileStorageService.hashOf(fileName);
+        boolean png = fileName.toLowerCase(Locale.ROOT).endsWith(".png");
+        return hash + "_w" + width + (png ? ".png" : ".jpg");
+    }
+
+    private static boolean isJpeg(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg");
+    }
+
+    /**
+     * Chỉ xử lý ảnh tĩnh mà ImageIO đọc được; GIF có thể là ảnh động nên giữ nguyên
+     */
+    private static boolean isResizable(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".bmp");
+    }
+
+    private static ImageVariants findVariants(Post post, String url) {
+        if (post.getImageVariants() == null) {
+            return null;
+        }
+        for (ImageVariants variants : post.getImageVariants()) {
+            if (url.equals(variants.getUrl())) {
+                return variants;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Variants lưu trên blob gắn với URL của blob; URL trong bài đăng có thể khác phần mở rộng
+     */
+    private static ImageVariants copyFor(ImageVariants source, String url) {
+        if (source == null) {
+            return null;
+        }
+        ImageVariants copy = new ImageVariants(url, source.getWidth(), source.getHeight());
+        copy.getSizes().putAll(source.getSizes());
+        copy.setPlaceholder(source.getPlaceholder());
+        return copy;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.facebook_clone.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ClusterEvent;
+
+/**
+ * Event bus trong cùng JVM: gửi thẳng sự kiện đến handler của node hiện tại.
+ * Dùng khi chỉ chạy một node (mặc định).
+ */
+@Service
+@ConditionalOnProperty(name = "app.event-bus", havingValue = "local", matchIfMissing = true)
+public class LocalEventBus implements ClusterEventBus {
+
+    private volatile ClusterEventHandler handler;
+
+    @Override
+    public void publish(ClusterEvent event) {
+        ClusterEventHandler current = handler;
+        if (current != null) {
+            current.deliver(event);
+        }
+    }
+
+    @Override
+    public void subscribe(ClusterEventHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean hasRemoteListener(String userId) {
+        return false;
+    }
+
+    @Override
+    public boolean isOnlineRemotely(String userId) {
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.facebook_clone.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bộ nhớ đệm trong RAM cho các file media nhỏ được yêu cầu nhiều (avatar, ảnh thu nhỏ).
+ *
+ * Chỉ nhận file vào cache từ lần yêu cầu thứ hai trong thời gian gần đây, để các file chỉ
+ * xem một lần không đẩy file hay dùng ra ngoài. Loại bỏ theo LRU khi vượt quá dung lượng.
+ * File lưu theo nội dung không bao giờ đổi nội dung; khi file bị xóa FileStorageService gọi evict.
+ *
+ * Metrics: media.cache.requests{result=hit|miss}, media.cache.bytes
+ */
+@Service
+public class MediaCacheService {
+
+    // Số tên file đã thấy một lần được ghi nhớ để xét cho vào cache
+    private static final int SEEN_CAPACITY = 4096;
+
+    @Value("${app.media.hot-cache-bytes:16777216}")
+    private long capacityBytes;
+
+    @Value("${app.media.hot-cache-max-file-bytes:262144}")
+    private long maxFileBytes;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LinkedHashMap<String, CachedFile> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> seen = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > SEEN_CAPACITY;
+        }
+    };
+    private long usedBytes;
+
+    private Counter hits;
+    private Counter misses;
+
+    /**
+     * Nội dung và ETag của một file đã cache
+     */
+    public static class CachedFile {
+        private final byte[] content;
+        private final String etag;
+
+        public CachedFile(byte[] content, String etag) {
+            this.content = content;
+            this.etag = etag;
+        }
+
+        public byte[] getContent() { return content; }
+        public String getEtag() { return etag; }
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("media.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("media.cache.requests").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("media.cache.bytes", this, cache -> cache.usedBytes());
+    }
+
+    /**
+     * Lấy file từ cache
+     *
+     * @param fileName Tên file
+     * @return File đã cache, null nếu chưa có
+     */
+    public synchronized CachedFile get(String fileName) {
+        CachedFile cached = entries.get(fileName);
+        if (cached != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Kiểm tra file có nên được đọc vào cache hay không (đủ nhỏ và đã được yêu cầu gần đây)
+     *
+     * @param fileName Tên file
+     * @param size Kích thước file
+     * @return true nếu nên đọc toàn bộ file và gọi put
+     */
+    public synchronized boolean shouldAdmit(String fileName, long size) {
+        if (size > maxFileBytes || size > capacityBytes) {
+            return false;
+        }
+        return seen.put(fileName, Boolean.TRUE) != null;
+    }
+
+    /**
+     * Thêm file vào cache, loại bỏ các file ít dùng nhất nếu vượt dung lượng
+     *
+     * @param fileName Tên file
+     * @param file Nội dung và ETag
+     */
+    public synchronized void put(String fileName, CachedFile file) {
+        CachedFile previous = entries.put(fileName, file);
+        if (previous != null) {
+            usedBytes -= previous.getContent().length;
+        }
+        usedBytes += file.getContent().length;
+        seen.remove(fileName);
+
+        var iterator = entries.entrySet().iterator();
+        while (usedBytes > capacityBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedFile> eldest = iterator.next();
+            usedBytes -= eldest.getValue().getContent().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Bỏ file khỏi cache (khi file bị xóa khỏi đĩa)
+     *
+     * @param fileName Tên file
+     */
+    public synchronized void evict(String fileName) {
+        CachedFile removed = entries.remove(fileName);
+        if (removed != null) {
+            usedBytes -= removed.getContent().length;
+        }
+        seen.remove(fileName);
+    }
+
+    private synchronized long usedBytes() {
+        return usedBytes;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.facebook_clone.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.security.TokenBucketLimiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Bộ dọn file media không còn được tham chiếu (mark-and-sweep).
+ *
+ * Số tham chiếu trong media_blobs xử lý phần lớn trường hợp; bộ dọn này bắt những file bị sót
+ * (file cũ trước khi lưu theo nội dung, số tham chiếu lệch do lỗi giữa chừng, ảnh thu nhỏ mồ côi).
+ *
+ * Mark: đọc các trường chứa URL media của posts, users, profiles và upload_sessions (chỉ lấy các
+ * trường đó) vào một Bloom filter. Sweep: duyệt thư mục uploads; file cũ hơn thời gian ân hạn mà Bloom
+ * filter chắc chắn không chứa là ứng viên. Ứng viên được kiểm tra lại chính xác bằng truy vấn Mongo theo
+ * lô (bắt cả tham chiếu mới tạo sau bước mark) rồi mới xóa, với tốc độ xóa giới hạn.
+ *
+ * Metrics: media.gc.files.deleted, media.gc.bytes.reclaimed, media.gc.duration
+ */
+@Service
+public class MediaGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(MediaGarbageCollector.class);
+
+    // Collection -> các trường chứa URL media (chuỗi hoặc mảng chuỗi)
+    private static final Map<String, List<String>> REFERENCE_FIELDS = Map.of(
+        "posts", List.of("images", "videos"),
+        "users", List.of("avatar", "coverPhoto"),
+        "profiles", List.of("avatar", "coverPhoto"),
+        "upload_sessions", List.of("url"));
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.media.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.media.gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${app.media.gc.deletes-per-second:20}")
+    private int deletesPerSecond;
+
+    @Value("${app.media.gc.verify-batch-size:200}")
+    private int verifyBatchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private TokenBucketLimiter deleteLimiter;
+    private Counter filesDeleted;
+    private Counter bytesReclaimed;
+    private Timer duration;
+
+    @PostConstruct
+    public void init() {
+        deleteLimiter = new TokenBucketLimiter(deletesPerSecond, 1, 1);
+        filesDeleted = Counter.builder("media.gc.files.deleted").register(meterRegistry);
+        bytesReclaimed = Counter.builder("media.gc.bytes.reclaimed").baseUnit("bytes").register(meterRegistry);
+        duration = Timer.builder("media.gc.duration").register(meterRegistry);
+    }
+
+    /**
+     * Chạy định kỳ trên virtual thread riêng để không chiếm luồng của scheduler
+     */
+    @Scheduled(fixedDelayString = "${app.media.gc.interval-ms:21600000}",
+               initialDelayString = "${app.media.gc.initial-delay-ms:600000}")
+    public void scheduledCollect() {
+        if (enabled) {
+            Thread.startVirtualThread(this::collect);
+        }
+    }
+
+    /**
+     * Chạy một lượt dọn; bỏ qua nếu đang có lượt khác chạy
+     */
+    public void collect() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            Date cutoff = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(graceHours));
+            BloomFilter marked = mark();
+            long[] result = sweep(marked, cutoff);
+            if (result[0] > 0) {
+                logger.info("Dọn media: đã xóa {} file, giải phóng {} byte", result[0], result[1]);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Lỗi khi dọn media không còn tham chiếu", e);
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            running.set(false);
+        }
+    }
+
+    /**
+     * Đưa khóa của mọi URL media đang được tham chiếu vào Bloom filter
+     */
+    private BloomFilter mark() {
+        long expected = 1_000;
+        for (Map.Entry<String, List<String>> entry : REFERENCE_FIELDS.entrySet()) {
+            expected += mongoTemplate.estimatedCount(entry.getKey()) * entry.getValue().size() * 2;
+        }
+        BloomFilter filter = new BloomFilter(expected, FALSE_POSITIVE_RATE);
+
+        for (Map.Entry<String, List<String>> entry : REFERENCE_FIELDS.entrySet()) {
+            Query query = new Query().cursorBatchSize(1_000);
+            entry.getValue().forEach(field -> query.fields().include(field));
+            try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, entry.getKey())) {
+                documents.forEach(document -> forEachUrl(document, entry.getValue(), url -> {
+                    String key = keyOf(url);
+                    if (key != null) {
+                        filter.add(key);
+                    }
+                }));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Duyệt file trên đĩa, gom ứng viên theo lô để kiểm tra chính xác rồi xóa
+     *
+     * @return {số file đã xóa, số byte đã giải phóng}
+     */
+    private long[] sweep(BloomFilter marked, Date cutoff) throws IOException, InterruptedException {
+        long[] result = new long[2];
+        List<Path> batch = new ArrayList<>(verifyBatchSize);
+        try (Stream<Path> files = fileStorageService.listStoredFiles()) {
+            Iterator<Path> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                String key = keyOf(file.getFileName().toString());
+                if (key == null || marked.mightContain(key)
+                        || Files.getLastModifiedTime(file).toMillis() > cutoff.getTime()) {
+                    continue;
+                }
+                batch.add(file);
+                if (batch.size() >= verifyBatchSize) {
+                    deleteUnreferenced(batch, cutoff, result);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleteUnreferenced(batch, cutoff, result);
+        }
+        return result;
+    }
+
+    private void deleteUnreferenced(List<Path> candidates, Date cutoff, long[] result) throws InterruptedException {
+        Set<String> keys = new HashSet<>();
+        for (Path file : candidates) {
+            keys.add(keyOf(file.getFileName().toString()));
+        }
+        Set<String> referenced = findReferenced(keys);
+
+        for (Path file : candidates) {
+            if (referenced.contains(keyOf(file.getFileName().toString()))) {
+                continue;
+            }
+            long waitNanos;
+            while ((waitNanos = deleteLimiter.tryAcquire("delete", System.nanoTime())) > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            try {
+                long bytes = fileStorageService.deleteOrphan(file, cutoff);
+                if (bytes >= 0) {
+                    result[0]++;
+                    result[1] += bytes;
+                    filesDeleted.increment();
+                    bytesReclaimed.increment(bytes);
+                }
+            } catch (IOException e) {
+                logger.warn("Không thể xóa file media {}", file, e);
+            }
+        }
+    }
+
+    /**
+     * Kiểm tra chính xác: khóa nào trong số các ứng viên vẫn đang được tham chiếu
+     */
+    private Set<String> findReferenced(Collection<String> keys) {
+        // File theo hash: khớp mọi URL bắt đầu bằng hash (file gốc có phần mở rộng bất kỳ); file cũ: khớp đúng URL
+        List<Object> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            if (FileStorageService.hashOf(key) != null) {
+                values.add(Pattern.compile("^" + FileStorageService.URL_PREFIX + key));
+            } else {
+                values.add(FileStorageService.URL_PREFIX + key);
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (Map.Entry<String, List<String>> entry : REFERENCE_FIELDS.entrySet()) {
+            List<Criteria> conditions = new ArrayList<>();
+            entry.getValue().forEach(field -> conditions.add(Criteria.where(field).in(values)));
+            Query query = new Query(new Criteria().orOperator(conditions));
+            entry.getValue().forEach(field -> query.fields().include(field));
+            try (Stream<Document> documents = mongoTemplate.stream(query, Document.class, entry.getKey())) {
+                documents.forEach(document -> forEachUrl(document, entry.getValue(), url -> {
+                    String key = keyOf(url);
+                    if (key != null) {
+                        referenced.add(key);
+                    }
+                }));
+            }
+        }
+        return referenced;
+    }
+
+    private static void forEachUrl(Document document, List<String> fields, Consumer<String> action) {
+        for (String field : fields) {
+            Object value = document.get(field);
+            if (value instanceof String url) {
+                action.accept(url);
+            } else if (value instanceof Collection<?> urls) {
+                for (Object url : urls) {
+                    if (url instanceof String text) {
+                        action.accept(text);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Khóa so khớp giữa URL và file: hash nội dung (ảnh thu nhỏ dùng chung hash với file gốc),
+     * hoặc tên file với file cũ; null nếu URL không trỏ vào /uploads
+     */
+    private static String keyOf(String urlOrFileName) {
+        String name = urlOrFileName;
+        if (name.startsWith(FileStorageService.URL_PREFIX)) {
+            name = name.substring(FileStorageService.URL_PREFIX.length());
+        } else if (name.contains("/")) {
+            return null;
+        }
+        int query = name.indexOf('?');
+        if (query >= 0) {
+            name = name.substring(0, query);
+        }
+        if (name.isEmpty() || name.startsWith(".")) {
+            return null;
+        }
+        String hash = FileStorageService.hashOf(name);
+        return hash != null ? hash : name;
+    }
+
+    /**
+     * Bloom filter đơn giản trên mảng long (không có false negative, tỉ lệ false positive cấu hình được).
+     * Seed ngẫu nhiên mỗi lượt để file bị giữ nhầm lần này được xét lại ở lượt sau.
+     */
+    static final class BloomFilter {
+        private final long[] bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final long seed = ThreadLocalRandom.current().nextLong();
+
+        BloomFilter(long expectedInsertions, double falsePositiveRate) {
+            long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) / 64))];
+            this.bitCount = bits.length * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void add(String key) {
+            long hash1 = StringHashing.hash64(key, seed);
+            long hash2 = StringHashing.hash64(key, ~seed) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash1 = StringHashing.hash64(key, seed);
+            long hash2 = StringHashing.hash64(key, ~seed) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ClusterEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.CursorType;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Event bus nhiều node dựa trên capped collection của MongoDB.
+ *
+ * Mỗi node ghi danh sách người dùng đang kết nối tại node đó vào collection cluster_nodes.
+ * Khi phát sự kiện cho một người dùng, node phát chỉ ghi sự kiện vào cluster_events nếu
+ * người dùng đang kết nối ở node khác, kèm danh sách node đích; mỗi node dùng tailable cursor
+ * chỉ đọc các sự kiện có tên mình (hoặc "*" cho sự kiện gửi mọi node).
+ * Sự kiện được ghi theo lô để giảm số lần ghi khi lưu lượng cao.
+ * Mỗi sự kiện mang seq tăng dần trên toàn cluster (unique index, cấp ngay khi insert như change log),
+ * nên thứ tự seq trùng với thứ tự ghi và tailable cursor mở lại tiếp tục đúng chỗ đã đọc.
+ */
+@Service
+@ConditionalOnProperty(name = "app.event-bus", havingValue = "mongo")
+public class MongoEventBus implements ClusterEventBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoEventBus.class);
+
+    private static final String EVENTS_COLLECTION = "cluster_events";
+    private static final String NODES_COLLECTION = "cluster_nodes";
+    private static final String ALL_NODES = "*";
+
+    // Mã lỗi NamespaceExists của MongoDB khi tạo collection đã tồn tại
+    private static final int NAMESPACE_EXISTS = 48;
+
+    // Kích thước capped collection: sự kiện cũ tự bị ghi đè
+    private static final long CAPPED_SIZE_BYTES = 64L * 1024 * 1024;
+
+    private static final int BATCH_SIZE = 200;
+    // Số lần thử lại khi nhiều node cùng ghi một seq
+    private static final int MAX_INSERT_ATTEMPTS = 20;
+    private static final int OUTBOX_CAPACITY = 10_000;
+
+    // Node không cập nhật heartbeat quá thời gian này được coi là đã dừng
+    private static final long NODE_TTL_MS = 15_000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final BlockingQueue<Document> outbox = new LinkedBlockingQueue<>(OUTBOX_CAPACITY);
+
+    private volatile ClusterEventHandler handler;
+    private volatile boolean running = true;
+
+    // Ảnh chụp registry của các node khác: userId -> các node đang giữ session/buffer
+    private volatile Map<String, Set<String>> remoteListeners = Map.of();
+    private volatile Set<String> remoteOnline = Set.of();
+    private volatile boolean remoteNodesAlive;
+
+    // Danh sách đã ghi lần trước, chỉ ghi lại khi có thay đổi
+    private Set<String> publishedListeners = Set.of();
+    private Set<String> publishedOnline = Set.of();
+
+    private Thread publisherThread;
+    private Thread tailerThread;
+
+    @PostConstruct
+    public void start() {
+        ensureEventsCollection();
+
+        publisherThread = new Thread(this::publishLoop, "event-bus-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+
+        tailerThread = new Thread(this::tailLoop, "event-bus-tailer");
+        tailerThread.setDaemon(true);
+        tailerThread.start();
+
+        logger.info("Event bus MongoDB khởi động với nodeId {}", nodeId);
+    }
+
+    @Override
+    public void publish(ClusterEvent event) {
+        ClusterEventHandler current = handler;
+        if (current != null) {
+            // Node hiện tại tự bỏ qua nếu không có session/buffer của người nhận
+            current.deliver(event);
+        }
+
+        List<String> targets;
+        if (event.getUserId() == null) {
+            if (!remoteNodesAlive) {
+                return;
+            }
+            targets = List.of(ALL_NODES);
+        } else {
+            Set<String> nodes = remoteListeners.get(event.getUserId());
+            if (nodes == null || nodes.isEmpty()) {
+                return;
+            }
+            targets = new ArrayList<>(nodes);
+        }
+
+        try {
+            Document doc = new Document("origin", nodeId)
+                .append("nodes", targets)
+                .append("destination", event.getDestination())
+                .append("userId", event.getUserId())
+                .append("buffered", event.isBuffered())
+                .append("payload", objectMapper.writeValueAsString(event.getPayload()))
+                .append("createdAt", new Date());
+            if (!outbox.offer(doc)) {
+                logger.warn("Hàng đợi event bus đầy, bỏ sự kiện {}", event.getDestination());
+            }
+        } catch (Exception e) {
+            logger.warn("Không thể tuần tự hóa sự kiện {}", event.getDestination(), e);
+        }
+    }
+
+    @Override
+    public void subscribe(ClusterEventHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public boolean hasRemoteListener(String userId) {
+        return remoteListeners.containsKey(userId);
+    }
+
+    @Override
+    public boolean isOnlineRemotely(String userId) {
+        return remoteOnline.contains(userId);
+    }
+
+    /**
+     * Ghi danh sách người dùng tại node này và tải lại registry của các node khác.
+     * Người dùng vừa kết nối có thể lỡ sự kiện phát từ node khác trong một chu kỳ;
+     * client bù lại bằng /api/sync sau khi kết nối.
+     */
+    @Scheduled(fixedDelay = 2_000)
+    public void syncRegistry() {
+        ClusterEventHandler current = handler;
+        if (current == null) {
+            return;
+        }
+        try {
+            Set<String> listeners = current.localListeners();
+            Set<String> online = current.localOnlineUsers();
+            MongoCollection<Document> nodes = mongoTemplate.getCollection(NODES_COLLECTION);
+
+            Document self = new Document("_id", nodeId).append("heartbeatAt", new Date());
+            if (!listeners.equals(publishedListeners) || !online.equals(publishedOnline)) {
+                self.append("users", new ArrayList<>(listeners)).append("online", new ArrayList<>(online));
+                nodes.replaceOne(Filters.eq("_id", nodeId), self, new ReplaceOptions().upsert(true));
+                publishedListeners = listeners;
+                publishedOnline = online;
+            } else {
+                nodes.updateOne(Filters.eq("_id", nodeId), new Document("$set", self));
+            }
+
+            Map<String, Set<String>> listenerMap = new HashMap<>();
+            Set<String> onlineSet = new HashSet<>();
+            Date cutoff = new Date(System.currentTimeMillis() - NODE_TTL_MS);
+            boolean alive = false;
+            for (Document node : nodes.find(Filters.and(Filters.ne("_id", nodeId), Filters.gt("heartbeatAt", cutoff)))) {
+                alive = true;
+                String id = node.getString("_id");
+                for (String userId : node.getList("users", String.class, List.of())) {
+                    listenerMap.computeIfAbsent(userId, u -> new HashSet<>()).add(id);
+                }
+                onlineSet.addAll(node.getList("online", String.class, List.of()));
+            }
+            remoteListeners = listenerMap;
+            remoteOnline = onlineSet;
+            remoteNodesAlive = alive;
+        } catch (Exception e) {
+            logger.warn("Không thể đồng bộ registry của event bus", e);
+        }
+    }
+
+    /**
+     * Gom các sự kiện trong hàng đợi và ghi theo lô
+     */
+    private void publishLoop() {
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        while (running) {
+            try {
+                Document first = outbox.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                outbox.drainTo(batch, BATCH_SIZE - 1);
+                insertBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.warn("Không thể ghi {} sự kiện vào event bus", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Ghi một lô sự kiện với seq liên tiếp sau seq lớn nhất đã ghi.
+     * Seq k chỉ được ghi sau khi k - 1 đã hiển thị, nên thứ tự seq trùng với thứ tự trong capped collection;
+     * khi trùng seq với node khác thì đọc lại seq lớn nhất và ghi tiếp phần còn lại.
+     */
+    private void insertBatch(List<Document> batch) {
+        MongoCollection<Document> events = mongoTemplate.getCollection(EVENTS_COLLECTION);
+        int inserted = 0;
+        for (int attempt = 1; inserted < batch.size(); attempt++) {
+            long seq = latestSeq(events);
+            List<Document> remaining = batch.subList(inserted, batch.size());
+            for (Document doc : remaining) {
+                doc.put("seq", ++seq);
+            }
+            try {
+                events.insertMany(remaining, new InsertManyOptions().ordered(true));
+                inserted = batch.size();
+            } catch (MongoBulkWriteException e) {
+                boolean conflict = e.getWriteErrors().stream()
+                    .allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+                if (!conflict || attempt >= MAX_INSERT_ATTEMPTS) {
+                    throw e;
+                }
+                // Các sự kiện trước sự kiện bị trùng đã được ghi
+                inserted += e.getWriteResult().getInsertedCount();
+            }
+        }
+    }
+
+    private long latestSeq(MongoCollection<Document> events) {
+        Document latest = events.find().sort(Sorts.descending("seq")).projection(Projections.include("seq")).first();
+        return latest != null && latest.get("seq") instanceof Number number ? number.longValue() : 0;
+    }
+
+    /**
+     * Đọc liên tục các sự kiện gửi cho node này bằng tailable cursor
+     */
+    private void tailLoop() {
+        long lastSeq = -1;
+        while (running) {
+            try {
+                MongoCollection<Document> events = mongoTemplate.getCollection(EVENTS_COLLECTION);
+                if (lastSeq < 0) {
+                    // Bỏ qua các sự kiện phát trước khi node khởi động
+                    lastSeq = latestSeq(events);
+                }
+                try (MongoCursor<Document> cursor = events
+                        .find(Filters.and(
+                            Filters.gt("seq", lastSeq),
+                            Filters.in("nodes", nodeId, ALL_NODES),
+                            Filters.ne("origin", nodeId)))
+                        .cursorType(CursorType.TailableAwait)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .iterator()) {
+                    while (running) {
+                        Document doc = cursor.tryNext();
+                        if (doc == null) {
+                            if (cursor.getServerCursor() == null) {
+                                break; // Cursor đã đóng (collection rỗng), mở lại
+                            }
+                            continue;
+                        }
+                        lastSeq = doc.get("seq", Number.class).longValue();
+                        deliverRemote(doc);
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    logger.debug("Tailable cursor của event bus bị đóng, thử lại", e);
+                }
+            }
+            sleepQuietly(500);
+        }
+    }
+
+    private void deliverRemote(Document doc) {
+        ClusterEventHandler current = handler;
+        if (current == null) {
+            return;
+        }
+        try {
+            Object payload = objectMapper.readTree(doc.getString("payload"));
+            current.deliver(new ClusterEvent(
+                doc.getString("destination"),
+                doc.getString("userId"),
+                payload,
+                Boolean.TRUE.equals(doc.getBoolean("buffered"))));
+        } catch (Exception e) {
+            logger.warn("Không thể xử lý sự kiện {} từ event bus", doc.get("_id"), e);
+        }
+    }
+
+    /**
+     * Tạo capped collection cho sự kiện (nếu chưa có) cùng unique index trên seq.
+     * Tailable cursor chỉ hoạt động trên capped collection: collection thường cùng tên
+     * (ví dụ do MongoDB tự tạo khi insert) làm node không khởi động được thay vì âm thầm mất sự kiện.
+     */
+    private void ensureEventsCollection() {
+        MongoDatabase db = mongoTemplate.getDb();
+        if (!mongoTemplate.collectionExists(EVENTS_COLLECTION)) {
+            try {
+                db.createCollection(EVENTS_COLLECTION, new CreateCollectionOptions().capped(true).sizeInBytes(CAPPED_SIZE_BYTES));
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() != NAMESPACE_EXISTS) {
+                    throw e;
+                }
+                // Node khác vừa tạo collection
+            }
+        }
+
+        Document stats = db.runCommand(new Document("collStats", EVENTS_COLLECTION));
+        if (!Boolean.TRUE.equals(stats.getBoolean("capped"))) {
+            throw new IllegalStateException("Collection " + EVENTS_COLLECTION
+                + " không phải capped collection, tailable cursor của event bus không hoạt động; "
+                + "hãy xóa collection này hoặc chuyển bằng lệnh convertToCapped");
+        }
+        db.getCollection(EVENTS_COLLECTION).createIndex(Indexes.ascending("seq"), new IndexOptions().unique(true));
+    }
+
+    private void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisherThread.interrupt();
+        tailerThread.interrupt();
+        try {
+            mongoTemplate.getCollection(NODES_COLLECTION).deleteOne(Filters.eq("_id", nodeId));
+        } catch (Exception e) {
+            logger.debug("Không thể xóa node {} khỏi registry", nodeId, e);
+        }
+    }
+}
@@ -5,7 +5,6 @@ import com.example.facebook_clone.model.User;
 import com.example.facebook_clone.repository.NotificationRepository;
 import com.example.facebook_clone.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
@@ -19,6 +18,9 @@ import java.util.Optional;
 @Service
 public class NotificationService {
 
+    // Đích phụ của /topic/notifications/{userId} mang số thông báo chưa đọc
+    public static final String UNREAD_COUNT_SUFFIX = "/count";
+
     @Autowired
     private NotificationRepository notificationRepository;
 
@@ -26,7 +28,10 @@ public class NotificationService {
     private UserRepository userRepository;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private ChangeLogService changeLogService;
 
     /**
      * Tạo và gửi thông báo
@@ -41,6 +46,12 @@ public class NotificationService {
     public Notification createNotification(String userId, String senderId, String type, String content, String entityId) {
         Notification notification = new Notification(userId, senderId, type, content, entityId);
         notification = notificationRepository.save(notification);
+        changeLogService.recordNotificationChange(notification);
+
+        // Người nhận offline sẽ tải lại thông báo khi mở ứng dụng, không cần đẩy qua WebSocket
+        if (!realtimeEventService.hasListener(userId)) {
+            return notification;
+        }
 
         // Lấy thông tin người gửi để hiển thị trong thông báo
         Optional<User> senderOpt = userRepository.findById(senderId);
@@ -52,11 +63,25 @@ public class NotificationService {
             notificationData.put("sender", senderOpt.get());
         }
 
-        messagingTemplate.convertAndSend("/topic/notifications/" + userId, notificationData);
+        realtimeEventService.publishToUser("/topic/notifications/" + userId, userId, notificationData);
+        publishUnreadCount(userId);
 
         return notification;
     }
 
+    /**
+     * Gửi số thông báo chưa đọc mới nhất cho người dùng đang kết nối (WebSocket hoặc SSE)
+     *
+     * @param userId ID người dùng
+     */
+    public void publishUnreadCount(String userId) {
+        if (!realtimeEventService.hasListener(userId)) {
+            return;
+        }
+        realtimeEventService.publishToUser("/topic/notifications/" + userId + UNREAD_COUNT_SUFFIX, userId,
+            Map.of("count", getUnreadCount(userId)));
+    }
+
     /**
      * Tạo thông báo lời mời kết bạn
      *
@@ -219,7 +244,10 @@ public class NotificationService {
         if (notificationOpt.isPresent()) {
             Notification notification = notificationOpt.get();
             notification.setRead(true);
-            return notificationRepository.save(notification);
+            Notification savedNotification = notificationRepository.save(notification);
+            changeLogService.recordNotificationChange(savedNotification);
+            publishUnreadCount(savedNotification.getUserId());
+            return savedNotification;
         }
         return null;
     }
@@ -235,6 +263,8 @@ public class NotificationService {
             notification.setRead(true);
             notificationRepository.save(notification);
         }
+        changeLogService.recordNotifications(unreadNotifications, ChangeLogService.UPSERT);
+        publishUnreadCount(userId);
     }
 
     /**
@@ -243,7 +273,12 @@ public class NotificationService {
      * @param notificationId ID thông báo cần xóa
      */
     public void deleteNotification(String notificationId) {
-        notificationRepository.deleteById(notificationId);
+        Optional<Notification> notificationOpt = notificationRepository.findById(notificationId);
+        if (notificationOpt.isPresent()) {
+            notificationRepository.delete(notificationOpt.get());
+            changeLogService.recordNotificationDeleted(notificationOpt.get().getUserId(), notificationId);
+            publishUnreadCount(notificationOpt.get().getUserId());
+        }
     }
 
     /**
@@ -254,5 +289,7 @@ public class NotificationService {
     public void deleteAllNotificationsForUser(String userId) {
         List<Notification> notifications = notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
         notificationRepository.deleteAll(notifications);
+        changeLogService.recordNotifications(notifications, ChangeLogService.DELETE);
+        publishUnreadCount(userId);
     }
 }
@@ -0,0 +1,13 @@
+package com.example.facebook_clone.service;
+
+/**
+ * Ném ra khi hàng đợi băm mật khẩu đã đầy, controller trả về 429 để client thử lại sau
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingBusyException() {
+        super("Hệ thống đang bận, vui lòng thử lại sau");
+    }
+}
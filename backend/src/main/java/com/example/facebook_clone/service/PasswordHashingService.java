@@ -0,0 +1,142 @@
+package com.example.facebook_clone.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service băm và kiểm tra mật khẩu bằng BCrypt.
+ *
+ * BCrypt tốn CPU nên được chạy trên một pool riêng có số luồng bằng số CPU và hàng đợi giới hạn;
+ * khi pool đầy, PasswordHashingBusyException được ném ra (controller trả về 429) thay vì để
+ * các thread của Tomcat xếp hàng chờ. Mật khẩu cũ lưu dạng plaintext vẫn đăng nhập được
+ * và được băm lại ở lần đăng nhập thành công tiếp theo.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    // Thời gian chờ tối đa cho một lần băm (gồm cả thời gian xếp hàng)
+    private static final long HASH_TIMEOUT_MS = 5_000;
+
+    @Value("${app.password.bcrypt-strength:10}")
+    private int strength;
+
+    @Value("${app.password.threads:0}")
+    private int threads;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        encoder = new BCryptPasswordEncoder(strength);
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(poolSize * 4),
+            runnable -> {
+                Thread thread = new Thread(runnable, "password-hash-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+        // Đo thời gian một lần băm để chỉnh app.password.bcrypt-strength cho phù hợp phần cứng
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        logger.info("BCrypt cost {} mất {} ms cho mỗi lần băm, pool {} luồng",
+            strength, (System.nanoTime() - start) / 1_000_000, poolSize);
+    }
+
+    /**
+     * Băm mật khẩu
+     *
+     * @param rawPassword Mật khẩu gốc
+     * @return Chuỗi BCrypt
+     * @throws PasswordHashingBusyException nếu pool băm đang quá tải
+     */
+    public String hash(String rawPassword) {
+        return runOnPool(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Kiểm tra mật khẩu với giá trị đã lưu (BCrypt hoặc plaintext cũ)
+     *
+     * @param rawPassword Mật khẩu người dùng nhập
+     * @param storedPassword Giá trị lưu trong database
+     * @return true nếu khớp
+     * @throws PasswordHashingBusyException nếu pool băm đang quá tải
+     */
+    public boolean matches(String rawPassword, String storedPassword) {
+        if (rawPassword == null || storedPassword == null) {
+            return false;
+        }
+        if (!isHashed(storedPassword)) {
+            // So sánh thời gian hằng cho dữ liệu plaintext cũ
+            return MessageDigest.isEqual(
+                rawPassword.getBytes(StandardCharsets.UTF_8),
+                storedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+        return runOnPool(() -> encoder.matches(rawPassword, storedPassword));
+    }
+
+    /**
+     * Kiểm tra giá trị đã lưu có cần băm lại không (plaintext cũ hoặc cost khác cấu hình hiện tại)
+     *
+     * @param storedPassword Giá trị lưu trong database
+     * @return true nếu nên băm lại sau khi đăng nhập thành công
+     */
+    public boolean needsRehash(String storedPassword) {
+        return storedPassword == null || !isHashed(storedPassword) || encoder.upgradeEncoding(storedPassword);
+    }
+
+    private static boolean isHashed(String storedPassword) {
+        return storedPassword.length() == 60
+            && (storedPassword.startsWith("$2a$") || storedPassword.startsWith("$2b$") || storedPassword.startsWith("$2y$"));
+    }
+
+    private <T> T runOnPool(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingBusyException();
+        }
+        try {
+            return future.get(HASH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new PasswordHashingBusyException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bị gián đoạn khi băm mật khẩu", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Lỗi khi băm mật khẩu", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
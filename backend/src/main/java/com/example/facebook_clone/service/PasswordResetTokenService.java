@@ -0,0 +1,118 @@
+package com.example.facebook_clone.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.PasswordResetToken;
+import com.example.facebook_clone.model.User;
+
+/**
+ * Service quản lý token đặt lại mật khẩu trong collection password_reset_tokens.
+ *
+ * Token được tra cứu qua unique index trên SHA-256 của token, hết hạn nhờ TTL index
+ * và chỉ dùng được một lần (findAndModify xóa token ngay khi sử dụng).
+ */
+@Service
+public class PasswordResetTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordResetTokenService.class);
+
+    private static final int TOKEN_BYTES = 32;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${app.password-reset.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Tạo token mới cho người dùng, các token cũ của người dùng bị hủy
+     *
+     * @param userId ID người dùng
+     * @return Token gốc để gửi trong email
+     */
+    public String issue(String userId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        mongoTemplate.remove(new Query(Criteria.where("userId").is(userId)), PasswordResetToken.class);
+        Date expiresAt = new Date(System.currentTimeMillis() + ttlMinutes * 60_000);
+        mongoTemplate.insert(new PasswordResetToken(hash(token), userId, expiresAt));
+        return token;
+    }
+
+    /**
+     * Kiểm tra token còn hiệu lực mà không sử dụng nó
+     *
+     * @param token Token gốc
+     * @return true nếu token tồn tại và chưa hết hạn
+     */
+    public boolean isValid(String token) {
+        return mongoTemplate.exists(activeToken(token), PasswordResetToken.class);
+    }
+
+    /**
+     * Sử dụng token: xóa token một cách nguyên tử và trả về người sở hữu
+     *
+     * @param token Token gốc
+     * @return ID người dùng, hoặc null nếu token không hợp lệ, đã hết hạn hoặc đã được dùng
+     */
+    public String consume(String token) {
+        PasswordResetToken consumed = mongoTemplate.findAndRemove(activeToken(token), PasswordResetToken.class);
+        return consumed != null ? consumed.getUserId() : null;
+    }
+
+    /**
+     * Xóa trường resetToken cũ còn sót trên các document users
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeLegacyTokens() {
+        Thread.startVirtualThread(() -> {
+            try {
+                long modified = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("resetToken").exists(true)),
+                    new Update().unset("resetToken"), User.class).getModifiedCount();
+                if (modified > 0) {
+                    logger.info("Đã xóa resetToken cũ khỏi {} người dùng", modified);
+                }
+            } catch (Exception e) {
+                logger.warn("Không thể xóa resetToken cũ khỏi users", e);
+            }
+        });
+    }
+
+    /**
+     * TTL index của MongoDB chỉ quét mỗi phút, nên vẫn kiểm tra expiresAt khi tra cứu
+     */
+    private Query activeToken(String token) {
+        return new Query(Criteria.where("tokenHash").is(hash(token)).and("expiresAt").gt(new Date()));
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+package com.example.facebook_clone.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.DailyActiveUsers;
+import com.example.facebook_clone.model.PlatformStats;
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.PrivateMessage;
+import com.example.facebook_clone.model.StatsBucket;
+import com.example.facebook_clone.model.User;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Thống kê toàn hệ thống cho trang quản trị, được tính sẵn thay vì đếm lại khi xem.
+ *
+ * Các đường ghi (đăng ký, đăng bài, bình luận, thích, gửi tin nhắn) cộng dồn vào LongAdder trong
+ * bộ nhớ; vài giây một lần phần cộng dồn được ghi bằng một lệnh $inc vào bộ đếm tổng và vào bucket
+ * của giờ hiện tại (dùng cho biểu đồ). Định kỳ bộ đếm tổng được đối soát với số liệu thật trong Mongo
+ * để sửa sai lệch (ghi lỗi, node dừng đột ngột, dữ liệu sửa tay).
+ *
+ * Người dùng hoạt động trong ngày được đếm gần đúng bằng HyperLogLog (4096 thanh ghi, sai số ~1,6%),
+ * nên bộ nhớ cố định dù có bao nhiêu người dùng và các node gộp kết quả bằng $max.
+ */
+@Service
+public class PlatformStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlatformStatsService.class);
+
+    public static final String USERS = "users";
+    public static final String POSTS = "posts";
+    public static final String COMMENTS = "comments";
+    public static final String LIKES = "likes";
+    public static final String MESSAGES = "messages";
+
+    private static final List<String> COUNTERS = List.of(USERS, POSTS, COMMENTS, LIKES, MESSAGES);
+
+    public static final int MAX_SERIES_HOURS = 35 * 24;
+    public static final int MAX_SERIES_DAYS = 90;
+
+    // Bình luận lồng tối đa 4 tầng (xem PostController.addComment)
+    private static final int COMMENT_LEVELS = 4;
+
+    private static final int HLL_PRECISION = 12;
+    private static final int HLL_REGISTERS = 1 << HLL_PRECISION;
+
+    private static final DateTimeFormatter HOUR_ID = DateTimeFormatter.ofPattern("yyyyMMddHH").withZone(ZoneOffset.UTC);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final Map<String, LongAdder> pending = new LinkedHashMap<>();
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Object dayLock = new Object();
+    private volatile ActiveDay today;
+    private ActiveDay previousDay;   // Ngày vừa qua, còn chờ ghi lần cuối
+
+    private final AtomicBoolean reconciling = new AtomicBoolean();
+
+    public PlatformStatsService() {
+        for (String counter : COUNTERS) {
+            pending.put(counter, new LongAdder());
+        }
+        today = new ActiveDay(LocalDate.now(zone), zone);
+    }
+
+    /**
+     * Cộng dồn một bộ đếm (giá trị âm khi xóa)
+     *
+     * @param counter USERS, POSTS, COMMENTS, LIKES hoặc MESSAGES
+     * @param delta Lượng thay đổi
+     */
+    public void increment(String counter, long delta) {
+        LongAdder adder = pending.get(counter);
+        if (adder != null && delta != 0) {
+            adder.add(delta);
+        }
+    }
+
+    /**
+     * Ghi nhận người dùng hoạt động hôm nay; chỉ là vài phép tính trên mảng trong bộ nhớ
+     *
+     * @param userId ID người dùng
+     */
+    public void recordActive(String userId) {
+        if (userId == null) {
+            return;
+        }
+        long hash = StringHashing.hash64(userId);
+        int index = (int) (hash >>> (64 - HLL_PRECISION));
+        int rank = Long.numberOfLeadingZeros((hash << HLL_PRECISION) | (1L << (HLL_PRECISION - 1))) + 1;
+        AtomicIntegerArray registers = currentDay().registers;
+        int current;
+        while ((current = registers.get(index)) < rank && !registers.compareAndSet(index, current, rank)) {
+            // Thử lại khi thanh ghi vừa bị request khác cập nhật
+        }
+    }
+
+    /**
+     * Số liệu cho trang quản trị trong một lần đọc
+     *
+     * @param hours Số giờ gần nhất của chuỗi theo giờ
+     * @param days Số ngày gần nhất của chuỗi người dùng hoạt động
+     * @return totals, activeUsersToday, hourly, dailyActiveUsers, reconciledAt
+     */
+    public Map<String, Object> getDashboard(int hours, int days) {
+        if (hours < 1 || hours > MAX_SERIES_HOURS || days < 1 || days > MAX_SERIES_DAYS) {
+            throw new IllegalArgumentException("hours trong khoảng 1-" + MAX_SERIES_HOURS + ", days trong khoảng 1-" + MAX_SERIES_DAYS);
+        }
+        Map<String, Object> response = new HashMap<>();
+
+        // Tổng số: giá trị đã ghi cộng phần node này chưa kịp ghi
+        PlatformStats stats = mongoTemplate.findById(PlatformStats.TOTALS_ID, PlatformStats.class);
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (String counter : COUNTERS) {
+            totals.put(counter, (stats != null ? counterOf(stats, counter) : 0) + pending.get(counter).sum());
+        }
+        response.put("totals", totals);
+        response.put("reconciledAt", stats != null ? stats.getReconciledAt() : null);
+
+        // Chuỗi theo giờ, giờ không có thay đổi được điền 0
+        Instant firstHour = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(hours - 1, ChronoUnit.HOURS);
+        Map<String, StatsBucket> buckets = mongoTemplate.find(
+                new Query(Criteria.where("hour").gte(Date.from(firstHour))).with(Sort.by("hour")), StatsBucket.class)
+            .stream().collect(Collectors.toMap(StatsBucket::getId, Function.identity()));
+        List<Map<String, Object>> hourly = new ArrayList<>(hours);
+        for (int i = 0; i < hours; i++) {
+            Instant hour = firstHour.plus(i, ChronoUnit.HOURS);
+            StatsBucket bucket = buckets.get(HOUR_ID.format(hour));
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("hour", Date.from(hour));
+            for (String counter : COUNTERS) {
+                point.put(counter, bucket != null ? counterOf(bucket, counter) : 0);
+            }
+            hourly.add(point);
+        }
+        response.put("hourly", hourly);
+
+        // Người dùng hoạt động theo ngày; hôm nay gộp thêm thanh ghi chưa ghi của node này
+        ActiveDay current = currentDay();
+        List<String> dayIds = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            dayIds.add(current.date.minusDays(i).toString());
+        }
+        Map<String, DailyActiveUsers> sketches = mongoTemplate.find(
+                new Query(Criteria.where("_id").in(dayIds)), DailyActiveUsers.class)
+            .stream().collect(Collectors.toMap(DailyActiveUsers::getId, Function.identity()));
+        List<Map<String, Object>> dailyActive = new ArrayList<>(days);
+        long activeToday = 0;
+        for (String dayId : dayIds) {
+            int[] registers = new int[HLL_REGISTERS];
+            DailyActiveUsers sketch = sketches.get(dayId);
+            if (sketch != null && sketch.getRegisters() != null) {
+                sketch.getRegisters().forEach((index, value) -> registers[Integer.parseInt(index)] = value);
+            }
+            if (dayId.equals(current.id)) {
+                for (int i = 0; i < HLL_REGISTERS; i++) {
+                    registers[i] = Math.max(registers[i], current.registers.get(i));
+                }
+            }
+            long count = estimate(registers);
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("day", dayId);
+            point.put("count", count);
+            dailyActive.add(point);
+            activeToday = count;
+        }
+        response.put("dailyActiveUsers", dailyActive);
+        response.put("activeUsersToday", activeToday);
+        return response;
+    }
+
+    /**
+     * Ghi phần cộng dồn và thanh ghi người dùng hoạt động vào Mongo
+     */
+    @Scheduled(fixedDelay = 5_000)
+    public synchronized void flush() {
+        try {
+            flushCounters();
+        } catch (Exception e) {
+            logger.warn("Không thể ghi bộ đếm thống kê, sẽ thử lại", e);
+        }
+        try {
+            ActiveDay finished;
+            synchronized (dayLock) {
+                finished = previousDay;
+            }
+            if (finished != null) {
+                flushActive(finished);
+                synchronized (dayLock) {
+                    if (previousDay == finished) {
+                        previousDay = null;
+                    }
+                }
+            }
+            flushActive(currentDay());
+        } catch (Exception e) {
+            logger.warn("Không thể ghi thống kê người dùng hoạt động, sẽ thử lại", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Đối soát bộ đếm tổng trên virtual thread (phép gộp trên posts quét toàn bộ collection)
+     */
+    @Scheduled(fixedDelayString = "${app.stats.reconcile-interval-ms:3600000}", initialDelay = 30_000)
+    public void reconcilePeriodically() {
+        if (!reconciling.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                reconcile();
+            } catch (Exception e) {
+                logger.warn("Không thể đối soát thống kê", e);
+            } finally {
+                reconciling.set(false);
+            }
+        });
+    }
+
+    /**
+     * Đặt lại bộ đếm tổng theo dữ liệu thật. Thay đổi từ node khác ghi vào giữa lúc đếm và lúc đặt
+     * có thể bị tính thiếu hoặc thừa; sai lệch đó nhỏ và được sửa ở lần đối soát sau.
+     */
+    private void reconcile() {
+        long start = System.nanoTime();
+        flush();
+
+        long users = mongoTemplate.getCollection(mongoTemplate.getCollectionName(User.class)).estimatedDocumentCount();
+        long messages = mongoTemplate.getCollection(mongoTemplate.getCollectionName(PrivateMessage.class))
+            .estimatedDocumentCount();
+        String postCollection = mongoTemplate.getCollectionName(Post.class);
+        long posts = mongoTemplate.getCollection(postCollection).estimatedDocumentCount();
+
+        // Đếm lượt thích và bình luận (cả các tầng trả lời) ngay trong Mongo, chỉ trả về hai con số
+        Object comments = new Document("$size", new Document("$ifNull", List.of("$comments", List.of())));
+        Object level = new Document("$ifNull", List.of("$comments", List.of()));
+        List<Object> levelSizes = new ArrayList<>();
+        levelSizes.add(comments);
+        for (int i = 1; i < COMMENT_LEVELS; i++) {
+            level = replies(level);
+            levelSizes.add(new Document("$size", level));
+        }
+        Document project = new Document("$project", new Document()
+            .append("likes", new Document("$size", new Document("$ifNull", List.of("$likes", List.of()))))
+            .append("comments", new Document("$add", levelSizes)));
+        Document group = new Document("$group", new Document("_id", null)
+            .append("likes", new Document("$sum", "$likes"))
+            .append("comments", new Document("$sum", "$comments")));
+        Document sums = mongoTemplate.getCollection(postCollection).aggregate(List.of(project, group)).first();
+        long likes = sums != null ? ((Number) sums.get("likes")).longValue() : 0;
+        long commentCount = sums != null ? ((Number) sums.get("comments")).longValue() : 0;
+
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(PlatformStats.TOTALS_ID)),
+            new Update().set(USERS, users).set(POSTS, posts).set(COMMENTS, commentCount).set(LIKES, likes)
+                .set(MESSAGES, messages).set("reconciledAt", new Date()),
+            PlatformStats.class);
+        logger.info("Đã đối soát thống kê ({} người dùng, {} bài đăng, {} bình luận, {} lượt thích, {} tin nhắn) trong {} ms",
+            users, posts, commentCount, likes, messages, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Biểu thức nối danh sách replies của mọi bình luận trong một tầng thành tầng kế tiếp
+     */
+    private static Object replies(Object level) {
+        Document map = new Document("$map", new Document("input", level).append("as", "c")
+            .append("in", new Document("$ifNull", List.of("$$c.replies", List.of()))));
+        return new Document("$reduce", new Document("input", map).append("initialValue", List.of())
+            .append("in", new Document("$concatArrays", List.of("$$value", "$$this"))));
+    }
+
+    private void flushCounters() {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : pending.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Update totals = new Update();
+        deltas.forEach(totals::inc);
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(PlatformStats.TOTALS_ID)), totals, PlatformStats.class);
+        } catch (RuntimeException e) {
+            // Trả lại phần cộng dồn để lần sau ghi tiếp
+            deltas.forEach((counter, delta) -> pending.get(counter).add(delta));
+            throw e;
+        }
+
+        Instant hour = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        Update bucket = new Update().setOnInsert("hour", Date.from(hour));
+        deltas.forEach(bucket::inc);
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(HOUR_ID.format(hour))), bucket, StatsBucket.class);
+        } catch (RuntimeException e) {
+            // Bộ đếm tổng đã được ghi; chỉ mất một điểm trên biểu đồ
+            logger.warn("Không thể ghi thống kê theo giờ", e);
+        }
+    }
+
+    /**
+     * Gộp các thanh ghi đã tăng kể từ lần ghi trước vào Mongo bằng $max
+     */
+    private void flushActive(ActiveDay day) {
+        int[] snapshot = new int[HLL_REGISTERS];
+        Update update = new Update();
+        boolean changed = false;
+        for (int i = 0; i < HLL_REGISTERS; i++) {
+            snapshot[i] = day.registers.get(i);
+            if (snapshot[i] > day.flushed[i]) {
+                update.max("registers." + i, snapshot[i]);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        update.setOnInsert("day", Date.from(day.date.atStartOfDay(zone).toInstant()));
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(day.id)), update, DailyActiveUsers.class);
+        System.arraycopy(snapshot, 0, day.flushed, 0, HLL_REGISTERS);
+    }
+
+    private ActiveDay currentDay() {
+        ActiveDay day = today;
+        if (System.currentTimeMillis() < day.endMillis) {
+            return day;
+        }
+        synchronized (dayLock) {
+            if (System.currentTimeMillis() >= today.endMillis) {
+                previousDay = today;
+                today = new ActiveDay(LocalDate.now(zone), zone);
+            }
+            return today;
+        }
+    }
+
+    /**
+     * Ước lượng số phần tử khác nhau từ các thanh ghi HyperLogLog
+     */
+    static long estimate(int[] registers) {
+        double sum = 0;
+        int zeros = 0;
+        for (int register : registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        int m = registers.length;
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Tập nhỏ: đếm tuyến tính theo số thanh ghi còn trống chính xác hơn
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    private static long counterOf(PlatformStats stats, String counter) {
+        return switch (counter) {
+            case USERS -> stats.getUsers();
+            case POSTS -> stats.getPosts();
+            case COMMENTS -> stats.getComments();
+            case LIKES -> stats.getLikes();
+            default -> stats.getMessages();
+        };
+    }
+
+    private static long counterOf(StatsBucket bucket, String counter) {
+        return switch (counter) {
+            case USERS -> bucket.getUsers();
+            case POSTS -> bucket.getPosts();
+            case COMMENTS -> bucket.getComments();
+            case LIKES -> bucket.getLikes();
+            default -> bucket.getMessages();
+        };
+    }
+
+    /**
+     * Thanh ghi HyperLogLog của một ngày trên node này
+     */
+    private static final class ActiveDay {
+        final LocalDate date;
+        final String id;
+        final long endMillis;
+        final AtomicIntegerArray registers = new AtomicIntegerArray(HLL_REGISTERS);
+        final int[] flushed = new int[HLL_REGISTERS];   // Giá trị đã ghi vào Mongo
+
+        ActiveDay(LocalDate date, ZoneId zone) {
+            this.date = date;
+            this.id = date.toString();
+            this.endMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+}
@@ -0,0 +1,702 @@
+package com.example.facebook_clone.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ChangeLogEntry;
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.repository.ChangeLogRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Chỉ mục đảo (inverted index) trong bộ nhớ cho tìm kiếm bài đăng, xếp hạng bằng BM25.
+ *
+ * Mỗi từ (đã bỏ dấu, xem SearchTokenizer) có một danh sách bài đăng chứa nó, lưu dạng mảng byte
+ * nén (khoảng cách docId và tần suất mã hóa varint). Tìm kiếm chỉ duyệt danh sách của các từ trong
+ * câu truy vấn và lọc quyền riêng tư ngay trong lúc duyệt, nên chi phí tỉ lệ với số kết quả khớp
+ * thay vì số bài đăng.
+ *
+ * Chỉ mục được cập nhật dần bằng cách đọc change log (mọi thay đổi bài đăng trên mọi node đều được
+ * ghi vào đó), và được lưu ra file định kỳ để khởi động lại chỉ cần đọc file rồi bắt kịp change log.
+ * Bài đăng bị sửa được thêm như tài liệu mới, bản cũ bị đánh dấu xóa và dọn khi tỉ lệ bản xóa lớn.
+ *
+ * Metrics: search.posts.duration, search.index.documents, search.index.terms
+ */
+@Service
+public class PostSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x46425349; // "FBSI"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    // Tham số BM25
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Từ cuối của truy vấn được mở rộng theo tiền tố (gõ dở "hel" vẫn khớp "hello"), tối đa số từ này
+    private static final int MAX_PREFIX_EXPANSION = 64;
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    private static final int CHANGE_BATCH_SIZE = 1000;
+
+    private static final byte ALIVE = 1;
+    private static final byte PUBLIC = 2;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.search.snapshot-path:search-index.snapshot}")
+    private String snapshotPath;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Tài liệu theo docId (tăng dần, không dùng lại)
+    private String[] postIds = new String[1024];
+    private int[] owners = new int[1024];       // Chỉ số người đăng trong users
+    private int[] lengths = new int[1024];      // Số từ của bài đăng
+    private int[] contentHashes = new int[1024]; // Để bỏ qua cập nhật không đổi nội dung (like, bình luận)
+    private byte[] flags = new byte[1024];
+    private int docCount;
+    private int liveCount;
+    private long liveLength;
+    private final Map<String, Integer> docIdByPost = new HashMap<>();
+
+    private final List<String> users = new ArrayList<>();
+    private final Map<String, Integer> userOrdinals = new HashMap<>();
+
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+
+    // Vị trí đã đọc trong change log; chỉ ghi khi giữ write lock
+    private long cursor;
+
+    private volatile boolean ready;
+    private volatile boolean dirty;
+    private final AtomicBoolean starting = new AtomicBoolean();
+    private volatile long nextStartAttempt;
+
+    private Timer searchTimer;
+
+    @PostConstruct
+    public void init() {
+        searchTimer = Timer.builder("search.posts.duration").register(meterRegistry);
+        meterRegistry.gauge("search.index.documents", this, index -> index.readLocked(() -> index.liveCount));
+        meterRegistry.gauge("search.index.terms", this, index -> index.readLocked(() -> index.terms.size()));
+    }
+
+    /**
+     * Nạp chỉ mục từ file (hoặc dựng lại từ Mongo) trên virtual thread sau khi khởi động;
+     * trong lúc đó tìm kiếm dùng cách quét cũ
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!starting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.startVirtualThread(() -> {
+            try {
+                boolean loaded = loadSnapshot();
+                ChangeLogEntry oldest = changeLogRepository.findFirstByOrderByVersionAsc();
+                if (!loaded || (oldest != null && cursor < oldest.getVersion() - 1)) {
+                    // Chưa có file, hoặc change log cần để bắt kịp đã hết hạn
+                    rebuild();
+                }
+                applyChanges();
+                ready = true;
+                logger.info("Chỉ mục tìm kiếm sẵn sàng: {} bài đăng, {} từ", liveCount, terms.size());
+            } catch (Exception e) {
+                // Thử lại sau một phút (ví dụ Mongo chưa sẵn sàng); trong lúc đó tìm kiếm quét toàn bộ bài đăng
+                logger.warn("Không thể khởi tạo chỉ mục tìm kiếm, sẽ thử lại", e);
+                nextStartAttempt = System.currentTimeMillis() + 60_000;
+            } finally {
+                starting.set(false);
+            }
+        });
+    }
+
+    /**
+     * Chỉ mục đã sẵn sàng để tìm kiếm
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Tìm bài đăng theo nội dung
+     *
+     * @param query Câu truy vấn
+     * @param viewerId ID người tìm (thấy bài công khai và bài của chính mình), có thể null
+     * @param limit Số kết quả tối đa
+     * @return ID bài đăng theo điểm giảm dần, hoặc null nếu chỉ mục chưa sẵn sàng
+     */
+    public List<String> search(String query, String viewerId, int limit) {
+        if (!ready) {
+            return null;
+        }
+        long start = System.nanoTime();
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int viewer = viewerId != null ? userOrdinals.getOrDefault(viewerId, -1) : -1;
+            double averageLength = liveCount > 0 ? (double) liveLength / liveCount : 1;
+            Map<Integer, Score> scores = new HashMap<>();
+
+            for (int group = 0; group < tokens.size(); group++) {
+                String token = tokens.get(group);
+                List<PostingList> lists = new ArrayList<>();
+                PostingList exact = terms.get(token);
+                if (exact != null) {
+                    lists.add(exact);
+                }
+                if (group == tokens.size() - 1 && token.length() >= MIN_PREFIX_LENGTH) {
+                    for (Map.Entry<String, PostingList> entry : terms.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+                        if (lists.size() >= MAX_PREFIX_EXPANSION) {
+                            break;
+                        }
+                        lists.add(entry.getValue());
+                    }
+                }
+                if (lists.isEmpty()) {
+                    return List.of(); // Mọi từ đều phải khớp
+                }
+
+                for (PostingList list : lists) {
+                    double idf = Math.log(1 + (liveCount - list.count + 0.5) / (list.count + 0.5));
+                    byte[] data = list.data;
+                    int position = 0;
+                    int docId = -1;
+                    while (position < list.length) {
+                        // Giải mã varint: khoảng cách docId rồi tần suất
+                        int delta = 0;
+                        for (int shift = 0; ; shift += 7) {
+                            byte b = data[position++];
+                            delta |= (b & 0x7F) << shift;
+                            if (b >= 0) {
+                                break;
+                            }
+                        }
+                        int tf = 0;
+                        for (int shift = 0; ; shift += 7) {
+                            byte b = data[position++];
+                            tf |= (b & 0x7F) << shift;
+                            if (b >= 0) {
+                                break;
+                            }
+                        }
+                        docId += delta;
+
+                        byte flag = flags[docId];
+                        if ((flag & ALIVE) == 0 || ((flag & PUBLIC) == 0 && owners[docId] != viewer)) {
+                            continue;
+                        }
+                        Score score;
+                        if (group == 0) {
+                            score = scores.computeIfAbsent(docId, id -> new Score());
+                        } else {
+                            score = scores.get(docId);
+                            // Chưa khớp các từ trước: bỏ qua
+                            if (score == null || score.groups < group) {
+                                continue;
+                            }
+                        }
+                        double norm = tf + K1 * (1 - B + B * lengths[docId] / averageLength);
+                        score.value += idf * tf * (K1 + 1) / norm;
+                        score.groups = group + 1;
+                    }
+                }
+            }
+
+            // Lấy top-K bằng heap nhỏ nhất; cùng điểm thì bài mới hơn (docId lớn hơn) đứng trước
+            int groups = tokens.size();
+            PriorityQueue<Map.Entry<Integer, Score>> top = new PriorityQueue<>(
+                (a, b) -> a.getValue().value != b.getValue().value
+                    ? Double.compare(a.getValue().value, b.getValue().value)
+                    : Integer.compare(a.getKey(), b.getKey()));
+            for (Map.Entry<Integer, Score> entry : scores.entrySet()) {
+                if (entry.getValue().groups < groups) {
+                    continue;
+                }
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            String[] result = new String[top.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = postIds[top.poll().getKey()];
+            }
+            return Arrays.asList(result);
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Đọc các thay đổi bài đăng mới trong change log và cập nhật chỉ mục
+     */
+    @Scheduled(fixedDelay = 1_000)
+    public void pollChanges() {
+        if (!ready) {
+            if (nextStartAttempt > 0 && System.currentTimeMillis() >= nextStartAttempt) {
+                nextStartAttempt = 0;
+                start();
+            }
+            return;
+        }
+        try {
+            applyChanges();
+        } catch (Exception e) {
+            logger.warn("Không thể cập nhật chỉ mục tìm kiếm", e);
+        }
+    }
+
+    /**
+     * Lưu chỉ mục ra file nếu có thay đổi
+     */
+    @Scheduled(fixedDelayString = "${app.search.snapshot-interval-ms:600000}")
+    public void snapshotPeriodically() {
+        if (ready && dirty) {
+            saveSnapshot();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ready && dirty) {
+            saveSnapshot();
+        }
+    }
+
+    private void applyChanges() {
+        while (true) {
+            List<ChangeLogEntry> entries = changeLogRepository.findByScopeInAndVersionGreaterThanOrderByVersionAsc(
+                List.of(ChangeLogEntry.FEED_SCOPE), cursor, PageRequest.of(0, CHANGE_BATCH_SIZE));
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            // Thay đổi sau cùng của mỗi bài đăng được giữ lại
+            Map<String, String> ops = new LinkedHashMap<>();
+            for (ChangeLogEntry entry : entries) {
+                if (ChangeLogService.POST.equals(entry.getEntityType())) {
+                    ops.put(entry.getEntityId(), entry.getOp());
+                }
+            }
+            Map<String, Post> posts = new HashMap<>();
+            List<String> upserted = new ArrayList<>();
+            ops.forEach((postId, op) -> {
+                if (ChangeLogService.UPSERT.equals(op)) {
+                    upserted.add(postId);
+                }
+            });
+            if (!upserted.isEmpty()) {
+                for (Post post : mongoTemplate.find(projection(Criteria.where("_id").in(upserted)), Post.class)) {
+                    posts.put(post.getId(), post);
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                ops.keySet().forEach(postId -> {
+                    Post post = posts.get(postId);
+                    if (post != null) {
+                        index(post);
+                    } else {
+                        remove(postId);
+                    }
+                });
+                compactIfNeeded();
+                // Cập nhật cùng khóa với postings để snapshot không ghi cursor vượt quá dữ liệu đã lập chỉ mục
+                cursor = entries.get(entries.size() - 1).getVersion();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!ops.isEmpty()) {
+                dirty = true;
+            }
+
+            if (entries.size() < CHANGE_BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ chỉ mục từ collection posts (chỉ đọc các trường cần thiết)
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        long version = changeLogService.currentVersion();
+        lock.writeLock().lock();
+        try {
+            clear();
+            try (Stream<Post> stream = mongoTemplate.stream(projection(new Criteria()).cursorBatchSize(1000), Post.class)) {
+                stream.forEach(this::index);
+            }
+            cursor = version;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Đã dựng lại chỉ mục tìm kiếm ({} bài đăng) trong {} ms", liveCount,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static Query projection(Criteria criteria) {
+        Query query = new Query(criteria);
+        query.fields().include("content").include("userId").include("privacy");
+        return query;
+    }
+
+    /**
+     * Thêm (hoặc thay thế) một bài đăng trong chỉ mục; gọi khi đang giữ write lock
+     */
+    private void index(Post post) {
+        int contentHash = (post.getContent() == null ? 0 : post.getContent().hashCode()) * 31
+            + String.valueOf(post.getPrivacy()).hashCode();
+        Integer existing = docIdByPost.get(post.getId());
+        if (existing != null && contentHashes[existing] == contentHash
+                && users.get(owners[existing]).equals(post.getUserId())) {
+            return;
+        }
+        remove(post.getId());
+
+        List<String> tokens = SearchTokenizer.tokenize(post.getContent());
+        if (tokens.isEmpty() || post.getUserId() == null) {
+            return;
+        }
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        int docId = docCount++;
+        ensureCapacity(docCount);
+        postIds[docId] = post.getId();
+        owners[docId] = userOrdinals.computeIfAbsent(post.getUserId(), userId -> {
+            users.add(userId);
+            return users.size() - 1;
+        });
+        lengths[docId] = tokens.size();
+        contentHashes[docId] = contentHash;
+        flags[docId] = (byte) (ALIVE | ("PUBLIC".equals(post.getPrivacy()) ? PUBLIC : 0));
+        docIdByPost.put(post.getId(), docId);
+        liveCount++;
+        liveLength += tokens.size();
+
+        frequencies.forEach((term, tf) -> terms.computeIfAbsent(term, t -> new PostingList()).add(docId, tf));
+    }
+
+    /**
+     * Đánh dấu xóa bài đăng; gọi khi đang giữ write lock
+     */
+    private void remove(String postId) {
+        Integer docId = docIdByPost.remove(postId);
+        if (docId != null && (flags[docId] & ALIVE) != 0) {
+            flags[docId] &= ~ALIVE;
+            liveCount--;
+            liveLength -= lengths[docId];
+        }
+    }
+
+    /**
+     * Bỏ các tài liệu đã xóa khỏi danh sách khi chúng chiếm quá một phần tư chỉ mục
+     */
+    private void compactIfNeeded() {
+        int dead = docCount - liveCount;
+        if (dead < 1024 || dead < docCount / 4) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int docId = 0; docId < docCount; docId++) {
+            if ((flags[docId] & ALIVE) != 0) {
+                remap[docId] = next;
+                postIds[next] = postIds[docId];
+                owners[next] = owners[docId];
+                lengths[next] = lengths[docId];
+                contentHashes[next] = contentHashes[docId];
+                flags[next] = flags[docId];
+                docIdByPost.put(postIds[next], next);
+                next++;
+            } else {
+                remap[docId] = -1;
+            }
+        }
+        Arrays.fill(postIds, next, docCount, null);
+        docCount = next;
+
+        Iterator<Map.Entry<String, PostingList>> iterator = terms.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, PostingList> entry = iterator.next();
+            PostingList compacted = entry.getValue().remap(remap);
+            if (compacted.count == 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(compacted);
+            }
+        }
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= postIds.length) {
+            return;
+        }
+        int capacity = Math.max(size, postIds.length * 2);
+        postIds = Arrays.copyOf(postIds, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        contentHashes = Arrays.copyOf(contentHashes, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+    }
+
+    private void clear() {
+        Arrays.fill(postIds, null);
+        docCount = 0;
+        liveCount = 0;
+        liveLength = 0;
+        docIdByPost.clear();
+        users.clear();
+        userOrdinals.clear();
+        terms.clear();
+    }
+
+    /**
+     * Ghi chỉ mục ra file tạm rồi đổi tên (file cũ vẫn nguyên nếu ghi lỗi giữa chừng)
+     */
+    private void saveSnapshot() {
+        Path target = Paths.get(snapshotPath).toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        lock.writeLock().lock();
+        try {
+            compactIfNeeded();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(cursor);
+                out.writeInt(users.size());
+                for (String user : users) {
+                    out.writeUTF(user);
+                }
+                out.writeInt(docCount);
+                for (int docId = 0; docId < docCount; docId++) {
+                    out.writeUTF(postIds[docId]);
+                    out.writeInt(owners[docId]);
+                    out.writeInt(lengths[docId]);
+                    out.writeInt(contentHashes[docId]);
+                    out.writeByte(flags[docId]);
+                }
+                out.writeInt(terms.size());
+                for (Map.Entry<String, PostingList> entry : terms.entrySet()) {
+                    PostingList list = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(list.count);
+                    out.writeInt(list.lastDocId);
+                    out.writeInt(list.length);
+                    out.write(list.data, 0, list.length);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            logger.warn("Không thể lưu chỉ mục tìm kiếm ra {}", target, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Nạp chỉ mục từ file
+     *
+     * @return false nếu chưa có file hoặc file không đọc được
+     */
+    private boolean loadSnapshot() {
+        Path source = Paths.get(snapshotPath).toAbsolutePath();
+        if (!Files.isRegularFile(source)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                logger.info("File chỉ mục {} có định dạng cũ, dựng lại", source);
+                return false;
+            }
+            clear();
+            cursor = in.readLong();
+            int userCount = in.readInt();
+            for (int i = 0; i < userCount; i++) {
+                String user = in.readUTF();
+                users.add(user);
+                userOrdinals.put(user, i);
+            }
+            docCount = in.readInt();
+            ensureCapacity(docCount);
+            for (int docId = 0; docId < docCount; docId++) {
+                postIds[docId] = in.readUTF();
+                owners[docId] = in.readInt();
+                lengths[docId] = in.readInt();
+                contentHashes[docId] = in.readInt();
+                flags[docId] = in.readByte();
+                if ((flags[docId] & ALIVE) != 0) {
+                    docIdByPost.put(postIds[docId], docId);
+                    liveCount++;
+                    liveLength += lengths[docId];
+                }
+            }
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                PostingList list = new PostingList();
+                list.count = in.readInt();
+                list.lastDocId = in.readInt();
+                list.length = in.readInt();
+                list.data = new byte[Math.max(8, list.length)];
+                in.readFully(list.data, 0, list.length);
+                terms.put(term, list);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Không thể đọc file chỉ mục {}, dựng lại", source, e);
+            clear();
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private <T> T readLocked(Supplier<T> supplier) {
+        lock.readLock().lock();
+        try {
+            return supplier.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Điểm tạm thời của một bài đăng trong lúc tìm kiếm
+     */
+    private static final class Score {
+        double value;
+        int groups; // Số từ truy vấn (liên tiếp từ đầu) đã khớp
+    }
+
+    /**
+     * Danh sách (docId tăng dần, tần suất) của một từ, mã hóa varint liên tiếp trong mảng byte
+     */
+    private static final class PostingList {
+        byte[] data = new byte[8];
+        int length;
+        int count;
+        int lastDocId = -1;
+
+        void add(int docId, int tf) {
+            writeVarint(docId - lastDocId);
+            writeVarint(tf);
+            lastDocId = docId;
+            count++;
+        }
+
+        /**
+         * Tạo danh sách mới với docId đã đổi số (bỏ tài liệu có remap = -1)
+         */
+        PostingList remap(int[] remap) {
+            PostingList result = new PostingList();
+            int position = 0;
+            int docId = -1;
+            while (position < length) {
+                int delta = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[position++];
+                    delta |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                int tf = 0;
+                for (int shift = 0; ; shift += 7) {
+                    byte b = data[position++];
+                    tf |= (b & 0x7F) << shift;
+                    if (b >= 0) {
+                        break;
+                    }
+                }
+                docId += delta;
+                if (remap[docId] >= 0) {
+                    result.add(remap[docId], tf);
+                }
+            }
+            return result;
+        }
+
+        private void writeVarint(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+}
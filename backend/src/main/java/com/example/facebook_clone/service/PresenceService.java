@@ -0,0 +1,245 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.Friend;
+import com.example.facebook_clone.repository.FriendRepository;
+
+/**
+ * Service theo dõi trạng thái online của người dùng dựa trên các session STOMP.
+ * Trạng thái chỉ nằm trong bộ nhớ, không lưu xuống MongoDB.
+ */
+@Service
+public class PresenceService {
+
+    // Số phân vùng của bảng user -> sessions, giảm tranh chấp khi nhiều người kết nối cùng lúc
+    private static final int STRIPES = 16;
+
+    // Session không có hoạt động (kể cả heartbeat 25s) quá thời gian này được coi là đã mất kết nối
+    private static final long SESSION_TTL_MS = 75_000;
+
+    @Autowired
+    private FriendRepository friendRepository;
+
+    @Autowired
+    @Lazy
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private ClusterEventBus eventBus;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
+    // Mỗi phân vùng: userId -> (sessionId -> thời điểm hoạt động cuối)
+    private final List<ConcurrentHashMap<String, Map<String, Long>>> stripes = new ArrayList<>(STRIPES);
+
+    // sessionId -> userId, để xử lý disconnect và heartbeat chỉ có sessionId
+    private final ConcurrentHashMap<String, String> sessionOwners = new ConcurrentHashMap<>();
+
+    public PresenceService() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    private ConcurrentHashMap<String, Map<String, Long>> stripeFor(String userId) {
+        return stripes.get((userId.hashCode() & 0x7fffffff) % STRIPES);
+    }
+
+    /**
+     * Ghi nhận một session mới của người dùng
+     *
+     * @param sessionId ID session STOMP
+     * @param userId ID người dùng
+     */
+    public void sessionConnected(String sessionId, String userId) {
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        sessionOwners.put(sessionId, userId);
+        platformStatsService.recordActive(userId);
+
+        boolean[] cameOnline = new boolean[1];
+        stripeFor(userId).compute(userId, (id, sessions) -> {
+            if (sessions == null) {
+                sessions = new HashMap<>();
+                cameOnline[0] = true;
+            }
+            sessions.put(sessionId, System.currentTimeMillis());
+            return sessions;
+        });
+
+        if (cameOnline[0]) {
+            broadcastPresence(userId, true);
+        }
+    }
+
+    /**
+     * Xóa session khi client ngắt kết nối
+     *
+     * @param sessionId ID session STOMP
+     */
+    public void sessionDisconnected(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String userId = sessionOwners.remove(sessionId);
+        if (userId != null && removeSession(userId, sessionId)) {
+            broadcastPresence(userId, false);
+        }
+    }
+
+    /**
+     * Cập nhật thời điểm hoạt động cuối của session (frame bất kỳ hoặc heartbeat)
+     *
+     * @param sessionId ID session STOMP
+     */
+    public void touch(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        String userId = sessionOwners.get(sessionId);
+        if (userId == null) {
+            return;
+        }
+        stripeFor(userId).computeIfPresent(userId, (id, sessions) -> {
+            sessions.computeIfPresent(sessionId, (sid, lastSeen) -> System.currentTimeMillis());
+            return sessions;
+        });
+    }
+
+    /**
+     * Lấy ID người dùng sở hữu một session
+     *
+     * @param sessionId ID session STOMP
+     * @return ID người dùng hoặc null nếu session không xác định
+     */
+    public String getSessionUser(String sessionId) {
+        return sessionId != null ? sessionOwners.get(sessionId) : null;
+    }
+
+    /**
+     * Kiểm tra người dùng có đang online hay không (trên bất kỳ node nào)
+     *
+     * @param userId ID người dùng
+     * @return true nếu có ít nhất một session đang hoạt động
+     */
+    public boolean isOnline(String userId) {
+        return isOnlineLocally(userId) || (userId != null && eventBus.isOnlineRemotely(userId));
+    }
+
+    /**
+     * Kiểm tra người dùng có session tại node hiện tại hay không
+     *
+     * @param userId ID người dùng
+     * @return true nếu có ít nhất một session đang hoạt động tại node này
+     */
+    public boolean isOnlineLocally(String userId) {
+        return userId != null && stripeFor(userId).containsKey(userId);
+    }
+
+    /**
+     * Lấy danh sách người dùng đang online tại node hiện tại
+     *
+     * @return Tập ID người dùng
+     */
+    public Set<String> getLocalOnlineUserIds() {
+        Set<String> userIds = new HashSet<>();
+        for (ConcurrentHashMap<String, Map<String, Long>> stripe : stripes) {
+            userIds.addAll(stripe.keySet());
+        }
+        return userIds;
+    }
+
+    /**
+     * Lấy danh sách ID bạn bè đang online
+     *
+     * @param userId ID người dùng
+     * @return Danh sách ID bạn bè đang online
+     */
+    public List<String> getOnlineFriendIds(String userId) {
+        List<String> onlineFriendIds = new ArrayList<>();
+        for (Friend friend : friendRepository.findByUserIdAndStatus(userId, "ACCEPTED")) {
+            if (isOnline(friend.getFriendId())) {
+                onlineFriendIds.add(friend.getFriendId());
+            }
+        }
+        return onlineFriendIds;
+    }
+
+    /**
+     * Dọn các session đã hết hạn (mất kết nối mà không nhận được DISCONNECT)
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void expireStaleSessions() {
+        long cutoff = System.currentTimeMillis() - SESSION_TTL_MS;
+        for (ConcurrentHashMap<String, Map<String, Long>> stripe : stripes) {
+            for (String userId : stripe.keySet()) {
+                List<String> expired = new ArrayList<>();
+                stripe.computeIfPresent(userId, (id, sessions) -> {
+                    Iterator<Map.Entry<String, Long>> it = sessions.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<String, Long> entry = it.next();
+                        if (entry.getValue() < cutoff) {
+                            expired.add(entry.getKey());
+                            it.remove();
+                        }
+                    }
+                    return sessions.isEmpty() ? null : sessions;
+                });
+
+                if (!expired.isEmpty()) {
+                    expired.forEach(sessionOwners::remove);
+                    if (!stripe.containsKey(userId)) {
+                        broadcastPresence(userId, false);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Xóa một session khỏi người dùng
+     *
+     * @return true nếu đây là session cuối cùng (người dùng chuyển sang offline)
+     */
+    private boolean removeSession(String userId, String sessionId) {
+        boolean[] wentOffline = new boolean[1];
+        stripeFor(userId).computeIfPresent(userId, (id, sessions) -> {
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                wentOffline[0] = true;
+                return null;
+            }
+            return sessions;
+        });
+        return wentOffline[0];
+    }
+
+    /**
+     * Gửi thay đổi trạng thái online đến những người bạn đang online
+     */
+    private void broadcastPresence(String userId, boolean online) {
+        Map<String, Object> presence = new HashMap<>();
+        presence.put("type", "PRESENCE");
+        presence.put("userId", userId);
+        presence.put("online", online);
+
+        for (String friendId : getOnlineFriendIds(userId)) {
+            realtimeEventService.sendToUser("/topic/presence/" + friendId, friendId, presence);
+        }
+    }
+}
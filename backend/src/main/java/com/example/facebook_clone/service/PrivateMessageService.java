@@ -0,0 +1,99 @@
+package com.example.facebook_clone.service;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.PrivateMessage;
+import com.example.facebook_clone.model.User;
+import com.example.facebook_clone.repository.PrivateMessageRepository;
+import com.example.facebook_clone.repository.UserRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service xử lý gửi tin nhắn riêng, dùng chung cho REST và STOMP
+ */
+@Service
+public class PrivateMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrivateMessageService.class);
+
+    @Autowired
+    private PrivateMessageRepository privateMessageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    @Autowired
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private PlatformStatsService platformStatsService;
+
+    @Autowired
+    private FeedRankingService feedRankingService;
+
+    // Tạo thông báo tin nhắn chạy nền để không chặn đường gửi tin nhắn
+    private final ExecutorService notificationExecutor = Executors.newFixedThreadPool(2);
+
+    /**
+     * Lưu tin nhắn và đẩy đến người nhận qua WebSocket
+     *
+     * @param senderId ID người gửi
+     * @param receiverId ID người nhận
+     * @param content Nội dung tin nhắn
+     * @return Tin nhắn đã lưu
+     */
+    public PrivateMessage sendMessage(String senderId, String receiverId, String content) {
+        PrivateMessage message = new PrivateMessage();
+        message.setSenderId(senderId);
+        message.setReceiverId(receiverId);
+        message.setContent(content);
+        message.setTimestamp(new Date());
+        message.setRead(false);
+
+        PrivateMessage savedMessage = privateMessageRepository.save(message);
+        platformStatsService.increment(PlatformStatsService.MESSAGES, 1);
+        feedRankingService.messageSent(savedMessage.getSenderId(), savedMessage.getReceiverId());
+
+        // Chỉ lấy thông tin người gửi và đẩy payload đầy đủ khi người nhận đang online
+        Optional<User> senderOpt = realtimeEventService.hasListener(receiverId)
+            ? userRepository.findById(senderId)
+            : Optional.empty();
+        if (senderOpt.isPresent()) {
+            Map<String, Object> messageData = new HashMap<>();
+            messageData.put("message", savedMessage);
+            messageData.put("sender", senderOpt.get());
+            messageData.put("type", "NEW_MESSAGE");
+
+            realtimeEventService.publishToUser("/topic/messages/" + receiverId, receiverId, messageData);
+        }
+
+        notificationExecutor.execute(() -> {
+            try {
+                notificationService.createMessageNotification(receiverId, senderId, savedMessage.getId());
+            } catch (Exception e) {
+                logger.warn("Không thể tạo thông báo cho tin nhắn {}", savedMessage.getId(), e);
+            }
+        });
+
+        return savedMessage;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notificationExecutor.shutdown();
+    }
+}
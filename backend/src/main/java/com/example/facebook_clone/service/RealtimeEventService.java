@@ -0,0 +1,307 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.ClusterEvent;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Service gửi sự kiện WebSocket theo từng người dùng, kèm số thứ tự (seq)
+ * và lưu lại các sự kiện gần nhất trong ring buffer để client nhận lại khi kết nối lại.
+ * Mọi sự kiện đi qua ClusterEventBus để đến được node đang giữ kết nối của người nhận.
+ */
+@Service
+public class RealtimeEventService implements ClusterEventHandler {
+
+    // Số sự kiện tối đa giữ lại cho mỗi người dùng
+    private static final int BUFFER_CAPACITY = 128;
+
+    // Giữ buffer thêm một khoảng thời gian sau khi người dùng offline để chờ kết nối lại
+    private static final long RETENTION_MS = 5 * 60 * 1000;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private ClusterEventBus eventBus;
+
+    @Autowired
+    @Lazy
+    private SseStreamService sseStreamService;
+
+    // Dùng chung một bộ đếm tăng dần cho mọi người dùng, khởi tạo theo thời gian
+    // để seq vẫn tăng sau khi server khởi động lại. Bộ đếm chỉ có ý nghĩa trong node này:
+    // resume với seq không do buffer của node này cấp sẽ trả về resyncRequired
+    private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+
+    private final ConcurrentHashMap<String, EventRing> buffers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        eventBus.subscribe(this);
+    }
+
+    /**
+     * Gửi sự kiện đến một người dùng
+     * Sự kiện được lưu vào buffer nếu người dùng đang online hoặc vừa mới offline,
+     * và chỉ được đẩy qua broker khi người dùng đang online.
+     *
+     * @param destination Đích STOMP (ví dụ /topic/notifications/{userId})
+     * @param userId ID người nhận
+     * @param payload Nội dung sự kiện
+     */
+    public void publishToUser(String destination, String userId, Object payload) {
+        eventBus.publish(new ClusterEvent(destination, userId, payload, true));
+    }
+
+    /**
+     * Gửi sự kiện tức thời đến một người dùng đang online (không lưu buffer),
+     * ví dụ trạng thái đang nhập hoặc online/offline
+     *
+     * @param destination Đích STOMP
+     * @param userId ID người nhận
+     * @param payload Nội dung sự kiện
+     */
+    public void sendToUser(String destination, String userId, Object payload) {
+        eventBus.publish(new ClusterEvent(destination, userId, payload, false));
+    }
+
+    /**
+     * Gửi sự kiện đến mọi subscriber của một destination trên tất cả các node
+     *
+     * @param destination Đích STOMP (ví dụ /topic/posts/{postId})
+     * @param payload Nội dung sự kiện
+     */
+    public void broadcast(String destination, Object payload) {
+        eventBus.publish(new ClusterEvent(destination, null, payload, false));
+    }
+
+    /**
+     * Gửi sự kiện từ event bus đến các session kết nối tại node này
+     *
+     * @param event Sự kiện nhận từ event bus
+     */
+    @Override
+    public void deliver(ClusterEvent event) {
+        String userId = event.getUserId();
+        if (userId == null) {
+            messagingTemplate.convertAndSend(event.getDestination(), event.getPayload());
+            return;
+        }
+        if (!event.isBuffered()) {
+            if (presenceService.isOnlineLocally(userId)) {
+                messagingTemplate.convertAndSend(event.getDestination(), event.getPayload());
+            }
+            return;
+        }
+
+        EventRing ring = presenceService.isOnlineLocally(userId)
+            ? buffers.computeIfAbsent(userId, id -> new EventRing(sequence.get()))
+            : buffers.get(userId);
+        if (ring == null) {
+            return;
+        }
+
+        long seq = ring.append(sequence, event.getDestination(), event.getPayload());
+        if (presenceService.isOnlineLocally(userId)) {
+            ring.touch();
+            Map<String, Object> headers = new HashMap<>();
+            headers.put("seq", seq);
+            messagingTemplate.convertAndSend(event.getDestination(), event.getPayload(), headers);
+        }
+        if (sseStreamService.hasStream(userId)) {
+            ring.touch();
+            sseStreamService.dispatch(userId, seq, event.getDestination(), event.getPayload());
+        }
+    }
+
+    @Override
+    public Set<String> localListeners() {
+        return new HashSet<>(buffers.keySet());
+    }
+
+    @Override
+    public Set<String> localOnlineUsers() {
+        return presenceService.getLocalOnlineUserIds();
+    }
+
+    /**
+     * Kiểm tra có cần tạo payload cho người dùng hay không
+     * (đang online, hoặc vừa offline và còn buffer chờ kết nối lại, tại node này hoặc node khác)
+     *
+     * @param userId ID người dùng
+     * @return true nếu sự kiện gửi cho người dùng này sẽ được dùng đến
+     */
+    public boolean hasListener(String userId) {
+        return userId != null && (presenceService.isOnlineLocally(userId) || buffers.containsKey(userId)
+            || eventBus.hasRemoteListener(userId));
+    }
+
+    /**
+     * Mở (hoặc làm mới) buffer khi người dùng kết nối
+     *
+     * @param userId ID người dùng
+     */
+    public void openBuffer(String userId) {
+        if (userId != null) {
+            buffers.computeIfAbsent(userId, id -> new EventRing(sequence.get())).touch();
+        }
+    }
+
+    /**
+     * Đánh dấu thời điểm người dùng rời đi, buffer được giữ thêm RETENTION_MS
+     *
+     * @param userId ID người dùng
+     */
+    public void markInactive(String userId) {
+        EventRing ring = userId != null ? buffers.get(userId) : null;
+        if (ring != null) {
+            ring.touch();
+        }
+    }
+
+    /**
+     * Lấy các sự kiện client đã bỏ lỡ kể từ lastSeq
+     *
+     * @param userId ID người dùng
+     * @param lastSeq seq cuối cùng client đã nhận
+     * @return Kết quả resume: danh sách sự kiện, hoặc resyncRequired nếu buffer đã bị tràn
+     *         hoặc lastSeq do node khác cấp (client kết nối lại vào node khác)
+     */
+    public Map<String, Object> resume(String userId, long lastSeq) {
+        Map<String, Object> result = new HashMap<>();
+        EventRing ring = buffers.get(userId);
+
+        List<Map<String, Object>> events = ring != null ? ring.since(lastSeq) : null;
+        result.put("resyncRequired", events == null);
+        result.put("events", events != null ? events : List.of());
+        result.put("latestSeq", ring != null ? ring.latestSeq() : sequence.get());
+        return result;
+    }
+
+    /**
+     * Lấy seq mới nhất đã phát cho người dùng
+     *
+     * @param userId ID người dùng
+     * @return seq mới nhất
+     */
+    public long latestSeq(String userId) {
+        EventRing ring = buffers.get(userId);
+        return ring != null ? ring.latestSeq() : sequence.get();
+    }
+
+    /**
+     * Xóa buffer của những người dùng đã offline quá thời gian giữ lại
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleBuffers() {
+        long cutoff = System.currentTimeMillis() - RETENTION_MS;
+        buffers.entrySet().removeIf(entry ->
+            !presenceService.isOnlineLocally(entry.getKey()) && !sseStreamService.hasStream(entry.getKey())
+                && entry.getValue().lastActive() < cutoff);
+    }
+
+    /**
+     * Ring buffer có kích thước cố định chứa các sự kiện gần nhất của một người dùng
+     */
+    private static class EventRing {
+        private final long[] seqs = new long[BUFFER_CAPACITY];
+        private final String[] destinations = new String[BUFFER_CAPACITY];
+        private final Object[] payloads = new Object[BUFFER_CAPACITY];
+
+        // Các sự kiện có seq <= baseSeq không có trong buffer (trước khi tạo hoặc đã bị ghi đè)
+        private long baseSeq;
+        // baseSeq là seq đã gửi cho người dùng này (sự kiện bị ghi đè), không phải mốc lúc tạo buffer
+        private boolean baseDelivered;
+        private long latestSeq;
+        private int head;
+        private int size;
+        private volatile long lastActive = System.currentTimeMillis();
+
+        EventRing(long baseSeq) {
+            this.baseSeq = baseSeq;
+            this.latestSeq = baseSeq;
+        }
+
+        synchronized long append(AtomicLong sequence, String destination, Object payload) {
+            long seq = sequence.incrementAndGet();
+            int slot = (head + size) % BUFFER_CAPACITY;
+            if (size == BUFFER_CAPACITY) {
+                // Buffer đầy: ghi đè sự kiện cũ nhất
+                baseSeq = seqs[head];
+                baseDelivered = true;
+                head = (head + 1) % BUFFER_CAPACITY;
+            } else {
+                size++;
+            }
+            seqs[slot] = seq;
+            destinations[slot] = destination;
+            payloads[slot] = payload;
+            latestSeq = seq;
+            return seq;
+        }
+
+        /**
+         * Seq được cấp theo bộ đếm riêng của từng node, nên lastSeq chỉ có nghĩa khi chính buffer này
+         * đã gửi nó: seq do node khác cấp (client kết nối lại vào node khác) hoặc do buffer cũ
+         * đã bị xóa cấp đều được coi là không xác định.
+         *
+         * @return Các sự kiện có seq > lastSeq, hoặc null nếu có sự kiện đã bị mất hoặc lastSeq không xác định
+         */
+        synchronized List<Map<String, Object>> since(long lastSeq) {
+            int from = -1;
+            if (lastSeq == baseSeq && baseDelivered) {
+                from = 0;
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (seqs[(head + i) % BUFFER_CAPACITY] == lastSeq) {
+                        from = i + 1;
+                        break;
+                    }
+                }
+            }
+            if (from < 0) {
+                return null;
+            }
+            List<Map<String, Object>> events = new ArrayList<>();
+            for (int i = from; i < size; i++) {
+                int slot = (head + i) % BUFFER_CAPACITY;
+                Map<String, Object> event = new HashMap<>();
+                event.put("seq", seqs[slot]);
+                event.put("destination", destinations[slot]);
+                event.put("payload", payloads[slot]);
+                events.add(event);
+            }
+            return events;
+        }
+
+        synchronized long latestSeq() {
+            return latestSeq;
+        }
+
+        void touch() {
+            lastActive = System.currentTimeMillis();
+        }
+
+        long lastActive() {
+            return lastActive;
+        }
+    }
+}
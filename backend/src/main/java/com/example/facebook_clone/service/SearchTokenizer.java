@@ -0,0 +1,73 @@
+package com.example.facebook_clone.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tách từ cho tìm kiếm: chữ thường, bỏ dấu tiếng Việt (NFD rồi bỏ ký tự dấu, đ -> d),
+ * tách theo ký tự không phải chữ/số. Nhờ vậy "Hà Nội", "ha noi" và "HÀ NỘI" cho cùng các từ.
+ */
+public final class SearchTokenizer {
+
+    // Từ dài hơn mức này (chuỗi rác, URL dài) bị cắt bớt để từ điển không phình to
+    private static final int MAX_TOKEN_LENGTH = 40;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * Chuẩn hóa chuỗi: chữ thường và bỏ dấu
+     *
+     * @param text Chuỗi gốc
+     * @return Chuỗi đã bỏ dấu, rỗng nếu text là null
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        // Nhanh: chuỗi ASCII không cần chuẩn hóa
+        boolean ascii = true;
+        for (int i = 0; i < lower.length() && ascii; i++) {
+            ascii = lower.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return lower;
+        }
+
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            folded.append(c == 'đ' ? 'd' : c);
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Tách chuỗi thành các từ đã chuẩn hóa (giữ thứ tự, có thể lặp)
+     *
+     * @param text Chuỗi gốc
+     * @return Danh sách từ
+     */
+    public static List<String> tokenize(String text) {
+        String folded = fold(text);
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= folded.length(); i++) {
+            boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(folded.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
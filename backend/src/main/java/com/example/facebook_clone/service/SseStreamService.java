@@ -0,0 +1,247 @@
+package com.example.facebook_clone.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service quản lý các luồng Server-Sent Events cho thông báo và số thông báo chưa đọc.
+ * Sự kiện đến từ cùng đường phát với WebSocket (RealtimeEventService), dùng seq làm id
+ * để client nối lại bằng Last-Event-ID.
+ */
+@Service
+public class SseStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseStreamService.class);
+
+    // Emitter hết hạn sau 30 phút, EventSource tự kết nối lại kèm Last-Event-ID
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000;
+
+    @Autowired
+    private RealtimeEventService realtimeEventService;
+
+    @Autowired
+    private NotificationService notificationService;
+
+    // Ghi ra từng client trên virtual thread riêng, client chậm không chặn luồng phát sự kiện
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ConcurrentHashMap<String, List<StreamClient>> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Mở luồng SSE cho người dùng
+     *
+     * @param userId ID người dùng
+     * @param lastEventId seq cuối cùng client đã nhận (header Last-Event-ID), có thể null
+     * @return SseEmitter cho request bất đồng bộ
+     */
+    public SseEmitter open(String userId, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        StreamClient client = new StreamClient(emitter);
+
+        // Đăng ký trước khi lấy sự kiện bỏ lỡ; sự kiện mới trong lúc đó được giữ lại đến khi replay xong
+        realtimeEventService.openBuffer(userId);
+        streams.computeIfAbsent(userId, id -> new CopyOnWriteArrayList<>()).add(client);
+        emitter.onCompletion(() -> remove(userId, client));
+        emitter.onTimeout(() -> remove(userId, client));
+        emitter.onError(e -> remove(userId, client));
+
+        List<SseEmitter.SseEventBuilder> initial = new ArrayList<>();
+        long replayedUpTo;
+        if (lastEventId != null) {
+            Map<String, Object> resume = realtimeEventService.resume(userId, lastEventId);
+            replayedUpTo = ((Number) resume.get("latestSeq")).longValue();
+            if (Boolean.TRUE.equals(resume.get("resyncRequired"))) {
+                initial.add(SseEmitter.event().name("resync").data(Map.of("resyncRequired", true)));
+            } else {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> events = (List<Map<String, Object>>) resume.get("events");
+                for (Map<String, Object> event : events) {
+                    SseEmitter.SseEventBuilder built = toSseEvent(userId,
+                        ((Number) event.get("seq")).longValue(), (String) event.get("destination"), event.get("payload"));
+                    if (built != null) {
+                        initial.add(built);
+                    }
+                }
+            }
+        } else {
+            replayedUpTo = realtimeEventService.latestSeq(userId);
+        }
+
+        // Trạng thái ban đầu của bộ đếm
+        try {
+            initial.add(SseEmitter.event().name("unread-count")
+                .data(Map.of("count", notificationService.getUnreadCount(userId))));
+        } catch (Exception e) {
+            logger.warn("Không thể lấy số thông báo chưa đọc của {}", userId, e);
+        }
+
+        client.startLive(initial, replayedUpTo);
+        return emitter;
+    }
+
+    /**
+     * Kiểm tra người dùng có luồng SSE đang mở tại node này hay không
+     *
+     * @param userId ID người dùng
+     * @return true nếu có ít nhất một luồng
+     */
+    public boolean hasStream(String userId) {
+        List<StreamClient> clients = streams.get(userId);
+        return clients != null && !clients.isEmpty();
+    }
+
+    /**
+     * Nhận sự kiện từ RealtimeEventService và chuyển tiếp đến các luồng SSE của người dùng
+     *
+     * @param userId ID người nhận
+     * @param seq Số thứ tự sự kiện
+     * @param destination Đích STOMP của sự kiện
+     * @param payload Nội dung sự kiện
+     */
+    public void dispatch(String userId, long seq, String destination, Object payload) {
+        List<StreamClient> clients = streams.get(userId);
+        if (clients == null || clients.isEmpty()) {
+            return;
+        }
+        for (StreamClient client : clients) {
+            // SseEventBuilder thay đổi trạng thái khi build, mỗi client cần một bản riêng
+            SseEmitter.SseEventBuilder event = toSseEvent(userId, seq, destination, payload);
+            if (event == null) {
+                return;
+            }
+            client.offer(seq, event);
+        }
+    }
+
+    /**
+     * Gửi comment giữ kết nối, đồng thời phát hiện các kết nối đã chết
+     */
+    @Scheduled(fixedDelay = 25_000)
+    public void heartbeat() {
+        streams.values().forEach(clients -> clients.forEach(client -> client.offer(-1, SseEmitter.event().comment("ping"))));
+    }
+
+    /**
+     * Chỉ chuyển tiếp thông báo và số thông báo chưa đọc
+     */
+    private SseEmitter.SseEventBuilder toSseEvent(String userId, long seq, String destination, Object payload) {
+        String notifications = "/topic/notifications/" + userId;
+        if (destination.equals(notifications)) {
+            return SseEmitter.event().id(Long.toString(seq)).name("notification").data(payload);
+        }
+        if (destination.equals(notifications + NotificationService.UNREAD_COUNT_SUFFIX)) {
+            return SseEmitter.event().id(Long.toString(seq)).name("unread-count").data(payload);
+        }
+        return null;
+    }
+
+    private void remove(String userId, StreamClient client) {
+        client.close();
+        streams.computeIfPresent(userId, (id, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+        if (!hasStream(userId)) {
+            realtimeEventService.markInactive(userId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        streams.values().forEach(clients -> clients.forEach(client -> client.emitter.complete()));
+        sendExecutor.shutdownNow();
+    }
+
+    /**
+     * Một kết nối SSE: hàng đợi riêng, ghi tuần tự theo thứ tự seq
+     */
+    private class StreamClient {
+        private final SseEmitter emitter;
+        private final Queue<SseEmitter.SseEventBuilder> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        // Trước khi replay xong, sự kiện mới được giữ lại cùng seq để lọc trùng
+        private List<Object[]> pending = new ArrayList<>();
+        private long replayedUpTo;
+        private volatile boolean closed;
+
+        StreamClient(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(long seq, SseEmitter.SseEventBuilder event) {
+            if (closed) {
+                return;
+            }
+            if (pending != null) {
+                pending.add(new Object[]{seq, event});
+                return;
+            }
+            queue.add(event);
+            scheduleDrain();
+        }
+
+        synchronized void startLive(List<SseEmitter.SseEventBuilder> initial, long replayedUpTo) {
+            this.replayedUpTo = replayedUpTo;
+            queue.addAll(initial);
+            for (Object[] held : pending) {
+                long seq = (long) held[0];
+                // Sự kiện đã có trong phần replay thì bỏ qua (heartbeat có seq -1 cũng bỏ)
+                if (seq > this.replayedUpTo) {
+                    queue.add((SseEmitter.SseEventBuilder) held[1]);
+                }
+            }
+            pending = null;
+            scheduleDrain();
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder next;
+                while (!closed && (next = queue.poll()) != null) {
+                    try {
+                        emitter.send(next);
+                    } catch (IOException | IllegalStateException e) {
+                        closed = true;
+                        emitter.completeWithError(e);
+                        return;
+                    }
+                }
+                draining.set(false);
+                // Có sự kiện mới được thêm sau vòng lặp nhưng trước khi nhả cờ
+                if (closed || queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.facebook_clone.service;
+
+/**
+ * Hàm băm 64 bit cho chuỗi dùng chung bởi các cấu trúc xác suất (Count-Min Sketch, HyperLogLog, Bloom filter):
+ * FNV-1a 64 bit rồi trộn lại bằng bước cuối của splitmix64 để mọi bit, kể cả bit cao, phân bố đều.
+ */
+final class StringHashing {
+
+    private StringHashing() {
+    }
+
+    static long hash64(String value) {
+        return hash64(value, 0);
+    }
+
+    /**
+     * @param seed Trộn vào trạng thái ban đầu, để có nhiều hàm băm độc lập cho cùng một chuỗi
+     */
+    static long hash64(String value, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.facebook_clone.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.Post;
+import com.example.facebook_clone.model.TrendingSketch;
+
+/**
+ * Bài đăng đang thịnh hành: nhiều lượt thích, bình luận, chia sẻ nhất trong WINDOW_BUCKETS × BUCKET_MS gần nhất.
+ *
+ * Tương tác không được đếm riêng cho từng bài mà cộng vào một Count-Min Sketch (SKETCH_DEPTH hàng ×
+ * SKETCH_WIDTH ô) của khoảng thời gian hiện tại; cửa sổ trượt là vòng tròn các sketch theo khoảng, cộng
+ * sẵn vào một sketch tổng, nên khi một khoảng hết hạn chỉ cần trừ nó ra. Bài có ước lượng cao nhất được
+ * giữ trong tối đa MAX_CANDIDATES ứng viên, nên bộ nhớ cố định dù có bao nhiêu bài hay tương tác.
+ *
+ * Sketch cộng được với nhau: khi một khoảng kết thúc, mỗi node ghi sketch của mình vào trending_sketches
+ * và cộng sketch của các node khác vào cửa sổ, nên xu hướng tính trên toàn cụm (chậm tối đa một khoảng).
+ */
+@Service
+public class TrendingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingService.class);
+
+    public static final int MAX_TRENDING_RESULTS = 50;
+
+    private static final long BUCKET_MS = 5 * 60_000;
+    private static final int WINDOW_BUCKETS = 12;
+
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+    private static final int MAX_CANDIDATES = 256;
+    // Số ứng viên gửi kèm sketch cho các node khác
+    private static final int SHARED_CANDIDATES = 64;
+
+    private static final int LIKE_WEIGHT = 2;
+    private static final int COMMENT_WEIGHT = 3;
+    private static final int SHARE_WEIGHT = 4;
+    private static final int COMMENT_LIKE_WEIGHT = 1;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // Sketch của từng khoảng trong cửa sổ (vòng tròn) và tổng của chúng
+    private final int[][] buckets = new int[WINDOW_BUCKETS][SKETCH_DEPTH * SKETCH_WIDTH];
+    private final long[] bucketNumbers = new long[WINDOW_BUCKETS];
+    private final int[] window = new int[SKETCH_DEPTH * SKETCH_WIDTH];
+    private long currentBucket;
+    private boolean currentBucketUsed;
+
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    private int minCandidateEstimate;
+
+    // Sketch của các khoảng vừa kết thúc, chờ ghi cho các node khác
+    private final List<TrendingSketch> unpublished = new ArrayList<>();
+    // Sketch của node khác đã cộng vào cửa sổ -> khoảng của nó
+    private final Map<String, Long> mergedSketches = new HashMap<>();
+
+    public TrendingService() {
+        currentBucket = System.currentTimeMillis() / BUCKET_MS;
+        for (long bucket = currentBucket - WINDOW_BUCKETS + 1; bucket <= currentBucket; bucket++) {
+            bucketNumbers[slot(bucket)] = bucket;
+        }
+    }
+
+    /**
+     * Ghi nhận lượt thích bài đăng (bỏ thích không được trừ: sketch chỉ cộng)
+     */
+    public void postLiked(Post post) {
+        record(post, LIKE_WEIGHT);
+    }
+
+    /**
+     * Ghi nhận bình luận hoặc trả lời mới
+     */
+    public void commentAdded(Post post) {
+        record(post, COMMENT_WEIGHT);
+    }
+
+    /**
+     * Ghi nhận lượt thích một bình luận trong bài đăng
+     */
+    public void commentLiked(Post post) {
+        record(post, COMMENT_LIKE_WEIGHT);
+    }
+
+    /**
+     * Ghi nhận bài đăng gốc được chia sẻ
+     */
+    public void postShared(Post originalPost) {
+        record(originalPost, SHARE_WEIGHT);
+    }
+
+    /**
+     * Cập nhật quyền riêng tư của ứng viên sau khi bài đăng được sửa
+     */
+    public synchronized void postUpdated(Post post) {
+        Candidate candidate = candidates.get(post.getId());
+        if (candidate != null) {
+            candidate.visible = "PUBLIC".equals(post.getPrivacy());
+        }
+    }
+
+    /**
+     * Bỏ bài đăng đã bị xóa khỏi ứng viên
+     */
+    public synchronized void postDeleted(String postId) {
+        candidates.remove(postId);
+    }
+
+    /**
+     * Lấy các bài đăng thịnh hành mà người xem được thấy, chỉ đọc trong bộ nhớ
+     *
+     * @param viewerId ID người xem (thấy bài công khai và bài của chính mình), có thể null
+     * @param limit Số kết quả tối đa
+     * @return ID bài đăng, nhiều tương tác nhất trước
+     */
+    public synchronized List<String> trending(String viewerId, int limit) {
+        rotate(System.currentTimeMillis());
+        List<Candidate> visible = new ArrayList<>();
+        for (Candidate candidate : candidates.values()) {
+            candidate.estimate = estimate(window, candidate.hash);
+            if (candidate.estimate > 0 && (candidate.visible || candidate.userId.equals(viewerId))) {
+                visible.add(candidate);
+            }
+        }
+        visible.sort(Comparator.comparingInt((Candidate candidate) -> candidate.estimate).reversed());
+        List<String> postIds = new ArrayList<>(Math.min(limit, visible.size()));
+        for (int i = 0; i < visible.size() && i < limit; i++) {
+            postIds.add(visible.get(i).postId);
+        }
+        return postIds;
+    }
+
+    /**
+     * Ghi sketch của các khoảng đã kết thúc và cộng sketch mới của các node khác vào cửa sổ
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void exchange() {
+        List<TrendingSketch> finished;
+        long oldestBucket;
+        long latestFinished;
+        synchronized (this) {
+            rotate(System.currentTimeMillis());
+            finished = new ArrayList<>(unpublished);
+            unpublished.clear();
+            oldestBucket = currentBucket - WINDOW_BUCKETS + 1;
+            latestFinished = currentBucket - 1;
+            mergedSketches.values().removeIf(bucket -> bucket < oldestBucket);
+        }
+
+        try {
+            for (TrendingSketch sketch : finished) {
+                if (sketch.getBucket() >= oldestBucket) {
+                    mongoTemplate.save(sketch);
+                }
+            }
+
+            // Chỉ cộng các khoảng đã kết thúc ở node này, để sketch gửi đi không chứa số liệu của node khác
+            Query query = new Query(Criteria.where("bucket").gte(oldestBucket).lte(latestFinished)
+                .and("nodeId").ne(nodeId));
+            synchronized (this) {
+                query.addCriteria(Criteria.where("_id").nin(mergedSketches.keySet()));
+            }
+            for (TrendingSketch sketch : mongoTemplate.find(query, TrendingSketch.class)) {
+                merge(sketch);
+            }
+        } catch (Exception e) {
+            // Chỉ mất phần xu hướng của các node khác; số liệu của node này vẫn được dùng
+            logger.warn("Không thể trao đổi sketch xu hướng với các node khác", e);
+        }
+    }
+
+    private void record(Post post, int weight) {
+        if (post == null || post.getId() == null || post.getUserId() == null) {
+            return;
+        }
+        long hash = StringHashing.hash64(post.getId());
+        synchronized (this) {
+            rotate(System.currentTimeMillis());
+            int[] counts = buckets[slot(currentBucket)];
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                int cell = cell(hash, row);
+                counts[cell] += weight;
+                window[cell] += weight;
+                estimate = Math.min(estimate, window[cell]);
+            }
+            currentBucketUsed = true;
+            offer(post.getId(), post.getUserId(), "PUBLIC".equals(post.getPrivacy()), hash, estimate);
+        }
+    }
+
+    /**
+     * Giữ bài đăng trong ứng viên nếu ước lượng của nó vượt ứng viên thấp nhất
+     */
+    private void offer(String postId, String userId, boolean visible, long hash, int estimate) {
+        Candidate candidate = candidates.get(postId);
+        if (candidate != null) {
+            candidate.estimate = estimate;
+            return;
+        }
+        if (candidates.size() >= MAX_CANDIDATES) {
+            // minCandidateEstimate không lớn hơn ứng viên thấp nhất (ước lượng chỉ tăng giữa hai lần trượt)
+            if (estimate <= minCandidateEstimate) {
+                return;
+            }
+            Candidate weakest = null;
+            for (Candidate existing : candidates.values()) {
+                if (weakest == null || existing.estimate < weakest.estimate) {
+                    weakest = existing;
+                }
+            }
+            minCandidateEstimate = weakest.estimate;
+            if (estimate <= weakest.estimate) {
+                return;
+            }
+            candidates.remove(weakest.postId);
+        }
+        candidates.put(postId, new Candidate(postId, userId, visible, hash, estimate));
+    }
+
+    /**
+     * Trượt cửa sổ đến khoảng chứa thời điểm now: khoảng vừa kết thúc được giữ lại để gửi đi,
+     * khoảng hết hạn được trừ khỏi sketch tổng
+     */
+    private void rotate(long now) {
+        long bucket = now / BUCKET_MS;
+        if (bucket <= currentBucket) {
+            return;
+        }
+        if (currentBucketUsed) {
+            unpublished.add(snapshot(currentBucket));
+            currentBucketUsed = false;
+        }
+        long first = Math.max(currentBucket + 1, bucket - WINDOW_BUCKETS + 1);
+        for (long next = first; next <= bucket; next++) {
+            int[] counts = buckets[slot(next)];
+            for (int i = 0; i < counts.length; i++) {
+                window[i] -= counts[i];
+            }
+            Arrays.fill(counts, 0);
+            bucketNumbers[slot(next)] = next;
+        }
+        currentBucket = bucket;
+
+        // Ước lượng lại ứng viên sau khi bỏ các khoảng hết hạn
+        minCandidateEstimate = 0;
+        candidates.values().removeIf(candidate -> (candidate.estimate = estimate(window, candidate.hash)) <= 0);
+    }
+
+    private TrendingSketch snapshot(long bucket) {
+        int[] counts = buckets[slot(bucket)];
+        ByteBuffer bytes = ByteBuffer.allocate(counts.length * Integer.BYTES);
+        bytes.asIntBuffer().put(counts);
+
+        List<Candidate> strongest = new ArrayList<>(candidates.values());
+        strongest.sort(Comparator.comparingInt((Candidate candidate) -> candidate.estimate).reversed());
+        List<TrendingSketch.Candidate> shared = new ArrayList<>();
+        for (int i = 0; i < strongest.size() && i < SHARED_CANDIDATES; i++) {
+            Candidate candidate = strongest.get(i);
+            shared.add(new TrendingSketch.Candidate(candidate.postId, candidate.userId, candidate.visible));
+        }
+
+        TrendingSketch sketch = new TrendingSketch();
+        sketch.setId(nodeId + ":" + bucket);
+        sketch.setNodeId(nodeId);
+        sketch.setBucket(bucket);
+        sketch.setCounts(bytes.array());
+        sketch.setCandidates(shared);
+        sketch.setCreatedAt(new Date());
+        return sketch;
+    }
+
+    private synchronized void merge(TrendingSketch sketch) {
+        long bucket = sketch.getBucket();
+        if (mergedSketches.containsKey(sketch.getId()) || bucket <= currentBucket - WINDOW_BUCKETS
+                || bucket >= currentBucket || bucketNumbers[slot(bucket)] != bucket
+                || sketch.getCounts() == null || sketch.getCounts().length != window.length * Integer.BYTES) {
+            return;
+        }
+        int[] remote = new int[window.length];
+        ByteBuffer.wrap(sketch.getCounts()).asIntBuffer().get(remote);
+        int[] counts = buckets[slot(bucket)];
+        for (int i = 0; i < remote.length; i++) {
+            counts[i] += remote[i];
+            window[i] += remote[i];
+        }
+        mergedSketches.put(sketch.getId(), bucket);
+
+        for (Candidate candidate : candidates.values()) {
+            candidate.estimate = estimate(window, candidate.hash);
+        }
+        if (sketch.getCandidates() != null) {
+            for (TrendingSketch.Candidate shared : sketch.getCandidates()) {
+                if (shared.getPostId() != null && shared.getUserId() != null) {
+                    long hash = StringHashing.hash64(shared.getPostId());
+                    offer(shared.getPostId(), shared.getUserId(), shared.isVisible(), hash, estimate(window, hash));
+                }
+            }
+        }
+    }
+
+    private static int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) WINDOW_BUCKETS);
+    }
+
+    /**
+     * Ô của bài đăng ở một hàng: hai nửa của cùng một hash 64 bit tạo ra SKETCH_DEPTH hàm băm (h1 + row × h2)
+     */
+    private static int cell(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * SKETCH_WIDTH + ((h1 + row * h2) & (SKETCH_WIDTH - 1));
+    }
+
+    private static int estimate(int[] counts, long hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < SKETCH_DEPTH; row++) {
+            estimate = Math.min(estimate, counts[cell(hash, row)]);
+        }
+        return estimate;
+    }
+
+    private static final class Candidate {
+        final String postId;
+        final String userId;
+        boolean visible;
+        final long hash;
+        int estimate;
+
+        Candidate(String postId, String userId, boolean visible, long hash, int estimate) {
+            this.postId = postId;
+            this.userId = userId;
+            this.visible = visible;
+            this.hash = hash;
+            this.estimate = estimate;
+        }
+    }
+}
@@ -0,0 +1,749 @@
+package com.example.facebook_clone.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.facebook_clone.model.Friend;
+import com.example.facebook_clone.model.User;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Chỉ mục gợi ý người dùng khi đang gõ tên (typeahead), nằm hoàn toàn trong bộ nhớ.
+ *
+ * Mỗi từ trong họ tên (đã bỏ dấu, xem SearchTokenizer) là một cặp (từ, người dùng) trong một mảng
+ * sắp xếp theo từ; tìm theo tiền tố chỉ là tìm nhị phân rồi đọc một đoạn liên tiếp. Thay đổi mới
+ * được ghi vào một TreeMap nhỏ và gộp vào mảng mỗi phút, nên cập nhật không phải sắp xếp lại toàn bộ.
+ *
+ * Kết quả xếp theo độ gần trong đồ thị bạn bè: bạn bè trước, rồi bạn của bạn (theo số bạn chung),
+ * cuối cùng là người khác. Danh sách bạn bè cũng nằm trong bộ nhớ dạng mảng int đã sắp xếp, nên một
+ * lần tìm không truy vấn Mongo và chi phí bị chặn bởi MAX_GRAPH_VISITS và MAX_PREFIX_SCAN.
+ *
+ * Đăng ký, cập nhật hồ sơ, kết bạn và hủy kết bạn trên node này được áp dụng ngay; chỉ mục được
+ * dựng lại định kỳ (app.typeahead.rebuild-interval-ms) để nhận thay đổi từ các node khác.
+ *
+ * Metrics: search.users.duration, search.typeahead.users
+ */
+@Service
+public class UserTypeaheadIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserTypeaheadIndex.class);
+
+    private static final int MAX_QUERY_TOKENS = 5;
+    private static final int MAX_NAME_TOKENS = 8;
+
+    // Số cạnh tối đa duyệt khi tìm bạn của bạn (số bạn chung là gần đúng nếu chạm giới hạn)
+    private static final int MAX_GRAPH_VISITS = 20_000;
+    // Số mục tối đa đọc trong đoạn tiền tố của chỉ mục chung
+    private static final int MAX_PREFIX_SCAN = 2_000;
+
+    private static final int FRIEND = 2;
+    private static final int FRIEND_OF_FRIEND = 1;
+    private static final int OTHER = 0;
+
+    private static final int[] NO_FRIENDS = new int[0];
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.typeahead.rebuild-interval-ms:1800000}")
+    private long rebuildIntervalMs;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // null cho đến khi dựng xong lần đầu
+    private volatile Index index;
+    // Thay đổi xảy ra trong lúc dựng lại, được áp dụng lên chỉ mục mới trước khi thay thế chỉ mục cũ
+    private List<Consumer<Index>> pendingChanges;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile long nextRebuildAt;
+
+    private Timer searchTimer;
+
+    @PostConstruct
+    public void init() {
+        searchTimer = Timer.builder("search.users.duration").register(meterRegistry);
+        meterRegistry.gauge("search.typeahead.users", this, typeahead -> {
+            Index current = typeahead.index;
+            return current != null ? current.liveUsers : 0;
+        });
+    }
+
+    /**
+     * Dựng chỉ mục trên virtual thread sau khi khởi động; trong lúc đó tìm kiếm dùng truy vấn Mongo
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        startRebuild();
+    }
+
+    /**
+     * Chỉ mục đã sẵn sàng để tìm kiếm
+     */
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * Gợi ý người dùng theo tên đang gõ
+     *
+     * @param query Chuỗi đang gõ, mỗi từ khớp với tiền tố của một từ trong họ tên
+     * @param viewerId ID người tìm (để ưu tiên bạn bè), có thể null
+     * @param limit Số kết quả tối đa
+     * @return Kết quả theo thứ tự ưu tiên, hoặc null nếu chỉ mục chưa sẵn sàng
+     */
+    public List<Match> search(String query, String viewerId, int limit) {
+        if (index == null) {
+            return null;
+        }
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String[] terms = tokens.subList(0, Math.min(tokens.size(), MAX_QUERY_TOKENS)).toArray(new String[0]);
+
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            return index.search(terms, viewerId, limit);
+        } finally {
+            lock.readLock().unlock();
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Cập nhật tên và ảnh đại diện sau khi người dùng đăng ký hoặc sửa hồ sơ
+     *
+     * @param user Người dùng đã lưu
+     */
+    public void userSaved(User user) {
+        if (user == null || user.getId() == null) {
+            return;
+        }
+        String userId = user.getId();
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String avatar = user.getAvatar();
+        mutate(current -> current.upsert(userId, firstName, lastName, avatar));
+    }
+
+    /**
+     * Bỏ người dùng đã bị xóa khỏi kết quả gợi ý
+     *
+     * @param userId ID người dùng
+     */
+    public void userDeleted(String userId) {
+        mutate(current -> current.remove(userId));
+    }
+
+    /**
+     * Ghi nhận hai người dùng vừa trở thành bạn bè
+     */
+    public void friendshipAdded(String userId, String friendId) {
+        mutate(current -> current.link(userId, friendId));
+    }
+
+    /**
+     * Ghi nhận hai người dùng vừa hủy kết bạn
+     */
+    public void friendshipRemoved(String userId, String friendId) {
+        mutate(current -> current.unlink(userId, friendId));
+    }
+
+    /**
+     * Gộp thay đổi mới vào mảng sắp xếp; dựng lại toàn bộ khi đến hạn (hoặc khi lần dựng trước bị lỗi)
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void maintain() {
+        if (System.currentTimeMillis() >= nextRebuildAt) {
+            startRebuild();
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                index.mergeDelta();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void mutate(Consumer<Index> change) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                change.accept(index);
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        nextRebuildAt = Long.MAX_VALUE;
+        Thread.startVirtualThread(() -> {
+            try {
+                rebuild();
+                nextRebuildAt = System.currentTimeMillis() + rebuildIntervalMs;
+            } catch (Exception e) {
+                // Thử lại sau một phút (ví dụ Mongo chưa sẵn sàng); chỉ mục cũ (nếu có) vẫn được dùng
+                logger.warn("Không thể dựng chỉ mục gợi ý người dùng, sẽ thử lại", e);
+                lock.writeLock().lock();
+                try {
+                    pendingChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                nextRebuildAt = System.currentTimeMillis() + 60_000;
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * Dựng chỉ mục mới từ users và friends (chỉ đọc các trường cần thiết) mà không chặn tìm kiếm,
+     * rồi thay thế chỉ mục cũ
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Index built = new Index();
+        Query users = new Query();
+        users.fields().include("firstName").include("lastName").include("avatar");
+        try (Stream<User> stream = mongoTemplate.stream(users.cursorBatchSize(1000), User.class)) {
+            stream.forEach(user -> built.load(user.getId(), user.getFirstName(), user.getLastName(), user.getAvatar()));
+        }
+        Query friendships = new Query(Criteria.where("status").is("ACCEPTED"));
+        friendships.fields().include("userId").include("friendId");
+        try (Stream<Friend> stream = mongoTemplate.stream(friendships.cursorBatchSize(1000), Friend.class)) {
+            stream.forEach(friend -> built.loadFriendship(friend.getUserId(), friend.getFriendId()));
+        }
+        built.finishLoad();
+
+        lock.writeLock().lock();
+        try {
+            for (Consumer<Index> change : pendingChanges) {
+                change.accept(built);
+            }
+            pendingChanges = null;
+            index = built;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Đã dựng chỉ mục gợi ý người dùng ({} người dùng, {} từ) trong {} ms", built.liveUsers,
+            built.keys.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Một kết quả gợi ý
+     */
+    public static class Match {
+        private final String id;
+        private final String firstName;
+        private final String lastName;
+        private final String avatar;
+        private final boolean friend;
+        private final int mutualFriends;
+
+        public Match(String id, String firstName, String lastName, String avatar, boolean friend, int mutualFriends) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.avatar = avatar;
+            this.friend = friend;
+            this.mutualFriends = mutualFriends;
+        }
+
+        public String getId() { return id; }
+        public String getFirstName() { return firstName; }
+        public String getLastName() { return lastName; }
+        public String getAvatar() { return avatar; }
+        public boolean isFriend() { return friend; }
+        public int getMutualFriends() { return mutualFriends; }
+    }
+
+    /**
+     * Ứng viên tạm thời trong lúc tìm kiếm
+     */
+    private static final class Candidate {
+        final int user;
+        final int tier;
+        int mutualFriends;
+        int quality;
+        String sortName;
+
+        Candidate(int user, int tier, int mutualFriends) {
+            this.user = user;
+            this.tier = tier;
+            this.mutualFriends = mutualFriends;
+        }
+    }
+
+    private static final Comparator<Candidate> RANKING = Comparator
+        .comparingInt((Candidate c) -> -c.tier)
+        .thenComparingInt(c -> -c.mutualFriends)
+        .thenComparingInt(c -> -c.quality)
+        .thenComparing(c -> c.sortName);
+
+    /**
+     * Dữ liệu chỉ mục; mọi truy cập đều giữ lock của service (ghi khi thay đổi, đọc khi tìm kiếm),
+     * trừ lúc đang dựng khi chưa ai khác nhìn thấy
+     */
+    private static final class Index {
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private String[] userIds = new String[1024];
+        private String[] firstNames = new String[1024];
+        private String[] lastNames = new String[1024];
+        private String[] avatars = new String[1024];
+        private String[][] names = new String[1024][];  // Từ trong họ tên đã bỏ dấu, null nếu không tồn tại
+        private int[][] friends = new int[1024][];       // Đã sắp xếp, không trùng
+        private int[] friendCounts = new int[1024];      // Chỉ dùng trong lúc dựng
+        private int userCount;
+        private int liveUsers;
+
+        // Mảng sắp xếp theo từ: keys[i] là một từ trong tên của người dùng keyOwners[i].
+        // Mục của tên cũ không bị xóa ngay mà bị bỏ qua khi kiểm tra lại tên hiện tại, và bị loại khi gộp.
+        private String[] keys = new String[0];
+        private int[] keyOwners = new int[0];
+        private List<KeyEntry> loading = new ArrayList<>();
+
+        // Các mục mới chưa gộp vào mảng
+        private final TreeMap<String, int[]> delta = new TreeMap<>();
+        private int deltaEntries;
+
+        void load(String userId, String firstName, String lastName, String avatar) {
+            int user = ordinal(userId, true);
+            setUser(user, firstName, lastName, avatar);
+            for (String token : names[user]) {
+                loading.add(new KeyEntry(token, user));
+            }
+        }
+
+        void loadFriendship(String userId, String friendId) {
+            if (userId == null || friendId == null || userId.equals(friendId)) {
+                return;
+            }
+            int user = ordinal(userId, true);
+            int friend = ordinal(friendId, true);
+            // Quan hệ được lưu theo cả hai chiều nhưng dữ liệu cũ có thể chỉ có một chiều; trùng lặp được bỏ sau
+            appendFriend(user, friend);
+            appendFriend(friend, user);
+        }
+
+        void finishLoad() {
+            KeyEntry[] entries = loading.toArray(new KeyEntry[0]);
+            loading = null;
+            Arrays.parallelSort(entries, Comparator.comparing((KeyEntry entry) -> entry.key));
+            keys = new String[entries.length];
+            keyOwners = new int[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                keys[i] = entries[i].key;
+                keyOwners[i] = entries[i].user;
+            }
+
+            for (int user = 0; user < userCount; user++) {
+                int[] list = friends[user];
+                int count = friendCounts[user];
+                if (count == 0) {
+                    friends[user] = NO_FRIENDS;
+                    continue;
+                }
+                Arrays.sort(list, 0, count);
+                int unique = 1;
+                for (int i = 1; i < count; i++) {
+                    if (list[i] != list[unique - 1]) {
+                        list[unique++] = list[i];
+                    }
+                }
+                friends[user] = Arrays.copyOf(list, unique);
+            }
+            friendCounts = null;
+        }
+
+        void upsert(String userId, String firstName, String lastName, String avatar) {
+            int user = ordinal(userId, true);
+            String[] previous = names[user];
+            setUser(user, firstName, lastName, avatar);
+            for (String token : names[user]) {
+                if (previous == null || !contains(previous, token)) {
+                    delta.merge(token, new int[] { user }, UserTypeaheadIndex::concat);
+                    deltaEntries++;
+                }
+            }
+        }
+
+        void remove(String userId) {
+            int user = ordinal(userId, false);
+            if (user < 0 || names[user] == null) {
+                return;
+            }
+            names[user] = null;
+            firstNames[user] = null;
+            lastNames[user] = null;
+            avatars[user] = null;
+            liveUsers--;
+            for (int friend : friends[user]) {
+                friends[friend] = without(friends[friend], user);
+            }
+            friends[user] = NO_FRIENDS;
+        }
+
+        void link(String userId, String friendId) {
+            if (userId == null || friendId == null || userId.equals(friendId)) {
+                return;
+            }
+            int user = ordinal(userId, true);
+            int friend = ordinal(friendId, true);
+            friends[user] = with(friends[user], friend);
+            friends[friend] = with(friends[friend], user);
+        }
+
+        void unlink(String userId, String friendId) {
+            int user = ordinal(userId, false);
+            int friend = ordinal(friendId, false);
+            if (user < 0 || friend < 0) {
+                return;
+            }
+            friends[user] = without(friends[user], friend);
+            friends[friend] = without(friends[friend], user);
+        }
+
+        /**
+         * Gộp các mục mới vào mảng sắp xếp (một lượt trộn tuyến tính), bỏ luôn mục của tên cũ
+         */
+        void mergeDelta() {
+            if (deltaEntries == 0) {
+                return;
+            }
+            String[] mergedKeys = new String[keys.length + deltaEntries];
+            int[] mergedOwners = new int[mergedKeys.length];
+            int count = 0;
+            int i = 0;
+            for (Map.Entry<String, int[]> entry : delta.entrySet()) {
+                String key = entry.getKey();
+                for (; i < keys.length && keys[i].compareTo(key) <= 0; i++) {
+                    if (isCurrent(keyOwners[i], keys[i])) {
+                        mergedKeys[count] = keys[i];
+                        mergedOwners[count++] = keyOwners[i];
+                    }
+                }
+                for (int user : entry.getValue()) {
+                    if (isCurrent(user, key)) {
+                        mergedKeys[count] = key;
+                        mergedOwners[count++] = user;
+                    }
+                }
+            }
+            for (; i < keys.length; i++) {
+                if (isCurrent(keyOwners[i], keys[i])) {
+                    mergedKeys[count] = keys[i];
+                    mergedOwners[count++] = keyOwners[i];
+                }
+            }
+            keys = Arrays.copyOf(mergedKeys, count);
+            keyOwners = Arrays.copyOf(mergedOwners, count);
+            delta.clear();
+            deltaEntries = 0;
+        }
+
+        List<Match> search(String[] terms, String viewerId, int limit) {
+            int viewer = viewerId != null ? ordinals.getOrDefault(viewerId, -1) : -1;
+            Map<Integer, Candidate> candidates = new HashMap<>();
+
+            if (viewer >= 0) {
+                int[] mine = friends[viewer];
+                for (int friend : mine) {
+                    if (matches(friend, terms)) {
+                        candidates.put(friend, new Candidate(friend, FRIEND, countCommon(mine, friends[friend])));
+                    }
+                }
+
+                // Bạn của bạn: mỗi lần gặp lại qua một người bạn khác là thêm một bạn chung
+                int visits = 0;
+                outer:
+                for (int friend : mine) {
+                    for (int other : friends[friend]) {
+                        if (++visits > MAX_GRAPH_VISITS) {
+                            break outer;
+                        }
+                        if (other == viewer) {
+                            continue;
+                        }
+                        Candidate candidate = candidates.get(other);
+                        if (candidate != null) {
+                            if (candidate.tier == FRIEND_OF_FRIEND) {
+                                candidate.mutualFriends++;
+                            }
+                        } else if (Arrays.binarySearch(mine, other) < 0 && matches(other, terms)) {
+                            candidates.put(other, new Candidate(other, FRIEND_OF_FRIEND, 1));
+                        }
+                    }
+                }
+            }
+
+            // Người dùng khác: đọc đoạn tiền tố của từ dài nhất (ít kết quả nhất), lấy đủ ứng viên để xếp theo mức khớp
+            String prefix = terms[0];
+            for (String term : terms) {
+                if (term.length() > prefix.length()) {
+                    prefix = term;
+                }
+            }
+            int wanted = limit * 4;
+            int others = 0;
+            int scanned = 0;
+            for (int[] owners : delta.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                for (int user : owners) {
+                    if (others >= wanted || scanned++ >= MAX_PREFIX_SCAN) {
+                        break;
+                    }
+                    others += addOther(candidates, user, viewer, terms);
+                }
+            }
+            for (int i = lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+                if (others >= wanted || scanned++ >= MAX_PREFIX_SCAN) {
+                    break;
+                }
+                others += addOther(candidates, keyOwners[i], viewer, terms);
+            }
+
+            List<Candidate> ranked = new ArrayList<>(candidates.values());
+            for (Candidate candidate : ranked) {
+                candidate.quality = quality(candidate.user, terms);
+                candidate.sortName = String.join(" ", names[candidate.user]);
+            }
+            ranked.sort(RANKING);
+
+            List<Match> results = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (Candidate candidate : ranked.subList(0, Math.min(limit, ranked.size()))) {
+                int user = candidate.user;
+                results.add(new Match(userIds[user], firstNames[user], lastNames[user], avatars[user],
+                    candidate.tier == FRIEND, candidate.mutualFriends));
+            }
+            return results;
+        }
+
+        private int addOther(Map<Integer, Candidate> candidates, int user, int viewer, String[] terms) {
+            if (user == viewer || candidates.containsKey(user) || !matches(user, terms)) {
+                return 0;
+            }
+            candidates.put(user, new Candidate(user, OTHER, 0));
+            return 1;
+        }
+
+        /**
+         * Mỗi từ của truy vấn phải là tiền tố của một từ trong tên hiện tại
+         */
+        private boolean matches(int user, String[] terms) {
+            String[] tokens = names[user];
+            if (tokens == null) {
+                return false;
+            }
+            for (String term : terms) {
+                boolean found = false;
+                for (int i = 0; i < tokens.length && !found; i++) {
+                    found = tokens[i].startsWith(term);
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Ưu tiên tên bắt đầu bằng từ đầu tiên của truy vấn, rồi đến tên có từ khớp trọn vẹn
+         */
+        private int quality(int user, String[] terms) {
+            String[] tokens = names[user];
+            int quality = tokens.length > 0 && tokens[0].startsWith(terms[0]) ? 2 : 0;
+            for (String term : terms) {
+                if (contains(tokens, term)) {
+                    return quality + 1;
+                }
+            }
+            return quality;
+        }
+
+        private boolean isCurrent(int user, String key) {
+            return names[user] != null && contains(names[user], key);
+        }
+
+        private int lowerBound(String prefix) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void setUser(int user, String firstName, String lastName, String avatar) {
+            if (names[user] == null) {
+                liveUsers++;
+            }
+            firstNames[user] = firstName;
+            lastNames[user] = lastName;
+            avatars[user] = avatar;
+            String fullName = (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+            List<String> tokens = new ArrayList<>(new LinkedHashSet<>(SearchTokenizer.tokenize(fullName)));
+            names[user] = tokens.subList(0, Math.min(tokens.size(), MAX_NAME_TOKENS)).toArray(new String[0]);
+        }
+
+        private int ordinal(String userId, boolean create) {
+            Integer user = ordinals.get(userId);
+            if (user != null) {
+                return user;
+            }
+            if (!create || userId == null) {
+                return -1;
+            }
+            if (userCount == userIds.length) {
+                int size = userCount * 2;
+                userIds = Arrays.copyOf(userIds, size);
+                firstNames = Arrays.copyOf(firstNames, size);
+                lastNames = Arrays.copyOf(lastNames, size);
+                avatars = Arrays.copyOf(avatars, size);
+                names = Arrays.copyOf(names, size);
+                friends = Arrays.copyOf(friends, size);
+                if (friendCounts != null) {
+                    friendCounts = Arrays.copyOf(friendCounts, size);
+                }
+            }
+            int created = userCount++;
+            userIds[created] = userId;
+            friends[created] = NO_FRIENDS;
+            ordinals.put(userId, created);
+            return created;
+        }
+
+        private void appendFriend(int user, int friend) {
+            int[] list = friends[user];
+            int count = friendCounts[user];
+            if (count == list.length) {
+                list = Arrays.copyOf(list, Math.max(4, count * 2));
+                friends[user] = list;
+            }
+            list[count] = friend;
+            friendCounts[user] = count + 1;
+        }
+    }
+
+    private static final class KeyEntry {
+        final String key;
+        final int user;
+
+        KeyEntry(String key, int user) {
+            this.key = key;
+            this.user = user;
+        }
+    }
+
+    private static boolean contains(String[] tokens, String token) {
+        for (String candidate : tokens) {
+            if (candidate.equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Số phần tử chung của hai mảng đã sắp xếp
+     */
+    private static int countCommon(int[] first, int[] second) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    private static int[] with(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
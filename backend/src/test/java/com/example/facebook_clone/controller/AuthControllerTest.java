@@ -0,0 +1,98 @@
+package com.example.facebook_clone.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.facebook_clone.model.User;
+import com.example.facebook_clone.repository.UserRepository;
+import com.example.facebook_clone.security.AuthenticatedUser;
+import com.example.facebook_clone.security.JwtClaimsCache;
+import com.example.facebook_clone.security.JwtUtil;
+import com.example.facebook_clone.service.AdminService;
+import com.example.facebook_clone.service.PasswordHashingService;
+import com.example.facebook_clone.service.PlatformStatsService;
+import com.example.facebook_clone.service.UserTypeaheadIndex;
+
+/**
+ * Đăng ký tài khoản: vai trò trong request không được đưa vào tài khoản và token
+ */
+class AuthControllerTest {
+
+    private UserRepository userRepository;
+    // ID và vai trò của user tại thời điểm được lưu
+    private final List<String> savedIds = new ArrayList<>();
+    private final List<String> savedRoles = new ArrayList<>();
+    private JwtUtil jwtUtil;
+    private AuthController authController;
+    private AdminController adminController;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+            User user = invocation.getArgument(0);
+            savedIds.add(user.getId());
+            savedRoles.add(user.getRole());
+            if (user.getId() == null) {
+                user.setId("new-user-id");
+            }
+            return user;
+        });
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.hash(anyString())).thenReturn("hashed");
+
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "claimsCache", new JwtClaimsCache());
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpirationMs", 60_000L);
+
+        authController = new AuthController();
+        ReflectionTestUtils.setField(authController, "userRepository", userRepository);
+        ReflectionTestUtils.setField(authController, "passwordHashingService", passwordHashingService);
+        ReflectionTestUtils.setField(authController, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(authController, "userTypeaheadIndex", mock(UserTypeaheadIndex.class));
+        ReflectionTestUtils.setField(authController, "platformStatsService", mock(PlatformStatsService.class));
+
+        adminController = new AdminController();
+        ReflectionTestUtils.setField(adminController, "adminService", mock(AdminService.class));
+        ReflectionTestUtils.setField(adminController, "platformStatsService", mock(PlatformStatsService.class));
+    }
+
+    @Test
+    void selfRegisteredAdminIsRejectedByAdminApi() {
+        User request = new User();
+        request.setId("existing-admin-id");
+        request.setEmail("mallory@example.com");
+        request.setPassword("secret");
+        request.setRole("ADMIN");
+
+        ResponseEntity<?> registered = authController.register(request);
+
+        assertThat(registered.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(savedRoles).containsExactly("USER");
+        assertThat(savedIds).containsExactly((String) null);
+
+        Map<?, ?> body = (Map<?, ?>) registered.getBody();
+        assertThat(body.get("role")).isEqualTo("USER");
+        assertThat(body.get("id")).isEqualTo("new-user-id");
+
+        AuthenticatedUser currentUser = jwtUtil.authenticate((String) body.get("token"));
+        assertThat(currentUser.getRole()).isEqualTo("USER");
+        assertThat(adminController.getStats(24, 7, currentUser).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(adminController.getUsers(null, null, "id", "desc", 0, 20, currentUser).getStatusCode())
+            .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(adminController.exportUsers(null, null, currentUser).getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.facebook_clone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.example.facebook_clone.model.UploadSession;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+/**
+ * Tải lên theo phần với MongoDB trong bộ nhớ: không ghi thêm phần khi phiên đang được hoàn tất
+ */
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = 4;
+
+    @TempDir
+    static Path directory;
+
+    private static final BlockingStorage storage = new BlockingStorage();
+
+    private MongoServer mongoServer;
+    private ConfigurableApplicationContext context;
+    private ChunkedUploadService service;
+
+    @BeforeEach
+    void start() {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        storage.reset();
+
+        // Không đọc application.properties (cần secrets.properties), chỉ dùng các thuộc tính dưới đây
+        context = new SpringApplicationBuilder(UploadConfig.class)
+            .web(WebApplicationType.NONE)
+            .initializers(ctx -> ctx.getBeanFactory().registerSingleton("fileStorageService", storage))
+            .run("--spring.config.name=chunked-upload-test",
+                "--spring.data.mongodb.uri=mongodb://" + address.getHostString() + ":" + address.getPort() + "/uploads",
+                "--app.upload.chunk-size-bytes=" + CHUNK_SIZE);
+        service = context.getBean(ChunkedUploadService.class);
+    }
+
+    @AfterEach
+    void stop() {
+        context.close();
+        mongoServer.shutdownNow();
+    }
+
+    @Test
+    void chunkIsRejectedWhileSessionIsFinalizing() throws Exception {
+        UploadSession session = service.createSession("alice", "photo.jpg", "image/jpeg", 8);
+        service.writeChunk(session, 0, body("abcd"));
+        service.writeChunk(session, 1, body("efgh"));
+        UploadSession uploaded = service.getSession(session.getId(), "alice");
+
+        CompletableFuture<UploadSession> completing = CompletableFuture.supplyAsync(() -> {
+            try {
+                return service.complete(uploaded, "checksum");
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(storage.assembling.await(10, TimeUnit.SECONDS)).isTrue();
+
+        // Phiên cũ mà controller đã đọc vẫn ghi UPLOADING, nhưng phần ghi lại phải bị từ chối
+        assertThatThrownBy(() -> service.writeChunk(uploaded, 1, body("XXXX")))
+            .isInstanceOf(IllegalStateException.class);
+
+        storage.release.countDown();
+        assertThat(completing.get(10, TimeUnit.SECONDS).getStatus()).isEqualTo(UploadSession.COMPLETED);
+        assertThat(storage.assembledContent).isEqualTo("abcdefgh");
+    }
+
+    private static ByteArrayInputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes());
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    @Import(ChunkedUploadService.class)
+    static class UploadConfig {
+    }
+
+    /**
+     * Kho file giả: file tạm nằm trong thư mục tạm của test, việc ghép file dừng lại cho đến khi test cho phép
+     */
+    static class BlockingStorage extends FileStorageService {
+        volatile CountDownLatch assembling;
+        volatile CountDownLatch release;
+        volatile String assembledContent;
+
+        void reset() {
+            assembling = new CountDownLatch(1);
+            release = new CountDownLatch(1);
+            assembledContent = null;
+        }
+
+        @Override
+        public Path partialUploadPath(String uploadId) {
+            return directory.resolve(uploadId + ".part");
+        }
+
+        @Override
+        public String storeAssembledFile(Path file, String originalFilename, String contentType, String expectedSha256)
+                throws IOException {
+            assembling.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assembledContent = Files.readString(file);
+            return "assembled.jpg";
+        }
+    }
+}
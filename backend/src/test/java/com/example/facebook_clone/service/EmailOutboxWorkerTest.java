@@ -0,0 +1,168 @@
+package com.example.facebook_clone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.InetSocketAddress;
+import java.util.Date;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.example.facebook_clone.model.OutboundEmail;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetupTest;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Outbox email với MongoDB trong bộ nhớ và máy chủ SMTP giả (GreenMail)
+ */
+class EmailOutboxWorkerTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private MongoServer mongoServer;
+    private GreenMail smtp;
+    private ConfigurableApplicationContext context;
+    private EmailService emailService;
+    private EmailOutboxWorker worker;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void start() {
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        smtp = new GreenMail(ServerSetupTest.SMTP);
+
+        // Không đọc application.properties (cần secrets.properties), chỉ dùng các thuộc tính dưới đây
+        context = new SpringApplicationBuilder(MailConfig.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.config.name=email-outbox-test",
+                "--spring.data.mongodb.uri=mongodb://" + address.getHostString() + ":" + address.getPort() + "/outbox",
+                "--spring.mail.host=localhost",
+                "--spring.mail.port=" + ServerSetupTest.SMTP.getPort(),
+                "--app.mail.outbox.workers=2",
+                "--app.mail.outbox.batch-size=10",
+                "--app.mail.outbox.rate-per-minute=600");
+        emailService = context.getBean(EmailService.class);
+        worker = context.getBean(EmailOutboxWorker.class);
+        mongoTemplate = context.getBean(MongoTemplate.class);
+    }
+
+    @AfterEach
+    void stop() {
+        context.close();
+        smtp.stop();
+        mongoServer.shutdownNow();
+    }
+
+    @Test
+    void queuedEmailsAreSentAndTheirBodiesRemoved() throws Exception {
+        smtp.start();
+        for (int i = 0; i < 5; i++) {
+            emailService.enqueue("user" + i + "@example.com", "Tiêu đề " + i, "Nội dung " + i);
+        }
+
+        assertThat(smtp.waitForIncomingEmail(TIMEOUT_MS, 5)).isTrue();
+        MimeMessage[] received = smtp.getReceivedMessages();
+        assertThat(received).extracting(MimeMessage::getSubject)
+            .containsExactlyInAnyOrder("Tiêu đề 0", "Tiêu đề 1", "Tiêu đề 2", "Tiêu đề 3", "Tiêu đề 4");
+
+        await(() -> outbox().stream().allMatch(email -> OutboundEmail.SENT.equals(email.getStatus())));
+        assertThat(outbox()).allSatisfy(email -> {
+            assertThat(email.getAttempts()).isEqualTo(1);
+            assertThat(email.getCompletedAt()).isNotNull();
+            assertThat(email.getBody()).isNull();
+        });
+    }
+
+    @Test
+    void passwordResetEmailExpiresWithItsToken() throws Exception {
+        smtp.start();
+        emailService.sendPasswordResetEmail("reset@example.com", "raw-token");
+
+        assertThat(smtp.waitForIncomingEmail(TIMEOUT_MS, 1)).isTrue();
+        assertThat(smtp.getReceivedMessages()[0].getContent().toString()).contains("token=raw-token");
+        await(() -> OutboundEmail.SENT.equals(outbox().get(0).getStatus()));
+        OutboundEmail sent = outbox().get(0);
+        assertThat(sent.getBody()).isNull();
+        assertThat(sent.getExpiresAt()).isAfter(new Date());
+    }
+
+    @Test
+    void failedSendIsRetriedWithBackoff() throws Exception {
+        // Máy chủ SMTP chưa chạy: lần gửi đầu thất bại và được hẹn thử lại sau
+        emailService.enqueue("retry@example.com", "Thử lại", "Nội dung");
+        await(() -> {
+            OutboundEmail email = outbox().get(0);
+            return OutboundEmail.PENDING.equals(email.getStatus()) && email.getAttempts() == 1;
+        });
+        OutboundEmail pending = outbox().get(0);
+        assertThat(pending.getLastError()).isNotNull();
+        assertThat(pending.getNextAttemptAt()).isAfter(new Date());
+
+        // Máy chủ chạy lại và đến hạn thử lại: email được gửi ở lần thử thứ hai
+        smtp.start();
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(pending.getId())),
+            new Update().set("nextAttemptAt", new Date()), OutboundEmail.class);
+        worker.wakeUp();
+
+        assertThat(smtp.waitForIncomingEmail(TIMEOUT_MS, 1)).isTrue();
+        await(() -> OutboundEmail.SENT.equals(outbox().get(0).getStatus()));
+        assertThat(outbox().get(0).getAttempts()).isEqualTo(2);
+        assertThat(outbox().get(0).getLastError()).isNull();
+    }
+
+    @Test
+    void expiredEmailIsFailedWithoutSending() throws Exception {
+        smtp.start();
+        emailService.enqueue("late@example.com", "Hết hạn", "Nội dung", new Date(System.currentTimeMillis() - 1_000));
+
+        await(() -> OutboundEmail.FAILED.equals(outbox().get(0).getStatus()));
+        assertThat(outbox().get(0).getBody()).isNull();
+        assertThat(smtp.getReceivedMessages()).isEmpty();
+    }
+
+    private List<OutboundEmail> outbox() {
+        return mongoTemplate.findAll(OutboundEmail.class);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("Hết thời gian chờ").isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class, MailSenderAutoConfiguration.class})
+    @Import({EmailService.class, EmailOutboxWorker.class})
+    static class MailConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.facebook_clone.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.facebook_clone.model.ImageVariants;
+
+/**
+ * Benchmark thông lượng tạo ảnh thu nhỏ (giải mã, thu nhỏ các kích thước 1080/480/160, mã hóa, placeholder)
+ * cho một ảnh chụp 3000x2000.
+ *
+ * oneCore: số ảnh mỗi giây trên một luồng, tức thông lượng mỗi CPU của pool ImageDerivativeService.
+ * allCores: số ảnh mỗi giây khi mọi CPU cùng xử lý; chia cho số CPU và so với oneCore để thấy mức
+ * tăng theo số luồng (bộ nhớ, GC) khi chỉnh app.media.derivative-threads.
+ * Ảnh thu nhỏ được mã hóa đầy đủ nhưng không ghi ra đĩa, nên kết quả chỉ đo phần tốn CPU.
+ *
+ * Chạy: mvn test -Pbenchmark -Dtest=ImageDerivativeBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImageDerivativeBenchmark {
+
+    private static final int SOURCE_WIDTH = 3000;
+    private static final int SOURCE_HEIGHT = 2000;
+
+    @Param({"jpg", "png"})
+    private String format;
+
+    private Path directory;
+    private String fileName;
+    private ImageDerivativeService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ImageIO.setUseCache(false);
+        directory = Files.createTempDirectory("derivative-benchmark");
+        fileName = "source." + format;
+        ImageIO.write(photo(), format, directory.resolve(fileName).toFile());
+
+        service = new ImageDerivativeService();
+        ReflectionTestUtils.setField(service, "fileStorageService", new DiscardingStorage(directory));
+        ReflectionTestUtils.setField(service, "widths", new int[]{160, 480, 1080});
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve(fileName));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public ImageVariants oneCore() {
+        return process();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public ImageVariants allCores() {
+        return process();
+    }
+
+    private ImageVariants process() {
+        return ReflectionTestUtils.invokeMethod(service, "process", fileName);
+    }
+
+    /**
+     * Ảnh giống ảnh chụp: chuyển màu mượt kèm nhiễu, để bộ mã hóa không nén quá dễ
+     */
+    private static BufferedImage photo() {
+        BufferedImage image = new BufferedImage(SOURCE_WIDTH, SOURCE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < SOURCE_HEIGHT; y++) {
+            for (int x = 0; x < SOURCE_WIDTH; x++) {
+                int noise = random.nextInt(24);
+                int r = (x * 255 / SOURCE_WIDTH + noise) & 0xFF;
+                int g = (y * 255 / SOURCE_HEIGHT + noise) & 0xFF;
+                int b = ((x + y) * 127 / (SOURCE_WIDTH + SOURCE_HEIGHT) + noise) & 0xFF;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void run() throws Exception {
+        new Runner(new OptionsBuilder().include(ImageDerivativeBenchmark.class.getName() + "\\.").build()).run();
+    }
+
+    /**
+     * Đọc ảnh gốc từ thư mục tạm, bỏ các ảnh thu nhỏ sau khi mã hóa
+     */
+    static class DiscardingStorage extends FileStorageService {
+        private final Path directory;
+
+        DiscardingStorage(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public Path resolveFile(String fileName) {
+            return directory.resolve(fileName);
+        }
+
+        @Override
+        public String storeDerivative(String fileName, byte[] content) {
+            return URL_PREFIX + fileName;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.facebook_clone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.facebook_clone.model.ImageVariants;
+
+/**
+ * Ảnh thu nhỏ của ảnh chụp điện thoại (điểm ảnh theo chiều cảm biến, kèm EXIF Orientation)
+ */
+class ImageDerivativeServiceTest {
+
+    private static final int SENSOR_WIDTH = 1200;
+    private static final int SENSOR_HEIGHT = 800;
+
+    @TempDir
+    Path directory;
+
+    private CapturingStorage storage;
+    private ImageDerivativeService service;
+
+    @BeforeEach
+    void setUp() {
+        storage = new CapturingStorage(directory);
+        service = new ImageDerivativeService();
+        ReflectionTestUtils.setField(service, "fileStorageService", storage);
+        ReflectionTestUtils.setField(service, "widths", new int[]{160, 480, 1080});
+    }
+
+    @Test
+    void portraitPhotoIsRotatedBeforeScaling() throws Exception {
+        // Orientation 6: ảnh cần xoay 90° theo chiều kim đồng hồ khi hiển thị
+        Files.write(directory.resolve("portrait.jpg"), withOrientation(sensorImage(), 6));
+
+        ImageVariants variants = process("portrait.jpg");
+
+        assertThat(variants.getWidth()).isEqualTo(SENSOR_HEIGHT);
+        assertThat(variants.getHeight()).isEqualTo(SENSOR_WIDTH);
+        assertThat(variants.getSizes()).containsOnlyKeys("160", "480");
+        BufferedImage thumbnail = storage.image("_w480.jpg");
+        assertThat(thumbnail.getWidth()).isEqualTo(480);
+        assertThat(thumbnail.getHeight()).isEqualTo(720);
+        // Góc trên bên trái màu đỏ của cảm biến nằm ở góc trên bên phải sau khi xoay
+        assertThat(isRed(thumbnail.getRGB(thumbnail.getWidth() - 20, 20))).isTrue();
+        assertThat(isRed(thumbnail.getRGB(20, 20))).isFalse();
+    }
+
+    @Test
+    void photoWithoutOrientationIsKeptAsIs() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(sensorImage(), "jpg", out);
+        Files.write(directory.resolve("landscape.jpg"), out.toByteArray());
+
+        ImageVariants variants = process("landscape.jpg");
+
+        assertThat(variants.getWidth()).isEqualTo(SENSOR_WIDTH);
+        assertThat(variants.getHeight()).isEqualTo(SENSOR_HEIGHT);
+        BufferedImage thumbnail = storage.image("_w480.jpg");
+        assertThat(thumbnail.getHeight()).isEqualTo(320);
+        assertThat(isRed(thumbnail.getRGB(20, 20))).isTrue();
+    }
+
+    private ImageVariants process(String fileName) {
+        return ReflectionTestUtils.invokeMethod(service, "process", fileName);
+    }
+
+    /**
+     * Ảnh xám có góc trên bên trái màu đỏ để kiểm tra chiều xoay
+     */
+    private static BufferedImage sensorImage() {
+        BufferedImage image = new BufferedImage(SENSOR_WIDTH, SENSOR_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.GRAY);
+        g.fillRect(0, 0, SENSOR_WIDTH, SENSOR_HEIGHT);
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, SENSOR_WIDTH / 4, SENSOR_HEIGHT / 4);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Mã hóa JPEG rồi chèn đoạn APP1 Exif (big-endian) chỉ có thẻ Orientation ngay sau SOI
+     */
+    private static byte[] withOrientation(BufferedImage image, int orientation) throws IOException {
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", jpeg);
+        byte[] encoded = jpeg.toByteArray();
+
+        byte[] tiff = {
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1,
+            0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+            0, 0, 0, 0
+        };
+        int length = 2 + 6 + tiff.length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(encoded, 0, 2);
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length});
+        out.write(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.write(tiff);
+        out.write(encoded, 2, encoded.length - 2);
+        return out.toByteArray();
+    }
+
+    private static boolean isRed(int rgb) {
+        Color color = new Color(rgb);
+        return color.getRed() > 180 && color.getGreen() < 80 && color.getBlue() < 80;
+    }
+
+    /**
+     * Đọc ảnh gốc từ thư mục tạm, giữ ảnh thu nhỏ trong bộ nhớ
+     */
+    static class CapturingStorage extends FileStorageService {
+        private final Path directory;
+        private final Map<String, byte[]> derivatives = new ConcurrentHashMap<>();
+
+        CapturingStorage(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public Path resolveFile(String fileName) {
+            return directory.resolve(fileName);
+        }
+
+        @Override
+        public String storeDerivative(String fileName, byte[] content) {
+            derivatives.put(fileName, content);
+            return URL_PREFIX + fileName;
+        }
+
+        BufferedImage image(String suffix) throws IOException {
+            for (Map.Entry<String, byte[]> entry : derivatives.entrySet()) {
+                if (entry.getKey().endsWith(suffix)) {
+                    return ImageIO.read(new ByteArrayInputStream(entry.getValue()));
+                }
+            }
+            throw new AssertionError("Không có ảnh thu nhỏ " + suffix);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.facebook_clone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.example.facebook_clone.model.ClusterEvent;
+import com.mongodb.MongoCommandException;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+
+/**
+ * Hai node (hai application context trong cùng JVM) dùng chung một MongoDB.
+ *
+ * Event bus cần capped collection và tailable cursor, mongo-java-server không hỗ trợ cả hai:
+ * các test định tuyến chỉ chạy với MongoDB thật, ví dụ
+ * mvn test -Dtest=MongoEventBusTest -Dtest.mongodb.uri=mongodb://localhost:27017
+ * (mỗi test dùng một database riêng và xóa sau khi chạy). Không có MongoDB thật thì chỉ chạy
+ * test node từ chối khởi động khi collection sự kiện không phải capped collection.
+ */
+class MongoEventBusTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    private static final String MONGODB_URI = System.getProperty("test.mongodb.uri");
+
+    private MongoServer mongoServer;
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private RecordingHandler handlerA;
+    private RecordingHandler handlerB;
+    private MongoEventBus busA;
+    private MongoEventBus busB;
+
+    private void startNodes() {
+        assumeTrue(MONGODB_URI != null, "Cần MongoDB thật (-Dtest.mongodb.uri) cho capped collection và tailable cursor");
+        String database = "eventbus_" + UUID.randomUUID().toString().replace("-", "");
+
+        nodeA = startNode(MONGODB_URI, database);
+        nodeB = startNode(MONGODB_URI, database);
+        busA = nodeA.getBean(MongoEventBus.class);
+        busB = nodeB.getBean(MongoEventBus.class);
+        handlerA = new RecordingHandler(Set.of("alice"));
+        handlerB = new RecordingHandler(Set.of("bob"));
+        busA.subscribe(handlerA);
+        busB.subscribe(handlerB);
+
+        // Mỗi node ghi registry của mình rồi đọc lại registry của node kia
+        busA.syncRegistry();
+        busB.syncRegistry();
+        busA.syncRegistry();
+    }
+
+    @AfterEach
+    void stopNodes() {
+        if (nodeA != null) {
+            nodeA.getBean(MongoTemplate.class).getDb().drop();
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        if (mongoServer != null) {
+            mongoServer.shutdownNow();
+        }
+    }
+
+    @Test
+    void eventForRemoteUserReachesOnlyTheNodeHoldingTheSession() throws Exception {
+        startNodes();
+        assertThat(busA.hasRemoteListener("bob")).isTrue();
+        assertThat(busA.isOnlineRemotely("bob")).isTrue();
+        assertThat(busA.hasRemoteListener("alice")).isFalse();
+
+        busA.publish(new ClusterEvent("/topic/notifications/bob", "bob", Map.of("text", "hello"), true));
+
+        ClusterEvent received = handlerB.await(event -> "bob".equals(event.getUserId()));
+        assertThat(received).isNotNull();
+        assertThat(received.getDestination()).isEqualTo("/topic/notifications/bob");
+        assertThat(received.isBuffered()).isTrue();
+        assertThat(received.getPayload().toString()).contains("hello");
+    }
+
+    @Test
+    void eventForLocalOrUnknownUserIsNotWrittenToTheBus() throws Exception {
+        startNodes();
+        busA.publish(new ClusterEvent("/topic/notifications/alice", "alice", Map.of(), false));
+        busA.publish(new ClusterEvent("/topic/notifications/carol", "carol", Map.of(), false));
+        // Sự kiện cho bob đi sau hai sự kiện trên qua cùng hàng đợi: khi bob nhận được thì hai sự kiện kia đã được xử lý
+        busA.publish(new ClusterEvent("/topic/notifications/bob", "bob", Map.of(), false));
+
+        assertThat(handlerB.await(event -> "bob".equals(event.getUserId()))).isNotNull();
+        assertThat(handlerB.received()).extracting(ClusterEvent::getUserId).containsOnly("bob");
+        assertThat(nodeA.getBean(MongoTemplate.class).getCollection("cluster_events").countDocuments()).isEqualTo(1);
+    }
+
+    @Test
+    void broadcastReachesOtherNodeButIsNotEchoedToOrigin() throws Exception {
+        startNodes();
+        busB.publish(new ClusterEvent("/topic/presence", null, Map.of("userId", "bob", "online", true), false));
+
+        assertThat(handlerA.await(event -> event.getUserId() == null)).isNotNull();
+        // Node phát chỉ nhận bản gửi trực tiếp, không nhận lại qua tailable cursor
+        TimeUnit.MILLISECONDS.sleep(1_500);
+        assertThat(handlerB.received()).hasSize(1);
+    }
+
+    @Test
+    void concurrentPublishersDeliverEveryEventInOrder() throws Exception {
+        startNodes();
+        int count = 1_000;
+        Thread toBob = new Thread(() -> publishNumbered(busA, "bob", count));
+        Thread toAlice = new Thread(() -> publishNumbered(busB, "alice", count));
+        toBob.start();
+        toAlice.start();
+        toBob.join();
+        toAlice.join();
+
+        assertThat(handlerB.await(event -> "bob".equals(event.getUserId()) && number(event) == count - 1)).isNotNull();
+        assertThat(handlerA.await(event -> "alice".equals(event.getUserId()) && number(event) == count - 1)).isNotNull();
+        assertThat(numbers(handlerB, "bob")).isEqualTo(range(count));
+        assertThat(numbers(handlerA, "alice")).isEqualTo(range(count));
+    }
+
+    @Test
+    void nodeRefusesToStartWhenEventsCollectionIsNotCapped() {
+        // mongo-java-server không tạo được capped collection: node phải dừng thay vì chạy với collection thường
+        mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        String uri = "mongodb://" + address.getHostString() + ":" + address.getPort();
+
+        assertThatThrownBy(() -> nodeA = startNode(uri, "eventbus"))
+            .hasRootCauseInstanceOf(MongoCommandException.class);
+
+        // Collection thường cùng tên đã có sẵn (ví dụ MongoDB tự tạo khi insert)
+        try (ConfigurableApplicationContext plain = startPlainContext(uri)) {
+            plain.getBean(MongoTemplate.class).createCollection("cluster_events");
+        }
+        assertThatThrownBy(() -> nodeA = startNode(uri, "eventbus"))
+            .hasRootCauseInstanceOf(IllegalStateException.class)
+            .rootCause().hasMessageContaining("capped");
+    }
+
+    private static void publishNumbered(MongoEventBus bus, String userId, int count) {
+        for (int i = 0; i < count; i++) {
+            bus.publish(new ClusterEvent("/topic/messages/" + userId, userId, Map.of("n", i), true));
+        }
+    }
+
+    private static int number(ClusterEvent event) {
+        return Integer.parseInt(event.getPayload().toString().replaceAll("\\D", ""));
+    }
+
+    private static List<Integer> numbers(RecordingHandler handler, String userId) {
+        List<Integer> numbers = new ArrayList<>();
+        for (ClusterEvent event : handler.received()) {
+            if (userId.equals(event.getUserId())) {
+                numbers.add(number(event));
+            }
+        }
+        return numbers;
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    private static ConfigurableApplicationContext startNode(String uri, String database) {
+        // Không đọc application.properties (cần secrets.properties), chỉ dùng các thuộc tính dưới đây
+        return new SpringApplicationBuilder(NodeConfig.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.config.name=event-bus-test",
+                "--spring.data.mongodb.uri=" + uri,
+                "--spring.data.mongodb.database=" + database,
+                "--app.event-bus=mongo");
+    }
+
+    private static ConfigurableApplicationContext startPlainContext(String uri) {
+        return new SpringApplicationBuilder(PlainConfig.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.config.name=event-bus-test",
+                "--spring.data.mongodb.uri=" + uri,
+                "--spring.data.mongodb.database=eventbus");
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class, JacksonAutoConfiguration.class})
+    @Import(MongoEventBus.class)
+    static class NodeConfig {
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+    static class PlainConfig {
+    }
+
+    /**
+     * Handler giả của một node: ghi lại các sự kiện được giao
+     */
+    static class RecordingHandler implements ClusterEventHandler {
+        private final Set<String> users;
+        private final BlockingQueue<ClusterEvent> events = new LinkedBlockingQueue<>();
+        private final List<ClusterEvent> history = new CopyOnWriteArrayList<>();
+
+        RecordingHandler(Set<String> users) {
+            this.users = users;
+        }
+
+        @Override
+        public void deliver(ClusterEvent event) {
+            history.add(event);
+            events.add(event);
+        }
+
+        @Override
+        public Set<String> localListeners() {
+            return users;
+        }
+
+        @Override
+        public Set<String> localOnlineUsers() {
+            return users;
+        }
+
+        List<ClusterEvent> received() {
+            return List.copyOf(history);
+        }
+
+        ClusterEvent await(Predicate<ClusterEvent> match) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            long remaining;
+            while ((remaining = deadline - System.currentTimeMillis()) > 0) {
+                ClusterEvent event = events.poll(remaining, TimeUnit.MILLISECONDS);
+                if (event != null && match.test(event)) {
+                    return event;
+                }
+            }
+            return null;
+        }
+    }
+}
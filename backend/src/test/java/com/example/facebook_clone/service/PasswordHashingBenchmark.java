@@ -0,0 +1,78 @@
+package com.example.facebook_clone.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Benchmark chi phí BCrypt theo cost để chọn app.password.bcrypt-strength.
+ *
+ * hash/verify: thời gian một lần băm/kiểm tra trên một luồng (độ trễ đăng nhập khi pool rảnh).
+ * verifyAllCores: số lần kiểm tra mỗi giây khi mọi CPU cùng chạy (thông lượng đăng nhập tối đa
+ * của pool PasswordHashingService, vốn có số luồng bằng số CPU).
+ * Chọn cost lớn nhất mà verify vẫn dưới khoảng 100 ms và verifyAllCores đủ cho lượng đăng nhập cao điểm.
+ *
+ * Chạy: mvn test -Pbenchmark -Dtest=PasswordHashingBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"8", "10", "12"})
+    private int cost;
+
+    private BCryptPasswordEncoder encoder;
+    private String hashed;
+
+    @Setup
+    public void setUp() {
+        encoder = new BCryptPasswordEncoder(cost);
+        hashed = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public String hash() {
+        return encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean verify() {
+        return encoder.matches(PASSWORD, hashed);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(Threads.MAX)
+    public boolean verifyAllCores() {
+        return encoder.matches(PASSWORD, hashed);
+    }
+
+    @Test
+    void run() throws Exception {
+        new Runner(new OptionsBuilder().include(PasswordHashingBenchmark.class.getName() + "\\.").build()).run();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.facebook_clone.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Resume theo seq khi client kết nối lại vào cùng node hoặc sang node khác
+ */
+class RealtimeEventServiceTest {
+
+    private static final String USER = "alice";
+    private static final String DESTINATION = "/topic/notifications/" + USER;
+
+    @Test
+    void resumeOnSameNodeReplaysMissedEvents() {
+        RealtimeEventService node = startNode();
+        long seen = publish(node, "first");
+        publish(node, "second");
+        publish(node, "third");
+
+        Map<String, Object> result = node.resume(USER, seen);
+
+        assertThat(result.get("resyncRequired")).isEqualTo(false);
+        assertThat(payloads(result)).containsExactly("second", "third");
+    }
+
+    @Test
+    void resumeWithSeqIssuedByAnotherNodeRequiresResync() throws Exception {
+        RealtimeEventService nodeA = startNode();
+        long seenOnA = publish(nodeA, "on A");
+
+        // Node B khởi động sau nên bộ đếm của B lớn hơn mọi seq A đã cấp
+        Thread.sleep(5);
+        RealtimeEventService nodeB = startNode();
+        publish(nodeB, "on B");
+        Map<String, Object> lower = nodeB.resume(USER, seenOnA);
+        assertThat(lower.get("resyncRequired")).isEqualTo(true);
+
+        // Seq lạ nằm giữa các seq B đã cấp cho người dùng này cũng không được coi là đã nhận
+        nodeB.openBuffer("bob");
+        nodeB.publishToUser("/topic/notifications/bob", "bob", "for bob");
+        long foreign = nodeB.latestSeq("bob");
+        publish(nodeB, "again on B");
+        Map<String, Object> between = nodeB.resume(USER, foreign);
+        assertThat(between.get("resyncRequired")).isEqualTo(true);
+        assertThat(between.get("events")).isEqualTo(List.of());
+    }
+
+    @Test
+    void resumeAfterBufferOverflowRequiresResync() {
+        RealtimeEventService node = startNode();
+        long seen = publish(node, "old");
+        for (int i = 0; i < 200; i++) {
+            publish(node, "new " + i);
+        }
+
+        assertThat(node.resume(USER, seen).get("resyncRequired")).isEqualTo(true);
+    }
+
+    private static RealtimeEventService startNode() {
+        PresenceService presenceService = mock(PresenceService.class);
+        when(presenceService.isOnlineLocally(anyString())).thenReturn(true);
+        SseStreamService sseStreamService = mock(SseStreamService.class);
+
+        RealtimeEventService service = new RealtimeEventService();
+        ReflectionTestUtils.setField(service, "messagingTemplate", mock(SimpMessagingTemplate.class));
+        ReflectionTestUtils.setField(service, "presenceService", presenceService);
+        ReflectionTestUtils.setField(service, "sseStreamService", sseStreamService);
+        ReflectionTestUtils.setField(service, "eventBus", new LocalEventBus());
+        service.init();
+        service.openBuffer(USER);
+        return service;
+    }
+
+    private static long publish(RealtimeEventService node, String text) {
+        node.publishToUser(DESTINATION, USER, text);
+        return node.latestSeq(USER);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> payloads(Map<String, Object> result) {
+        return ((List<Map<String, Object>>) result.get("events")).stream().map(event -> event.get("payload")).toList();
+    }
+}
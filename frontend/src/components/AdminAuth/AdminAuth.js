@@ -1,6 +1,7 @@
 import React, { useState } from 'react';
 import { useNavigate } from 'react-router-dom';
 import { Container, Row, Col, Form, Button, Card, Alert } from 'react-bootstrap';
+import { API_ENDPOINTS } from '../../config/api';
 import './AdminAuth.css';
 
 const AdminAuth = () => {
@@ -13,28 +14,34 @@ const AdminAuth = () => {
     e.preventDefault();
     setError('');
 
-    // Fixed admin credentials
-    const adminCredentials = {
-      username: 'admin',
-      password: 'admin',
-      role: 'ADMIN',
-      id: '1',
-      token: 'admin-jwt-token',
-    };
+    // Log in with a real account; only ADMIN accounts get a token the admin API accepts
+    try {
+      const response = await fetch(`${API_ENDPOINTS.BASE_URL}${API_ENDPOINTS.LOGIN}`, {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/json' },
+        body: JSON.stringify({ email: username, password })
+      });
+      const data = await response.json();
+      if (!response.ok) {
+        setError(data.message || 'Invalid email or password');
+        return;
+      }
+      if (data.role !== 'ADMIN') {
+        setError('This account is not an administrator');
+        return;
+      }
 
-    // Validate credentials
-    if (username === adminCredentials.username && password === adminCredentials.password) {
       // Store admin info in localStorage
-      localStorage.setItem('adminToken', adminCredentials.token);
+      localStorage.setItem('adminToken', data.token);
       localStorage.setItem('adminData', JSON.stringify({
-        id: adminCredentials.id,
-        username: adminCredentials.username,
-        role: adminCredentials.role,
+        id: data.id,
+        username: data.email,
+        role: data.role,
       }));
 
       navigate('/admin');
-    } else {
-      setError('Invalid username or password');
+    } catch (err) {
+      setError('Login failed');
     }
   };
 
@@ -54,8 +61,8 @@ const AdminAuth = () => {
                 <Form onSubmit={handleLogin}>
                   <Form.Group className="mb-3" controlId="username">
                     <Form.Control
-                      type="text"
-                      placeholder="Username"
+                      type="email"
+                      placeholder="Email"
                       value={username}
                       onChange={(e) => setUsername(e.target.value)}
                       required
@@ -31,6 +31,21 @@ const NotificationDropdown = ({ currentUser }) => {
     }
   }, [currentUser?.id]);
 
+  // Tải lại toàn bộ thông báo khi server báo không thể phát lại các sự kiện bị bỏ lỡ
+  useEffect(() => {
+    if (!currentUser?.id) return;
+
+    const handleResync = () => {
+      fetchNotifications();
+      fetchUnreadCount();
+    };
+
+    window.addEventListener('websocket:resync', handleResync);
+    return () => {
+      window.removeEventListener('websocket:resync', handleResync);
+    };
+  }, [currentUser?.id]);
+
   // Đóng dropdown khi click bên ngoài
   useEffect(() => {
     const handleClickOutside = (event) => {
@@ -2,6 +2,7 @@ import React, { useState, useEffect, useRef } from 'react';
 import { API_ENDPOINTS } from '../config/api';
 import { useChat } from '../contexts/ChatContext';
 import { useNavigate } from 'react-router-dom';
+import { webSocketService } from '../services/websocket';
 
 /**
  * Component hiển thị danh sách bạn bè ở thanh bên phải
@@ -9,6 +10,7 @@ import { useNavigate } from 'react-router-dom';
 function RightSidebar() {
   const [friends, setFriends] = useState([]);
   const [loading, setLoading] = useState(false);
+  const [onlineFriendIds, setOnlineFriendIds] = useState(new Set());
   const { openChat, unreadCounts } = useChat();
   const navigate = useNavigate();
 
@@ -125,6 +127,46 @@ function RightSidebar() {
     };
   }, [user?.id]);
 
+  // Lấy danh sách bạn bè đang online và lắng nghe thay đổi trạng thái
+  useEffect(() => {
+    if (!user?.id) return;
+
+    const fetchOnlineFriends = async () => {
+      try {
+        const response = await fetch(`/api/presence/friends/${user.id}`, {
+          headers: {
+            'Authorization': `Bearer ${localStorage.getItem('userToken')}`
+          }
+        });
+        if (response.ok) {
+          const ids = await response.json();
+          setOnlineFriendIds(new Set(Array.isArray(ids) ? ids : []));
+        }
+      } catch (error) {
+        console.error('Lỗi khi lấy danh sách bạn bè online:', error);
+      }
+    };
+
+    fetchOnlineFriends();
+
+    webSocketService.subscribeToPresence(user.id, (data) => {
+      if (data.type !== 'PRESENCE') return;
+      setOnlineFriendIds(prev => {
+        const next = new Set(prev);
+        if (data.online) {
+          next.add(data.userId);
+        } else {
+          next.delete(data.userId);
+        }
+        return next;
+      });
+    });
+
+    return () => {
+      webSocketService.unsubscribeFromPresence(user.id);
+    };
+  }, [user?.id]);
+
   /**
    * Lấy URL đầy đủ của hình ảnh
    * @param {string} path Đường dẫn hình ảnh
@@ -185,10 +227,12 @@ function RightSidebar() {
                       }}
                     />
                     {/* Chỉ báo trạng thái online */}
-                    <span
-                      className="absolute w-2 h-2 bg-green-500 rounded-full bottom-0.5 right-0.5 border border-white"
-                      aria-label="Đang hoạt động"
-                    ></span>
+                    {onlineFriendIds.has(friend.id) && (
+                      <span
+                        className="absolute w-2 h-2 bg-green-500 rounded-full bottom-0.5 right-0.5 border border-white"
+                        aria-label="Đang hoạt động"
+                      ></span>
+                    )}
                   </div>
                   <span className="text-gray-900">{`${friend.firstName || ''} ${friend.lastName || ''}`}</span>
                 </div>
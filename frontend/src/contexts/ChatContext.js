@@ -241,35 +241,44 @@ export const ChatProvider = ({ children }) => {
     }
 
     try {
-      const response = await fetch(`${API_ENDPOINTS.BASE_URL}/api/messages`, {
-        method: 'POST',
-        headers: {
-          'Content-Type': 'application/json',
-          'Authorization': `Bearer ${localStorage.getItem('userToken')}`
-        },
-        body: JSON.stringify({
+      let message;
+
+      if (webSocketService.connected) {
+        // Gửi trực tiếp qua kết nối STOMP, chờ ack từ server
+        message = await webSocketService.sendPrivateMessage({
           senderId: currentUser.id,
           receiverId,
           content
-        })
-      });
-
-      if (response.ok) {
-        const message = await response.json();
-
-        // Thêm tin nhắn vào cuộc trò chuyện
-        const updatedChats = activeChats.map(chat => {
-          if (chat.friend.id === receiverId) {
-            return {
-              ...chat,
-              messages: [...chat.messages, message]
-            };
-          }
-          return chat;
+        });
+      } else {
+        // Dự phòng qua HTTP khi WebSocket chưa kết nối
+        const response = await fetch(`${API_ENDPOINTS.BASE_URL}/api/messages`, {
+          method: 'POST',
+          headers: {
+            'Content-Type': 'application/json',
+            'Authorization': `Bearer ${localStorage.getItem('userToken')}`
+          },
+          body: JSON.stringify({
+            senderId: currentUser.id,
+            receiverId,
+            content
+          })
         });
 
-        setActiveChats(updatedChats);
+        if (!response.ok) return;
+        message = await response.json();
       }
+
+      // Thêm tin nhắn vào cuộc trò chuyện
+      setActiveChats(prevChats => prevChats.map(chat => {
+        if (chat.friend.id === receiverId) {
+          return {
+            ...chat,
+            messages: [...chat.messages, message]
+          };
+        }
+        return chat;
+      }));
     } catch (error) {
       console.error('Lỗi khi gửi tin nhắn:', error);
     }
@@ -1,22 +1,23 @@
 import React, { useState, useEffect } from 'react';
 import AdminLayout from './AdminLayout';
 import StatCard from './StatCard';
-import { Row, Col, Alert } from 'react-bootstrap';
+import { Row, Col, Alert, Table } from 'react-bootstrap';
 import axios from 'axios';
+import { adminHeaders } from './adminApi';
 
 const AdminDashboard = () => {
-  const [totalPosts, setTotalPosts] = useState(0);
-  const [totalUsers, setTotalUsers] = useState(0);
+  const [stats, setStats] = useState(null);
   const [error, setError] = useState('');
 
-  // Fetch totals on component mount
+  // Fetch pre-aggregated stats on component mount
   useEffect(() => {
     const fetchData = async () => {
       try {
-        const postsResponse = await axios.get('http://localhost:8080/api/posts');
-        const usersResponse = await axios.get('http://localhost:8080/api/users');
-        setTotalPosts(postsResponse.data.length);
-        setTotalUsers(usersResponse.data.length);
+        const response = await axios.get('http://localhost:8080/api/admin/stats', {
+          params: { hours: 24, days: 7 },
+          headers: adminHeaders()
+        });
+        setStats(response.data);
       } catch (err) {
         setError('Failed to fetch data');
       }
@@ -24,28 +25,68 @@ const AdminDashboard = () => {
     fetchData();
   }, []);
 
+  const totals = stats ? stats.totals : {};
+  const cards = [
+    { title: 'Total Users', value: totals.users, description: 'Number of registered users' },
+    { title: 'Total Posts', value: totals.posts, description: 'Number of posts in the system' },
+    { title: 'Total Comments', value: totals.comments, description: 'Comments and replies on all posts' },
+    { title: 'Total Likes', value: totals.likes, description: 'Likes on all posts' },
+    { title: 'Total Messages', value: totals.messages, description: 'Private messages sent' },
+    { title: 'Active Today', value: stats ? stats.activeUsersToday : 0, description: 'Distinct users active today (estimated)' }
+  ];
+
+  // Sum of the last 24 hourly buckets
+  const lastDay = (stats ? stats.hourly : []).reduce((sum, point) => ({
+    users: sum.users + point.users,
+    posts: sum.posts + point.posts,
+    comments: sum.comments + point.comments,
+    likes: sum.likes + point.likes,
+    messages: sum.messages + point.messages
+  }), { users: 0, posts: 0, comments: 0, likes: 0, messages: 0 });
+
   return (
     <AdminLayout>
       <h2 className="mb-4 text-2xl font-bold">Dashboard Overview</h2>
       {error && <Alert variant="danger">{error}</Alert>}
       <Row>
-        <Col md={6}>
-          <StatCard
-            title="Total Posts"
-            value={totalPosts}
-            description="Number of posts in the system"
-          />
-        </Col>
-        <Col md={6}>
-          <StatCard
-            title="Total Users"
-            value={totalUsers}
-            description="Number of registered users"
-          />
-        </Col>
+        {cards.map(card => (
+          <Col md={4} key={card.title} className="mb-3">
+            <StatCard
+              title={card.title}
+              value={card.value || 0}
+              description={card.description}
+            />
+          </Col>
+        ))}
       </Row>
+      {stats && (
+        <Row>
+          <Col md={6}>
+            <h5 className="mb-3">Last 24 hours</h5>
+            <Table striped bordered size="sm">
+              <tbody>
+                <tr><td>New users</td><td>{lastDay.users}</td></tr>
+                <tr><td>New posts</td><td>{lastDay.posts}</td></tr>
+                <tr><td>New comments</td><td>{lastDay.comments}</td></tr>
+                <tr><td>New likes</td><td>{lastDay.likes}</td></tr>
+                <tr><td>Messages</td><td>{lastDay.messages}</td></tr>
+              </tbody>
+            </Table>
+          </Col>
+          <Col md={6}>
+            <h5 className="mb-3">Daily active users</h5>
+            <Table striped bordered size="sm">
+              <tbody>
+                {stats.dailyActiveUsers.map(point => (
+                  <tr key={point.day}><td>{point.day}</td><td>{point.count}</td></tr>
+                ))}
+              </tbody>
+            </Table>
+          </Col>
+        </Row>
+      )}
     </AdminLayout>
   );
 };
 
-export default AdminDashboard;
\ No newline at end of file
+export default AdminDashboard;
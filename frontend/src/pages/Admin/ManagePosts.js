@@ -2,11 +2,12 @@ import React, { useState, useEffect } from 'react';
 import AdminLayout from './AdminLayout';
 import { Table, Button, Modal, Alert, Card, Row, Col, Badge, InputGroup, FormControl, Pagination } from 'react-bootstrap';
 import axios from 'axios';
-import { FaTrashAlt, FaSearch, FaUserCircle, FaInfoCircle, FaImage, FaVideo, FaComment, FaHeart } from 'react-icons/fa';
+import { adminHeaders, downloadExport } from './adminApi';
+import { FaTrashAlt, FaSearch, FaUserCircle, FaInfoCircle, FaImage, FaVideo, FaComment, FaHeart, FaDownload } from 'react-icons/fa';
 
 const ManagePosts = () => {
   const [posts, setPosts] = useState([]);
-  const [filteredPosts, setFilteredPosts] = useState([]);
+  const [totalPages, setTotalPages] = useState(0);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
 
@@ -14,19 +15,33 @@ const ManagePosts = () => {
   const [showDeleteModal, setShowDeleteModal] = useState(false);
   const [currentPost, setCurrentPost] = useState({ id: '', content: '', userId: '', likes: [], comments: [], images: [], videos: [], isShared: false, originalPostId: null });
   const [searchTerm, setSearchTerm] = useState('');
+  const [debouncedSearch, setDebouncedSearch] = useState('');
+  const [reloadKey, setReloadKey] = useState(0);
 
-  // Pagination
+  // Pagination (server-side)
   const [currentPage, setCurrentPage] = useState(1);
   const [postsPerPage] = useState(10);
 
-  // Fetch posts on component mount
+  // Wait until typing stops before searching on the server
+  useEffect(() => {
+    const timer = setTimeout(() => {
+      setDebouncedSearch(searchTerm.trim());
+      setCurrentPage(1); // Reset to first page on new search
+    }, 300);
+    return () => clearTimeout(timer);
+  }, [searchTerm]);
+
+  // Fetch the current page of posts
   useEffect(() => {
     const fetchPosts = async () => {
       setLoading(true);
       try {
-        const response = await axios.get('http://localhost:8080/api/posts');
-        setPosts(response.data);
-        setFilteredPosts(response.data);
+        const response = await axios.get('http://localhost:8080/api/admin/posts', {
+          params: { q: debouncedSearch || undefined, page: currentPage - 1, size: postsPerPage },
+          headers: adminHeaders()
+        });
+        setPosts(response.data.content);
+        setTotalPages(response.data.totalPages);
         setLoading(false);
       } catch (err) {
         setError('Failed to fetch posts');
@@ -34,28 +49,17 @@ const ManagePosts = () => {
       }
     };
     fetchPosts();
-  }, []);
+  }, [debouncedSearch, currentPage, postsPerPage, reloadKey]);
 
-  // Filter posts when search term changes
-  useEffect(() => {
-    if (searchTerm.trim() === '') {
-      setFilteredPosts(posts);
-    } else {
-      const filtered = posts.filter(
-        post =>
-          (post.content && post.content.toLowerCase().includes(searchTerm.toLowerCase())) ||
-          (post.user && `${post.user.firstName} ${post.user.lastName}`.toLowerCase().includes(searchTerm.toLowerCase()))
-      );
-      setFilteredPosts(filtered);
+  const currentPosts = posts;
+  // Download the filtered export with the admin token
+  const handleExport = async () => {
+    try {
+      await downloadExport('http://localhost:8080/api/admin/posts/export', { q: debouncedSearch || undefined }, 'posts.ndjson');
+    } catch (err) {
+      setError('Failed to export posts');
     }
-    setCurrentPage(1); // Reset to first page on new search
-  }, [searchTerm, posts]);
-
-  // Get current posts for pagination
-  const indexOfLastPost = currentPage * postsPerPage;
-  const indexOfFirstPost = indexOfLastPost - postsPerPage;
-  const currentPosts = filteredPosts.slice(indexOfFirstPost, indexOfLastPost);
-  const totalPages = Math.ceil(filteredPosts.length / postsPerPage);
+  };
 
   // Change page
   const paginate = (pageNumber) => setCurrentPage(pageNumber);
@@ -74,8 +78,11 @@ const ManagePosts = () => {
           'Authorization': `Bearer ${localStorage.getItem('adminToken')}`
         }
       });
-      setPosts(posts.filter((post) => post.id !== currentPost.id));
-      setFilteredPosts(filteredPosts.filter((post) => post.id !== currentPost.id));
+      if (posts.length === 1 && currentPage > 1) {
+        setCurrentPage(currentPage - 1);
+      } else {
+        setReloadKey((key) => key + 1);
+      }
       setShowDeleteModal(false);
       setError(''); // Xóa thông báo lỗi nếu có
     } catch (err) {
@@ -92,7 +99,9 @@ const ManagePosts = () => {
 
   // Generate pagination items
   const paginationItems = [];
-  for (let number = 1; number <= totalPages; number++) {
+  const firstPageItem = Math.max(1, currentPage - 2);
+  const lastPageItem = Math.min(totalPages, currentPage + 2);
+  for (let number = firstPageItem; number <= lastPageItem; number++) {
     paginationItems.push(
       <Pagination.Item key={number} active={number === currentPage} onClick={() => paginate(number)}>
         {number}
@@ -115,6 +124,9 @@ const ManagePosts = () => {
               onChange={(e) => setSearchTerm(e.target.value)}
             />
           </InputGroup>
+          <Button variant="outline-secondary" className="ms-2" onClick={handleExport} title="Xuất NDJSON">
+            <FaDownload />
+          </Button>
         </div>
       </div>
 
@@ -232,7 +244,7 @@ const ManagePosts = () => {
           </Table>
 
           {/* Pagination */}
-          {filteredPosts.length > postsPerPage && (
+          {totalPages > 1 && (
             <div className="d-flex justify-content-center mt-4">
               <Pagination>
                 <Pagination.First onClick={() => setCurrentPage(1)} disabled={currentPage === 1} />
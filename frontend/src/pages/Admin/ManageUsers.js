@@ -2,11 +2,12 @@ import React, { useState, useEffect } from 'react';
 import AdminLayout from './AdminLayout';
 import { Table, Button, Modal, Alert, Card, Row, Col, Badge, InputGroup, FormControl, Pagination } from 'react-bootstrap';
 import axios from 'axios';
-import { FaTrashAlt, FaSearch, FaUserCircle, FaInfoCircle } from 'react-icons/fa';
+import { adminHeaders, downloadExport } from './adminApi';
+import { FaTrashAlt, FaSearch, FaUserCircle, FaInfoCircle, FaDownload } from 'react-icons/fa';
 
 const ManageUsers = () => {
   const [users, setUsers] = useState([]);
-  const [filteredUsers, setFilteredUsers] = useState([]);
+  const [totalPages, setTotalPages] = useState(0);
   const [loading, setLoading] = useState(true);
   const [error, setError] = useState('');
 
@@ -14,19 +15,33 @@ const ManageUsers = () => {
   const [showDeleteModal, setShowDeleteModal] = useState(false);
   const [currentUser, setCurrentUser] = useState({ id: '', firstName: '', lastName: '', email: '', avatar: '', bio: '', gender: '', day: '', month: '', year: '' });
   const [searchTerm, setSearchTerm] = useState('');
+  const [debouncedSearch, setDebouncedSearch] = useState('');
+  const [reloadKey, setReloadKey] = useState(0);
 
-  // Pagination
+  // Pagination (server-side)
   const [currentPage, setCurrentPage] = useState(1);
   const [usersPerPage] = useState(10);
 
-  // Fetch users on component mount
+  // Wait until typing stops before searching on the server
+  useEffect(() => {
+    const timer = setTimeout(() => {
+      setDebouncedSearch(searchTerm.trim());
+      setCurrentPage(1); // Reset to first page on new search
+    }, 300);
+    return () => clearTimeout(timer);
+  }, [searchTerm]);
+
+  // Fetch the current page of users
   useEffect(() => {
     const fetchUsers = async () => {
       setLoading(true);
       try {
-        const response = await axios.get('http://localhost:8080/api/users');
-        setUsers(response.data);
-        setFilteredUsers(response.data);
+        const response = await axios.get('http://localhost:8080/api/admin/users', {
+          params: { q: debouncedSearch || undefined, page: currentPage - 1, size: usersPerPage },
+          headers: adminHeaders()
+        });
+        setUsers(response.data.content);
+        setTotalPages(response.data.totalPages);
         setLoading(false);
       } catch (err) {
         setError('Failed to fetch users');
@@ -34,29 +49,17 @@ const ManageUsers = () => {
       }
     };
     fetchUsers();
-  }, []);
+  }, [debouncedSearch, currentPage, usersPerPage, reloadKey]);
 
-  // Filter users when search term changes
-  useEffect(() => {
-    if (searchTerm.trim() === '') {
-      setFilteredUsers(users);
-    } else {
-      const filtered = users.filter(
-        user =>
-          user.firstName.toLowerCase().includes(searchTerm.toLowerCase()) ||
-          user.lastName.toLowerCase().includes(searchTerm.toLowerCase()) ||
-          user.email.toLowerCase().includes(searchTerm.toLowerCase())
-      );
-      setFilteredUsers(filtered);
+  const currentUsers = users;
+  // Download the filtered export with the admin token
+  const handleExport = async () => {
+    try {
+      await downloadExport('http://localhost:8080/api/admin/users/export', { q: debouncedSearch || undefined }, 'users.ndjson');
+    } catch (err) {
+      setError('Failed to export users');
     }
-    setCurrentPage(1); // Reset to first page on new search
-  }, [searchTerm, users]);
-
-  // Get current users for pagination
-  const indexOfLastUser = currentPage * usersPerPage;
-  const indexOfFirstUser = indexOfLastUser - usersPerPage;
-  const currentUsers = filteredUsers.slice(indexOfFirstUser, indexOfLastUser);
-  const totalPages = Math.ceil(filteredUsers.length / usersPerPage);
+  };
 
   // Change page
   const paginate = (pageNumber) => setCurrentPage(pageNumber);
@@ -70,8 +73,11 @@ const ManageUsers = () => {
   const deleteUser = async () => {
     try {
       await axios.delete(`http://localhost:8080/api/users/${currentUser.id}`);
-      setUsers(users.filter((user) => user.id !== currentUser.id));
-      setFilteredUsers(filteredUsers.filter((user) => user.id !== currentUser.id));
+      if (users.length === 1 && currentPage > 1) {
+        setCurrentPage(currentPage - 1);
+      } else {
+        setReloadKey((key) => key + 1);
+      }
       setShowDeleteModal(false);
     } catch (err) {
       setError('Failed to delete user');
@@ -86,7 +92,9 @@ const ManageUsers = () => {
 
   // Generate pagination items
   const paginationItems = [];
-  for (let number = 1; number <= totalPages; number++) {
+  const firstPageItem = Math.max(1, currentPage - 2);
+  const lastPageItem = Math.min(totalPages, currentPage + 2);
+  for (let number = firstPageItem; number <= lastPageItem; number++) {
     paginationItems.push(
       <Pagination.Item key={number} active={number === currentPage} onClick={() => paginate(number)}>
         {number}
@@ -109,6 +117,9 @@ const ManageUsers = () => {
               onChange={(e) => setSearchTerm(e.target.value)}
             />
           </InputGroup>
+          <Button variant="outline-secondary" className="ms-2" onClick={handleExport} title="Xuất NDJSON">
+            <FaDownload />
+          </Button>
         </div>
       </div>
 
@@ -190,7 +201,7 @@ const ManageUsers = () => {
           </Table>
 
           {/* Pagination */}
-          {filteredUsers.length > usersPerPage && (
+          {totalPages > 1 && (
             <div className="d-flex justify-content-center mt-4">
               <Pagination>
                 <Pagination.First onClick={() => setCurrentPage(1)} disabled={currentPage === 1} />
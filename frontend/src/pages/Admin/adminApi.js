@@ -0,0 +1,26 @@
+import axios from 'axios';
+
+/**
+ * Header xác thực cho các API /api/admin (cần JWT của tài khoản ADMIN)
+ */
+export const adminHeaders = () => ({
+  Authorization: `Bearer ${localStorage.getItem('adminToken')}`
+});
+
+/**
+ * Tải file xuất NDJSON kèm header xác thực (link thường không gửi được header)
+ *
+ * @param {string} url Đường dẫn API xuất dữ liệu
+ * @param {object} params Tham số lọc
+ * @param {string} fileName Tên file lưu
+ */
+export const downloadExport = async (url, params, fileName) => {
+  const response = await axios.get(url, { params, headers: adminHeaders(), responseType: 'blob' });
+  const link = document.createElement('a');
+  link.href = URL.createObjectURL(response.data);
+  link.download = fileName;
+  document.body.appendChild(link);
+  link.click();
+  link.remove();
+  URL.revokeObjectURL(link.href);
+};
@@ -1,4 +1,4 @@
-import React, { useState, useEffect } from "react";
+import React, { useState, useEffect, useCallback } from "react";
 import { useUser } from "../contexts/UserContext";
 import PostForm from "../components/Post/PostForm";
 import PostList from "../components/Post/PostList";
@@ -7,14 +7,65 @@ import RightSidebar from "../components/RightSidebar";
 import Stories from "../components/Stories/Stories";
 import { API_ENDPOINTS } from "../config/api";
 
+// Số bài mỗi lần tải bảng tin
+const FEED_PAGE_SIZE = 20;
+
 /**
  * Trang chủ hiển thị danh sách bài đăng
  */
 const Home = () => {
   const [posts, setPosts] = useState([]);
   const [loading, setLoading] = useState(true);
+  const [page, setPage] = useState(0);
+  const [hasMore, setHasMore] = useState(false);
+  const [loadingMore, setLoadingMore] = useState(false);
   const { currentUser } = useUser();
 
+  /**
+   * Lấy một trang bảng tin (đã được server xếp hạng)
+   * Trang có thể ít hơn FEED_PAGE_SIZE bài mà vẫn còn trang sau, nên dựa vào hasMore của server
+   */
+  const fetchFeedPage = useCallback(async (pageNumber) => {
+    const response = await fetch(
+      `${API_ENDPOINTS.BASE_URL}${API_ENDPOINTS.POSTS}?userId=${currentUser.id}&page=${pageNumber}&size=${FEED_PAGE_SIZE}`,
+      {
+        headers: {
+          Authorization: `Bearer ${localStorage.getItem("userToken")}`,
+        },
+      }
+    );
+    if (!response.ok) {
+      return null;
+    }
+    const data = await response.json();
+    // Đảm bảo posts là một mảng và lọc ra các bài đăng hợp lệ
+    const feedPosts = Array.isArray(data?.posts) ? data.posts.filter((post) => post && post.id) : [];
+    return { posts: feedPosts, hasMore: data?.hasMore === true };
+  }, [currentUser]);
+
+  /**
+   * Tải thêm trang tiếp theo, bỏ các bài đã hiển thị (thứ hạng có thể đổi giữa hai lần tải)
+   */
+  const loadMore = async () => {
+    setLoadingMore(true);
+    try {
+      const nextPage = page + 1;
+      const data = await fetchFeedPage(nextPage);
+      if (data) {
+        setPosts((current) => {
+          const shown = new Set(current.map((post) => post.id));
+          return [...current, ...data.posts.filter((post) => !shown.has(post.id))];
+        });
+        setPage(nextPage);
+        setHasMore(data.hasMore);
+      }
+    } catch (error) {
+      console.error("Lỗi khi tải thêm bài đăng:", error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   // Lấy danh sách bài đăng khi component được mount hoặc currentUser thay đổi
   useEffect(() => {
     // Chỉ tiếp tục nếu có thông tin người dùng hợp lệ
@@ -32,24 +83,10 @@ const Home = () => {
           return; // Chỉ return thay vì chuyển hướng
         }
 
-        const response = await fetch(
-          `${API_ENDPOINTS.BASE_URL}${API_ENDPOINTS.POSTS}?userId=${currentUser.id}`,
-          {
-            headers: {
-              Authorization: `Bearer ${localStorage.getItem("userToken")}`,
-            },
-          }
-        );
-
-        if (response.ok) {
-          const data = await response.json();
-          // Đảm bảo data là một mảng và lọc ra các bài đăng hợp lệ
-          setPosts(
-            Array.isArray(data) ? data.filter((post) => post && post.id) : []
-          );
-        } else {
-          setPosts([]);
-        }
+        const data = await fetchFeedPage(0);
+        setPosts(data ? data.posts : []);
+        setPage(0);
+        setHasMore(data ? data.hasMore : false);
       } catch (error) {
         console.error("Lỗi khi lấy bài đăng:", error);
         setPosts([]);
@@ -59,7 +96,7 @@ const Home = () => {
     };
 
     fetchPosts();
-  }, [currentUser]); // Thêm currentUser vào dependencies
+  }, [currentUser, fetchFeedPage]); // Thêm currentUser vào dependencies
 
   // Hiển thị thông báo nếu chưa đăng nhập
   if (!currentUser) {
@@ -109,6 +146,19 @@ const Home = () => {
                 currentUser={currentUser}
                 userData={currentUser} // Để tương thích ngược
               />
+
+              {/* Tải thêm bài đăng */}
+              {hasMore && (
+                <div className="text-center my-3">
+                  <button
+                    className="btn btn-light"
+                    onClick={loadMore}
+                    disabled={loadingMore}
+                  >
+                    {loadingMore ? "Đang tải..." : "Xem thêm bài viết"}
+                  </button>
+                </div>
+              )}
             </>
           )}
         </div>
@@ -16,6 +16,14 @@ class WebSocketService {
         this.friendSubscriptions = new Map(); // Đăng ký cho cập nhật bạn bè
         this.messageSubscriptions = new Map(); // Đăng ký cho tin nhắn
         this.notificationSubscriptions = new Map(); // Đăng ký cho thông báo
+        this.presenceSubscriptions = new Map(); // Đăng ký cho trạng thái online của bạn bè
+
+        // seq lớn nhất đã nhận của các sự kiện theo người dùng (tin nhắn, thông báo, bạn bè)
+        this.lastSeq = null;
+
+        // Tin nhắn đang chờ ack, theo clientMessageId
+        this.pendingMessages = new Map();
+        this.ackTimeout = 10000;
 
         // Trạng thái kết nối
         this.connected = false;
@@ -71,6 +79,7 @@ class WebSocketService {
                             console.log('WebSocket Debug:', str);
                         }
                     },
+                    connectHeaders: this.getConnectHeaders(),
                     reconnectDelay: this.reconnectDelay,
                     heartbeatIncoming: 25000,
                     heartbeatOutgoing: 25000,
@@ -78,7 +87,10 @@ class WebSocketService {
                         this.connected = true;
                         this.connectionAttempts = 0; // Reset số lần thử khi kết nối thành công
                         this.connectPromise = null;
+                        this.subscribeToMessageAcks();
+                        this.subscribeToResume();
                         this.resubscribeAll();
+                        this.requestResume();
                         resolve();
                     },
                     onDisconnect: () => {
@@ -140,6 +152,24 @@ class WebSocketService {
         return this.connectPromise;
     }
 
+    /**
+     * Header gửi kèm frame CONNECT để server biết session thuộc người dùng nào
+     * @returns {Object} Header kết nối
+     */
+    getConnectHeaders() {
+        try {
+            const userData = JSON.parse(localStorage.getItem('userData'));
+            const token = localStorage.getItem('userToken');
+            const headers = userData?.id ? { userId: userData.id } : {};
+            if (token) {
+                headers.Authorization = `Bearer ${token}`;
+            }
+            return headers;
+        } catch (error) {
+            return {};
+        }
+    }
+
     /**
      * Đặt lại kết nối WebSocket
      */
@@ -277,6 +307,19 @@ class WebSocketService {
                 this.notificationSubscriptions.set(userId, tempNotificationSubscriptions.get(userId));
             }
         }
+
+        // Đăng ký lại cho trạng thái online
+        const presenceSubscriptions = new Map(this.presenceSubscriptions);
+        this.presenceSubscriptions.clear();
+
+        for (const [userId, { callback }] of presenceSubscriptions) {
+            try {
+                await this.subscribeToPresence(userId, callback);
+            } catch (error) {
+                console.error(`Lỗi khi đăng ký lại trạng thái online cho người dùng ${userId}:`, error);
+                this.presenceSubscriptions.set(userId, presenceSubscriptions.get(userId));
+            }
+        }
     }
 
     /**
@@ -350,6 +393,7 @@ class WebSocketService {
 
             const subscription = this.stompClient.subscribe(`/topic/friends/${userId}`, message => {
                 try {
+                    this.trackSeq(message);
                     const data = JSON.parse(message.body);
                     callback(data);
                 } catch (error) {
@@ -403,6 +447,7 @@ class WebSocketService {
 
             const subscription = this.stompClient.subscribe(`/topic/messages/${userId}`, message => {
                 try {
+                    this.trackSeq(message);
                     const data = JSON.parse(message.body);
                     callback(data);
                 } catch (error) {
@@ -455,6 +500,7 @@ class WebSocketService {
 
             const subscription = this.stompClient.subscribe(`/topic/notifications/${userId}`, message => {
                 try {
+                    this.trackSeq(message);
                     const data = JSON.parse(message.body);
                     callback(data);
                 } catch (error) {
@@ -485,6 +531,178 @@ class WebSocketService {
         }
     }
 
+    /**
+     * Đăng ký nhận thay đổi trạng thái online của bạn bè
+     * @param {string} userId ID của người dùng
+     * @param {Function} callback Hàm callback xử lý khi có bạn bè online/offline
+     */
+    async subscribeToPresence(userId, callback) {
+        if (!userId || !callback) {
+            console.error('ID người dùng hoặc callback không hợp lệ cho đăng ký trạng thái online');
+            return;
+        }
+
+        if (this.presenceSubscriptions.has(userId)) {
+            return;
+        }
+
+        try {
+            if (!this.connected) {
+                await this.connect();
+            }
+
+            const subscription = this.stompClient.subscribe(`/topic/presence/${userId}`, message => {
+                try {
+                    callback(JSON.parse(message.body));
+                } catch (error) {
+                    console.error('Lỗi khi phân tích trạng thái online:', error);
+                }
+            });
+
+            this.presenceSubscriptions.set(userId, { callback, subscription });
+        } catch (error) {
+            console.error(`Lỗi khi đăng ký trạng thái online cho người dùng ${userId}:`, error);
+            this.reconnectWithDelay();
+        }
+    }
+
+    /**
+     * Hủy đăng ký trạng thái online cho một người dùng
+     * @param {string} userId ID của người dùng
+     */
+    unsubscribeFromPresence(userId) {
+        const sub = this.presenceSubscriptions.get(userId);
+        if (sub && sub.subscription) {
+            try {
+                sub.subscription.unsubscribe();
+            } catch (e) {
+                console.error(`Lỗi khi hủy đăng ký trạng thái online cho người dùng ${userId}:`, e);
+            }
+            this.presenceSubscriptions.delete(userId);
+        }
+    }
+
+    /**
+     * Ghi nhận seq của một sự kiện theo người dùng
+     * @param {Object} message Frame STOMP nhận được
+     */
+    trackSeq(message) {
+        const seq = Number(message.headers?.seq);
+        if (seq && (this.lastSeq === null || seq > this.lastSeq)) {
+            this.lastSeq = seq;
+        }
+    }
+
+    /**
+     * Đăng ký nhận kết quả resume (chỉ session hiện tại nhận được)
+     */
+    subscribeToResume() {
+        this.stompClient.subscribe('/user/queue/resume', message => {
+            try {
+                const result = JSON.parse(message.body);
+
+                if (result.resyncRequired) {
+                    // Buffer trên server đã tràn, các component cần tải lại toàn bộ dữ liệu
+                    this.lastSeq = null;
+                    window.dispatchEvent(new CustomEvent('websocket:resync'));
+                    return;
+                }
+
+                (result.events || []).forEach(event => {
+                    if (this.lastSeq !== null && event.seq <= this.lastSeq) return;
+                    this.lastSeq = event.seq;
+                    this.dispatchReplayedEvent(event.destination, event.payload);
+                });
+            } catch (error) {
+                console.error('Lỗi khi phân tích kết quả resume:', error);
+            }
+        });
+    }
+
+    /**
+     * Gửi yêu cầu resume sau khi kết nối lại, kèm seq cuối cùng đã nhận
+     */
+    requestResume() {
+        const { userId } = this.getConnectHeaders();
+        if (!userId || this.lastSeq === null) return;
+
+        this.stompClient.publish({
+            destination: '/app/resume',
+            body: JSON.stringify({ userId, lastSeq: this.lastSeq })
+        });
+    }
+
+    /**
+     * Chuyển sự kiện được phát lại đến callback đã đăng ký cho đích tương ứng
+     * @param {string} destination Đích STOMP gốc của sự kiện
+     * @param {Object} payload Nội dung sự kiện
+     */
+    dispatchReplayedEvent(destination, payload) {
+        const [, , topic, userId] = destination.split('/');
+        const subscriptionsByTopic = {
+            messages: this.messageSubscriptions,
+            notifications: this.notificationSubscriptions,
+            friends: this.friendSubscriptions
+        };
+
+        const sub = subscriptionsByTopic[topic]?.get(userId);
+        if (sub && sub.callback) {
+            sub.callback(payload);
+        }
+    }
+
+    /**
+     * Đăng ký nhận ack cho các tin nhắn gửi qua STOMP (chỉ session hiện tại nhận được)
+     */
+    subscribeToMessageAcks() {
+        this.stompClient.subscribe('/user/queue/chat.ack', message => {
+            try {
+                const ack = JSON.parse(message.body);
+                const pending = this.pendingMessages.get(ack.clientMessageId);
+                if (!pending) return;
+
+                clearTimeout(pending.timeout);
+                this.pendingMessages.delete(ack.clientMessageId);
+
+                if (ack.status === 'OK') {
+                    pending.resolve(ack.message);
+                } else {
+                    pending.reject(new Error(ack.error || 'Gửi tin nhắn thất bại'));
+                }
+            } catch (error) {
+                console.error('Lỗi khi phân tích ack tin nhắn:', error);
+            }
+        });
+    }
+
+    /**
+     * Gửi tin nhắn riêng qua kết nối STOMP hiện có
+     * Có thể gửi nhiều tin nhắn liên tiếp mà không cần chờ ack của tin trước
+     * @param {Object} request Thông tin tin nhắn (senderId, receiverId, content)
+     * @returns {Promise<Object>} Tin nhắn đã lưu trên server
+     */
+    sendPrivateMessage(request) {
+        if (!this.connected || !this.stompClient) {
+            return Promise.reject(new Error('WebSocket chưa kết nối'));
+        }
+
+        const clientMessageId = `${Date.now()}-${Math.random().toString(36).slice(2, 10)}`;
+
+        return new Promise((resolve, reject) => {
+            const timeout = setTimeout(() => {
+                this.pendingMessages.delete(clientMessageId);
+                reject(new Error('Hết thời gian chờ xác nhận tin nhắn'));
+            }, this.ackTimeout);
+
+            this.pendingMessages.set(clientMessageId, { resolve, reject, timeout });
+
+            this.stompClient.publish({
+                destination: '/app/chat.send',
+                body: JSON.stringify({ ...request, clientMessageId })
+            });
+        });
+    }
+
     /**
      * Ngắt kết nối WebSocket và hủy tất cả các đăng ký
      */
@@ -542,6 +760,18 @@ class WebSocketService {
             });
             this.notificationSubscriptions.clear();
 
+            // Hủy đăng ký trạng thái online
+            this.presenceSubscriptions.forEach((sub) => {
+                if (sub.subscription) {
+                    try {
+                        sub.subscription.unsubscribe();
+                    } catch (e) {
+                        console.error('Lỗi khi hủy đăng ký trạng thái online:', e);
+                    }
+                }
+            });
+            this.presenceSubscriptions.clear();
+
             this.resetConnection();
         }
     }